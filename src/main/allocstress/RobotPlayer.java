@@ -0,0 +1,136 @@
+package allocstress;
+
+import battlecode.common.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * A stress-test player that churns through collections: every robot fills
+ * lists, maps and sets of boxed values and locations, sorts them and
+ * throws them away, over and over until its bytecodes run low. Everything
+ * it touches in java.util is the instrumented copy the engine loads for
+ * each team.
+ */
+public class RobotPlayer {
+
+    static final Direction[] DIRECTIONS = {Direction.NORTH, Direction.NORTH_EAST, Direction.EAST,
+            Direction.SOUTH_EAST, Direction.SOUTH, Direction.SOUTH_WEST, Direction.WEST, Direction.NORTH_WEST};
+
+    static final int RESERVE = 1500;
+
+    static RobotController rc;
+    static Random rand;
+
+    public static void run(RobotController myRC) {
+        rc = myRC;
+        rand = new Random(rc.getID());
+        while (true) {
+            try {
+                grow();
+                churn();
+            } catch (GameActionException e) {
+                e.printStackTrace();
+            }
+            rc.yield();
+        }
+    }
+
+    static void churn() {
+        MapLocation here = rc.getLocation();
+        int round = Clock.getRoundNum();
+        int kept = 0;
+        // a pass can overrun the reserve and end the turn; stop if it did
+        while (Clock.getRoundNum() == round && Clock.getBytecodesLeft() > RESERVE) {
+            List<Integer> numbers = new ArrayList<Integer>();
+            for (int i = 0; i < 20; i++)
+                numbers.add(rand.nextInt(1000));
+            Collections.sort(numbers);
+
+            Map<MapLocation, Integer> seen = new HashMap<MapLocation, Integer>();
+            Set<MapLocation> visited = new HashSet<MapLocation>();
+            LinkedList<MapLocation> queue = new LinkedList<MapLocation>();
+            queue.add(here);
+            while (!queue.isEmpty() && visited.size() < 12) {
+                MapLocation loc = queue.removeFirst();
+                if (!visited.add(loc))
+                    continue;
+                seen.put(loc, numbers.get(visited.size()));
+                for (Direction d : DIRECTIONS)
+                    queue.add(loc.add(d));
+            }
+            kept += seen.size() + numbers.get(0);
+        }
+        rc.setIndicatorString(0, "kept " + kept);
+    }
+
+    static void grow() throws GameActionException {
+        switch (rc.getType()) {
+            case HQ:
+                spawn(RobotType.BEAVER);
+                break;
+            case MINERFACTORY:
+                spawn(RobotType.MINER);
+                break;
+            case BARRACKS:
+                spawn(RobotType.SOLDIER);
+                break;
+            case BEAVER:
+                if (rand.nextInt(8) == 0 && build(rand.nextBoolean() ? RobotType.MINERFACTORY : RobotType.BARRACKS))
+                    break;
+                mineOrWander();
+                break;
+            case MINER:
+                mineOrWander();
+                break;
+            default:
+                if (rc.getType().canMove())
+                    wander();
+        }
+    }
+
+    static void spawn(RobotType type) throws GameActionException {
+        if (!rc.isCoreReady() || rc.getTeamOre() < type.oreCost)
+            return;
+        int start = rand.nextInt(8);
+        for (int i = 0; i < 8; i++) {
+            Direction d = DIRECTIONS[(start + i) % 8];
+            if (rc.canSpawn(d, type)) {
+                rc.spawn(d, type);
+                return;
+            }
+        }
+    }
+
+    static boolean build(RobotType type) throws GameActionException {
+        if (!rc.isCoreReady() || rc.getTeamOre() < type.oreCost)
+            return false;
+        Direction d = DIRECTIONS[rand.nextInt(8)];
+        if (!rc.canBuild(d, type))
+            return false;
+        rc.build(d, type);
+        return true;
+    }
+
+    static void mineOrWander() throws GameActionException {
+        if (rc.isCoreReady() && rc.senseOre(rc.getLocation()) > 1 && rc.canMine())
+            rc.mine();
+        else
+            wander();
+    }
+
+    static void wander() throws GameActionException {
+        if (!rc.isCoreReady())
+            return;
+        Direction d = DIRECTIONS[rand.nextInt(8)];
+        if (rc.canMove(d))
+            rc.move(d);
+    }
+}
@@ -5,6 +5,7 @@ import battlecode.engine.instrumenter.RobotMonitor;
 import battlecode.engine.instrumenter.lang.RoboRandom;
 import battlecode.engine.scheduler.Scheduler;
 import battlecode.engine.signal.Signal;
+import battlecode.engine.trace.Tracer;
 import battlecode.server.Config;
 import battlecode.world.GameWorldFactory;
 
@@ -22,6 +23,12 @@ public class Engine {
     private final boolean breakpointsEnabled;
     private static Engine theInstance = null;
     private Runnable ioCallback;
+    // null unless bc.engine.metrics is set
+    private EngineMetrics metrics;
+    // null unless bc.engine.trace is set
+    private Tracer tracer;
+    // whether rounds are timed, for the metrics or the trace
+    private boolean measured;
 
     public Engine(String teamA, String teamB, String mapName, String mapPath, long[][] teamMemory) {
         theInstance = this;
@@ -34,6 +41,7 @@ public class Engine {
         IndividualClassLoader.reset();
         Scheduler.reset();
         RobotMonitor.reset();
+        Tracer.start(teamA, teamB, mapName);
         PlayerFactory.checkOptions();
         try {
             try {
@@ -52,6 +60,9 @@ public class Engine {
         RobotMonitor.setGameWorld(gameWorld);
         RoboRandom.setMapSeed(gameWorld.getMapSeed());
         Scheduler.start();
+        metrics = EngineMetrics.create(teamA, teamB, mapName);
+        tracer = Tracer.get();
+        measured = metrics != null || tracer != null;
     }
 
     public GameWorldViewer getGameWorldViewer() {
@@ -66,24 +77,14 @@ public class Engine {
             return GameState.DONE;
         }
         try {
-            if (gameWorld.getCurrentRound() != -1) {
-                gameWorld.clearAllSignals();
-            }
-            gameWorld.processBeginningOfRound();
-            if (getRoundNum() % 500 == 0) {
-                System.out.println("Round: " + getRoundNum());
-            }
-            Scheduler.startNextThread();
-            ioCallback.run();
-            Scheduler.endTurn();
-            gameWorld.processEndOfRound();
-            if (!gameWorld.isRunning()) {
-                // Let all of the threads return so we don't leak
-                // memory.  GameWorld has already told RobotMonitor
-                // to kill all the robots;
-                //System.out.println("Trying to clean up robots");
-                Scheduler.passToNextThread();
-                //System.out.println("Time spent in scheduler: "+(Scheduler.timeInScheduler*1.E-9));
+            if (!measured) {
+                beginRound();
+                Scheduler.startNextThread();
+                ioCallback.run();
+                Scheduler.endTurn();
+                endRound();
+            } else {
+                runMeasuredRound();
             }
         } catch (Exception e) {
             ErrorReporter.report(e);
@@ -95,6 +96,53 @@ public class Engine {
         return ((breakpointsEnabled && gameWorld.wasBreakpointHit()) ? GameState.BREAKPOINT : GameState.RUNNING);
     }
 
+    private void beginRound() {
+        if (gameWorld.getCurrentRound() != -1) {
+            gameWorld.clearAllSignals();
+        }
+        gameWorld.processBeginningOfRound();
+        if (getRoundNum() % 500 == 0) {
+            System.out.println("Round: " + getRoundNum());
+        }
+    }
+
+    private void endRound() {
+        gameWorld.processEndOfRound();
+        if (!gameWorld.isRunning()) {
+            // Let all of the threads return so we don't leak
+            // memory.  GameWorld has already told RobotMonitor
+            // to kill all the robots;
+            //System.out.println("Trying to clean up robots");
+            Scheduler.passToNextThread();
+            //System.out.println("Time spent in scheduler: "+(Scheduler.timeInScheduler*1.E-9));
+        }
+    }
+
+    /**
+     * Runs a round as runRound does, timing each phase for the metrics and
+     * tracing the engine's own phases.
+     */
+    private void runMeasuredRound() {
+        long start = System.nanoTime();
+        Object span = tracer == null ? null : tracer.beginPhase();
+        beginRound();
+        int round = gameWorld.getCurrentRound();
+        if (tracer != null)
+            tracer.endPhase(span, "beginning-of-round", round, 0);
+        long begun = System.nanoTime();
+        Scheduler.startNextThread();
+        ioCallback.run();
+        long written = System.nanoTime();
+        Scheduler.endTurn();
+        long ran = System.nanoTime();
+        span = tracer == null ? null : tracer.beginPhase();
+        endRound();
+        if (tracer != null)
+            tracer.endPhase(span, "end-of-round", round, 0);
+        if (metrics != null)
+            metrics.engineRound(round, begun - start, ran - begun, written - begun, System.nanoTime() - ran);
+    }
+
     /**
      * TODO: update this, since energon change signal breaks this
      *
@@ -122,6 +170,13 @@ public class Engine {
         return gameWorld.getTeamMemory();
     }
 
+    /**
+     * @return this match's metrics, or null if bc.engine.metrics is not set
+     */
+    public EngineMetrics getMetrics() {
+        return metrics;
+    }
+
     public void setIOCallback(Runnable callback) {
         ioCallback = callback;
     }
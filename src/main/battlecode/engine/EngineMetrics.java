@@ -0,0 +1,250 @@
+package battlecode.engine;
+
+import battlecode.engine.instrumenter.IndividualClassLoader;
+import battlecode.engine.signal.Signal;
+import battlecode.server.Config;
+import battlecode.world.signal.DeathSignal;
+import battlecode.world.signal.SpawnSignal;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Times each phase of every round of a match and counts the robots and
+ * signals it produces. Enabled by bc.engine.metrics; the latest values are
+ * registered over JMX as {@value #OBJECT_NAME}, and if bc.engine.metrics-csv
+ * names a directory, each round is also appended to a CSV file there, one
+ * file per match.
+ * <p/>
+ * The engine records the first four phases and the match the last two. The
+ * proxies write the previous round while the robots run, so proxy-write is
+ * part of robots, not in addition to it.
+ */
+public class EngineMetrics implements EngineMetricsMXBean {
+
+    public static final String OBJECT_NAME = "battlecode:type=EngineMetrics";
+
+    public static final int BEGINNING_OF_ROUND = 0;
+    public static final int ROBOTS = 1;
+    public static final int PROXY_WRITE = 2;
+    public static final int END_OF_ROUND = 3;
+    public static final int SIGNALS = 4;
+    public static final int ROUND_DELTA = 5;
+
+    /**
+     * The name of each phase, by index.
+     */
+    public static final String[] PHASE_NAMES = {"beginning-of-round", "robots", "proxy-write", "end-of-round",
+            "signals", "round-delta"};
+
+    public static final String CSV_HEADER = "round,beginning_of_round_ns,robots_ns,proxy_write_ns,end_of_round_ns,"
+            + "signals_ns,round_delta_ns,robots_alive,spawned,died,signals,instrumenter_hits,instrumenter_misses,"
+            + "signal_types";
+
+    // rows are flushed this often, so the file can be followed during a match
+    private static final int FLUSH_ROUNDS = 50;
+
+    private final String match;
+
+    private int round = -1;
+    private final long[] lastNanos = new long[PHASE_NAMES.length];
+    private final long[] totalNanos = new long[PHASE_NAMES.length];
+
+    // {match total, last round} for each signal class, in order of first appearance
+    private final Map<Class<?>, long[]> signalCounts = new LinkedHashMap<Class<?>, long[]>();
+    private int spawned, died, alive;
+    private long totalSpawned, totalDied;
+
+    private PrintWriter csv;
+
+    EngineMetrics(String match) {
+        this.match = match;
+    }
+
+    /**
+     * Sets up metrics for a match, if they are enabled.
+     *
+     * @return the metrics for the match, or null if they are disabled
+     */
+    public static EngineMetrics create(String teamA, String teamB, String map) {
+        Config options = Config.getGlobalConfig();
+        if (!options.getBoolean("bc.engine.metrics"))
+            return null;
+        EngineMetrics metrics = new EngineMetrics(teamA + " vs. " + teamB + " on " + map);
+        String dir = options.get("bc.engine.metrics-csv");
+        if (dir != null && dir.length() > 0) {
+            File file = new File(dir, teamA + "-" + teamB + "-" + map + ".csv");
+            try {
+                metrics.openCsv(file);
+            } catch (IOException e) {
+                System.out.println("[Engine] Can't write metrics to " + file + ": " + e.getMessage());
+            }
+        }
+        metrics.register();
+        return metrics;
+    }
+
+    void openCsv(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null)
+            dir.mkdirs();
+        csv = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+        csv.println(CSV_HEADER);
+    }
+
+    /**
+     * Registers these metrics over JMX, in place of the previous match's.
+     */
+    void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            System.out.println("[Engine] Can't register metrics over JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records the phases the engine runs.
+     */
+    public synchronized void engineRound(int round, long beginningOfRound, long robots, long proxyWrite,
+                                         long endOfRound) {
+        this.round = round;
+        lastNanos[BEGINNING_OF_ROUND] = beginningOfRound;
+        lastNanos[ROBOTS] = robots;
+        lastNanos[PROXY_WRITE] = proxyWrite;
+        lastNanos[END_OF_ROUND] = endOfRound;
+    }
+
+    /**
+     * Records the phases that turn the round into a delta and the signals in
+     * it, and finishes the round.
+     */
+    public synchronized void matchRound(Signal[] signals, long collectSignals, long roundDelta) {
+        lastNanos[SIGNALS] = collectSignals;
+        lastNanos[ROUND_DELTA] = roundDelta;
+        for (int i = 0; i < PHASE_NAMES.length; i++)
+            totalNanos[i] += lastNanos[i];
+
+        for (long[] counts : signalCounts.values())
+            counts[1] = 0;
+        spawned = died = 0;
+        for (Signal s : signals) {
+            long[] counts = signalCounts.get(s.getClass());
+            if (counts == null) {
+                counts = new long[2];
+                signalCounts.put(s.getClass(), counts);
+            }
+            counts[0]++;
+            counts[1]++;
+            if (s instanceof SpawnSignal)
+                spawned++;
+            else if (s instanceof DeathSignal)
+                died++;
+        }
+        totalSpawned += spawned;
+        totalDied += died;
+        alive += spawned - died;
+
+        if (csv != null)
+            writeRow(signals.length);
+    }
+
+    private void writeRow(int numSignals) {
+        StringBuilder row = new StringBuilder();
+        row.append(round);
+        for (long nanos : lastNanos)
+            row.append(',').append(nanos);
+        row.append(',').append(alive).append(',').append(spawned).append(',').append(died);
+        row.append(',').append(numSignals);
+        row.append(',').append(IndividualClassLoader.getCacheHits());
+        row.append(',').append(IndividualClassLoader.getCacheMisses());
+        row.append(',');
+        // this round's types as Name=count pairs, so the columns are the same every round
+        boolean first = true;
+        for (Map.Entry<Class<?>, long[]> e : signalCounts.entrySet()) {
+            if (e.getValue()[1] == 0)
+                continue;
+            if (!first)
+                row.append(' ');
+            row.append(e.getKey().getSimpleName()).append('=').append(e.getValue()[1]);
+            first = false;
+        }
+        csv.println(row);
+        if (round % FLUSH_ROUNDS == 0)
+            csv.flush();
+    }
+
+    /**
+     * Finishes the CSV file, if there is one. The JMX values stay registered
+     * until the next match.
+     */
+    public synchronized void close() {
+        if (csv != null) {
+            csv.close();
+            csv = null;
+        }
+    }
+
+    private static Map<String, Long> byPhase(long[] nanos) {
+        Map<String, Long> map = new LinkedHashMap<String, Long>();
+        for (int i = 0; i < PHASE_NAMES.length; i++)
+            map.put(PHASE_NAMES[i], nanos[i]);
+        return map;
+    }
+
+    public String getMatch() {
+        return match;
+    }
+
+    public synchronized int getRound() {
+        return round;
+    }
+
+    public synchronized Map<String, Long> getLastRoundNanos() {
+        return byPhase(lastNanos);
+    }
+
+    public synchronized Map<String, Long> getTotalNanos() {
+        return byPhase(totalNanos);
+    }
+
+    public synchronized Map<String, Long> getSignalCounts() {
+        Map<String, Long> map = new LinkedHashMap<String, Long>();
+        for (Map.Entry<Class<?>, long[]> e : signalCounts.entrySet())
+            map.put(e.getKey().getSimpleName(), e.getValue()[0]);
+        return map;
+    }
+
+    public synchronized int getRobotsAlive() {
+        return alive;
+    }
+
+    public synchronized long getRobotsSpawned() {
+        return totalSpawned;
+    }
+
+    public synchronized long getRobotsDied() {
+        return totalDied;
+    }
+
+    public long getInstrumenterCacheHits() {
+        return IndividualClassLoader.getCacheHits();
+    }
+
+    public long getInstrumenterCacheMisses() {
+        return IndividualClassLoader.getCacheMisses();
+    }
+}
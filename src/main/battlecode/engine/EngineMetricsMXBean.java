@@ -0,0 +1,53 @@
+package battlecode.engine;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link EngineMetrics}, registered as
+ * {@value EngineMetrics#OBJECT_NAME} while metrics are enabled.
+ */
+public interface EngineMetricsMXBean {
+
+    /**
+     * @return the teams and map of the match being measured
+     */
+    public String getMatch();
+
+    /**
+     * @return the last round measured
+     */
+    public int getRound();
+
+    /**
+     * @return nanoseconds spent in each phase of the last round
+     */
+    public Map<String, Long> getLastRoundNanos();
+
+    /**
+     * @return nanoseconds spent in each phase over the whole match
+     */
+    public Map<String, Long> getTotalNanos();
+
+    /**
+     * @return the number of signals of each type sent out this match
+     */
+    public Map<String, Long> getSignalCounts();
+
+    public int getRobotsAlive();
+
+    public long getRobotsSpawned();
+
+    public long getRobotsDied();
+
+    /**
+     * @return the number of player classes loaded from already-instrumented
+     *         bytes this match
+     */
+    public long getInstrumenterCacheHits();
+
+    /**
+     * @return the number of player classes instrumented this match
+     */
+    public long getInstrumenterCacheMisses();
+
+}
@@ -1,5 +1,6 @@
 package battlecode.engine;
 
+import battlecode.common.RobotType;
 import battlecode.common.Team;
 
 /*
@@ -11,6 +12,8 @@ public interface GenericRobot {
 
     public Team getTeam();
 
+    public RobotType getType();
+
     public int getBytecodesUsed();
 
     public int getBytecodeLimit();
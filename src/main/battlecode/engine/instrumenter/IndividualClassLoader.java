@@ -1,6 +1,7 @@
 package battlecode.engine.instrumenter;
 
 import battlecode.engine.ErrorReporter;
+import battlecode.engine.trace.Tracer;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 
@@ -21,15 +22,29 @@ public class IndividualClassLoader extends InstrumentingClassLoader {
     // caches the names of teams with errors, so that if a class is loaded for that team, it immediately throws an exception
     private final static Set<String> teamsWithErrors = Collections.newSetFromMap(new IdentityHashMap<String, Boolean>());
 
+    // player classes defined from instrumentedClasses, and those instrumented to get there, this match;
+    // robots load classes one at a time, so these are only read from elsewhere
+    private static volatile long cacheHits, cacheMisses;
+
     // the name of the team this InstrumentingClassLoader is loading
     private final String teamPackageName;
 
     public static void reset() {
         instrumentedClasses.clear();
         teamsWithErrors.clear();
+        cacheHits = 0;
+        cacheMisses = 0;
         singletonLoader = new SingletonClassLoader();
     }
 
+    public static long getCacheHits() {
+        return cacheHits;
+    }
+
+    public static long getCacheMisses() {
+        return cacheMisses;
+    }
+
     static SingletonClassLoader singletonLoader = new SingletonClassLoader();
 
     public IndividualClassLoader(String teamPackageName, boolean debugMethodsEnabled, boolean silenced, boolean retry) throws InstrumentationException {
@@ -77,6 +92,7 @@ public class IndividualClassLoader extends InstrumentingClassLoader {
 
             if (instrumentedClasses.containsKey(name)) {
                 byte[] classBytes = instrumentedClasses.get(name);
+                cacheHits++;
                 finishedClass = defineClass(null, classBytes, 0, classBytes.length);
             } else if (name.equals("battlecode/engine/instrumenter/lang/ObjectHashCode") ||
                     name.equals("battlecode/engine/instrumenter/lang/InstrumentableFunctions")) {
@@ -151,6 +167,22 @@ public class IndividualClassLoader extends InstrumentingClassLoader {
         }
     }
 
+    /**
+     * Instruments a class as InstrumentingClassLoader does, tracing it if
+     * tracing is on.
+     */
+    public byte[] instrument(String className, boolean checkDisallowed, String teamPackageName) throws InstrumentationException {
+        Tracer tracer = Tracer.get();
+        if (tracer == null)
+            return super.instrument(className, checkDisallowed, teamPackageName);
+        Object span = tracer.beginInstrument();
+        try {
+            return super.instrument(className, checkDisallowed, teamPackageName);
+        } finally {
+            tracer.endInstrument(span, className, teamPackageName);
+        }
+    }
+
     public Class<?> saveAndDefineClass(String name, byte[] classBytes) {
         if (classBytes == null) {
             ErrorReporter.report("Can't find instrumented class " + name + ", but no errors reported", true);
@@ -158,6 +190,7 @@ public class IndividualClassLoader extends InstrumentingClassLoader {
         }
         Class<?> theClass = defineClass(null, classBytes, 0, classBytes.length);
         instrumentedClasses.put(name, classBytes);
+        cacheMisses++;
         return theClass;
 
     }
@@ -5,6 +5,7 @@ import battlecode.engine.GenericWorld;
 import battlecode.engine.instrumenter.lang.RoboPrintStream;
 import battlecode.engine.instrumenter.lang.SilencedPrintStream;
 import battlecode.engine.scheduler.Scheduler;
+import battlecode.engine.trace.Tracer;
 import battlecode.server.Config;
 
 import java.util.HashSet;
@@ -33,6 +34,9 @@ public class RobotMonitor {
 
     private static GenericWorld myGameWorld = null;
 
+    // the running robot's turn, if tracing is on
+    private static Object turnSpan;
+
 
     /**
      * A "struct" that holds data about a robot's execution, e.g., bytecodes, stack size, etc.
@@ -54,6 +58,7 @@ public class RobotMonitor {
 
     private static void init() {
         robotsToKill.clear();
+        turnSpan = null;
         Config options = Config.getGlobalConfig();
         silenced[0] = options.getBoolean("bc.engine.silence-a");
         silenced[1] = options.getBoolean("bc.engine.silence-b");
@@ -72,6 +77,13 @@ public class RobotMonitor {
      */
     public static void switchRunner(RobotData newData) {
 
+        Tracer tracer = Tracer.get();
+        if (tracer != null && turnSpan != null) {
+            // the last robot died during its turn, so it never ended it
+            tracer.endTurn(turnSpan, getBytecodesUsed(), Tracer.TurnEnd.DIED);
+            turnSpan = null;
+        }
+
         // switch RobotData to the new robot
         currentRobotData = newData;
 
@@ -101,6 +113,9 @@ public class RobotMonitor {
                 battlecode.engine.instrumenter.lang.System.out = stream;
                 battlecode.engine.instrumenter.lang.System.err = stream;
             }
+
+            if (tracer != null)
+                turnSpan = tracer.beginTurn(newData.ID, robot.getType(), robot.getTeam());
         }
     }
 
@@ -151,6 +166,12 @@ public class RobotMonitor {
      * Ends the run of the currently active robot.
      */
     public static void endRunner() {
+        Tracer tracer = Tracer.get();
+        if (tracer != null && turnSpan != null) {
+            tracer.endTurn(turnSpan, getBytecodesUsed(),
+                    bytecodesLeft <= 0 ? Tracer.TurnEnd.OUT_OF_BYTECODES : Tracer.TurnEnd.YIELDED);
+            turnSpan = null;
+        }
         myGameWorld.endOfExecution(currentRobotData.ID);
         currentRobotData.debugLevel = debugLevel;
         if (debugLevel == 0)
@@ -3,7 +3,15 @@ package battlecode.engine.signal;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 
 /**
  * A signal handler that delegates to other signal handling methods, which it discovers
@@ -12,14 +20,25 @@ import java.util.HashMap;
  * - If the method has a {@link DiscoverSignal} annotation, that is respected.
  * - Otherwise, a method is discovered if it is public, its name starts with "visit", and it takes a single
  * parameter that is a subclass of {@link Signal} (but not Signal itself).
- * Currently it uses reflection, which is kind of inelegant and slow (but probably not slow enough to matter).  I guess we could avoid reflection and instead create classes on the fly.
+ * <p/>
+ * Methods are discovered with reflection once per handler class.  Each discovered method gets an
+ * integer id, and a dispatcher class with a switch over those ids is generated on the fly, so
+ * visiting a signal is a cached lookup of its ids followed by plain method calls.
  */
 public class AutoSignalHandler implements SignalHandler {
 
-    static HashMap<Class, HashMap<Class, Method>> metaMap = new HashMap<Class, HashMap<Class, Method>>();
-    HashMap<Class, Method> methodMap;
+    static HashMap<Class, DispatchTable> metaMap = new HashMap<Class, DispatchTable>();
+    DispatchTable dispatchTable;
     Object myObject;
 
+    /**
+     * Calls the handler method with the given id on a handler object.
+     * Implementations are generated per handler class.
+     */
+    public interface Dispatcher {
+        public void dispatch(Object handler, int id, Signal signal) throws Exception;
+    }
+
     public AutoSignalHandler() {
         myObject = this;
         discoverMethods(this.getClass());
@@ -32,10 +51,11 @@ public class AutoSignalHandler implements SignalHandler {
 
     protected void discoverMethods(Class cls) {
         synchronized (metaMap) {
-            methodMap = metaMap.get(cls);
-            if (methodMap != null) return;
+            dispatchTable = metaMap.get(cls);
+            if (dispatchTable != null) return;
             assert Modifier.isPublic(cls.getModifiers());
-            methodMap = new HashMap<Class, Method>();
+            List<Method> methods = new ArrayList<Method>();
+            HashMap<Class, Integer> ids = new HashMap<Class, Integer>();
             for (Method method : cls.getMethods()) {
                 boolean shouldAdd;
                 Class<?>[] parameters = method.getParameterTypes();
@@ -49,11 +69,13 @@ public class AutoSignalHandler implements SignalHandler {
                             !parameters[0].equals(Signal.class);
                 if (shouldAdd) {
                     //System.out.println("Adding signal handler "+method);
-                    Method old = methodMap.put(parameters[0], method);
+                    Integer old = ids.put(parameters[0], methods.size());
                     assert old == null;
+                    methods.add(method);
                 }
             }
-            metaMap.put(cls, methodMap);
+            dispatchTable = new DispatchTable(cls, ids, methods.toArray(new Method[methods.size()]));
+            metaMap.put(cls, dispatchTable);
         }
     }
 
@@ -66,23 +88,151 @@ public class AutoSignalHandler implements SignalHandler {
             throw new RuntimeException("Exception in signal handler", e);
     }
 
-    @SuppressWarnings("unchecked")
     public void visitSignal(Signal signal) {
-        Class<?> cls = signal.getClass();
-        do {
-            Method method = methodMap.get(cls);
-            if (method != null)
-                try {
-                    method.invoke(myObject, signal);
-                } catch (Exception e) {
-                    if (e instanceof InvocationTargetException)
-                        handleException(e.getCause());
-                    else
-                        handleException(e);
-                }
-            cls = cls.getSuperclass();
+        int[] ids = dispatchTable.get(signal.getClass());
+        for (int i = 0; i < ids.length; i++) {
+            try {
+                dispatchTable.dispatcher.dispatch(myObject, ids[i], signal);
+            } catch (InvocationTargetException e) {
+                handleException(e.getCause());
+            } catch (Exception e) {
+                handleException(e);
+            }
+        }
+    }
+
+    /**
+     * The handler methods of one handler class.  For each signal class it
+     * caches the ids of the methods to call, most specific first, walking
+     * up the signal's superclasses the same way reflective dispatch did.
+     */
+    static class DispatchTable extends ClassValue<int[]> {
+
+        final HashMap<Class, Integer> ids;
+        final Dispatcher dispatcher;
+
+        DispatchTable(Class handlerClass, HashMap<Class, Integer> ids, Method[] methods) {
+            this.ids = ids;
+            this.dispatcher = createDispatcher(handlerClass, methods);
+        }
+
+        @Override
+        protected int[] computeValue(Class<?> signalClass) {
+            List<Integer> chain = new ArrayList<Integer>();
+            Class<?> cls = signalClass;
+            do {
+                Integer id = ids.get(cls);
+                if (id != null)
+                    chain.add(id);
+                cls = cls.getSuperclass();
+            }
+            while (Signal.class.isAssignableFrom(cls));
+            int[] result = new int[chain.size()];
+            for (int i = 0; i < result.length; i++)
+                result[i] = chain.get(i);
+            return result;
+        }
+    }
+
+    private static Dispatcher createDispatcher(Class handlerClass, Method[] methods) {
+        boolean accessible = Modifier.isPublic(handlerClass.getModifiers());
+        for (Method method : methods) {
+            accessible &= Modifier.isPublic(method.getParameterTypes()[0].getModifiers());
+        }
+        if (accessible) {
+            try {
+                return generateDispatcher(handlerClass, methods);
+            } catch (Exception e) {
+                // fall back to reflection below
+            } catch (LinkageError e) {
+                // fall back to reflection below
+            }
+        }
+        return new ReflectiveDispatcher(methods);
+    }
+
+    static class ReflectiveDispatcher implements Dispatcher {
+
+        private final Method[] methods;
+
+        ReflectiveDispatcher(Method[] methods) {
+            this.methods = methods;
+        }
+
+        public void dispatch(Object handler, int id, Signal signal) throws Exception {
+            methods[id].invoke(handler, signal);
+        }
+    }
+
+    /**
+     * Generates a Dispatcher whose dispatch method is a switch on the id,
+     * where case i casts the signal and calls methods[i] directly.
+     */
+    private static Dispatcher generateDispatcher(Class handlerClass, Method[] methods) throws Exception {
+        String handlerName = Type.getInternalName(handlerClass);
+        String className = handlerName + "$$SignalDispatcher";
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        // version 50 classes don't need stack map frames
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, className, null,
+                "java/lang/Object", new String[]{Type.getInternalName(Dispatcher.class)});
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "dispatch",
+                Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Object.class), Type.INT_TYPE, Type.getType(Signal.class)),
+                null, new String[]{"java/lang/Exception"});
+        mv.visitCode();
+        Label end = new Label();
+        if (methods.length > 0) {
+            Label[] cases = new Label[methods.length];
+            for (int i = 0; i < cases.length; i++)
+                cases[i] = new Label();
+            mv.visitVarInsn(Opcodes.ILOAD, 2);
+            mv.visitTableSwitchInsn(0, methods.length - 1, end, cases);
+            for (int i = 0; i < methods.length; i++) {
+                Method method = methods[i];
+                Class<?> parameter = method.getParameterTypes()[0];
+                mv.visitLabel(cases[i]);
+                mv.visitVarInsn(Opcodes.ALOAD, 1);
+                mv.visitTypeInsn(Opcodes.CHECKCAST, handlerName);
+                mv.visitVarInsn(Opcodes.ALOAD, 3);
+                mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(parameter));
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, handlerName, method.getName(), Type.getMethodDescriptor(method), false);
+                Type returnType = Type.getReturnType(method);
+                if (returnType.getSize() == 1)
+                    mv.visitInsn(Opcodes.POP);
+                else if (returnType.getSize() == 2)
+                    mv.visitInsn(Opcodes.POP2);
+                mv.visitInsn(Opcodes.RETURN);
+            }
+        }
+        mv.visitLabel(end);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        DispatcherLoader loader = new DispatcherLoader(handlerClass.getClassLoader());
+        Class<?> cls = loader.define(className.replace('/', '.'), cw.toByteArray());
+        return (Dispatcher) cls.newInstance();
+    }
+
+    private static class DispatcherLoader extends ClassLoader {
+
+        DispatcherLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
         }
-        while (Signal.class.isAssignableFrom(cls));
     }
 
 }
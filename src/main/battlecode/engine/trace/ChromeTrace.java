@@ -0,0 +1,165 @@
+package battlecode.engine.trace;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Writes trace events in the Chrome trace-event format, which
+ * chrome://tracing and Perfetto open as a timeline. Every event is a span on
+ * the lane of the thread it happened on, so a robot's turns and the classes
+ * it instrumented share the robot's lane, and the engine's phases are on the
+ * main thread's.
+ * <p/>
+ * As a program, converts a Flight Recorder recording of a match (see
+ * bc.engine.trace) to a Chrome trace.
+ */
+public class ChromeTrace {
+
+    static private final int EX_USAGE = 64;
+    static private final int EX_DATAERR = 65;
+    static private final int EX_IOERR = 74;
+
+    private final Writer out;
+    private final long origin;
+    private final Set<Long> namedThreads = new HashSet<Long>();
+    private boolean first = true;
+
+    /**
+     * @param origin the time, in nanoseconds, that becomes zero on the
+     *               timeline; no event should start before it
+     */
+    public ChromeTrace(Writer out, long origin) throws IOException {
+        this.out = out;
+        this.origin = origin;
+        out.write("{\"traceEvents\": [\n");
+    }
+
+    public void turn(long thread, String threadName, long start, long duration, int robotID, String type,
+                     String team, int bytecodes, String end) throws IOException {
+        begin(thread, threadName, type, "turn", start, duration);
+        out.write("\"robot\": " + robotID + ", \"team\": \"" + team + "\", \"bytecodes\": " + bytecodes
+                + ", \"end\": \"" + end + "\"}}");
+    }
+
+    public void instrument(long thread, String threadName, long start, long duration, String className,
+                           String team) throws IOException {
+        begin(thread, threadName, "instrument", "instrumenter", start, duration);
+        out.write("\"class\": \"" + escape(className) + "\", \"team\": \"" + escape(team) + "\"}}");
+    }
+
+    public void phase(long thread, String threadName, long start, long duration, String phase, int round,
+                      int signals) throws IOException {
+        begin(thread, threadName, phase, "engine", start, duration);
+        out.write("\"round\": " + round + ", \"signals\": " + signals + "}}");
+    }
+
+    public void proxyWrite(long thread, String threadName, long start, long duration, String proxy,
+                           String object) throws IOException {
+        begin(thread, threadName, proxy, "proxy", start, duration);
+        out.write("\"object\": \"" + escape(object) + "\"}}");
+    }
+
+    /**
+     * Writes an event up to its arguments, naming its thread first if this
+     * is the thread's first event.
+     */
+    private void begin(long thread, String threadName, String name, String category, long start, long duration)
+            throws IOException {
+        if (namedThreads.add(thread)) {
+            separate();
+            out.write("{\"name\": \"thread_name\", \"ph\": \"M\", \"pid\": 1, \"tid\": " + thread
+                    + ", \"args\": {\"name\": \"" + escape(threadName) + "\"}}");
+        }
+        separate();
+        out.write("{\"name\": \"" + escape(name) + "\", \"cat\": \"" + category + "\", \"ph\": \"X\", \"pid\": 1, "
+                + "\"tid\": " + thread + ", \"ts\": " + micros(start - origin) + ", \"dur\": " + micros(duration)
+                + ", \"args\": {");
+    }
+
+    private void separate() throws IOException {
+        if (!first)
+            out.write(",\n");
+        first = false;
+    }
+
+    /**
+     * Closes the trace and the writer.
+     */
+    public void close() throws IOException {
+        out.write("\n], \"displayTimeUnit\": \"ns\"}\n");
+        out.close();
+    }
+
+    static String micros(long nanos) {
+        StringBuilder sb = new StringBuilder();
+        if (nanos < 0) {
+            sb.append('-');
+            nanos = -nanos;
+        }
+        sb.append(nanos / 1000).append('.');
+        long fraction = nanos % 1000;
+        if (fraction < 100)
+            sb.append('0');
+        if (fraction < 10)
+            sb.append('0');
+        return sb.append(fraction).toString();
+    }
+
+    static String escape(String s) {
+        if (s == null)
+            return "";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < 0x20)
+                sb.append(String.format("\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    public static void usage() {
+        System.err.println("Usage: ChromeTrace recording.jfr trace.json");
+        System.err.println("  the recording must have been made with bc.engine.trace=jfr");
+        System.exit(EX_USAGE);
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            usage();
+            return;
+        }
+        if (!Tracer.isJfrAvailable()) {
+            System.err.println("this JVM has no Flight Recorder to read recordings with");
+            System.exit(EX_DATAERR);
+        }
+        try {
+            Method convert = Class.forName(Tracer.JFR_TRACER).getDeclaredMethod("convert", File.class, Writer.class);
+            int events = (Integer) convert.invoke(null, new File(args[0]),
+                    new BufferedWriter(new FileWriter(args[1])));
+            if (events == 0) {
+                System.err.println(args[0] + " has no battlecode events");
+                System.exit(EX_DATAERR);
+            }
+            System.out.println("wrote " + events + " events to " + args[1]);
+        } catch (InvocationTargetException e) {
+            e.getCause().printStackTrace();
+            System.exit(e.getCause() instanceof IOException ? EX_IOERR : EX_DATAERR);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(EX_IOERR);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package battlecode.engine.trace;
+
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends trace events to Java Flight Recorder, as the battlecode.* event
+ * types, so they appear in a recording next to the JVM's own. Only loaded
+ * once {@link Tracer#isJfrAvailable()} has said the JVM has Flight Recorder.
+ */
+class JfrTracer extends Tracer {
+
+    @Name("battlecode.RobotTurn")
+    @Label("Robot Turn")
+    @Category("Battlecode")
+    @StackTrace(false)
+    static class TurnEvent extends Event {
+        @Label("Robot")
+        int robotID;
+        @Label("Type")
+        String type;
+        @Label("Team")
+        String team;
+        @Label("Bytecodes")
+        int bytecodes;
+        @Label("End")
+        String end;
+    }
+
+    @Name("battlecode.Instrument")
+    @Label("Instrument Class")
+    @Category("Battlecode")
+    @StackTrace(false)
+    static class InstrumentEvent extends Event {
+        @Label("Class")
+        String className;
+        @Label("Team")
+        String team;
+    }
+
+    @Name("battlecode.EnginePhase")
+    @Label("Engine Phase")
+    @Category("Battlecode")
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Round")
+        int round;
+        @Label("Signals")
+        int signals;
+    }
+
+    @Name("battlecode.ProxyWrite")
+    @Label("Proxy Write")
+    @Category("Battlecode")
+    @StackTrace(false)
+    static class ProxyWriteEvent extends Event {
+        @Label("Proxy")
+        String proxy;
+        @Label("Object")
+        String object;
+    }
+
+    public Object beginTurn(int robotID, RobotType type, Team team) {
+        TurnEvent event = new TurnEvent();
+        event.robotID = robotID;
+        event.type = type.name();
+        event.team = team.name();
+        event.begin();
+        return event;
+    }
+
+    public void endTurn(Object span, int bytecodes, TurnEnd end) {
+        TurnEvent event = (TurnEvent) span;
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytecodes = bytecodes;
+            event.end = end.name();
+            event.commit();
+        }
+    }
+
+    public Object beginInstrument() {
+        InstrumentEvent event = new InstrumentEvent();
+        event.begin();
+        return event;
+    }
+
+    public void endInstrument(Object span, String className, String team) {
+        InstrumentEvent event = (InstrumentEvent) span;
+        event.end();
+        if (event.shouldCommit()) {
+            event.className = className;
+            event.team = team;
+            event.commit();
+        }
+    }
+
+    public Object beginPhase() {
+        PhaseEvent event = new PhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    public void endPhase(Object span, String phase, int round, int signals) {
+        PhaseEvent event = (PhaseEvent) span;
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.round = round;
+            event.signals = signals;
+            event.commit();
+        }
+    }
+
+    public Object beginProxyWrite() {
+        ProxyWriteEvent event = new ProxyWriteEvent();
+        event.begin();
+        return event;
+    }
+
+    public void endProxyWrite(Object span, String proxy, String object) {
+        ProxyWriteEvent event = (ProxyWriteEvent) span;
+        event.end();
+        if (event.shouldCommit()) {
+            event.proxy = proxy;
+            event.object = object;
+            event.commit();
+        }
+    }
+
+    private static long nanos(Instant instant) {
+        return instant.getEpochSecond() * 1000000000L + instant.getNano();
+    }
+
+    /**
+     * Writes the battlecode events in a recording as a Chrome trace, and
+     * closes the writer.
+     *
+     * @return the number of events written
+     */
+    static int convert(File recording, Writer out) throws IOException {
+        List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+        long origin = Long.MAX_VALUE;
+        for (RecordedEvent event : RecordingFile.readAllEvents(recording.toPath())) {
+            if (event.getEventType().getName().startsWith("battlecode.")) {
+                events.add(event);
+                origin = Math.min(origin, nanos(event.getStartTime()));
+            }
+        }
+        ChromeTrace trace = new ChromeTrace(out, events.isEmpty() ? 0 : origin);
+        for (RecordedEvent event : events) {
+            RecordedThread thread = event.getThread();
+            long id = thread == null ? 0 : thread.getJavaThreadId();
+            String name = thread == null ? "unknown" : thread.getJavaName();
+            long start = nanos(event.getStartTime());
+            long duration = event.getDuration().toNanos();
+            String type = event.getEventType().getName();
+            if (type.equals("battlecode.RobotTurn"))
+                trace.turn(id, name, start, duration, event.getInt("robotID"), event.getString("type"),
+                        event.getString("team"), event.getInt("bytecodes"), event.getString("end"));
+            else if (type.equals("battlecode.Instrument"))
+                trace.instrument(id, name, start, duration, event.getString("className"), event.getString("team"));
+            else if (type.equals("battlecode.EnginePhase"))
+                trace.phase(id, name, start, duration, event.getString("phase"), event.getInt("round"),
+                        event.getInt("signals"));
+            else if (type.equals("battlecode.ProxyWrite"))
+                trace.proxyWrite(id, name, start, duration, event.getString("proxy"), event.getString("object"));
+        }
+        trace.close();
+        return events.size();
+    }
+}
@@ -0,0 +1,189 @@
+package battlecode.engine.trace;
+
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the latest events of a match in a ring buffer, for when Flight
+ * Recorder isn't wanted or isn't there. Once the buffer is full, each new
+ * event replaces the oldest one. Events come from robot threads and from
+ * proxy writer threads at once, so adding one takes a lock.
+ */
+public class TraceBuffer extends Tracer {
+
+    private static final byte TURN = 0;
+    private static final byte INSTRUMENT = 1;
+    private static final byte PHASE = 2;
+    private static final byte PROXY_WRITE = 3;
+
+    private static final RobotType[] TYPES = RobotType.values();
+    private static final Team[] TEAMS = Team.values();
+    private static final TurnEnd[] ENDS = TurnEnd.values();
+
+    /**
+     * When a span began, and for a turn, whose turn it is.
+     */
+    private static class Span {
+        final long start = System.nanoTime();
+        int robotID;
+        RobotType type;
+        Team team;
+    }
+
+    // one slot per event; which fields a slot uses depends on its kind
+    private final byte[] kinds;
+    private final long[] starts;
+    private final long[] durations;
+    private final long[] threads;
+    // turn: robot ID, type, team, bytecodes, how it ended
+    // phase: round, signals
+    private final int[] ints;
+    private final byte[] bytes;
+    // instrument: class, team; phase: name; proxy write: proxy, object
+    private final String[] strings;
+
+    private final Map<Long, String> threadNames = new HashMap<Long, String>();
+
+    // the slot the next event goes in, and the number of events kept
+    private int next, size;
+    private long dropped;
+
+    public TraceBuffer(int capacity) {
+        kinds = new byte[capacity];
+        starts = new long[capacity];
+        durations = new long[capacity];
+        threads = new long[capacity];
+        ints = new int[2 * capacity];
+        bytes = new byte[3 * capacity];
+        strings = new String[2 * capacity];
+    }
+
+    /**
+     * Claims the slot for an event that is ending now.
+     */
+    private int add(byte kind, Object span) {
+        long end = System.nanoTime();
+        Thread thread = Thread.currentThread();
+        int i = next;
+        kinds[i] = kind;
+        starts[i] = ((Span) span).start;
+        durations[i] = end - starts[i];
+        threads[i] = thread.getId();
+        if (!threadNames.containsKey(threads[i]))
+            threadNames.put(threads[i], thread.getName());
+        next = (i + 1) % kinds.length;
+        if (size < kinds.length)
+            size++;
+        else
+            dropped++;
+        return i;
+    }
+
+    public Object beginTurn(int robotID, RobotType type, Team team) {
+        Span span = new Span();
+        span.robotID = robotID;
+        span.type = type;
+        span.team = team;
+        return span;
+    }
+
+    public synchronized void endTurn(Object span, int bytecodes, TurnEnd end) {
+        Span turn = (Span) span;
+        int i = add(TURN, span);
+        ints[2 * i] = turn.robotID;
+        ints[2 * i + 1] = bytecodes;
+        bytes[3 * i] = (byte) turn.type.ordinal();
+        bytes[3 * i + 1] = (byte) turn.team.ordinal();
+        bytes[3 * i + 2] = (byte) end.ordinal();
+    }
+
+    public Object beginInstrument() {
+        return new Span();
+    }
+
+    public synchronized void endInstrument(Object span, String className, String team) {
+        int i = add(INSTRUMENT, span);
+        strings[2 * i] = className;
+        strings[2 * i + 1] = team;
+    }
+
+    public Object beginPhase() {
+        return new Span();
+    }
+
+    public synchronized void endPhase(Object span, String phase, int round, int signals) {
+        int i = add(PHASE, span);
+        strings[2 * i] = phase;
+        ints[2 * i] = round;
+        ints[2 * i + 1] = signals;
+    }
+
+    public Object beginProxyWrite() {
+        return new Span();
+    }
+
+    public synchronized void endProxyWrite(Object span, String proxy, String object) {
+        int i = add(PROXY_WRITE, span);
+        strings[2 * i] = proxy;
+        strings[2 * i + 1] = object;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of events replaced by newer ones
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    public void writeChromeTrace(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null)
+            dir.mkdirs();
+        writeChromeTrace(new BufferedWriter(new FileWriter(file)));
+    }
+
+    /**
+     * Writes the events kept, oldest first, and closes the writer.
+     */
+    public synchronized void writeChromeTrace(Writer out) throws IOException {
+        int oldest = (next - size + kinds.length) % kinds.length;
+        long origin = Long.MAX_VALUE;
+        for (int n = 0; n < size; n++)
+            origin = Math.min(origin, starts[(oldest + n) % kinds.length]);
+        ChromeTrace trace = new ChromeTrace(out, size == 0 ? 0 : origin);
+        for (int n = 0; n < size; n++) {
+            int i = (oldest + n) % kinds.length;
+            long thread = threads[i];
+            String name = threadNames.get(thread);
+            switch (kinds[i]) {
+                case TURN:
+                    trace.turn(thread, name, starts[i], durations[i], ints[2 * i], TYPES[bytes[3 * i]].name(),
+                            TEAMS[bytes[3 * i + 1]].name(), ints[2 * i + 1], ENDS[bytes[3 * i + 2]].name());
+                    break;
+                case INSTRUMENT:
+                    trace.instrument(thread, name, starts[i], durations[i], strings[2 * i], strings[2 * i + 1]);
+                    break;
+                case PHASE:
+                    trace.phase(thread, name, starts[i], durations[i], strings[2 * i], ints[2 * i],
+                            ints[2 * i + 1]);
+                    break;
+                case PROXY_WRITE:
+                    trace.proxyWrite(thread, name, starts[i], durations[i], strings[2 * i], strings[2 * i + 1]);
+                    break;
+            }
+        }
+        trace.close();
+    }
+}
@@ -0,0 +1,120 @@
+package battlecode.engine.trace;
+
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+import battlecode.server.Config;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Records a timeline of a match: robot turns, classes instrumented, engine
+ * phases and proxy writes. Set bc.engine.trace to "buffer" to keep the
+ * latest events in memory and write them to bc.engine.trace-dir as a Chrome
+ * trace when the match ends, or to "jfr" to send them to Java Flight
+ * Recorder (ChromeTrace converts the recording).
+ * <p/>
+ * Each kind of event is a begin call, which returns a span, and an end call
+ * that is handed the span back. Callers check {@link #get()} for null once
+ * before tracing, which is all tracing costs when it is off.
+ */
+public abstract class Tracer {
+
+    /**
+     * How a robot's turn ended.
+     */
+    public enum TurnEnd {
+        YIELDED, OUT_OF_BYTECODES, DIED
+    }
+
+    // compiled only when the JDK building the engine has jdk.jfr, so it is
+    // only ever touched by name
+    static final String JFR_TRACER = "battlecode.engine.trace.JfrTracer";
+
+    // null when tracing is off; only changed between matches
+    private static Tracer current;
+
+    // where the buffer is written when the match ends
+    private static File output;
+
+    public static Tracer get() {
+        return current;
+    }
+
+    /**
+     * @return whether this JVM has the Flight Recorder API (OpenJDK 8u262
+     *         and later), and the engine was built with JfrTracer
+     */
+    public static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            Class.forName(JFR_TRACER);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Starts tracing a match, if bc.engine.trace is set.
+     */
+    public static void start(String teamA, String teamB, String map) {
+        Config options = Config.getGlobalConfig();
+        String mode = options.get("bc.engine.trace");
+        current = null;
+        output = null;
+        if ("jfr".equals(mode)) {
+            if (isJfrAvailable()) {
+                try {
+                    current = (Tracer) Class.forName(JFR_TRACER).newInstance();
+                    return;
+                } catch (ReflectiveOperationException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            System.out.println("[Engine] Flight Recorder isn't available; tracing to a buffer instead");
+            mode = "buffer";
+        }
+        if ("buffer".equals(mode)) {
+            current = new TraceBuffer(options.getInt("bc.engine.trace-buffer"));
+            output = new File(options.get("bc.engine.trace-dir"), teamA + "-" + teamB + "-" + map + ".json");
+        }
+    }
+
+    /**
+     * Stops tracing the match, writing out the buffer if there is one.
+     */
+    public static void finish() {
+        Tracer tracer = current;
+        current = null;
+        if (tracer instanceof TraceBuffer && output != null) {
+            try {
+                ((TraceBuffer) tracer).writeChromeTrace(output);
+                System.out.println("[Engine] Wrote trace to " + output);
+            } catch (IOException e) {
+                System.out.println("[Engine] Can't write trace to " + output + ": " + e.getMessage());
+            }
+        }
+        output = null;
+    }
+
+    public abstract Object beginTurn(int robotID, RobotType type, Team team);
+
+    public abstract void endTurn(Object span, int bytecodes, TurnEnd end);
+
+    public abstract Object beginInstrument();
+
+    public abstract void endInstrument(Object span, String className, String team);
+
+    public abstract Object beginPhase();
+
+    /**
+     * @param signals the number of signals the phase handled, if it is one
+     *                that handles signals
+     */
+    public abstract void endPhase(Object span, String phase, int round, int signals);
+
+    public abstract Object beginProxyWrite();
+
+    public abstract void endProxyWrite(Object span, String proxy, String object);
+}
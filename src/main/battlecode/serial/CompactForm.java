@@ -0,0 +1,749 @@
+package battlecode.serial;
+
+import battlecode.common.MapLocation;
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+import battlecode.engine.signal.Signal;
+import battlecode.world.signal.*;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Hand-written serialized form of the objects a match is made of: round
+ * deltas and every signal in battlecode.world.signal, round stats, game
+ * stats, match headers and footers. Streams that want the compact encoding
+ * substitute a CompactForm for the object (see
+ * battlecode.server.proxy.CompactObjectOutputStream); on the way in,
+ * readResolve hands back the original class, so any ObjectInputStream reads
+ * these streams without knowing about them. Nothing changes for streams
+ * that write the objects themselves, or for old match files.
+ * <p/>
+ * Every field is written as primitives, so the stream holds no class
+ * descriptors or handles for signals, locations, enums or arrays. Signals
+ * of other classes are written as ordinary objects.
+ * <p/>
+ * The tags below are part of the file format: add new ones at the end.
+ */
+public final class CompactForm implements Externalizable {
+
+    private static final long serialVersionUID = 5309188410672853174L;
+
+    private static final int NULL = 0;
+    private static final int OBJECT = 1;
+    private static final int ROUND_DELTA = 2;
+    private static final int ROUND_STATS = 3;
+    private static final int GAME_STATS = 4;
+    private static final int MATCH_HEADER = 5;
+    private static final int MATCH_FOOTER = 6;
+    private static final int ATTACK = 7;
+    private static final int BASH = 8;
+    private static final int BROADCAST = 9;
+    private static final int BUILD = 10;
+    private static final int BYTECODES_USED = 11;
+    private static final int CAST = 12;
+    private static final int CONTROL_BITS = 13;
+    private static final int DEATH = 14;
+    private static final int HEALTH_CHANGE = 15;
+    private static final int INDICATOR_DOT = 16;
+    private static final int INDICATOR_LINE = 17;
+    private static final int INDICATOR_STRING = 18;
+    private static final int LOCATION_ORE_CHANGE = 19;
+    private static final int MATCH_OBSERVATION = 20;
+    private static final int MINE = 21;
+    private static final int MISSILE_COUNT = 22;
+    private static final int MOVEMENT_OVERRIDE = 23;
+    private static final int MOVEMENT = 24;
+    private static final int ROBOT_INFO = 25;
+    private static final int SELF_DESTRUCT = 26;
+    private static final int SPAWN = 27;
+    private static final int TEAM_ORE = 28;
+    private static final int TRANSFER_SUPPLY = 29;
+    private static final int XP = 30;
+    private static final int ROBOT_INFO_CHANGE = 31;
+    private static final int BYTECODES_USED_CHANGE = 32;
+    private static final int STATE_DIGEST = 33;
+
+    private static final Map<Class<?>, Integer> tags = new IdentityHashMap<Class<?>, Integer>();
+
+    static {
+        tags.put(RoundDelta.class, ROUND_DELTA);
+        tags.put(RoundStats.class, ROUND_STATS);
+        tags.put(GameStats.class, GAME_STATS);
+        tags.put(MatchHeader.class, MATCH_HEADER);
+        tags.put(MatchFooter.class, MATCH_FOOTER);
+        tags.put(AttackSignal.class, ATTACK);
+        tags.put(BashSignal.class, BASH);
+        tags.put(BroadcastSignal.class, BROADCAST);
+        tags.put(BuildSignal.class, BUILD);
+        tags.put(BytecodesUsedSignal.class, BYTECODES_USED);
+        tags.put(CastSignal.class, CAST);
+        tags.put(ControlBitsSignal.class, CONTROL_BITS);
+        tags.put(DeathSignal.class, DEATH);
+        tags.put(HealthChangeSignal.class, HEALTH_CHANGE);
+        tags.put(IndicatorDotSignal.class, INDICATOR_DOT);
+        tags.put(IndicatorLineSignal.class, INDICATOR_LINE);
+        tags.put(IndicatorStringSignal.class, INDICATOR_STRING);
+        tags.put(LocationOreChangeSignal.class, LOCATION_ORE_CHANGE);
+        tags.put(MatchObservationSignal.class, MATCH_OBSERVATION);
+        tags.put(MineSignal.class, MINE);
+        tags.put(MissileCountSignal.class, MISSILE_COUNT);
+        tags.put(MovementOverrideSignal.class, MOVEMENT_OVERRIDE);
+        tags.put(MovementSignal.class, MOVEMENT);
+        tags.put(RobotInfoSignal.class, ROBOT_INFO);
+        tags.put(SelfDestructSignal.class, SELF_DESTRUCT);
+        tags.put(SpawnSignal.class, SPAWN);
+        tags.put(TeamOreSignal.class, TEAM_ORE);
+        tags.put(TransferSupplySignal.class, TRANSFER_SUPPLY);
+        tags.put(XPSignal.class, XP);
+        tags.put(RobotInfoChangeSignal.class, ROBOT_INFO_CHANGE);
+        tags.put(BytecodesUsedChangeSignal.class, BYTECODES_USED_CHANGE);
+        tags.put(StateDigestSignal.class, STATE_DIGEST);
+    }
+
+    private static final Team[] teams = Team.values();
+    private static final RobotType[] robotTypes = RobotType.values();
+    private static final DominationFactor[] dominationFactors = DominationFactor.values();
+
+    private Object object;
+
+    /**
+     * For deserialization only.
+     */
+    public CompactForm() {
+    }
+
+    public CompactForm(Object object) {
+        if (!supports(object))
+            throw new IllegalArgumentException("no compact form for " + object);
+        this.object = object;
+    }
+
+    /**
+     * @return whether the given object has a compact form
+     */
+    public static boolean supports(Object o) {
+        return o != null && tagOf(o) != null;
+    }
+
+    private static Integer tagOf(Object o) {
+        // its constructor can't take a null array
+        if (o instanceof TeamOreSignal && ((TeamOreSignal) o).getOre() == null)
+            return null;
+        return tags.get(o.getClass());
+    }
+
+    public Object getObject() {
+        return object;
+    }
+
+    protected Object readResolve() throws ObjectStreamException {
+        return object;
+    }
+
+    public void writeExternal(ObjectOutput out) throws IOException {
+        write(out, object);
+    }
+
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        object = read(in);
+    }
+
+    private static void write(ObjectOutput out, Object o) throws IOException {
+        if (o == null) {
+            out.writeByte(NULL);
+            return;
+        }
+        Integer tag = tagOf(o);
+        if (tag == null) {
+            out.writeByte(OBJECT);
+            out.writeObject(o);
+            return;
+        }
+        out.writeByte(tag);
+        switch (tag) {
+            case ROUND_DELTA: {
+                Signal[] signals = ((RoundDelta) o).getSignals();
+                if (signals == null) {
+                    out.writeInt(-1);
+                    break;
+                }
+                out.writeInt(signals.length);
+                for (Signal s : signals)
+                    write(out, s);
+                break;
+            }
+            case ROUND_STATS: {
+                RoundStats stats = (RoundStats) o;
+                out.writeDouble(stats.getPoints(Team.A));
+                out.writeDouble(stats.getPoints(Team.B));
+                break;
+            }
+            case GAME_STATS: {
+                GameStats stats = (GameStats) o;
+                writeInts(out, stats.getTimeToFirstKill());
+                writeInts(out, stats.getTimeToFirstArchonKill());
+                writeDoubles(out, stats.getTotalPoints());
+                writeInts(out, stats.getNumArchons());
+                writeDoubles(out, stats.getTotalEnergon());
+                writeEnum(out, stats.getDominationFactor());
+                out.writeDouble(stats.getExcitementFactor());
+                out.writeInt(stats.getTimeToTallestTower());
+                out.writeInt(stats.getTallestTower());
+                break;
+            }
+            case MATCH_HEADER: {
+                MatchHeader header = (MatchHeader) o;
+                // once per match, so the map keeps its default form
+                out.writeObject(header.getMap());
+                writeLongMatrix(out, header.getState());
+                out.writeInt(header.getMatchNumber());
+                out.writeInt(header.getMatchCount());
+                break;
+            }
+            case MATCH_FOOTER: {
+                MatchFooter footer = (MatchFooter) o;
+                writeEnum(out, footer.getWinner());
+                writeLongMatrix(out, footer.getState());
+                break;
+            }
+            case ATTACK: {
+                AttackSignal s = (AttackSignal) o;
+                out.writeInt(s.getRobotID());
+                writeLocation(out, s.getTargetLoc());
+                break;
+            }
+            case BASH: {
+                BashSignal s = (BashSignal) o;
+                out.writeInt(s.getRobotID());
+                writeLocation(out, s.getTargetLoc());
+                break;
+            }
+            case BROADCAST: {
+                // the message contents are transient
+                BroadcastSignal s = (BroadcastSignal) o;
+                out.writeInt(s.getRobotID());
+                writeEnum(out, s.getRobotTeam());
+                break;
+            }
+            case BUILD: {
+                BuildSignal s = (BuildSignal) o;
+                out.writeInt(s.getRobotID());
+                out.writeInt(s.getParentID());
+                writeLocation(out, s.getLoc());
+                writeEnum(out, s.getType());
+                writeEnum(out, s.getTeam());
+                out.writeInt(s.getDelay());
+                break;
+            }
+            case BYTECODES_USED: {
+                BytecodesUsedSignal s = (BytecodesUsedSignal) o;
+                writeInts(out, s.getRobotIDs());
+                writeInts(out, s.getNumBytecodes());
+                break;
+            }
+            case CAST: {
+                CastSignal s = (CastSignal) o;
+                out.writeInt(s.getRobotID());
+                writeLocation(out, s.getTargetLoc());
+                break;
+            }
+            case CONTROL_BITS: {
+                ControlBitsSignal s = (ControlBitsSignal) o;
+                out.writeInt(s.getRobotID());
+                out.writeLong(s.getControlBits());
+                break;
+            }
+            case DEATH:
+                out.writeInt(((DeathSignal) o).getObjectID());
+                break;
+            case HEALTH_CHANGE: {
+                HealthChangeSignal s = (HealthChangeSignal) o;
+                writeInts(out, s.getRobotIDs());
+                writeDoubles(out, s.getHealth());
+                break;
+            }
+            case INDICATOR_DOT: {
+                IndicatorDotSignal s = (IndicatorDotSignal) o;
+                out.writeInt(s.robotID);
+                writeEnum(out, s.team);
+                writeLocation(out, s.location);
+                out.writeInt(s.red);
+                out.writeInt(s.green);
+                out.writeInt(s.blue);
+                break;
+            }
+            case INDICATOR_LINE: {
+                IndicatorLineSignal s = (IndicatorLineSignal) o;
+                out.writeInt(s.robotID);
+                writeEnum(out, s.team);
+                writeLocation(out, s.loc1);
+                writeLocation(out, s.loc2);
+                out.writeInt(s.red);
+                out.writeInt(s.green);
+                out.writeInt(s.blue);
+                break;
+            }
+            case INDICATOR_STRING: {
+                IndicatorStringSignal s = (IndicatorStringSignal) o;
+                out.writeInt(s.getRobotID());
+                out.writeInt(s.getStringIndex());
+                writeString(out, s.getNewString());
+                break;
+            }
+            case LOCATION_ORE_CHANGE: {
+                LocationOreChangeSignal s = (LocationOreChangeSignal) o;
+                writeLocation(out, s.getLocation());
+                out.writeDouble(s.getOre());
+                break;
+            }
+            case MATCH_OBSERVATION: {
+                MatchObservationSignal s = (MatchObservationSignal) o;
+                out.writeInt(s.getRobotID());
+                writeString(out, s.getObservation());
+                break;
+            }
+            case MINE: {
+                MineSignal s = (MineSignal) o;
+                writeLocation(out, s.getMineLoc());
+                writeEnum(out, s.getMineTeam());
+                writeEnum(out, s.getMinerType());
+                break;
+            }
+            case MISSILE_COUNT: {
+                MissileCountSignal s = (MissileCountSignal) o;
+                out.writeInt(s.getRobotID());
+                out.writeInt(s.getMissileCount());
+                break;
+            }
+            case MOVEMENT_OVERRIDE: {
+                MovementOverrideSignal s = (MovementOverrideSignal) o;
+                out.writeInt(s.getRobotID());
+                writeLocation(out, s.getNewLoc());
+                break;
+            }
+            case MOVEMENT: {
+                MovementSignal s = (MovementSignal) o;
+                out.writeInt(s.getRobotID());
+                writeLocation(out, s.getNewLoc());
+                out.writeBoolean(s.isMovingForward());
+                out.writeInt(s.getDelay());
+                break;
+            }
+            case ROBOT_INFO: {
+                RobotInfoSignal s = (RobotInfoSignal) o;
+                writeInts(out, s.getRobotIDs());
+                writeDoubles(out, s.getCoreDelays());
+                writeDoubles(out, s.getWeaponDelays());
+                writeDoubles(out, s.getSupplyLevels());
+                break;
+            }
+            case SELF_DESTRUCT: {
+                SelfDestructSignal s = (SelfDestructSignal) o;
+                out.writeInt(s.getRobotID());
+                writeLocation(out, s.getLoc());
+                break;
+            }
+            case SPAWN: {
+                SpawnSignal s = (SpawnSignal) o;
+                out.writeInt(s.getRobotID());
+                out.writeInt(s.getParentID());
+                writeLocation(out, s.getLoc());
+                writeEnum(out, s.getType());
+                writeEnum(out, s.getTeam());
+                out.writeInt(s.getDelay());
+                break;
+            }
+            case TEAM_ORE:
+                writeDoubles(out, ((TeamOreSignal) o).getOre());
+                break;
+            case TRANSFER_SUPPLY: {
+                TransferSupplySignal s = (TransferSupplySignal) o;
+                out.writeInt(s.fromID);
+                out.writeInt(s.toID);
+                out.writeDouble(s.amount);
+                break;
+            }
+            case XP: {
+                XPSignal s = (XPSignal) o;
+                out.writeInt(s.getRobotID());
+                out.writeInt(s.getXP());
+                break;
+            }
+            case ROBOT_INFO_CHANGE: {
+                RobotInfoChangeSignal s = (RobotInfoChangeSignal) o;
+                writeInts(out, s.getCoreDelayIDs());
+                writeDoubles(out, s.getCoreDelays());
+                writeInts(out, s.getWeaponDelayIDs());
+                writeDoubles(out, s.getWeaponDelays());
+                writeInts(out, s.getSupplyLevelIDs());
+                writeDoubles(out, s.getSupplyLevels());
+                writeInts(out, s.getRemovedIDs());
+                break;
+            }
+            case BYTECODES_USED_CHANGE: {
+                BytecodesUsedChangeSignal s = (BytecodesUsedChangeSignal) o;
+                writeInts(out, s.getRobotIDs());
+                writeInts(out, s.getNumBytecodes());
+                writeInts(out, s.getRemovedIDs());
+                break;
+            }
+            case STATE_DIGEST: {
+                StateDigestSignal s = (StateDigestSignal) o;
+                out.writeInt(s.getRound());
+                writeLongs(out, s.getDigests());
+                break;
+            }
+            default:
+                throw new AssertionError(tag);
+        }
+    }
+
+    private static Object read(ObjectInput in) throws IOException, ClassNotFoundException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case OBJECT:
+                return in.readObject();
+            case ROUND_DELTA: {
+                int length = in.readInt();
+                if (length < 0)
+                    return new RoundDelta();
+                Signal[] signals = new Signal[length];
+                for (int i = 0; i < signals.length; i++)
+                    signals[i] = (Signal) read(in);
+                // folds indicator strings, like RoundDelta.readObject
+                return new RoundDelta(signals);
+            }
+            case ROUND_STATS:
+                return new RoundStats(in.readDouble(), in.readDouble());
+            case GAME_STATS: {
+                GameStats stats = new GameStats();
+                readInts(in, stats.getTimeToFirstKill());
+                readInts(in, stats.getTimeToFirstArchonKill());
+                readDoubles(in, stats.getTotalPoints());
+                readInts(in, stats.getNumArchons());
+                readDoubles(in, stats.getTotalEnergon());
+                stats.setDominationFactor(readEnum(in, dominationFactors));
+                stats.setExcitementFactor(in.readDouble());
+                stats.setTimeToTallestTower(in.readInt());
+                stats.setTallestTower(in.readInt());
+                return stats;
+            }
+            case MATCH_HEADER: {
+                GenericGameMap map = (GenericGameMap) in.readObject();
+                long[][] state = readLongMatrix(in);
+                int matchNumber = in.readInt();
+                return new MatchHeader(map, state, matchNumber, in.readInt());
+            }
+            case MATCH_FOOTER: {
+                Team winner = readEnum(in, teams);
+                return new MatchFooter(winner, readLongMatrix(in));
+            }
+            case ATTACK: {
+                int robotID = in.readInt();
+                return new AttackSignal(robotID, readLocation(in));
+            }
+            case BASH: {
+                int robotID = in.readInt();
+                return new BashSignal(robotID, readLocation(in));
+            }
+            case BROADCAST: {
+                int robotID = in.readInt();
+                return new BroadcastSignal(robotID, readEnum(in, teams));
+            }
+            case BUILD: {
+                int robotID = in.readInt();
+                int parentID = in.readInt();
+                MapLocation loc = readLocation(in);
+                RobotType type = readEnum(in, robotTypes);
+                Team team = readEnum(in, teams);
+                return new BuildSignal(robotID, parentID, loc, type, team, in.readInt());
+            }
+            case BYTECODES_USED: {
+                int[] robotIDs = readInts(in);
+                return new BytecodesUsedSignal(robotIDs, readInts(in));
+            }
+            case CAST: {
+                int robotID = in.readInt();
+                return new CastSignal(robotID, readLocation(in));
+            }
+            case CONTROL_BITS: {
+                int robotID = in.readInt();
+                return new ControlBitsSignal(robotID, in.readLong());
+            }
+            case DEATH:
+                return new DeathSignal(in.readInt());
+            case HEALTH_CHANGE: {
+                int[] robotIDs = readInts(in);
+                return new HealthChangeSignal(robotIDs, readDoubles(in));
+            }
+            case INDICATOR_DOT: {
+                int robotID = in.readInt();
+                Team team = readEnum(in, teams);
+                MapLocation loc = readLocation(in);
+                int red = in.readInt();
+                int green = in.readInt();
+                return new IndicatorDotSignal(robotID, team, loc, red, green, in.readInt());
+            }
+            case INDICATOR_LINE: {
+                int robotID = in.readInt();
+                Team team = readEnum(in, teams);
+                MapLocation loc1 = readLocation(in);
+                MapLocation loc2 = readLocation(in);
+                int red = in.readInt();
+                int green = in.readInt();
+                return new IndicatorLineSignal(robotID, team, loc1, loc2, red, green, in.readInt());
+            }
+            case INDICATOR_STRING: {
+                int robotID = in.readInt();
+                int stringIndex = in.readInt();
+                return new IndicatorStringSignal(robotID, stringIndex, readString(in));
+            }
+            case LOCATION_ORE_CHANGE: {
+                MapLocation loc = readLocation(in);
+                return new LocationOreChangeSignal(loc, in.readDouble());
+            }
+            case MATCH_OBSERVATION: {
+                int robotID = in.readInt();
+                return new MatchObservationSignal(robotID, readString(in));
+            }
+            case MINE: {
+                MapLocation loc = readLocation(in);
+                Team team = readEnum(in, teams);
+                return new MineSignal(loc, team, readEnum(in, robotTypes));
+            }
+            case MISSILE_COUNT: {
+                int robotID = in.readInt();
+                return new MissileCountSignal(robotID, in.readInt());
+            }
+            case MOVEMENT_OVERRIDE: {
+                int robotID = in.readInt();
+                return new MovementOverrideSignal(robotID, readLocation(in));
+            }
+            case MOVEMENT: {
+                int robotID = in.readInt();
+                MapLocation loc = readLocation(in);
+                boolean forward = in.readBoolean();
+                return new MovementSignal(robotID, loc, forward, in.readInt());
+            }
+            case ROBOT_INFO: {
+                int[] robotIDs = readInts(in);
+                double[] coreDelays = readDoubles(in);
+                double[] weaponDelays = readDoubles(in);
+                return new RobotInfoSignal(robotIDs, coreDelays, weaponDelays, readDoubles(in));
+            }
+            case SELF_DESTRUCT: {
+                int robotID = in.readInt();
+                return new SelfDestructSignal(robotID, readLocation(in));
+            }
+            case SPAWN: {
+                int robotID = in.readInt();
+                int parentID = in.readInt();
+                MapLocation loc = readLocation(in);
+                RobotType type = readEnum(in, robotTypes);
+                Team team = readEnum(in, teams);
+                return new SpawnSignal(robotID, parentID, loc, type, team, in.readInt());
+            }
+            case TEAM_ORE:
+                return new TeamOreSignal(readDoubles(in));
+            case TRANSFER_SUPPLY: {
+                int fromID = in.readInt();
+                int toID = in.readInt();
+                return new TransferSupplySignal(fromID, toID, in.readDouble());
+            }
+            case XP: {
+                int robotID = in.readInt();
+                return new XPSignal(robotID, in.readInt());
+            }
+            case ROBOT_INFO_CHANGE: {
+                int[] coreDelayIDs = readInts(in);
+                double[] coreDelays = readDoubles(in);
+                int[] weaponDelayIDs = readInts(in);
+                double[] weaponDelays = readDoubles(in);
+                int[] supplyLevelIDs = readInts(in);
+                double[] supplyLevels = readDoubles(in);
+                return new RobotInfoChangeSignal(coreDelayIDs, coreDelays, weaponDelayIDs, weaponDelays,
+                        supplyLevelIDs, supplyLevels, readInts(in));
+            }
+            case BYTECODES_USED_CHANGE: {
+                int[] robotIDs = readInts(in);
+                int[] numBytecodes = readInts(in);
+                return new BytecodesUsedChangeSignal(robotIDs, numBytecodes, readInts(in));
+            }
+            case STATE_DIGEST: {
+                int round = in.readInt();
+                return new StateDigestSignal(round, readLongs(in));
+            }
+            default:
+                throw new InvalidObjectException("unknown compact form tag " + tag);
+        }
+    }
+
+    private static void writeLocation(ObjectOutput out, MapLocation loc) throws IOException {
+        out.writeBoolean(loc != null);
+        if (loc != null) {
+            out.writeInt(loc.x);
+            out.writeInt(loc.y);
+        }
+    }
+
+    private static MapLocation readLocation(ObjectInput in) throws IOException {
+        if (!in.readBoolean())
+            return null;
+        int x = in.readInt();
+        return new MapLocation(x, in.readInt());
+    }
+
+    private static void writeEnum(ObjectOutput out, Enum<?> e) throws IOException {
+        out.writeByte(e == null ? -1 : e.ordinal());
+    }
+
+    private static <E extends Enum<E>> E readEnum(ObjectInput in, E[] values) throws IOException {
+        int ordinal = in.readByte();
+        if (ordinal < 0)
+            return null;
+        if (ordinal >= values.length)
+            throw new InvalidObjectException("bad ordinal " + ordinal);
+        return values[ordinal];
+    }
+
+    private static void writeString(ObjectOutput out, String s) throws IOException {
+        // writeUTF is limited to 64KB; this keeps unpaired surrogates too
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(s.length());
+        out.writeChars(s);
+    }
+
+    private static String readString(ObjectInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+            chars[i] = in.readChar();
+        return new String(chars);
+    }
+
+    private static void writeInts(ObjectOutput out, int[] a) throws IOException {
+        if (a == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(a.length);
+        for (int v : a)
+            out.writeInt(v);
+    }
+
+    private static int[] readInts(ObjectInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        int[] a = new int[length];
+        for (int i = 0; i < length; i++)
+            a[i] = in.readInt();
+        return a;
+    }
+
+    /**
+     * Reads an array written by writeInts into one of the same length.
+     */
+    private static void readInts(ObjectInput in, int[] a) throws IOException {
+        int length = in.readInt();
+        if (a == null || length != a.length)
+            throw new InvalidObjectException("expected " + (a == null ? "no" : a.length) + " ints, found " + length);
+        for (int i = 0; i < length; i++)
+            a[i] = in.readInt();
+    }
+
+    private static void writeDoubles(ObjectOutput out, double[] a) throws IOException {
+        if (a == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(a.length);
+        for (double v : a)
+            out.writeDouble(v);
+    }
+
+    private static double[] readDoubles(ObjectInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        double[] a = new double[length];
+        for (int i = 0; i < length; i++)
+            a[i] = in.readDouble();
+        return a;
+    }
+
+    private static void readDoubles(ObjectInput in, double[] a) throws IOException {
+        int length = in.readInt();
+        if (a == null || length != a.length)
+            throw new InvalidObjectException("expected " + (a == null ? "no" : a.length) + " doubles, found " + length);
+        for (int i = 0; i < length; i++)
+            a[i] = in.readDouble();
+    }
+
+    private static void writeLongs(ObjectOutput out, long[] a) throws IOException {
+        if (a == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(a.length);
+        for (long v : a)
+            out.writeLong(v);
+    }
+
+    private static long[] readLongs(ObjectInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        long[] a = new long[length];
+        for (int i = 0; i < length; i++)
+            a[i] = in.readLong();
+        return a;
+    }
+
+    private static void writeLongMatrix(ObjectOutput out, long[][] m) throws IOException {
+        if (m == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(m.length);
+        for (long[] row : m) {
+            if (row == null) {
+                out.writeInt(-1);
+                continue;
+            }
+            out.writeInt(row.length);
+            for (long v : row)
+                out.writeLong(v);
+        }
+    }
+
+    private static long[][] readLongMatrix(ObjectInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        long[][] m = new long[length][];
+        for (int i = 0; i < length; i++) {
+            int rowLength = in.readInt();
+            if (rowLength < 0)
+                continue;
+            m[i] = new long[rowLength];
+            for (int j = 0; j < rowLength; j++)
+                m[i][j] = in.readLong();
+        }
+        return m;
+    }
+}
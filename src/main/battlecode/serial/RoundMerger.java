@@ -0,0 +1,217 @@
+package battlecode.serial;
+
+import battlecode.analysis.AwesomenessSignal;
+import battlecode.engine.signal.Signal;
+import battlecode.world.signal.AttackSignal;
+import battlecode.world.signal.BashSignal;
+import battlecode.world.signal.BroadcastSignal;
+import battlecode.world.signal.BytecodesUsedSignal;
+import battlecode.world.signal.CastSignal;
+import battlecode.world.signal.ControlBitsSignal;
+import battlecode.world.signal.DeathSignal;
+import battlecode.world.signal.HealthChangeSignal;
+import battlecode.world.signal.IndicatorDotSignal;
+import battlecode.world.signal.IndicatorLineSignal;
+import battlecode.world.signal.IndicatorStringSignal;
+import battlecode.world.signal.LocationOreChangeSignal;
+import battlecode.world.signal.MineSignal;
+import battlecode.world.signal.MissileCountSignal;
+import battlecode.world.signal.MovementOverrideSignal;
+import battlecode.world.signal.MovementSignal;
+import battlecode.world.signal.RobotInfoSignal;
+import battlecode.world.signal.SelfDestructSignal;
+import battlecode.world.signal.StateDigestSignal;
+import battlecode.world.signal.TeamOreSignal;
+import battlecode.world.signal.TransferSupplySignal;
+import battlecode.world.signal.XPSignal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges consecutive rounds into one that takes a viewer from the state
+ * before the first to the state after the last:
+ * <ul>
+ * <li>Spawns, deaths, builds and observations are all kept, in order.</li>
+ * <li>For positions, ore on the map and in the bank, indicator strings,
+ * control bits, XP, missile counts and the full per-round signals
+ * (RobotInfoSignal, BytecodesUsedSignal) the last value wins, in the place
+ * it was sent. Nothing is kept for a robot after it dies.</li>
+ * <li>Health changes are folded into one HealthChangeSignal with each
+ * robot's last health.</li>
+ * <li>Attacks, supply transfers, indicator dots and lines and other
+ * animations only matter for the round they happen in, so only those of the
+ * last round are kept.</li>
+ * </ul>
+ * Change-only robot state signals must be reconstructed first (see
+ * RobotStateReconstructor). Signals of other classes are kept as they are.
+ */
+public class RoundMerger {
+
+    /**
+     * What a last-wins signal replaces: the same kind for the same robot
+     * (and string index), or for the same place. Keys that are not about a
+     * robot have an id of -1.
+     */
+    private static class Key {
+        final Object kind;
+        final int id;
+        final int index;
+
+        Key(Object kind, int id, int index) {
+            this.kind = kind;
+            this.id = id;
+            this.index = index;
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            Key k = (Key) obj;
+            return kind.equals(k.kind) && id == k.id && index == k.index;
+        }
+
+        public int hashCode() {
+            return (kind.hashCode() * 31 + id) * 31 + index;
+        }
+    }
+
+    // merged signals so far, with nulls where a signal was superseded
+    private final List<Signal> signals = new ArrayList<Signal>();
+    private final Map<Key, Integer> latest = new HashMap<Key, Integer>();
+    // animations of the newest round
+    private final List<Integer> events = new ArrayList<Integer>();
+    private final Map<Integer, Double> health = new LinkedHashMap<Integer, Double>();
+    private int healthSlot = -1;
+    private int rounds;
+
+    /**
+     * Gets the number of rounds merged since the last call to merge().
+     */
+    public int getRoundCount() {
+        return rounds;
+    }
+
+    /**
+     * Adds the next round. The round itself is not changed.
+     */
+    public void add(RoundDelta round) {
+        add(round.getSignals());
+    }
+
+    public void add(Signal[] round) {
+        rounds++;
+        for (int i : events)
+            signals.set(i, null);
+        events.clear();
+
+        for (Signal s : round) {
+            if (s == null)
+                continue;
+            if (isEvent(s)) {
+                events.add(signals.size());
+                signals.add(s);
+            } else if (s instanceof HealthChangeSignal) {
+                HealthChangeSignal h = (HealthChangeSignal) s;
+                for (int i = 0; i < h.getRobotIDs().length; i++)
+                    health.put(h.getRobotIDs()[i], h.getHealth()[i]);
+                // filled in by merge()
+                if (healthSlot >= 0)
+                    signals.set(healthSlot, null);
+                healthSlot = signals.size();
+                signals.add(null);
+            } else if (s instanceof DeathSignal) {
+                forget(((DeathSignal) s).getObjectID());
+                signals.add(s);
+            } else {
+                Key key = keyOf(s);
+                if (key != null) {
+                    Integer previous = latest.put(key, signals.size());
+                    if (previous != null)
+                        signals.set(previous, null);
+                }
+                signals.add(s);
+            }
+        }
+    }
+
+    /**
+     * Gets the merged round and starts over.
+     *
+     * @return the merged round, or null if no rounds were added
+     */
+    public RoundDelta merge() {
+        if (rounds == 0)
+            return null;
+        if (healthSlot >= 0 && !health.isEmpty()) {
+            int[] robotIDs = new int[health.size()];
+            double[] levels = new double[health.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Double> e : health.entrySet()) {
+                robotIDs[i] = e.getKey();
+                levels[i++] = e.getValue();
+            }
+            signals.set(healthSlot, new HealthChangeSignal(robotIDs, levels));
+        }
+
+        List<Signal> merged = new ArrayList<Signal>(signals.size());
+        for (Signal s : signals) {
+            if (s != null)
+                merged.add(s);
+        }
+        signals.clear();
+        latest.clear();
+        events.clear();
+        health.clear();
+        healthSlot = -1;
+        rounds = 0;
+        return new RoundDelta(merged.toArray(new Signal[merged.size()]));
+    }
+
+    private static boolean isEvent(Signal s) {
+        return s instanceof AttackSignal || s instanceof BashSignal || s instanceof BroadcastSignal
+                || s instanceof CastSignal || s instanceof MineSignal || s instanceof SelfDestructSignal
+                || s instanceof TransferSupplySignal || s instanceof IndicatorDotSignal
+                || s instanceof IndicatorLineSignal;
+    }
+
+    private static Key keyOf(Signal s) {
+        // a movement and an override both just put the robot somewhere
+        if (s instanceof MovementSignal)
+            return new Key(MovementSignal.class, ((MovementSignal) s).getRobotID(), 0);
+        if (s instanceof MovementOverrideSignal)
+            return new Key(MovementSignal.class, ((MovementOverrideSignal) s).getRobotID(), 0);
+        if (s instanceof IndicatorStringSignal) {
+            IndicatorStringSignal iss = (IndicatorStringSignal) s;
+            return new Key(IndicatorStringSignal.class, iss.getRobotID(), iss.getStringIndex());
+        }
+        if (s instanceof ControlBitsSignal)
+            return new Key(ControlBitsSignal.class, ((ControlBitsSignal) s).getRobotID(), 0);
+        if (s instanceof XPSignal)
+            return new Key(XPSignal.class, ((XPSignal) s).getRobotID(), 0);
+        if (s instanceof MissileCountSignal)
+            return new Key(MissileCountSignal.class, ((MissileCountSignal) s).getRobotID(), 0);
+        if (s instanceof LocationOreChangeSignal)
+            return new Key(((LocationOreChangeSignal) s).getLocation(), -1, 0);
+        if (s instanceof TeamOreSignal || s instanceof RobotInfoSignal || s instanceof BytecodesUsedSignal
+                || s instanceof AwesomenessSignal || s instanceof StateDigestSignal)
+            return new Key(s.getClass(), -1, 0);
+        return null;
+    }
+
+    // drops what is kept about a robot that has died
+    private void forget(int robotID) {
+        health.remove(robotID);
+        for (Iterator<Map.Entry<Key, Integer>> it = latest.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Key, Integer> e = it.next();
+            if (e.getKey().id == robotID) {
+                signals.set(e.getValue(), null);
+                it.remove();
+            }
+        }
+    }
+}
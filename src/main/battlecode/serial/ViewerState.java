@@ -0,0 +1,235 @@
+package battlecode.serial;
+
+import battlecode.common.GameConstants;
+import battlecode.common.MapLocation;
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+import battlecode.engine.signal.Signal;
+import battlecode.world.signal.BytecodesUsedSignal;
+import battlecode.world.signal.ControlBitsSignal;
+import battlecode.world.signal.DeathSignal;
+import battlecode.world.signal.HealthChangeSignal;
+import battlecode.world.signal.IndicatorStringSignal;
+import battlecode.world.signal.LocationOreChangeSignal;
+import battlecode.world.signal.MissileCountSignal;
+import battlecode.world.signal.MovementOverrideSignal;
+import battlecode.world.signal.MovementSignal;
+import battlecode.world.signal.RobotInfoSignal;
+import battlecode.world.signal.SpawnSignal;
+import battlecode.world.signal.TeamOreSignal;
+import battlecode.world.signal.XPSignal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * What a viewer knows about a match after playing some of its rounds: the
+ * robots alive with everything the signals say about them, the ore on the
+ * map and each team's ore. Animations are not part of it. Two states are
+ * equal if a viewer would draw them the same.
+ * <p/>
+ * Change-only robot state signals must be reconstructed first (see
+ * RobotStateReconstructor).
+ */
+public class ViewerState {
+
+    private static class Robot {
+        final RobotType type;
+        final Team team;
+        MapLocation location;
+        double health;
+        double coreDelay;
+        double weaponDelay;
+        double supplyLevel;
+        int bytecodesUsed;
+        int xp;
+        int missileCount;
+        long controlBits;
+        final String[] indicatorStrings = new String[GameConstants.NUMBER_OF_INDICATOR_STRINGS];
+
+        Robot(RobotType type, Team team, MapLocation location) {
+            this.type = type;
+            this.team = team;
+            this.location = location;
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Robot))
+                return false;
+            Robot r = (Robot) obj;
+            return type == r.type && team == r.team && equal(location, r.location)
+                    && Double.compare(health, r.health) == 0 && Double.compare(coreDelay, r.coreDelay) == 0
+                    && Double.compare(weaponDelay, r.weaponDelay) == 0
+                    && Double.compare(supplyLevel, r.supplyLevel) == 0 && bytecodesUsed == r.bytecodesUsed
+                    && xp == r.xp && missileCount == r.missileCount && controlBits == r.controlBits
+                    && Arrays.equals(indicatorStrings, r.indicatorStrings);
+        }
+
+        public int hashCode() {
+            return location == null ? 0 : location.hashCode();
+        }
+
+        private static boolean equal(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    private final Map<Integer, Robot> robots = new HashMap<Integer, Robot>();
+    private final Map<MapLocation, Double> ore = new HashMap<MapLocation, Double>();
+    private double[] teamOre = new double[0];
+
+    /**
+     * Plays one round, or the signals sent in debug mode.
+     */
+    public void apply(Signal[] signals) {
+        for (Signal s : signals) {
+            if (s != null)
+                apply(s);
+        }
+    }
+
+    public void apply(Signal s) {
+        if (s instanceof SpawnSignal) {
+            SpawnSignal spawn = (SpawnSignal) s;
+            robots.put(spawn.getRobotID(), new Robot(spawn.getType(), spawn.getTeam(), spawn.getLoc()));
+        } else if (s instanceof DeathSignal) {
+            robots.remove(((DeathSignal) s).getObjectID());
+        } else if (s instanceof MovementSignal) {
+            Robot r = robots.get(((MovementSignal) s).getRobotID());
+            if (r != null)
+                r.location = ((MovementSignal) s).getNewLoc();
+        } else if (s instanceof MovementOverrideSignal) {
+            Robot r = robots.get(((MovementOverrideSignal) s).getRobotID());
+            if (r != null)
+                r.location = ((MovementOverrideSignal) s).getNewLoc();
+        } else if (s instanceof HealthChangeSignal) {
+            HealthChangeSignal h = (HealthChangeSignal) s;
+            for (int i = 0; i < h.getRobotIDs().length; i++) {
+                Robot r = robots.get(h.getRobotIDs()[i]);
+                if (r != null)
+                    r.health = h.getHealth()[i];
+            }
+        } else if (s instanceof RobotInfoSignal) {
+            RobotInfoSignal info = (RobotInfoSignal) s;
+            for (int i = 0; i < info.getRobotIDs().length; i++) {
+                Robot r = robots.get(info.getRobotIDs()[i]);
+                if (r != null) {
+                    r.coreDelay = info.getCoreDelays()[i];
+                    r.weaponDelay = info.getWeaponDelays()[i];
+                    r.supplyLevel = info.getSupplyLevels()[i];
+                }
+            }
+        } else if (s instanceof BytecodesUsedSignal) {
+            BytecodesUsedSignal used = (BytecodesUsedSignal) s;
+            for (int i = 0; i < used.getRobotIDs().length; i++) {
+                Robot r = robots.get(used.getRobotIDs()[i]);
+                if (r != null)
+                    r.bytecodesUsed = used.getNumBytecodes()[i];
+            }
+        } else if (s instanceof XPSignal) {
+            Robot r = robots.get(((XPSignal) s).getRobotID());
+            if (r != null)
+                r.xp = ((XPSignal) s).getXP();
+        } else if (s instanceof MissileCountSignal) {
+            Robot r = robots.get(((MissileCountSignal) s).getRobotID());
+            if (r != null)
+                r.missileCount = ((MissileCountSignal) s).getMissileCount();
+        } else if (s instanceof ControlBitsSignal) {
+            Robot r = robots.get(((ControlBitsSignal) s).getRobotID());
+            if (r != null)
+                r.controlBits = ((ControlBitsSignal) s).getControlBits();
+        } else if (s instanceof IndicatorStringSignal) {
+            IndicatorStringSignal iss = (IndicatorStringSignal) s;
+            Robot r = robots.get(iss.getRobotID());
+            if (r != null && iss.getStringIndex() >= 0 && iss.getStringIndex() < r.indicatorStrings.length)
+                r.indicatorStrings[iss.getStringIndex()] = iss.getNewString();
+        } else if (s instanceof LocationOreChangeSignal) {
+            LocationOreChangeSignal change = (LocationOreChangeSignal) s;
+            ore.put(change.getLocation(), change.getOre());
+        } else if (s instanceof TeamOreSignal) {
+            double[] values = ((TeamOreSignal) s).getOre();
+            teamOre = values == null ? new double[0] : values.clone();
+        }
+    }
+
+    /**
+     * Makes the signals that bring a viewer who has seen nothing of the match
+     * to this state: a spawn for every robot, in the order of their IDs,
+     * then everything known about them, the ore on the map and each team's
+     * ore.
+     */
+    public Signal[] toSignals() {
+        List<Signal> signals = new ArrayList<Signal>();
+        Map<Integer, Robot> sorted = new TreeMap<Integer, Robot>(robots);
+        int n = sorted.size();
+        int[] ids = new int[n];
+        double[] health = new double[n];
+        double[] coreDelays = new double[n];
+        double[] weaponDelays = new double[n];
+        double[] supplyLevels = new double[n];
+        int[] bytecodes = new int[n];
+        int i = 0;
+        for (Map.Entry<Integer, Robot> e : sorted.entrySet()) {
+            int id = e.getKey();
+            Robot r = e.getValue();
+            signals.add(new SpawnSignal(id, 0, r.location, r.type, r.team, 0));
+            ids[i] = id;
+            health[i] = r.health;
+            coreDelays[i] = r.coreDelay;
+            weaponDelays[i] = r.weaponDelay;
+            supplyLevels[i] = r.supplyLevel;
+            bytecodes[i] = r.bytecodesUsed;
+            i++;
+        }
+        signals.add(new HealthChangeSignal(ids, health));
+        signals.add(new RobotInfoSignal(ids, coreDelays, weaponDelays, supplyLevels));
+        signals.add(new BytecodesUsedSignal(ids, bytecodes));
+        for (Map.Entry<Integer, Robot> e : sorted.entrySet()) {
+            int id = e.getKey();
+            Robot r = e.getValue();
+            if (r.xp != 0)
+                signals.add(new XPSignal(id, r.xp));
+            if (r.missileCount != 0)
+                signals.add(new MissileCountSignal(id, r.missileCount));
+            if (r.controlBits != 0)
+                signals.add(new ControlBitsSignal(id, r.controlBits));
+            for (int k = 0; k < r.indicatorStrings.length; k++) {
+                if (r.indicatorStrings[k] != null)
+                    signals.add(new IndicatorStringSignal(id, k, r.indicatorStrings[k]));
+            }
+        }
+        for (Map.Entry<MapLocation, Double> e : ore.entrySet())
+            signals.add(new LocationOreChangeSignal(e.getKey(), e.getValue()));
+        if (teamOre.length > 0)
+            signals.add(new TeamOreSignal(teamOre.clone()));
+        return signals.toArray(new Signal[signals.size()]);
+    }
+
+    /**
+     * Forgets everything, as at the start of a match.
+     */
+    public void clear() {
+        robots.clear();
+        ore.clear();
+        teamOre = new double[0];
+    }
+
+    public int getRobotCount() {
+        return robots.size();
+    }
+
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ViewerState))
+            return false;
+        ViewerState v = (ViewerState) obj;
+        return robots.equals(v.robots) && ore.equals(v.ore) && Arrays.equals(teamOre, v.teamOre);
+    }
+
+    public int hashCode() {
+        return robots.size() * 31 + ore.size();
+    }
+}
@@ -0,0 +1,303 @@
+package battlecode.serial.index;
+
+import battlecode.engine.signal.Signal;
+import battlecode.serial.MatchFooter;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundDelta;
+import battlecode.world.signal.BytecodesUsedChangeSignal;
+import battlecode.world.signal.RobotInfoChangeSignal;
+import battlecode.world.signal.RobotStateReconstructor;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the rounds of a binary match file in any order, decoding only the
+ * objects that are asked for. The file is memory-mapped, and found through
+ * its MatchIndex: the one saved alongside it, or else one built (and saved,
+ * if possible) by reading the file once.
+ * <p/>
+ * A file may hold several matches; each starts with a MatchHeader. Rounds
+ * are numbered from 0 within their match.
+ * <p/>
+ * A MatchFileReader is not safe for use by several threads at once.
+ */
+public class MatchFileReader implements Closeable {
+
+    private static final byte[] STREAM_HEADER = {
+            (byte) (ObjectStreamConstants.STREAM_MAGIC >> 8), (byte) ObjectStreamConstants.STREAM_MAGIC,
+            (byte) (ObjectStreamConstants.STREAM_VERSION >> 8), (byte) ObjectStreamConstants.STREAM_VERSION
+    };
+
+    // inflated blocks to keep, so that reading consecutive rounds does not
+    // inflate the same block again
+    private static final int CACHED_BLOCKS = 8;
+
+    private final MatchIndex index;
+    private MappedByteBuffer data;
+
+    // for each match, the objects that hold its header (-1 if the file
+    // starts without one), footer (-1 if none) and rounds
+    private final List<Integer> headers = new ArrayList<Integer>();
+    private final List<Integer> footers = new ArrayList<Integer>();
+    private final List<int[]> rounds = new ArrayList<int[]>();
+
+    private final Map<Integer, byte[]> blocks = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+            return size() > CACHED_BLOCKS;
+        }
+    };
+    private final Inflater inflater = new Inflater(true);
+
+    // the match whose change signals the reconstructor has followed (-1 if
+    // none), and the number of its rounds it has seen
+    private final RobotStateReconstructor reconstructor = new RobotStateReconstructor();
+    private int reconstructedMatch = -1;
+    private int reconstructedRounds;
+
+    /**
+     * Opens a match file, indexing it first if it has no up-to-date index.
+     *
+     * @throws IOException if the file cannot be read, or has no index and
+     *                     cannot be indexed
+     */
+    public MatchFileReader(File file) throws IOException {
+        MatchIndex saved = MatchIndex.read(file);
+        if (saved == null) {
+            saved = MatchIndex.build(file);
+            try {
+                saved.write(file);
+            } catch (IOException e) {
+                // keep it for this reader only
+            }
+        }
+        this.index = saved;
+
+        if (file.length() > Integer.MAX_VALUE)
+            throw new IOException(file + " is too large to map");
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            data = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        } finally {
+            raf.close();
+        }
+
+        List<Integer> current = null;
+        for (int i = 0; i < index.getObjectCount(); i++) {
+            MatchIndex.Kind kind = index.getKind(i);
+            if (kind == MatchIndex.Kind.HEADER || (kind == MatchIndex.Kind.ROUND && current == null)) {
+                if (current != null)
+                    rounds.add(toArray(current));
+                current = new ArrayList<Integer>();
+                headers.add(kind == MatchIndex.Kind.HEADER ? i : -1);
+                footers.add(-1);
+            }
+            if (kind == MatchIndex.Kind.ROUND)
+                current.add(i);
+            else if (kind == MatchIndex.Kind.FOOTER && current != null)
+                footers.set(footers.size() - 1, i);
+        }
+        if (current != null)
+            rounds.add(toArray(current));
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = list.get(i);
+        return array;
+    }
+
+    public MatchIndex getIndex() {
+        return index;
+    }
+
+    public int getMatchCount() {
+        return headers.size();
+    }
+
+    /**
+     * Gets the header of a match, or null if the file has none.
+     */
+    public MatchHeader getHeader(int match) throws IOException {
+        int i = headers.get(match);
+        return i < 0 ? null : (MatchHeader) getObject(i);
+    }
+
+    /**
+     * Gets the footer of a match, or null if the match was not finished.
+     */
+    public MatchFooter getFooter(int match) throws IOException {
+        int i = footers.get(match);
+        return i < 0 ? null : (MatchFooter) getObject(i);
+    }
+
+    public int getRoundCount(int match) {
+        return rounds.get(match).length;
+    }
+
+    /**
+     * Gets a round of the first match.
+     */
+    public RoundDelta roundAt(int round) throws IOException {
+        return roundAt(0, round);
+    }
+
+    public RoundDelta roundAt(int match, int round) throws IOException {
+        RoundDelta delta = (RoundDelta) getObject(rounds.get(match)[round]);
+        if (!hasChangeSignals(delta))
+            return delta;
+        int seen = match == reconstructedMatch && round >= reconstructedRounds ? reconstructedRounds : 0;
+        // left unset until this round is done, in case decoding one fails
+        reconstructedMatch = -1;
+        if (seen == 0)
+            reconstructor.reset();
+        for (; seen < round; seen++)
+            reconstructor.reconstruct(getObject(rounds.get(match)[seen]));
+        reconstructor.reconstruct(delta);
+        reconstructedMatch = match;
+        reconstructedRounds = round + 1;
+        return delta;
+    }
+
+    private static boolean hasChangeSignals(RoundDelta delta) {
+        if (delta.getSignals() == null)
+            return false;
+        for (Signal s : delta.getSignals()) {
+            if (s instanceof RobotInfoChangeSignal || s instanceof BytecodesUsedChangeSignal)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Iterates over rounds from (inclusive) to to (exclusive) of a match,
+     * decoding each one as it is reached. An IOException while decoding is
+     * thrown as an IOError.
+     */
+    public Iterable<RoundDelta> rounds(final int match, final int from, final int to) {
+        if (from < 0 || to > getRoundCount(match) || from > to)
+            throw new IndexOutOfBoundsException("rounds " + from + " to " + to);
+        return new Iterable<RoundDelta>() {
+            public Iterator<RoundDelta> iterator() {
+                return new Iterator<RoundDelta>() {
+                    private int next = from;
+
+                    public boolean hasNext() {
+                        return next < to;
+                    }
+
+                    public RoundDelta next() {
+                        if (next >= to)
+                            throw new NoSuchElementException();
+                        try {
+                            return roundAt(match, next++);
+                        } catch (IOException e) {
+                            throw new IOError(e);
+                        }
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Decodes object i of the file, counting every object (headers,
+     * metadata, rounds, stats and footers) from 0.
+     */
+    public Object getObject(int i) throws IOException {
+        if (data == null)
+            throw new IOException("reader is closed");
+        int anchor = index.getAnchor(i);
+        byte[] bytes = read(index.getOffset(anchor), index.getEnd(i));
+        ObjectInputStream in = new ObjectInputStream(new SequenceInputStream(
+                new ByteArrayInputStream(STREAM_HEADER), new ByteArrayInputStream(bytes)));
+        try {
+            Object o = null;
+            for (int k = anchor; k <= i; k++)
+                o = in.readObject();
+            return o;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("cannot read object " + i, e);
+        }
+    }
+
+    // the bytes of the serialized stream from start to end
+    private byte[] read(long start, long end) throws IOException {
+        byte[] bytes = new byte[(int) (end - start)];
+        if (!index.isCompressed()) {
+            ByteBuffer b = data.duplicate();
+            b.position((int) start);
+            b.get(bytes);
+            return bytes;
+        }
+        int blockSize = index.getBlockSize();
+        int done = 0;
+        while (done < bytes.length) {
+            long position = start + done;
+            byte[] block = inflate((int) (position / blockSize));
+            int from = (int) (position % blockSize);
+            int n = Math.min(bytes.length - done, block.length - from);
+            if (n <= 0)
+                throw new EOFException("match file ends early");
+            System.arraycopy(block, from, bytes, done, n);
+            done += n;
+        }
+        return bytes;
+    }
+
+    private byte[] inflate(int block) throws IOException {
+        byte[] plain = blocks.get(block);
+        if (plain != null)
+            return plain;
+        long blockStart = (long) block * index.getBlockSize();
+        int compressedStart = (int) index.getBlockOffset(block);
+        int compressedLength = (int) (index.getBlockOffset(block + 1) - compressedStart);
+        byte[] compressed = new byte[compressedLength];
+        ByteBuffer b = data.duplicate();
+        b.position(compressedStart);
+        b.get(compressed);
+
+        plain = new byte[(int) Math.min(index.getBlockSize(), index.getDataLength() - blockStart)];
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            int done = 0;
+            while (done < plain.length) {
+                int n = inflater.inflate(plain, done, plain.length - done);
+                if (n == 0 && (inflater.needsInput() || inflater.finished()))
+                    throw new EOFException("block " + block + " is cut short");
+                done += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("block " + block + " is corrupt", e);
+        }
+        blocks.put(block, plain);
+        return plain;
+    }
+
+    /**
+     * Releases the mapping (once it is garbage collected) and the inflater.
+     */
+    public void close() {
+        data = null;
+        blocks.clear();
+        inflater.end();
+    }
+}
@@ -0,0 +1,316 @@
+package battlecode.serial.index;
+
+import battlecode.serial.MatchFooter;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundDelta;
+import battlecode.serial.RoundStats;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Where each object of a binary (Java serialized) match file starts, so that
+ * MatchFileReader can decode any of them without the ones before it.
+ * <p/>
+ * Offsets count bytes of the serialized stream from its start, before any
+ * compression. An object that follows a reset of the stream's handle table
+ * can be decoded by itself; any other object is decoded by starting from its
+ * anchor, the last such object before it. A FileProxy that writes an index
+ * resets before every object, so there every object is its own anchor.
+ * <p/>
+ * A compressed match file can only be read at random when its gzip stream
+ * is made of independently compressed blocks (see ParallelGZIPOutputStream);
+ * the index then also records where each block starts. Such an index is
+ * written by the proxy as the file is saved. For an uncompressed file, the
+ * index can be rebuilt with one pass over it.
+ * <p/>
+ * The index is saved next to the match file, as match.rms.idx, and records
+ * the match file's length and modification time so that a stale one is
+ * ignored.
+ */
+public class MatchIndex {
+
+    /**
+     * What sort of object an entry is.
+     */
+    public enum Kind {
+        HEADER, ROUND, STATS, FOOTER, OTHER;
+
+        public static Kind of(Object o) {
+            if (o instanceof MatchHeader)
+                return HEADER;
+            if (o instanceof RoundDelta)
+                return ROUND;
+            if (o instanceof RoundStats)
+                return STATS;
+            if (o instanceof MatchFooter)
+                return FOOTER;
+            return OTHER;
+        }
+    }
+
+    // "RMSI"
+    private static final int MAGIC = 0x524d5349;
+    private static final int VERSION = 1;
+
+    private long[] offsets = new long[64];
+    private int[] anchors = new int[64];
+    private byte[] kinds = new byte[64];
+    private int count;
+
+    private long dataLength;
+    private int blockSize;
+    private long[] blockOffsets;
+
+    /**
+     * Creates an empty index, to be filled in with add() and finish().
+     */
+    public MatchIndex() {
+    }
+
+    /**
+     * Records the next object of the match.
+     *
+     * @param o      the object
+     * @param offset where the object starts in the serialized stream
+     * @param fresh  whether the handle table is empty when the object starts,
+     *               so that it can be decoded by itself
+     */
+    public void add(Object o, long offset, boolean fresh) {
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, 2 * count);
+            anchors = Arrays.copyOf(anchors, 2 * count);
+            kinds = Arrays.copyOf(kinds, 2 * count);
+        }
+        offsets[count] = offset;
+        anchors[count] = fresh || count == 0 ? count : anchors[count - 1];
+        kinds[count] = (byte) Kind.of(o).ordinal();
+        count++;
+    }
+
+    /**
+     * Records the end of the serialized stream and, for a compressed file,
+     * where its blocks start.
+     *
+     * @param dataLength   the length of the serialized stream
+     * @param blockSize    the number of uncompressed bytes per block, or 0 if
+     *                     the file is not compressed
+     * @param blockOffsets the file offset of each block, followed by the end
+     *                     of the last block, as given by
+     *                     ParallelGZIPOutputStream.getBlockOffsets()
+     */
+    public void finish(long dataLength, int blockSize, long[] blockOffsets) {
+        this.dataLength = dataLength;
+        this.blockSize = blockSize;
+        this.blockOffsets = blockSize == 0 ? new long[0] : blockOffsets.clone();
+    }
+
+    public int getObjectCount() {
+        return count;
+    }
+
+    public long getOffset(int i) {
+        return offsets[i];
+    }
+
+    /**
+     * Gets the offset just past object i.
+     */
+    public long getEnd(int i) {
+        return i + 1 < count ? offsets[i + 1] : dataLength;
+    }
+
+    /**
+     * Gets the object that decoding object i has to start from.
+     */
+    public int getAnchor(int i) {
+        return anchors[i];
+    }
+
+    public Kind getKind(int i) {
+        return Kind.values()[kinds[i]];
+    }
+
+    public long getDataLength() {
+        return dataLength;
+    }
+
+    public boolean isCompressed() {
+        return blockSize != 0;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public long[] getBlockOffsets() {
+        return blockOffsets.clone();
+    }
+
+    long getBlockOffset(int block) {
+        return blockOffsets[block];
+    }
+
+    /**
+     * Gets the file the index of the given match file is saved in.
+     */
+    public static File indexFileFor(File match) {
+        return new File(match.getPath() + ".idx");
+    }
+
+    /**
+     * Saves the index next to the match file it describes.
+     */
+    public void write(File match) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(indexFileFor(match))));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(match.length());
+            out.writeLong(match.lastModified());
+            out.writeLong(dataLength);
+            out.writeInt(blockSize);
+            out.writeInt(blockOffsets.length);
+            for (long offset : blockOffsets)
+                out.writeLong(offset);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(offsets[i]);
+                out.writeInt(anchors[i]);
+                out.writeByte(kinds[i]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Loads the saved index of a match file.
+     *
+     * @return the index, or null if there is none or it does not match the
+     *         file as it is now
+     */
+    public static MatchIndex read(File match) throws IOException {
+        File file = indexFileFor(match);
+        if (!file.isFile())
+            return null;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readLong() != match.length() || in.readLong() != match.lastModified())
+                return null;
+            MatchIndex index = new MatchIndex();
+            index.dataLength = in.readLong();
+            index.blockSize = in.readInt();
+            index.blockOffsets = new long[in.readInt()];
+            for (int i = 0; i < index.blockOffsets.length; i++)
+                index.blockOffsets[i] = in.readLong();
+            int count = in.readInt();
+            index.offsets = new long[Math.max(count, 1)];
+            index.anchors = new int[Math.max(count, 1)];
+            index.kinds = new byte[Math.max(count, 1)];
+            for (int i = 0; i < count; i++) {
+                index.offsets[i] = in.readLong();
+                index.anchors[i] = in.readInt();
+                index.kinds[i] = in.readByte();
+            }
+            index.count = count;
+            return index;
+        } catch (EOFException e) {
+            return null;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Builds the index of an uncompressed match file by reading it once.
+     *
+     * @throws IOException if the file cannot be read, or is not an
+     *                     uncompressed binary match file
+     */
+    public static MatchIndex build(File match) throws IOException {
+        ScanStream scan = new ScanStream(new BufferedInputStream(new FileInputStream(match)));
+        try {
+            scan.mark(2);
+            int first = scan.read();
+            scan.reset();
+            if (first == 0x1f)
+                throw new IOException(match + " is compressed, and was not indexed when it was saved");
+            if (first != (ObjectStreamConstants.STREAM_MAGIC >> 8 & 0xff))
+                throw new IOException(match + " is not a binary match file");
+
+            ObjectInputStream in = new ObjectInputStream(scan);
+            MatchIndex index = new MatchIndex();
+            while (true) {
+                long offset = scan.position;
+                scan.firstByte = -1;
+                Object o;
+                try {
+                    o = in.readObject();
+                } catch (EOFException e) {
+                    // the end, or an object cut short
+                    index.finish(offset, 0, null);
+                    return index;
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("cannot read " + match, e);
+                }
+                index.add(o, offset, scan.firstByte == ObjectStreamConstants.TC_RESET);
+            }
+        } finally {
+            scan.close();
+        }
+    }
+
+    /**
+     * Counts the bytes read through it, and remembers the first byte read
+     * after firstByte is cleared. ObjectInputStream does not read ahead of
+     * the object it is decoding, so between objects the count is exact.
+     */
+    private static class ScanStream extends FilterInputStream {
+        long position;
+        int firstByte = -1;
+        private long markedPosition;
+
+        ScanStream(InputStream in) {
+            super(in);
+        }
+
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                if (firstByte < 0)
+                    firstByte = b;
+                position++;
+            }
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                if (firstByte < 0)
+                    firstByte = b[off] & 0xff;
+                position += n;
+            }
+            return n;
+        }
+
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            position += skipped;
+            return skipped;
+        }
+
+        public void mark(int limit) {
+            super.mark(limit);
+            markedPosition = position;
+        }
+
+        public void reset() throws IOException {
+            super.reset();
+            position = markedPosition;
+        }
+    }
+}
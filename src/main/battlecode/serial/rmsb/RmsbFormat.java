@@ -0,0 +1,96 @@
+package battlecode.serial.rmsb;
+
+/**
+ * Constants shared by {@link RmsbWriter} and {@link RmsbReader}.
+ * <p/>
+ * An rmsb stream starts with the bytes "RMSB" and a version byte, followed
+ * by records.  Each record starts with a tag byte:
+ * <ul>
+ * <li>STRING: a modified-UTF-8 string, which gets the next string id.</li>
+ * <li>CLASS: a class name (string id) and kind, which gets the next class
+ * id.  Plain classes also list their fields as (declaring class name, field
+ * name, field type) so the reader never depends on field order.</li>
+ * <li>OBJECT: one top-level value, written as a tagged value.</li>
+ * </ul>
+ * Every string and class is defined before the first record that uses it.
+ * <p/>
+ * Integers are zig-zag varints, int and long arrays are delta coded, map
+ * locations are stored relative to the map origin of the current match,
+ * and doubles are stored as integers or floats when that is exact (or
+ * quantized to {@link #QUANTUM} if the writer was asked to).
+ */
+final class RmsbFormat {
+
+    static final byte[] MAGIC = {'R', 'M', 'S', 'B'};
+    static final int VERSION = 1;
+
+    // record tags
+    static final int REC_STRING = 1;
+    static final int REC_CLASS = 2;
+    static final int REC_OBJECT = 3;
+
+    // class kinds
+    static final int KIND_PLAIN = 0;
+    static final int KIND_ENUM = 1;
+    static final int KIND_ARRAY_COMPONENT = 2;
+
+    // field types
+    static final int F_BOOLEAN = 1;
+    static final int F_BYTE = 2;
+    static final int F_SHORT = 3;
+    static final int F_CHAR = 4;
+    static final int F_INT = 5;
+    static final int F_LONG = 6;
+    static final int F_FLOAT = 7;
+    static final int F_DOUBLE = 8;
+    static final int F_REF = 9;
+
+    // value tags
+    static final int V_NULL = 0;
+    static final int V_OBJECT = 1;
+    static final int V_ENUM = 2;
+    static final int V_STRING = 3;
+    static final int V_LOCATION = 4;
+    static final int V_INT = 5;
+    static final int V_LONG = 6;
+    static final int V_DOUBLE = 7;
+    static final int V_BOOLEAN = 8;
+    static final int V_INT_ARRAY = 9;
+    static final int V_LONG_ARRAY = 10;
+    static final int V_DOUBLE_ARRAY = 11;
+    static final int V_BOOLEAN_ARRAY = 12;
+    static final int V_BYTE_ARRAY = 13;
+    static final int V_OBJECT_ARRAY = 14;
+    static final int V_MAP = 15;
+    static final int V_LIST = 16;
+
+    // low two bits of an encoded double
+    static final int D_INTEGER = 0;
+    static final int D_FLOAT = 1;
+    static final int D_DOUBLE = 2;
+    static final int D_QUANTIZED = 3;
+
+    /**
+     * Resolution of quantized doubles.
+     */
+    static final double QUANTUM = 1.0 / 1024;
+
+    private RmsbFormat() {
+    }
+
+    static int zigZag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    static int unZigZag(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    static long zigZag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    static long unZigZag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+}
@@ -0,0 +1,377 @@
+package battlecode.serial.rmsb;
+
+import static battlecode.serial.rmsb.RmsbFormat.*;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import battlecode.common.MapLocation;
+import battlecode.serial.MatchHeader;
+import battlecode.world.GameMap;
+
+import com.thoughtworks.xstream.converters.reflection.ReflectionProvider;
+import com.thoughtworks.xstream.core.JVM;
+
+/**
+ * Reads an rmsb stream written by {@link RmsbWriter} one top-level object
+ * at a time, like an ObjectInputStream.  Objects are created without
+ * calling their constructors; readResolve is honored so singletons such as
+ * notifications stay singletons.
+ */
+public class RmsbReader implements Closeable {
+
+    private static final ReflectionProvider reflectionProvider = JVM.newReflectionProvider();
+
+    private final DataInputStream in;
+    private final ClassLoader loader;
+
+    private final List<String> strings = new ArrayList<String>();
+    private final List<ClassInfo> classes = new ArrayList<ClassInfo>();
+
+    private int originX, originY;
+
+    private static class ClassInfo {
+        final Class<?> cls;
+        final Field[] fields;
+        final int[] types;
+        final Object[] enumConstants;
+        final Method readResolve;
+
+        ClassInfo(Class<?> cls, Field[] fields, int[] types) {
+            this.cls = cls;
+            this.fields = fields;
+            this.types = types;
+            this.enumConstants = cls.getEnumConstants();
+            this.readResolve = findReadResolve(cls);
+        }
+    }
+
+    public RmsbReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in instanceof BufferedInputStream ? in : new BufferedInputStream(in));
+        this.loader = RmsbReader.class.getClassLoader();
+        byte[] magic = new byte[MAGIC.length];
+        this.in.readFully(magic);
+        for (int i = 0; i < magic.length; i++)
+            if (magic[i] != MAGIC[i])
+                throw new StreamCorruptedException("not an rmsb stream");
+        int version = this.in.read();
+        if (version != VERSION)
+            throw new StreamCorruptedException("unsupported rmsb version " + version);
+    }
+
+    /**
+     * Opens a match file for reading, gunzipping it if it is compressed.
+     */
+    public static InputStream openFile(File file) throws IOException {
+        InputStream stream = new BufferedInputStream(new FileInputStream(file));
+        stream.mark(2);
+        int b1 = stream.read();
+        int b2 = stream.read();
+        stream.reset();
+        if (b1 == (GZIPInputStream.GZIP_MAGIC & 0xFF) && b2 == (GZIPInputStream.GZIP_MAGIC >>> 8))
+            stream = new BufferedInputStream(new GZIPInputStream(stream, 65536));
+        return stream;
+    }
+
+    /**
+     * Reads the next top-level object.
+     *
+     * @throws EOFException at the end of the stream
+     */
+    public Object readObject() throws IOException {
+        while (true) {
+            int tag = in.read();
+            switch (tag) {
+                case -1:
+                    throw new EOFException();
+                case REC_STRING:
+                    strings.add(in.readUTF());
+                    break;
+                case REC_CLASS:
+                    readClass();
+                    break;
+                case REC_OBJECT:
+                    Object o = readValue();
+                    if (o instanceof MatchHeader && ((MatchHeader) o).getMap() instanceof GameMap) {
+                        MapLocation origin = ((GameMap) ((MatchHeader) o).getMap()).getMapOrigin();
+                        originX = origin.x;
+                        originY = origin.y;
+                    }
+                    return o;
+                default:
+                    throw new StreamCorruptedException("bad record tag " + tag);
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readClass() throws IOException {
+        Class<?> cls = loadClass(string(readVarInt()));
+        int kind = in.read();
+        if (kind != KIND_PLAIN) {
+            classes.add(new ClassInfo(cls, null, null));
+            return;
+        }
+        int n = readVarInt();
+        Field[] fields = new Field[n];
+        int[] types = new int[n];
+        for (int i = 0; i < n; i++) {
+            Class<?> declaring = loadClass(string(readVarInt()));
+            String name = string(readVarInt());
+            types[i] = in.read();
+            try {
+                fields[i] = declaring.getDeclaredField(name);
+                fields[i].setAccessible(true);
+            } catch (NoSuchFieldException e) {
+                // the class changed since the file was written; skip the value
+                fields[i] = null;
+            }
+        }
+        classes.add(new ClassInfo(cls, fields, types));
+    }
+
+    private Class<?> loadClass(String name) throws IOException {
+        try {
+            return Class.forName(name, false, loader);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("unknown class " + name, e);
+        }
+    }
+
+    private String string(int id) throws IOException {
+        if (id >= strings.size())
+            throw new StreamCorruptedException("undefined string " + id);
+        return strings.get(id);
+    }
+
+    private ClassInfo classInfo(int id) throws IOException {
+        if (id >= classes.size())
+            throw new StreamCorruptedException("undefined class " + id);
+        return classes.get(id);
+    }
+
+    private Object readValue() throws IOException {
+        int tag = in.read();
+        switch (tag) {
+            case V_NULL:
+                return null;
+            case V_STRING:
+                return string(readVarInt());
+            case V_LOCATION: {
+                int x = unZigZag(readVarInt()) + originX;
+                int y = unZigZag(readVarInt()) + originY;
+                return new MapLocation(x, y);
+            }
+            case V_ENUM: {
+                ClassInfo info = classInfo(readVarInt());
+                return info.enumConstants[readVarInt()];
+            }
+            case V_INT:
+                return unZigZag(readVarInt());
+            case V_LONG:
+                return unZigZag(readVarLong());
+            case V_DOUBLE:
+                return readDouble();
+            case V_BOOLEAN:
+                return in.read() != 0;
+            case V_INT_ARRAY: {
+                int[] a = new int[readVarInt()];
+                int prev = 0;
+                for (int i = 0; i < a.length; i++)
+                    a[i] = prev += unZigZag(readVarInt());
+                return a;
+            }
+            case V_LONG_ARRAY: {
+                long[] a = new long[readVarInt()];
+                long prev = 0;
+                for (int i = 0; i < a.length; i++)
+                    a[i] = prev += unZigZag(readVarLong());
+                return a;
+            }
+            case V_DOUBLE_ARRAY: {
+                double[] a = new double[readVarInt()];
+                for (int i = 0; i < a.length; i++)
+                    a[i] = readDouble();
+                return a;
+            }
+            case V_BOOLEAN_ARRAY: {
+                boolean[] a = new boolean[readVarInt()];
+                for (int i = 0; i < a.length; i += 8) {
+                    int bits = in.read();
+                    for (int j = 0; j < 8 && i + j < a.length; j++)
+                        a[i + j] = (bits & (1 << j)) != 0;
+                }
+                return a;
+            }
+            case V_BYTE_ARRAY: {
+                byte[] a = new byte[readVarInt()];
+                in.readFully(a);
+                return a;
+            }
+            case V_OBJECT_ARRAY: {
+                Class<?> component = classInfo(readVarInt()).cls;
+                Object[] a = (Object[]) Array.newInstance(component, readVarInt());
+                for (int i = 0; i < a.length; i++)
+                    a[i] = readValue();
+                return a;
+            }
+            case V_MAP: {
+                int n = readVarInt();
+                Map<Object, Object> m = new LinkedHashMap<Object, Object>();
+                for (int i = 0; i < n; i++) {
+                    Object key = readValue();
+                    m.put(key, readValue());
+                }
+                return m;
+            }
+            case V_LIST: {
+                int n = readVarInt();
+                List<Object> l = new ArrayList<Object>(n);
+                for (int i = 0; i < n; i++)
+                    l.add(readValue());
+                return l;
+            }
+            case V_OBJECT:
+                return readPlainObject(classInfo(readVarInt()));
+            case -1:
+                throw new EOFException();
+            default:
+                throw new StreamCorruptedException("bad value tag " + tag);
+        }
+    }
+
+    private Object readPlainObject(ClassInfo info) throws IOException {
+        if (info.fields == null)
+            throw new StreamCorruptedException(info.cls.getName() + " has no field layout");
+        Object o = reflectionProvider.newInstance(info.cls);
+        try {
+            for (int i = 0; i < info.fields.length; i++) {
+                Field f = info.fields[i];
+                switch (info.types[i]) {
+                    case F_BOOLEAN: {
+                        boolean v = in.read() != 0;
+                        if (f != null) f.setBoolean(o, v);
+                        break;
+                    }
+                    case F_BYTE: {
+                        byte v = in.readByte();
+                        if (f != null) f.setByte(o, v);
+                        break;
+                    }
+                    case F_SHORT: {
+                        short v = (short) unZigZag(readVarInt());
+                        if (f != null) f.setShort(o, v);
+                        break;
+                    }
+                    case F_CHAR: {
+                        char v = (char) readVarInt();
+                        if (f != null) f.setChar(o, v);
+                        break;
+                    }
+                    case F_INT: {
+                        int v = unZigZag(readVarInt());
+                        if (f != null) f.setInt(o, v);
+                        break;
+                    }
+                    case F_LONG: {
+                        long v = unZigZag(readVarLong());
+                        if (f != null) f.setLong(o, v);
+                        break;
+                    }
+                    case F_FLOAT: {
+                        float v = Float.intBitsToFloat(readVarInt());
+                        if (f != null) f.setFloat(o, v);
+                        break;
+                    }
+                    case F_DOUBLE: {
+                        double v = readDouble();
+                        if (f != null) f.setDouble(o, v);
+                        break;
+                    }
+                    default: {
+                        Object v = readValue();
+                        if (f != null) f.set(o, v);
+                    }
+                }
+            }
+            if (info.readResolve != null)
+                o = info.readResolve.invoke(o);
+        } catch (Exception e) {
+            if (e instanceof IOException)
+                throw (IOException) e;
+            throw new IOException("couldn't rebuild " + info.cls.getName(), e);
+        }
+        return o;
+    }
+
+    private static Method findReadResolve(Class<?> cls) {
+        for (Class<?> c = cls; c != null; c = c.getSuperclass()) {
+            try {
+                Method m = c.getDeclaredMethod("readResolve");
+                m.setAccessible(true);
+                return m;
+            } catch (NoSuchMethodException e) {
+                // keep looking in the superclass
+            }
+        }
+        return null;
+    }
+
+    private double readDouble() throws IOException {
+        long n = readVarLong();
+        switch ((int) (n & 3)) {
+            case D_INTEGER:
+                return unZigZag(n >>> 2);
+            case D_QUANTIZED:
+                return unZigZag(n >>> 2) * QUANTUM;
+            case D_FLOAT:
+                return Float.intBitsToFloat(in.readInt());
+            default:
+                return Double.longBitsToDouble(in.readLong());
+        }
+    }
+
+    private int readVarInt() throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0)
+                throw new EOFException();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return result;
+        }
+        throw new StreamCorruptedException("malformed varint");
+    }
+
+    private long readVarLong() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.read();
+            if (b < 0)
+                throw new EOFException();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return result;
+        }
+        throw new StreamCorruptedException("malformed varint");
+    }
+}
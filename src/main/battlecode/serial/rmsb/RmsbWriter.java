@@ -0,0 +1,475 @@
+package battlecode.serial.rmsb;
+
+import static battlecode.serial.rmsb.RmsbFormat.*;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UTFDataFormatException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import battlecode.common.MapLocation;
+import battlecode.engine.signal.Signal;
+import battlecode.serial.MatchHeader;
+import battlecode.world.GameMap;
+
+/**
+ * Writes match objects (headers, rounds, stats, footers and whatever else
+ * a Proxy is handed) in the compact rmsb format described in
+ * {@link RmsbFormat}.  Objects are encoded field by field, so any
+ * Serializable class made of primitives, strings, enums, arrays, maps,
+ * lists and other such classes can be written without a custom codec.
+ * Custom writeObject methods are not called.
+ */
+public class RmsbWriter implements Closeable, Flushable {
+
+    private final OutputStream out;
+    private final boolean quantize;
+
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+    private final Map<Class<?>, ClassInfo> classes = new HashMap<Class<?>, ClassInfo>();
+
+    // the objects, arrays, maps and lists being encoded, to catch cycles
+    private final Set<Object> encoding = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+    // definitions introduced by the object being encoded, and the object itself
+    private final Buffer defs = new Buffer();
+    private final Buffer body = new Buffer();
+
+    private int originX, originY;
+
+    private static class ClassInfo {
+        final int id;
+        final Field[] fields;
+        final int[] types;
+
+        ClassInfo(int id, Field[] fields, int[] types) {
+            this.id = id;
+            this.fields = fields;
+            this.types = types;
+        }
+    }
+
+    /**
+     * @param out      where to write the stream
+     * @param quantize whether doubles inside signals may be rounded to
+     *                 multiples of 1/1024 (health, supply, delays...)
+     */
+    public RmsbWriter(OutputStream out, boolean quantize) throws IOException {
+        this.out = out;
+        this.quantize = quantize;
+        out.write(MAGIC);
+        out.write(VERSION);
+    }
+
+    public RmsbWriter(OutputStream out) throws IOException {
+        this(out, false);
+    }
+
+    /**
+     * Writes one top-level object.
+     *
+     * @param o the object to write
+     * @throws NotSerializableException if o contains something rmsb can't
+     *                                  encode, or refers to itself; nothing
+     *                                  is written, and the writer can go on
+     *                                  with the next object
+     */
+    public void writeObject(Object o) throws IOException {
+        defs.reset();
+        body.reset();
+        body.write(REC_OBJECT);
+        // the strings and classes o introduces are only defined if it is written
+        int stringCount = strings.size();
+        int classCount = classes.size();
+        boolean encoded = false;
+        try {
+            writeValue(body, o, false);
+            encoded = true;
+        } finally {
+            if (!encoded) {
+                forget(strings.values().iterator(), stringCount);
+                for (Iterator<ClassInfo> i = classes.values().iterator(); i.hasNext(); ) {
+                    if (i.next().id >= classCount)
+                        i.remove();
+                }
+                encoding.clear();
+            }
+        }
+        defs.writeTo(out);
+        body.writeTo(out);
+
+        // locations in later rounds are relative to this match's map
+        if (o instanceof MatchHeader && ((MatchHeader) o).getMap() instanceof GameMap) {
+            MapLocation origin = ((GameMap) ((MatchHeader) o).getMap()).getMapOrigin();
+            originX = origin.x;
+            originY = origin.y;
+        }
+    }
+
+    private static void forget(Iterator<Integer> ids, int count) {
+        while (ids.hasNext()) {
+            if (ids.next() >= count)
+                ids.remove();
+        }
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeValue(Buffer b, Object o, boolean inSignal) throws IOException {
+        if (o == null) {
+            b.write(V_NULL);
+        } else if (o instanceof String) {
+            b.write(V_STRING);
+            b.writeVarInt(stringId((String) o));
+        } else if (o instanceof MapLocation) {
+            MapLocation loc = (MapLocation) o;
+            b.write(V_LOCATION);
+            b.writeVarInt(zigZag(loc.x - originX));
+            b.writeVarInt(zigZag(loc.y - originY));
+        } else if (o instanceof Enum) {
+            b.write(V_ENUM);
+            b.writeVarInt(classInfo(((Enum<?>) o).getDeclaringClass()).id);
+            b.writeVarInt(((Enum<?>) o).ordinal());
+        } else if (o instanceof Integer) {
+            b.write(V_INT);
+            b.writeVarInt(zigZag((Integer) o));
+        } else if (o instanceof Long) {
+            b.write(V_LONG);
+            b.writeVarLong(zigZag((Long) o));
+        } else if (o instanceof Double) {
+            b.write(V_DOUBLE);
+            writeDouble(b, (Double) o, inSignal);
+        } else if (o instanceof Boolean) {
+            b.write(V_BOOLEAN);
+            b.write((Boolean) o ? 1 : 0);
+        } else if (o instanceof int[]) {
+            int[] a = (int[]) o;
+            b.write(V_INT_ARRAY);
+            b.writeVarInt(a.length);
+            int prev = 0;
+            for (int i = 0; i < a.length; i++) {
+                b.writeVarInt(zigZag(a[i] - prev));
+                prev = a[i];
+            }
+        } else if (o instanceof long[]) {
+            long[] a = (long[]) o;
+            b.write(V_LONG_ARRAY);
+            b.writeVarInt(a.length);
+            long prev = 0;
+            for (int i = 0; i < a.length; i++) {
+                b.writeVarLong(zigZag(a[i] - prev));
+                prev = a[i];
+            }
+        } else if (o instanceof double[]) {
+            double[] a = (double[]) o;
+            b.write(V_DOUBLE_ARRAY);
+            b.writeVarInt(a.length);
+            for (int i = 0; i < a.length; i++)
+                writeDouble(b, a[i], inSignal);
+        } else if (o instanceof boolean[]) {
+            boolean[] a = (boolean[]) o;
+            b.write(V_BOOLEAN_ARRAY);
+            b.writeVarInt(a.length);
+            for (int i = 0; i < a.length; i += 8) {
+                int bits = 0;
+                for (int j = 0; j < 8 && i + j < a.length; j++)
+                    if (a[i + j])
+                        bits |= 1 << j;
+                b.write(bits);
+            }
+        } else if (o instanceof byte[]) {
+            byte[] a = (byte[]) o;
+            b.write(V_BYTE_ARRAY);
+            b.writeVarInt(a.length);
+            b.write(a, 0, a.length);
+        } else {
+            // the rest can contain themselves, which rmsb has no way to say
+            if (!encoding.add(o))
+                throw new NotSerializableException(o.getClass().getName() + " refers to itself");
+            writeComposite(b, o, inSignal);
+            encoding.remove(o);
+        }
+    }
+
+    private void writeComposite(Buffer b, Object o, boolean inSignal) throws IOException {
+        if (o instanceof Object[]) {
+            Object[] a = (Object[]) o;
+            b.write(V_OBJECT_ARRAY);
+            b.writeVarInt(classInfo(a.getClass().getComponentType()).id);
+            b.writeVarInt(a.length);
+            for (int i = 0; i < a.length; i++)
+                writeValue(b, a[i], inSignal);
+        } else if (o instanceof Map) {
+            Map<?, ?> m = (Map<?, ?>) o;
+            b.write(V_MAP);
+            b.writeVarInt(m.size());
+            for (Map.Entry<?, ?> e : m.entrySet()) {
+                writeValue(b, e.getKey(), inSignal);
+                writeValue(b, e.getValue(), inSignal);
+            }
+        } else if (o instanceof List) {
+            List<?> l = (List<?>) o;
+            b.write(V_LIST);
+            b.writeVarInt(l.size());
+            for (Object e : l)
+                writeValue(b, e, inSignal);
+        } else {
+            ClassInfo info = classInfo(o.getClass());
+            if (info.fields == null)
+                throw new NotSerializableException(o.getClass().getName());
+            inSignal |= o instanceof Signal;
+            b.write(V_OBJECT);
+            b.writeVarInt(info.id);
+            try {
+                for (int i = 0; i < info.fields.length; i++)
+                    writeField(b, o, info.fields[i], info.types[i], inSignal);
+            } catch (IllegalAccessException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private void writeField(Buffer b, Object o, Field f, int type, boolean inSignal) throws IOException, IllegalAccessException {
+        switch (type) {
+            case F_BOOLEAN:
+                b.write(f.getBoolean(o) ? 1 : 0);
+                break;
+            case F_BYTE:
+                b.write(f.getByte(o));
+                break;
+            case F_SHORT:
+                b.writeVarInt(zigZag((int) f.getShort(o)));
+                break;
+            case F_CHAR:
+                b.writeVarInt(f.getChar(o));
+                break;
+            case F_INT:
+                b.writeVarInt(zigZag(f.getInt(o)));
+                break;
+            case F_LONG:
+                b.writeVarLong(zigZag(f.getLong(o)));
+                break;
+            case F_FLOAT:
+                b.writeVarInt(Float.floatToRawIntBits(f.getFloat(o)));
+                break;
+            case F_DOUBLE:
+                writeDouble(b, f.getDouble(o), inSignal);
+                break;
+            default:
+                writeValue(b, f.get(o), inSignal);
+        }
+    }
+
+    private void writeDouble(Buffer b, double v, boolean inSignal) {
+        long l = (long) v;
+        if (l == v && l > -(1L << 52) && l < (1L << 52)
+                && (l != 0 || Double.doubleToRawLongBits(v) == 0L)) {
+            b.writeVarLong(zigZag(l) << 2 | D_INTEGER);
+        } else if (quantize && inSignal && Math.abs(v) < (1L << 40)) {
+            b.writeVarLong(zigZag(Math.round(v / QUANTUM)) << 2 | D_QUANTIZED);
+        } else if ((double) (float) v == v) {
+            b.write(D_FLOAT);
+            b.writeInt(Float.floatToRawIntBits((float) v));
+        } else {
+            b.write(D_DOUBLE);
+            b.writeLong(Double.doubleToRawLongBits(v));
+        }
+    }
+
+    private int stringId(String s) throws IOException {
+        Integer id = strings.get(s);
+        if (id == null) {
+            id = strings.size();
+            strings.put(s, id);
+            defs.write(REC_STRING);
+            defs.writeUTF(s);
+        }
+        return id;
+    }
+
+    private ClassInfo classInfo(Class<?> cls) throws IOException {
+        ClassInfo info = classes.get(cls);
+        if (info != null)
+            return info;
+
+        int nameId = stringId(cls.getName());
+        if (cls.isEnum()) {
+            info = new ClassInfo(classes.size(), null, null);
+            defs.write(REC_CLASS);
+            defs.writeVarInt(nameId);
+            defs.write(KIND_ENUM);
+        } else if (!Serializable.class.isAssignableFrom(cls) || cls.isInterface() || cls.isArray()
+                || cls.getName().startsWith("java.")) {
+            // only usable as an array component type
+            info = new ClassInfo(classes.size(), null, null);
+            defs.write(REC_CLASS);
+            defs.writeVarInt(nameId);
+            defs.write(KIND_ARRAY_COMPONENT);
+        } else {
+            List<Field> fields = new ArrayList<Field>();
+            List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+            for (Class<?> c = cls; c != null && c != Object.class; c = c.getSuperclass())
+                hierarchy.add(0, c);
+            for (Class<?> c : hierarchy) {
+                Field[] declared = c.getDeclaredFields();
+                Arrays.sort(declared, new java.util.Comparator<Field>() {
+                    public int compare(Field f1, Field f2) {
+                        return f1.getName().compareTo(f2.getName());
+                    }
+                });
+                for (Field f : declared) {
+                    int mod = f.getModifiers();
+                    if (Modifier.isStatic(mod) || Modifier.isTransient(mod))
+                        continue;
+                    f.setAccessible(true);
+                    fields.add(f);
+                }
+            }
+            int[] types = new int[fields.size()];
+            for (int i = 0; i < types.length; i++)
+                types[i] = fieldType(fields.get(i).getType());
+
+            // names first, so the class record only refers to defined strings
+            int[] declaringIds = new int[types.length];
+            int[] nameIds = new int[types.length];
+            for (int i = 0; i < types.length; i++) {
+                declaringIds[i] = stringId(fields.get(i).getDeclaringClass().getName());
+                nameIds[i] = stringId(fields.get(i).getName());
+            }
+            info = new ClassInfo(classes.size(), fields.toArray(new Field[fields.size()]), types);
+            defs.write(REC_CLASS);
+            defs.writeVarInt(nameId);
+            defs.write(KIND_PLAIN);
+            defs.writeVarInt(types.length);
+            for (int i = 0; i < types.length; i++) {
+                defs.writeVarInt(declaringIds[i]);
+                defs.writeVarInt(nameIds[i]);
+                defs.write(types[i]);
+            }
+        }
+        classes.put(cls, info);
+        return info;
+    }
+
+    private static int fieldType(Class<?> type) {
+        if (type == boolean.class) return F_BOOLEAN;
+        if (type == byte.class) return F_BYTE;
+        if (type == short.class) return F_SHORT;
+        if (type == char.class) return F_CHAR;
+        if (type == int.class) return F_INT;
+        if (type == long.class) return F_LONG;
+        if (type == float.class) return F_FLOAT;
+        if (type == double.class) return F_DOUBLE;
+        return F_REF;
+    }
+
+    /**
+     * A growable byte array with the encodings rmsb uses.
+     */
+    private static class Buffer {
+        private byte[] bytes = new byte[1024];
+        private int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        private void ensure(int n) {
+            if (size + n > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + n));
+        }
+
+        void write(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void write(byte[] b, int off, int len) {
+            ensure(len);
+            System.arraycopy(b, off, bytes, size, len);
+            size += len;
+        }
+
+        void writeVarInt(int v) {
+            ensure(5);
+            while ((v & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[size++] = (byte) v;
+        }
+
+        void writeVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[size++] = (byte) v;
+        }
+
+        void writeInt(int v) {
+            ensure(4);
+            bytes[size++] = (byte) (v >>> 24);
+            bytes[size++] = (byte) (v >>> 16);
+            bytes[size++] = (byte) (v >>> 8);
+            bytes[size++] = (byte) v;
+        }
+
+        void writeLong(long v) {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        // same encoding as DataOutput.writeUTF
+        void writeUTF(String s) throws UTFDataFormatException {
+            int len = 0;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                len += (c >= 0x0001 && c <= 0x007F) ? 1 : (c > 0x07FF ? 3 : 2);
+            }
+            if (len > 65535)
+                throw new UTFDataFormatException("string too long: " + len + " bytes");
+            ensure(2 + len);
+            bytes[size++] = (byte) (len >>> 8);
+            bytes[size++] = (byte) len;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c >= 0x0001 && c <= 0x007F) {
+                    bytes[size++] = (byte) c;
+                } else if (c > 0x07FF) {
+                    bytes[size++] = (byte) (0xE0 | ((c >> 12) & 0x0F));
+                    bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3F));
+                } else {
+                    bytes[size++] = (byte) (0xC0 | ((c >> 6) & 0x1F));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+        }
+    }
+}
@@ -39,6 +39,26 @@ public class Config {
         defaults.setProperty("bc.server.throttle", "yield");
         defaults.setProperty("bc.server.throttle-count", "15");
         defaults.setProperty("bc.server.output-xml", "true");
+        defaults.setProperty("bc.server.streaming-xml", "true");
+        defaults.setProperty("bc.server.output-rmsb", "false");
+        defaults.setProperty("bc.server.rmsb-quantize", "false");
+        defaults.setProperty("bc.server.compact-serial", "false");
+        defaults.setProperty("bc.server.reset-interval", "256");
+        defaults.setProperty("bc.server.index-match", "false");
+        defaults.setProperty("bc.server.save-buffered", "false");
+        defaults.setProperty("bc.server.save-buffer-limit", "16777216");
+        defaults.setProperty("bc.server.spectator-port", "0");
+        defaults.setProperty("bc.server.spectator-buffer-limit", "4194304");
+        defaults.setProperty("bc.server.downsample-rounds", "1");
+        defaults.setProperty("bc.server.result-cache", "");
+        defaults.setProperty("bc.server.result-cache-matches", "true");
+        defaults.setProperty("bc.server.result-cache-verify", "0");
+        defaults.setProperty("bc.server.async-io", "true");
+        defaults.setProperty("bc.server.io-policy", "block");
+        defaults.setProperty("bc.server.io-queue-size", "64");
+        defaults.setProperty("bc.server.compress-level", "6");
+        defaults.setProperty("bc.server.compress-block-size", "131072");
+        defaults.setProperty("bc.server.compress-threads", "0");
 
         defaults.setProperty("bc.engine.debug-methods", "true");
         defaults.setProperty("bc.engine.debug-max-bytecodes", "64000");
@@ -49,8 +69,15 @@ public class Config {
         defaults.setProperty("bc.engine.upkeep", "true");
         defaults.setProperty("bc.engine.breakpoints", "false");
         defaults.setProperty("bc.engine.bytecodes-used", "true");
+        defaults.setProperty("bc.engine.signal-format", "1");
         defaults.setProperty("bc.engine.lazy-instrumenter", "false");
         defaults.setProperty("bc.engine.fast-hash", "false");
+        defaults.setProperty("bc.engine.state-digest", "false");
+        defaults.setProperty("bc.engine.metrics", "false");
+        defaults.setProperty("bc.engine.metrics-csv", "");
+        defaults.setProperty("bc.engine.trace", "off");
+        defaults.setProperty("bc.engine.trace-buffer", "1048576");
+        defaults.setProperty("bc.engine.trace-dir", "traces");
 
         defaults.setProperty("bc.client.opengl", "false");
         defaults.setProperty("bc.client.use-models", "true");
@@ -67,6 +94,7 @@ public class Config {
         defaults.setProperty("bc.game.team-b", "team000");
         defaults.setProperty("bc.game.maps", "glass");
         defaults.setProperty("bc.game.map-path", "maps");
+        defaults.setProperty("bc.game.map-cache", "false");
         defaults.setProperty("bc.game.state", "0,0");
 
 
@@ -203,6 +231,13 @@ public class Config {
         this.properties.setProperty(key, value);
     }
 
+    /**
+     * Gets the names of all options, defaults included.
+     */
+    public Enumeration<?> propertyNames() {
+        return this.properties.propertyNames();
+    }
+
     /**
      * Gets a configuration value (as an integer).
      */
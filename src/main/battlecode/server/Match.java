@@ -3,9 +3,11 @@ package battlecode.server;
 import battlecode.common.GameConstants;
 import battlecode.common.Team;
 import battlecode.engine.Engine;
+import battlecode.engine.EngineMetrics;
 import battlecode.engine.GameState;
 import battlecode.engine.GameWorldViewer;
 import battlecode.engine.signal.Signal;
+import battlecode.engine.trace.Tracer;
 import battlecode.serial.*;
 
 import java.util.Observable;
@@ -55,6 +57,24 @@ public class Match extends Observable {
 
     private long[][] computedTeamMemory = null;
 
+    /**
+     * The engine's metrics, or null if bc.engine.metrics is not set.
+     */
+    private EngineMetrics metrics = null;
+
+    /**
+     * The match's tracer, or null if bc.engine.trace is not set.
+     */
+    private Tracer tracer = null;
+
+    /**
+     * The outcome of the match, if it was not played but taken from the
+     * result cache.
+     */
+    private GenericGameMap cachedMap = null;
+    private GameStats cachedGameStats = null;
+    private MatchFooter cachedFooter = null;
+
     /**
      * Creates a new match with the given parameters and options.
      *
@@ -95,6 +115,24 @@ public class Match extends Observable {
         // Get the viewer from the engine.
         this.gameWorldViewer = engine.getGameWorldViewer();
         assert this.gameWorldViewer != null;
+
+        this.metrics = engine.getMetrics();
+        this.tracer = Tracer.get();
+    }
+
+    /**
+     * Settles the match without playing it: the header, stats, footer and
+     * winner are those given, and the computed team memory is the footer's.
+     */
+    public void setCachedResult(GenericGameMap map, GameStats gameStats, MatchFooter footer) {
+        this.cachedMap = map;
+        this.cachedGameStats = gameStats;
+        this.cachedFooter = footer;
+        this.computedTeamMemory = footer.getState();
+    }
+
+    public boolean isCached() {
+        return cachedFooter != null;
     }
 
     /**
@@ -145,8 +183,20 @@ public class Match extends Observable {
             return null;
 
         // Serialize the newly modified GameWorld.
-        return new RoundDelta(
-                gameWorldViewer.getAllSignals(this.bytecodesUsedEnabled));
+        if (metrics == null && tracer == null)
+            return new RoundDelta(
+                    gameWorldViewer.getAllSignals(this.bytecodesUsedEnabled));
+
+        Object span = tracer == null ? null : tracer.beginPhase();
+        long start = System.nanoTime();
+        Signal[] signals = gameWorldViewer.getAllSignals(this.bytecodesUsedEnabled);
+        long collected = System.nanoTime();
+        RoundDelta delta = new RoundDelta(signals);
+        if (metrics != null)
+            metrics.matchRound(delta.getSignals(), collected - start, System.nanoTime() - collected);
+        if (tracer != null)
+            tracer.endPhase(span, "signals", Engine.getRoundNum(), delta.getSignals().length);
+        return delta;
     }
 
     /**
@@ -164,6 +214,8 @@ public class Match extends Observable {
      * @return game stats from the engine
      */
     public GameStats getGameStats() {
+        if (cachedGameStats != null)
+            return cachedGameStats;
         return gameWorldViewer.getGameStats();
     }
 
@@ -173,7 +225,7 @@ public class Match extends Observable {
      * @return this match's header
      */
     public MatchHeader getHeader() {
-        return new MatchHeader(gameWorldViewer.getGameMap(), state, number,
+        return new MatchHeader(cachedMap != null ? cachedMap : gameWorldViewer.getGameMap(), state, number,
                 count);
     }
 
@@ -188,6 +240,10 @@ public class Match extends Observable {
         ex.put("team-a", info.getTeamA());
         ex.put("team-b", info.getTeamB());
         ex.put("maps", info.getMaps());
+        // absent for the full format, which older readers expect
+        String signalFormat = options.get("bc.engine.signal-format");
+        if (!"1".equals(signalFormat))
+            ex.put("signal-format", signalFormat);
         return ex;
     }
 
@@ -197,6 +253,8 @@ public class Match extends Observable {
      * @return this match's footer
      */
     public MatchFooter getFooter() {
+        if (cachedFooter != null)
+            return cachedFooter;
         return new MatchFooter(gameWorldViewer.getWinner(),
                 getComputedTeamMemory());
     }
@@ -208,6 +266,8 @@ public class Match extends Observable {
      *         finished
      */
     public Team getWinner() {
+        if (cachedFooter != null)
+            return cachedFooter.getWinner();
         if (hasMoreRounds())
             return null;
         return gameWorldViewer.getWinner();
@@ -251,7 +311,7 @@ public class Match extends Observable {
         sb.append(" wins (round " + getRoundNumber() + ")");
 
         sb.append("\nReason: ");
-        GameStats stats = gameWorldViewer.getGameStats();
+        GameStats stats = getGameStats();
         DominationFactor dom = stats.getDominationFactor();
         double[] points = stats.getTotalPoints();
         double[] energon = stats.getTotalEnergon();
@@ -300,11 +360,26 @@ public class Match extends Observable {
      * Cleans up the match so that its resources can be garbage collected.
      */
     public void finish() {
-        this.computedTeamMemory = this.engine.getTeamMemory();
+        if (this.engine != null)
+            this.computedTeamMemory = this.engine.getTeamMemory();
+        if (this.metrics != null)
+            this.metrics.close();
+        this.metrics = null;
+        if (this.tracer != null)
+            Tracer.finish();
+        this.tracer = null;
         this.gameWorldViewer = null;
         this.engine = null;
     }
 
+    public MatchInfo getInfo() {
+        return info;
+    }
+
+    public String getMap() {
+        return map;
+    }
+
     @Override
     public String toString() {
         String teams = String.format("%s vs. %s on %s", info.getTeamA(), info
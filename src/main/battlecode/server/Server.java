@@ -4,12 +4,18 @@ import battlecode.common.Team;
 import battlecode.engine.ErrorReporter;
 import battlecode.engine.GameState;
 import battlecode.engine.signal.Signal;
+import battlecode.engine.trace.Tracer;
 import battlecode.serial.*;
 import battlecode.serial.notification.*;
+import battlecode.server.cache.MatchCache;
 import battlecode.server.controller.Controller;
+import battlecode.server.proxy.AsyncProxy;
 import battlecode.server.proxy.Proxy;
+import battlecode.server.proxy.ProxyFactory;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.*;
 
 /**
@@ -64,6 +70,11 @@ public class Server implements Observer, Runnable {
      */
     private Mode mode;
 
+    /**
+     * Results of matches played before, or null to play every match.
+     */
+    private final MatchCache cache;
+
     /**
      * The server's mode affects how notifications are handled, whether or not
      * an RPC server is set up, and which controllers are chosen for server
@@ -88,10 +99,15 @@ public class Server implements Observer, Runnable {
         this.mode = mode;
         this.controller = controller;
         this.proxies = new LinkedList<Proxy>();
-        for (Proxy proxy : proxies)
+        for (Proxy proxy : proxies) {
+            // keep slow sinks from stalling the engine thread
+            if (options.getBoolean("bc.server.async-io"))
+                proxy = ProxyFactory.createAsyncProxy(proxy);
             this.proxies.add(proxy);
+        }
 
         this.options = options;
+        this.cache = MatchCache.fromConfig(options);
         this.state = State.NOT_READY;
         this.nHandler = new ServerNotificationHandler();
     }
@@ -227,8 +243,7 @@ public class Server implements Observer, Runnable {
 
             try {
                 debug("running match " + match);
-                match.initialize();
-                runMatch(match);
+                runOrReplayMatch(match);
                 finished.add(match);
                 matches.remove(match);
 
@@ -259,8 +274,13 @@ public class Server implements Observer, Runnable {
             } catch (IOException e) {
                 e.printStackTrace();
             }
+            if (p instanceof AsyncProxy)
+                debug("closed proxy " + p);
         }
 
+        if (cache != null)
+            say(cache.toString());
+
         // Let the controller clean up.
         try {
             controller.finish();
@@ -292,10 +312,14 @@ public class Server implements Observer, Runnable {
 
         public void run() {
             if (round != null) {
+                Tracer tracer = Tracer.get();
                 try {
                     for (Proxy p : proxies) {
+                        Object span = tracer == null ? null : tracer.beginProxyWrite();
                         p.writeRound(round);
                         p.writeStats(stats);
+                        if (tracer != null)
+                            tracer.endProxyWrite(span, p.getClass().getSimpleName(), "round");
                     }
                 } catch (IOException e) {
                     ErrorReporter.report(e, false);
@@ -306,11 +330,127 @@ public class Server implements Observer, Runnable {
         }
     }
 
+    /**
+     * Replays a match from the result cache if it has been played before, or
+     * else runs it (and stores it in the cache). A sample of cached matches
+     * is run again to check that they still come out the same.
+     */
+    private void runOrReplayMatch(Match match) throws Exception {
+        String key = null;
+        MatchCache.Entry cached = null;
+        if (cache != null) {
+            MatchInfo info = match.getInfo();
+            key = cache.keyFor(info.getTeamA(), info.getTeamB(), match.getMap(),
+                    match.getInitialTeamMemory(), options);
+            if (key == null)
+                debug("not caching " + match.getMap() + ": a team or the map wasn't found");
+            else
+                cached = cache.get(key);
+        }
+        boolean verify = cached != null && cache.shouldVerify();
+        if (cached != null && !verify) {
+            match.setCachedResult(cached.getHeader().getMap(), cached.getGameStats(), cached.getFooter());
+            replayMatch(match, cached);
+            return;
+        }
+
+        match.initialize();
+        Proxy recorder = key == null ? null : cache.record(key);
+        if (recorder != null) {
+            if (options.getBoolean("bc.server.async-io"))
+                recorder = ProxyFactory.createAsyncProxy(recorder);
+            recorder.open();
+            proxies.add(recorder);
+        }
+        int rounds;
+        try {
+            rounds = runMatch(match);
+        } finally {
+            if (recorder != null) {
+                proxies.remove(recorder);
+                recorder.close();
+            }
+        }
+
+        if (key != null) {
+            GameStats gameStats = match.getGameStats();
+            MatchFooter footer = match.getFooter();
+            if (verify) {
+                if (cache.verify(cached, gameStats, footer, rounds))
+                    debug("cached result for " + match.getMap() + " verified");
+                else
+                    warn("cached result for " + match.getMap() + " differs from playing it again; replacing it");
+            }
+            cache.put(key, match.getHeader(), gameStats, footer, rounds);
+        }
+    }
+
+    /**
+     * Sends a match from the result cache to the proxies. If only its result
+     * was cached, the proxies get no rounds, and the header metadata has the
+     * number of rounds played as "cached-rounds".
+     */
+    private void replayMatch(Match match, MatchCache.Entry cached) throws Exception {
+        say("-------------------- Match Starting --------------------");
+        say(match.toString());
+
+        MatchHeader header = match.getHeader();
+        ExtensibleMetadata exHeader = match.getHeaderMetadata();
+        ObjectInputStream in = cached.openMatch();
+        if (in == null) {
+            exHeader.put("cached-rounds", cached.getRounds());
+            for (Proxy p : proxies) {
+                p.writeHeader(header);
+                p.writeObject(exHeader);
+                p.writeObject(match.getGameStats());
+                p.writeFooter(match.getFooter());
+            }
+        } else {
+            try {
+                while (true) {
+                    Object o;
+                    try {
+                        o = in.readObject();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    // the match number and count are this set's
+                    if (o instanceof MatchHeader)
+                        o = header;
+                    else if (o instanceof ExtensibleMetadata
+                            && "header".equals(((ExtensibleMetadata) o).get("type", null)))
+                        o = exHeader;
+                    for (Proxy p : proxies) {
+                        if (o instanceof RoundDelta)
+                            p.writeRound((RoundDelta) o);
+                        else if (o instanceof RoundStats)
+                            p.writeStats((RoundStats) o);
+                        else if (o instanceof MatchHeader)
+                            p.writeHeader((MatchHeader) o);
+                        else if (o instanceof MatchFooter)
+                            p.writeFooter((MatchFooter) o);
+                        else
+                            p.writeObject(o);
+                    }
+                }
+            } finally {
+                in.close();
+            }
+        }
+
+        say(String.format("%s wins (%s, %d rounds, from the result cache)", match.getWinner(),
+                match.getGameStats().getDominationFactor(), cached.getRounds()));
+        say("-------------------- Match Finished --------------------");
+        this.state = State.FINISHED;
+    }
+
     /**
      * Runs a match; configures the controller and list of proxies, and starts
      * running the game in a separate thread.
+     *
+     * @return the number of rounds played
      */
-    private void runMatch(Match match) throws Exception {
+    private int runMatch(Match match) throws Exception {
 
         if (Mode.HEADLESS.equals(mode) || Mode.SCRIMMAGE.equals(mode)
                 || Mode.TOURNAMENT.equals(mode) || Mode.TESTS.equals(mode)
@@ -346,6 +486,7 @@ public class Server implements Observer, Runnable {
         this.state = State.RUNNING;
 
         int count = 0;
+        int rounds = 0;
 
         final String throttle = options.get("bc.server.throttle");
         final int throttleCount = options.getInt("bc.server.throttle-count");
@@ -370,6 +511,7 @@ public class Server implements Observer, Runnable {
                     callback.round = match.getRound();
                     if (callback.round == null)
                         break;
+                    rounds++;
 
                     if (count++ == throttleCount) {
                         if (doYield)
@@ -409,6 +551,7 @@ public class Server implements Observer, Runnable {
         }
 
         this.state = State.FINISHED;
+        return rounds;
     }
 
     public State getState() {
@@ -4,10 +4,12 @@ import battlecode.server.controller.Controller;
 import battlecode.server.controller.ControllerFactory;
 import battlecode.server.proxy.Proxy;
 import battlecode.server.proxy.ProxyFactory;
+import battlecode.server.proxy.SpectatorProxy;
 
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -23,6 +25,7 @@ public class ServerFactory {
             proxies.add(ProxyFactory.createProxyFromFile(saveFile));
 
         proxies.add(proxy);
+        addSpectatorProxy(options, proxies);
 
         Server server = new Server(options, Server.Mode.LOCAL, controller,
                 proxies.toArray(new Proxy[0]));
@@ -32,17 +35,20 @@ public class ServerFactory {
         return server;
     }
 
-    public static Server createHeadlessServer(Config options, String saveFile)
-            throws IOException {
+    public static Server createHeadlessServer(Config options, String saveFile,
+                                             Proxy... extraProxies) throws IOException {
 
         Controller controller = ControllerFactory
                 .createHeadlessController(options);
 
-        Proxy[] proxies = new Proxy[]{ProxyFactory
-                .createProxyFromFile(saveFile)};
+        List<Proxy> proxies = new LinkedList<Proxy>();
+        if (saveFile != null)
+            proxies.add(ProxyFactory.createProxyFromFile(saveFile));
+        proxies.addAll(Arrays.asList(extraProxies));
+        addSpectatorProxy(options, proxies);
 
         Server server = new Server(options, Server.Mode.HEADLESS, controller,
-                proxies);
+                proxies.toArray(new Proxy[proxies.size()]));
         controller.addObserver(server);
 
         return server;
@@ -83,7 +89,8 @@ public class ServerFactory {
         if (saveFile != null)
             proxies.add(ProxyFactory.createProxyFromFile(saveFile));
 
-        proxies.add(ProxyFactory.createProxy(clientSocket.getOutputStream()));
+        proxies.add(ProxyFactory.createDownsamplingProxy(ProxyFactory.createProxy(clientSocket.getOutputStream())));
+        addSpectatorProxy(options, proxies);
 
         Server server = new Server(options, Server.Mode.TCP, controller,
                 proxies.toArray(new Proxy[proxies.size()]));
@@ -103,6 +110,7 @@ public class ServerFactory {
             proxies.add(ProxyFactory.createProxyFromFile(saveFile));
 
         proxies.add(ProxyFactory.createProxy(System.out));
+        addSpectatorProxy(options, proxies);
 
         // since we're sending the match file to System.out, don't send log
         // messages there
@@ -114,4 +122,17 @@ public class ServerFactory {
         return server;
     }
 
+    /**
+     * Adds a proxy that streams matches to spectators, if
+     * bc.server.spectator-port is set.
+     */
+    private static void addSpectatorProxy(Config options, List<Proxy> proxies) throws IOException {
+        int port = options.getInt("bc.server.spectator-port");
+        if (port > 0) {
+            SpectatorProxy spectators = new SpectatorProxy(port, options.getInt("bc.server.spectator-buffer-limit"));
+            Server.say("streaming matches to spectators on port " + spectators.getPort());
+            proxies.add(ProxyFactory.createDownsamplingProxy(spectators));
+        }
+    }
+
 }
@@ -0,0 +1,80 @@
+package battlecode.server.batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A match set for the batch runner: two teams on a list of maps, as a
+ * headless server would run it with bc.game.team-a, bc.game.team-b and
+ * bc.game.maps.
+ */
+public class BatchJob {
+
+    private final int id;
+    private final String teamA;
+    private final String teamB;
+    private final String[] maps;
+
+    /**
+     * The number of times the job has been started.
+     */
+    int attempts;
+
+    public BatchJob(int id, String teamA, String teamB, String[] maps) {
+        this.id = id;
+        this.teamA = teamA;
+        this.teamB = teamB;
+        this.maps = maps;
+    }
+
+    public int getID() {
+        return id;
+    }
+
+    public String getTeamA() {
+        return teamA;
+    }
+
+    public String getTeamB() {
+        return teamB;
+    }
+
+    public String[] getMaps() {
+        return maps;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public String toString() {
+        return "job " + id + " (" + teamA + " vs " + teamB + ")";
+    }
+
+    /**
+     * Reads a list of jobs, one per line: team A, team B and a
+     * comma-separated list of maps, separated by whitespace. Blank lines
+     * and lines starting with # are skipped. Jobs are numbered from 1 in
+     * the order they are read.
+     *
+     * @throws IllegalArgumentException if a line is not a job
+     */
+    public static List<BatchJob> readJobs(Reader reader) throws IOException {
+        BufferedReader in = new BufferedReader(reader);
+        List<BatchJob> jobs = new ArrayList<BatchJob>();
+        String line;
+        for (int n = 1; (line = in.readLine()) != null; n++) {
+            line = line.trim();
+            if (line.length() == 0 || line.startsWith("#"))
+                continue;
+            String[] fields = line.split("\\s+");
+            if (fields.length != 3)
+                throw new IllegalArgumentException("line " + n + ": expected team A, team B and maps");
+            jobs.add(new BatchJob(jobs.size() + 1, fields[0], fields[1], fields[2].split(",")));
+        }
+        return jobs;
+    }
+}
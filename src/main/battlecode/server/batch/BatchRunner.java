@@ -0,0 +1,396 @@
+package battlecode.server.batch;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many match sets on a pool of worker JVMs (see BatchWorker). The
+ * workers are started up front and kept between jobs; each runs one match
+ * set at a time, so the engine's static state is never shared. A worker
+ * that exits or runs past the timeout is replaced, and its job retried.
+ * <p/>
+ * Results are streamed to summary files (see SummaryWriter) as jobs finish.
+ */
+public class BatchRunner {
+
+    static private final int EX_USAGE = 64;
+    static private final int EX_DATAERR = 65;
+    static private final int EX_IOERR = 74;
+
+    private final List<String> command;
+    private final int workerCount;
+    private final int retries;
+    private final long timeoutMillis;
+    private final File saveDir;
+    private final File logDir;
+    private final List<SummaryWriter> summaries = new ArrayList<SummaryWriter>();
+
+    private final BlockingQueue<BatchJob> queue = new LinkedBlockingQueue<BatchJob>();
+    private final Timer watchdog = new Timer("batch watchdog", true);
+    private CountDownLatch remaining;
+    private int jobCount;
+
+    private final AtomicInteger matchCount = new AtomicInteger();
+    private final AtomicInteger retryCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+
+    /**
+     * @param command       the command that starts a worker
+     * @param workerCount   the number of workers to run at once
+     * @param retries       how many times to retry a job whose worker died
+     * @param timeoutMillis how long a job may run before its worker is
+     *                      killed, or 0 for no limit
+     * @param saveDir       where to save the matches, or null not to
+     * @param logDir        where to write what the workers print, or null
+     *                      to print it here
+     */
+    public BatchRunner(List<String> command, int workerCount, int retries, long timeoutMillis,
+                       File saveDir, File logDir) {
+        if (workerCount < 1)
+            throw new IllegalArgumentException("need at least one worker");
+        this.command = command;
+        this.workerCount = workerCount;
+        this.retries = retries;
+        this.timeoutMillis = timeoutMillis;
+        this.saveDir = saveDir;
+        this.logDir = logDir;
+    }
+
+    /**
+     * Gets the command that starts a BatchWorker in a JVM like this one:
+     * the same classpath and bc.* properties, with the given JVM and worker
+     * arguments.
+     */
+    public static List<String> workerCommand(List<String> jvmArgs, List<String> workerArgs) {
+        List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        Properties properties = System.getProperties();
+        for (Enumeration<?> names = properties.propertyNames(); names.hasMoreElements(); ) {
+            String name = (String) names.nextElement();
+            if (name.startsWith("bc."))
+                command.add("-D" + name + "=" + properties.getProperty(name));
+        }
+        command.add(BatchWorker.class.getName());
+        command.addAll(workerArgs);
+        return command;
+    }
+
+    public void addSummary(SummaryWriter summary) {
+        summaries.add(summary);
+    }
+
+    public int getMatchCount() {
+        return matchCount.get();
+    }
+
+    public int getRetryCount() {
+        return retryCount.get();
+    }
+
+    public int getFailedJobCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Runs the jobs, and returns when every one has finished or failed.
+     */
+    public void run(List<BatchJob> jobs) throws InterruptedException {
+        jobCount = jobs.size();
+        remaining = new CountDownLatch(jobs.size());
+        queue.addAll(jobs);
+        if (saveDir != null)
+            saveDir.mkdirs();
+        if (logDir != null)
+            logDir.mkdirs();
+
+        List<Worker> workers = new ArrayList<Worker>();
+        for (int i = 0; i < Math.min(workerCount, jobs.size()); i++) {
+            Worker worker = new Worker(i + 1);
+            worker.start();
+            workers.add(worker);
+        }
+        remaining.await();
+        for (Worker worker : workers) {
+            worker.interrupt();
+            worker.join();
+        }
+        watchdog.cancel();
+    }
+
+    private void finished(BatchJob job, List<MatchResult> results) {
+        matchCount.addAndGet(results.size());
+        for (SummaryWriter summary : summaries) {
+            try {
+                summary.writeJob(job, results);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        remaining.countDown();
+        System.out.printf("[batch] %s finished %d matches (%d of %d jobs left)%n", job, results.size(),
+                remaining.getCount(), jobCount);
+    }
+
+    private void failed(BatchJob job, String reason) {
+        failedCount.incrementAndGet();
+        for (SummaryWriter summary : summaries) {
+            try {
+                summary.writeFailedJob(job);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        remaining.countDown();
+        System.out.printf("[batch] %s FAILED: %s%n", job, reason);
+    }
+
+    /**
+     * Feeds jobs from the queue to one worker JVM, restarting it when it
+     * dies.
+     */
+    private class Worker extends Thread {
+        private final int number;
+        private Process process;
+        private BufferedWriter toWorker;
+        private BufferedReader fromWorker;
+        private volatile boolean timedOut;
+
+        Worker(int number) {
+            super("batch worker " + number);
+            this.number = number;
+        }
+
+        public void run() {
+            try {
+                startProcess();
+            } catch (IOException e) {
+                // tried again with the first job
+                stopProcess();
+            }
+            try {
+                while (remaining.getCount() > 0) {
+                    BatchJob job = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (job != null)
+                        runJob(job);
+                }
+            } catch (InterruptedException e) {
+                // all jobs are done
+            } finally {
+                stopProcess();
+            }
+        }
+
+        private void runJob(final BatchJob job) {
+            job.attempts++;
+            timedOut = false;
+            TimerTask timeout = null;
+            try {
+                if (process == null)
+                    startProcess();
+                if (timeoutMillis > 0) {
+                    final Process p = process;
+                    timeout = new TimerTask() {
+                        public void run() {
+                            timedOut = true;
+                            p.destroy();
+                        }
+                    };
+                    watchdog.schedule(timeout, timeoutMillis);
+                }
+
+                String save = saveDir == null ? "-" : new File(saveDir, "job-" + job.getID() + ".rms").getPath();
+                StringBuilder maps = new StringBuilder();
+                for (String map : job.getMaps())
+                    maps.append(maps.length() == 0 ? "" : ",").append(map);
+                toWorker.write(job.getID() + "\t" + job.getTeamA() + "\t" + job.getTeamB() + "\t" + maps
+                        + "\t" + save + "\n");
+                toWorker.flush();
+
+                List<MatchResult> results = new ArrayList<MatchResult>();
+                while (true) {
+                    String line = fromWorker.readLine();
+                    if (line == null)
+                        throw new IOException(timedOut ? "timed out" : "worker exited");
+                    String[] fields = line.split("\t");
+                    if (fields.length < 2 || !fields[1].equals(String.valueOf(job.getID())))
+                        throw new IOException("unexpected reply: " + line);
+                    if ("match".equals(fields[0])) {
+                        results.add(MatchResult.parse(fields, 2));
+                    } else if ("done".equals(fields[0])) {
+                        finished(job, results);
+                        break;
+                    } else if ("error".equals(fields[0])) {
+                        // the worker may be in a bad state, so start over
+                        stopProcess();
+                        failed(job, fields.length > 2 ? fields[2] : "error");
+                        break;
+                    } else
+                        throw new IOException("unexpected reply: " + line);
+                }
+            } catch (IOException e) {
+                crashed(job, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                crashed(job, e.getMessage());
+            } finally {
+                if (timeout != null)
+                    timeout.cancel();
+            }
+        }
+
+        private void crashed(BatchJob job, String reason) {
+            stopProcess();
+            if (job.attempts <= retries) {
+                retryCount.incrementAndGet();
+                System.out.printf("[batch] worker %d lost %s (%s), retrying%n", number, job, reason);
+                queue.add(job);
+            } else
+                failed(job, reason);
+        }
+
+        private void startProcess() throws IOException {
+            ProcessBuilder builder = new ProcessBuilder(command);
+            if (logDir != null)
+                builder.redirectError(ProcessBuilder.Redirect.appendTo(new File(logDir, "worker-" + number + ".log")));
+            else
+                builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            process = builder.start();
+            toWorker = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+            fromWorker = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            if (!"ready".equals(fromWorker.readLine()))
+                throw new IOException("worker did not start");
+        }
+
+        private void stopProcess() {
+            if (process == null)
+                return;
+            process.destroy();
+            try {
+                process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            process = null;
+        }
+    }
+
+    public static void usage() {
+        System.err.println("Usage: BatchRunner [options] jobs.txt");
+        System.err.println("  Each line of jobs.txt is a match set: teamA teamB map1,map2,...");
+        System.err.println("  -w n       number of worker JVMs (default: one per processor)");
+        System.err.println("  -r n       times to retry a job whose worker dies (default 2)");
+        System.err.println("  -t secs    kill a worker whose job runs longer than this");
+        System.err.println("  -o file    summary file, .csv or .json; may be repeated (default batch.csv)");
+        System.err.println("  -s dir     save each job's matches in this directory");
+        System.err.println("  -l dir     directory for worker logs (default batch-logs)");
+        System.err.println("  -c file    configuration file for the workers");
+        System.err.println("  -J arg     argument for the worker JVMs; may be repeated");
+        System.exit(EX_USAGE);
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options();
+        options.addOption("w", "workers", true, "number of worker JVMs");
+        options.addOption("r", "retries", true, "times to retry a job");
+        options.addOption("t", "timeout", true, "job timeout in seconds");
+        options.addOption("o", "output", true, "summary file");
+        options.addOption("s", "save-dir", true, "directory to save matches in");
+        options.addOption("l", "log-dir", true, "directory for worker logs");
+        options.addOption("c", "config", true, "configuration file");
+        options.addOption("J", "jvm-arg", true, "worker JVM argument");
+        CommandLine cl = null;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int retries = 2;
+        long timeout = 0;
+        try {
+            cl = new GnuParser().parse(options, args);
+            if (cl.hasOption('w'))
+                workers = Integer.parseInt(cl.getOptionValue('w'));
+            if (cl.hasOption('r'))
+                retries = Integer.parseInt(cl.getOptionValue('r'));
+            if (cl.hasOption('t'))
+                timeout = Long.parseLong(cl.getOptionValue('t')) * 1000;
+        } catch (ParseException e) {
+            usage();
+            return;
+        } catch (NumberFormatException e) {
+            usage();
+            return;
+        }
+        if (cl.getArgs().length != 1 || workers < 1 || retries < 0 || timeout < 0) {
+            usage();
+            return;
+        }
+
+        List<BatchJob> jobs;
+        try {
+            jobs = BatchJob.readJobs(new FileReader(cl.getArgs()[0]));
+        } catch (IllegalArgumentException e) {
+            System.err.println(cl.getArgs()[0] + ": " + e.getMessage());
+            System.exit(EX_DATAERR);
+            return;
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(EX_IOERR);
+            return;
+        }
+
+        List<String> jvmArgs = cl.hasOption('J') ? Arrays.asList(cl.getOptionValues('J'))
+                : new ArrayList<String>();
+        List<String> workerArgs = cl.hasOption('c') ? Arrays.asList("-c", cl.getOptionValue('c'))
+                : new ArrayList<String>();
+        BatchRunner runner = new BatchRunner(workerCommand(jvmArgs, workerArgs), workers, retries, timeout,
+                cl.hasOption('s') ? new File(cl.getOptionValue('s')) : null,
+                new File(cl.hasOption('l') ? cl.getOptionValue('l') : "batch-logs"));
+
+        List<SummaryWriter> summaries = new ArrayList<SummaryWriter>();
+        try {
+            for (String output : cl.hasOption('o') ? cl.getOptionValues('o') : new String[]{"batch.csv"}) {
+                SummaryWriter summary = new SummaryWriter(new File(output));
+                summaries.add(summary);
+                runner.addSummary(summary);
+            }
+
+            long startTime = System.currentTimeMillis();
+            runner.run(jobs);
+            double hours = (System.currentTimeMillis() - startTime) / 3600000.0;
+
+            for (SummaryWriter summary : summaries)
+                summary.close();
+            System.out.printf("[batch] %d matches in %.1f s on %d workers: %.0f matches/hour; "
+                            + "%d retries, %d of %d jobs failed%n", runner.getMatchCount(), hours * 3600,
+                    Math.min(workers, jobs.size()), runner.getMatchCount() / hours, runner.getRetryCount(),
+                    runner.getFailedJobCount(), jobs.size());
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(EX_IOERR);
+        } catch (InterruptedException e) {
+            System.exit(EX_IOERR);
+        }
+        System.exit(runner.getFailedJobCount() == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,152 @@
+package battlecode.server.batch;
+
+import battlecode.serial.ExtensibleMetadata;
+import battlecode.serial.GameStats;
+import battlecode.serial.MatchFooter;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundDelta;
+import battlecode.server.Config;
+import battlecode.server.Server;
+import battlecode.server.ServerFactory;
+import battlecode.server.State;
+import battlecode.server.proxy.Proxy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A worker JVM for the batch runner. It runs match sets one at a time, each
+ * with a new headless server, so it can be kept warm between jobs.
+ * <p/>
+ * Jobs come on standard input, one per line, as tab-separated fields: the
+ * job number, team A, team B, the maps and the file to save to (or "-").
+ * Standard output carries only the replies: "ready" once at startup, then
+ * for each job a "match" line per match (the job number followed by a
+ * MatchResult) and "done" or "error" with the job number. Everything the
+ * server and the players print goes to standard error.
+ * <p/>
+ * The arguments are those of battlecode.server.Main; the config they give is
+ * read again for every job.
+ */
+public class BatchWorker {
+
+    /**
+     * Records the outcome of each match as the server sends it out.
+     */
+    private static class ResultProxy extends Proxy {
+        final List<MatchResult> results = new ArrayList<MatchResult>();
+        private final String[] maps;
+        private String map;
+        private GameStats stats;
+        private int rounds;
+        private long startTime;
+        private long startCpuTime;
+
+        ResultProxy(String[] maps) {
+            this.maps = maps;
+        }
+
+        protected OutputStream getOutputStream() throws IOException {
+            return null;
+        }
+
+        public void writeObject(Object o) throws IOException {
+            if (o instanceof MatchHeader) {
+                int number = ((MatchHeader) o).getMatchNumber();
+                map = number < maps.length ? maps[number] : "match " + number;
+                stats = null;
+                rounds = 0;
+                startTime = System.currentTimeMillis();
+                startCpuTime = getCpuTime();
+            } else if (o instanceof RoundDelta) {
+                rounds++;
+            } else if (o instanceof ExtensibleMetadata) {
+                // a result from the cache, without its rounds
+                Object cachedRounds = ((ExtensibleMetadata) o).get("cached-rounds", null);
+                if (cachedRounds != null)
+                    rounds = (Integer) cachedRounds;
+            } else if (o instanceof GameStats) {
+                stats = (GameStats) o;
+            } else if (o instanceof MatchFooter) {
+                long cpuTime = getCpuTime();
+                results.add(new MatchResult(map, ((MatchFooter) o).getWinner(),
+                        stats == null ? null : stats.getDominationFactor(), rounds,
+                        System.currentTimeMillis() - startTime,
+                        cpuTime < 0 ? -1 : (cpuTime - startCpuTime) / 1000000));
+            }
+        }
+    }
+
+    /**
+     * Gets the CPU time used by this JVM so far, in nanoseconds, or -1 if it
+     * cannot be measured.
+     */
+    static long getCpuTime() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean)
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        return -1;
+    }
+
+    /**
+     * Runs one match set.
+     *
+     * @return the result of each match, in order
+     * @throws IOException if not every match finished
+     */
+    static List<MatchResult> runJob(String[] args, String teamA, String teamB, String maps, String saveFile)
+            throws IOException {
+        Config options = new Config(args);
+        options.set("bc.server.mode", "headless");
+        options.set("bc.game.team-a", teamA);
+        options.set("bc.game.team-b", teamB);
+        options.set("bc.game.maps", maps);
+        Config.setGlobalConfig(options);
+
+        ResultProxy results = new ResultProxy(maps.split(","));
+        Server server = ServerFactory.createHeadlessServer(options, saveFile, results);
+        server.run();
+        if (server.getState() == State.ERROR || results.results.size() < results.maps.length)
+            throw new IOException("only " + results.results.size() + " of " + results.maps.length
+                    + " matches finished");
+        return results.results;
+    }
+
+    public static void main(String[] args) throws IOException {
+        PrintStream replies = System.out;
+        System.setOut(System.err);
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        replies.println("ready");
+        replies.flush();
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] fields = line.split("\t");
+            if (fields.length != 5) {
+                Server.warn("not a job: " + line);
+                continue;
+            }
+            String id = fields[0];
+            try {
+                List<MatchResult> results = runJob(args, fields[1], fields[2], fields[3],
+                        "-".equals(fields[4]) ? null : fields[4]);
+                for (MatchResult result : results)
+                    replies.println("match\t" + id + "\t" + result.format());
+                replies.println("done\t" + id);
+            } catch (Exception e) {
+                e.printStackTrace();
+                replies.println("error\t" + id + "\t" + String.valueOf(e.getMessage()).replace('\n', ' '));
+            }
+            replies.flush();
+        }
+        // the engine may leave threads behind
+        System.exit(0);
+    }
+}
@@ -0,0 +1,82 @@
+package battlecode.server.batch;
+
+import battlecode.common.Team;
+import battlecode.serial.DominationFactor;
+
+/**
+ * The outcome of one match of a batch job, as a worker reports it.
+ */
+public class MatchResult {
+
+    private final String map;
+    private final Team winner;
+    private final DominationFactor dominationFactor;
+    private final int rounds;
+    private final long wallMillis;
+    private final long cpuMillis;
+
+    /**
+     * @param winner           the winner, or null if there was none
+     * @param dominationFactor how the match was won, or null if unknown
+     * @param cpuMillis        the CPU time used by the worker JVM, or -1 if
+     *                         it cannot be measured
+     */
+    public MatchResult(String map, Team winner, DominationFactor dominationFactor, int rounds,
+                       long wallMillis, long cpuMillis) {
+        this.map = map;
+        this.winner = winner;
+        this.dominationFactor = dominationFactor;
+        this.rounds = rounds;
+        this.wallMillis = wallMillis;
+        this.cpuMillis = cpuMillis;
+    }
+
+    public String getMap() {
+        return map;
+    }
+
+    public Team getWinner() {
+        return winner;
+    }
+
+    public DominationFactor getDominationFactor() {
+        return dominationFactor;
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+
+    public long getWallMillis() {
+        return wallMillis;
+    }
+
+    public long getCpuMillis() {
+        return cpuMillis;
+    }
+
+    /**
+     * Formats the result as tab-separated fields, for a worker to send.
+     */
+    public String format() {
+        return map + "\t" + (winner == null ? "-" : winner.name()) + "\t"
+                + (dominationFactor == null ? "-" : dominationFactor.name()) + "\t" + rounds + "\t"
+                + wallMillis + "\t" + cpuMillis;
+    }
+
+    /**
+     * Reads a result written by format().
+     *
+     * @throws IllegalArgumentException if the fields are not a result
+     */
+    public static MatchResult parse(String[] fields, int offset) {
+        if (fields.length != offset + 6)
+            throw new IllegalArgumentException("expected 6 result fields, got " + (fields.length - offset));
+        return new MatchResult(fields[offset],
+                "-".equals(fields[offset + 1]) ? null : Team.valueOf(fields[offset + 1]),
+                "-".equals(fields[offset + 2]) ? null : DominationFactor.valueOf(fields[offset + 2]),
+                Integer.parseInt(fields[offset + 3]),
+                Long.parseLong(fields[offset + 4]),
+                Long.parseLong(fields[offset + 5]));
+    }
+}
@@ -0,0 +1,109 @@
+package battlecode.server.batch;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the results of a batch run as they come in, one row per match, as
+ * CSV or (for files ending in .json) as a JSON array of objects. The file is
+ * flushed after every job, so it can be read while the batch runs.
+ */
+public class SummaryWriter implements Closeable {
+
+    private static final String[] COLUMNS = {"job", "team_a", "team_b", "map", "status", "winner",
+            "domination_factor", "rounds", "wall_ms", "cpu_ms", "attempts"};
+
+    private final Writer out;
+    private final boolean json;
+    private boolean first = true;
+
+    public SummaryWriter(File file) throws IOException {
+        this.out = new BufferedWriter(new FileWriter(file));
+        this.json = file.getName().endsWith(".json");
+        if (json)
+            out.write("[");
+        else
+            writeRow(COLUMNS);
+        out.flush();
+    }
+
+    /**
+     * Writes the matches of a finished job.
+     */
+    public synchronized void writeJob(BatchJob job, Iterable<MatchResult> results) throws IOException {
+        for (MatchResult r : results) {
+            writeRow(new Object[]{job.getID(), job.getTeamA(), job.getTeamB(), r.getMap(), "ok",
+                    r.getWinner(), r.getDominationFactor(), r.getRounds(), r.getWallMillis(),
+                    r.getCpuMillis(), job.getAttempts()});
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes a row for each map of a job that could not be run.
+     */
+    public synchronized void writeFailedJob(BatchJob job) throws IOException {
+        for (String map : job.getMaps()) {
+            writeRow(new Object[]{job.getID(), job.getTeamA(), job.getTeamB(), map, "failed",
+                    null, null, null, null, null, job.getAttempts()});
+        }
+        out.flush();
+    }
+
+    public synchronized void close() throws IOException {
+        if (json)
+            out.write(first ? "]\n" : "\n]\n");
+        out.close();
+    }
+
+    private void writeRow(Object[] values) throws IOException {
+        StringBuilder row = new StringBuilder();
+        if (json) {
+            row.append(first ? "\n  {" : ",\n  {");
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0)
+                    row.append(", ");
+                row.append('"').append(COLUMNS[i]).append("\": ");
+                if (values[i] == null || values[i] instanceof Number)
+                    row.append(values[i]);
+                else
+                    row.append(jsonString(values[i].toString()));
+            }
+            row.append('}');
+        } else {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0)
+                    row.append(',');
+                if (values[i] != null)
+                    row.append(csvField(values[i].toString()));
+            }
+            row.append('\n');
+        }
+        out.write(row.toString());
+        first = false;
+    }
+
+    private static String csvField(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0)
+            return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder b = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+                b.append('\\').append(c);
+            else if (c < 0x20)
+                b.append(String.format("\\u%04x", (int) c));
+            else
+                b.append(c);
+        }
+        return b.append('"').toString();
+    }
+}
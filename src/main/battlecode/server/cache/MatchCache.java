@@ -0,0 +1,462 @@
+package battlecode.server.cache;
+
+import battlecode.serial.GameStats;
+import battlecode.serial.MatchFooter;
+import battlecode.serial.MatchHeader;
+import battlecode.server.Config;
+import battlecode.server.proxy.Proxy;
+import battlecode.server.proxy.XStreamProxy;
+import com.thoughtworks.xstream.XStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Remembers how matches ended, so that a pairing that has been played
+ * before need not be played again. The engine is deterministic, so a match
+ * is decided by its key, a SHA-1 hash of:
+ * <ul>
+ * <li>the names and class files of both teams, as found on the classpath,</li>
+ * <li>the map's name and XML file,</li>
+ * <li>the initial team memory,</li>
+ * <li>the bc.engine.* settings that change what is played or recorded
+ * (see OPTIONS), and</li>
+ * <li>the engine itself: its class files, and the method cost and package
+ * lists in the working directory.</li>
+ * </ul>
+ * Entries are never changed in place; when anything above changes, the key
+ * changes and the old entry is no longer found. Entries that cannot be read
+ * are deleted when they are found, and an entry that a verification run
+ * disagrees with is replaced. Matches whose teams or map cannot be found
+ * are not cached. To reclaim space, delete the directory.
+ * <p/>
+ * An entry holds the header, game stats and footer of the match, and unless
+ * bc.server.result-cache-matches is off, the whole match to replay.
+ */
+public class MatchCache {
+
+    /**
+     * Changes whenever the entries change form.
+     */
+    private static final String FORMAT = "1";
+
+    /**
+     * The settings that can change the outcome of a match or the signals
+     * saved with it. The rest only change how the engine runs: output,
+     * garbage collection, instrumentation, metrics and tracing.
+     */
+    private static final String[] OPTIONS = {"bc.engine.breakpoints", "bc.engine.bytecodes-used",
+            "bc.engine.debug-max-bytecodes", "bc.engine.debug-methods", "bc.engine.signal-format",
+            "bc.engine.state-digest", "bc.engine.upkeep"};
+
+    private static final String[] ENGINE_FILES = {"AllowedPackages.txt", "DisallowedClasses.txt",
+            "MethodCosts.txt"};
+
+    private static byte[] engineHash;
+
+    /**
+     * A cached match.
+     */
+    public static class Entry {
+        private final MatchHeader header;
+        private final GameStats gameStats;
+        private final MatchFooter footer;
+        private final int rounds;
+        private final File matchFile;
+
+        Entry(MatchHeader header, GameStats gameStats, MatchFooter footer, int rounds, File matchFile) {
+            this.header = header;
+            this.gameStats = gameStats;
+            this.footer = footer;
+            this.rounds = rounds;
+            this.matchFile = matchFile;
+        }
+
+        public MatchHeader getHeader() {
+            return header;
+        }
+
+        public GameStats getGameStats() {
+            return gameStats;
+        }
+
+        public MatchFooter getFooter() {
+            return footer;
+        }
+
+        public int getRounds() {
+            return rounds;
+        }
+
+        /**
+         * Opens the stored match, as the objects a proxy was sent, or
+         * returns null if only the result was stored.
+         */
+        public ObjectInputStream openMatch() throws IOException {
+            if (matchFile == null)
+                return null;
+            return new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(
+                    new FileInputStream(matchFile))));
+        }
+    }
+
+    /**
+     * Writes a match as it is played, and adds it to the cache when it is
+     * closed.
+     */
+    private class Recorder extends Proxy {
+        private final File file;
+        private final File tmp;
+
+        Recorder(String key) {
+            this.file = new File(dir, key + ".match");
+            this.tmp = new File(dir, key + ".match.tmp");
+        }
+
+        protected OutputStream getOutputStream() throws IOException {
+            return new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))));
+        }
+
+        public void close() throws IOException {
+            super.close();
+            if (!tmp.renameTo(file))
+                throw new IOException("couldn't move " + tmp + " to " + file);
+        }
+    }
+
+    private final File dir;
+    private final String classPath;
+    private final boolean storeMatches;
+    private final double verifyFraction;
+    private final Random random = new Random();
+
+    private int hits;
+    private int misses;
+    private int mismatches;
+
+    /**
+     * @param dir            the directory to keep entries in
+     * @param storeMatches   whether to keep whole matches, or only results
+     * @param verifyFraction the fraction of hits to play again and compare
+     */
+    public MatchCache(File dir, boolean storeMatches, double verifyFraction) {
+        this(dir, System.getProperty("java.class.path"), storeMatches, verifyFraction);
+    }
+
+    /**
+     * @param classPath where to look for teams
+     */
+    MatchCache(File dir, String classPath, boolean storeMatches, double verifyFraction) {
+        this.dir = dir;
+        this.classPath = classPath;
+        this.storeMatches = storeMatches;
+        this.verifyFraction = verifyFraction;
+        dir.mkdirs();
+    }
+
+    /**
+     * Creates the cache configured by bc.server.result-cache,
+     * bc.server.result-cache-matches and bc.server.result-cache-verify.
+     *
+     * @return the cache, or null if there is none
+     */
+    public static MatchCache fromConfig(Config options) {
+        String dir = options.get("bc.server.result-cache");
+        if (dir == null || dir.length() == 0)
+            return null;
+        return new MatchCache(new File(dir), options.getBoolean("bc.server.result-cache-matches"),
+                Double.parseDouble(options.get("bc.server.result-cache-verify")));
+    }
+
+    public boolean isStoringMatches() {
+        return storeMatches;
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of verification runs that did not match their entry.
+     */
+    public int getMismatches() {
+        return mismatches;
+    }
+
+    /**
+     * Computes the key of a match.
+     *
+     * @return the key, or null if the teams or the map cannot be found
+     */
+    public String keyFor(String teamA, String teamB, String map, long[][] teamMemory, Config options)
+            throws IOException {
+        MessageDigest digest = newDigest();
+        update(digest, "format " + FORMAT);
+        for (String team : new String[]{teamA, teamB}) {
+            update(digest, "team " + team);
+            if (!hashTeam(digest, classPath, team))
+                return null;
+        }
+
+        update(digest, "map " + map);
+        File mapFile = new File(options.get("bc.game.map-path"), map + ".xml");
+        if (!mapFile.isFile())
+            return null;
+        update(digest, mapFile);
+
+        for (long[] memory : teamMemory)
+            update(digest, "memory " + Arrays.toString(memory));
+
+        for (String name : OPTIONS)
+            update(digest, name + "=" + options.get(name));
+
+        digest.update(engineHash());
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Looks up a match.
+     *
+     * @return the entry, or null if there is none (or it lacks the whole
+     *         match, and matches are being stored)
+     */
+    public Entry get(String key) {
+        File resultFile = new File(dir, key + ".result");
+        File matchFile = new File(dir, key + ".match");
+        if (!resultFile.isFile() || (storeMatches && !matchFile.isFile())) {
+            misses++;
+            return null;
+        }
+        try {
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(resultFile)));
+            try {
+                Entry entry = new Entry((MatchHeader) in.readObject(), (GameStats) in.readObject(),
+                        (MatchFooter) in.readObject(), in.readInt(), matchFile.isFile() ? matchFile : null);
+                hits++;
+                return entry;
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            // written by another version, or cut short
+            resultFile.delete();
+            matchFile.delete();
+            misses++;
+            return null;
+        }
+    }
+
+    /**
+     * Decides whether to verify a hit, for the configured fraction of them.
+     */
+    public boolean shouldVerify() {
+        return verifyFraction > 0 && random.nextDouble() < verifyFraction;
+    }
+
+    /**
+     * Creates a proxy that stores the next match it is sent under the given
+     * key, or returns null if whole matches are not stored. The entry is not
+     * found until put() is called after the proxy is closed.
+     */
+    public Proxy record(String key) {
+        return storeMatches ? new Recorder(key) : null;
+    }
+
+    /**
+     * Stores the result of a match.
+     */
+    public void put(String key, MatchHeader header, GameStats gameStats, MatchFooter footer, int rounds)
+            throws IOException {
+        File resultFile = new File(dir, key + ".result");
+        File tmp = new File(dir, key + ".result.tmp");
+        ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeObject(header);
+            out.writeObject(gameStats);
+            out.writeObject(footer);
+            out.writeInt(rounds);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(resultFile))
+            throw new IOException("couldn't move " + tmp + " to " + resultFile);
+    }
+
+    /**
+     * Checks a match that was played again against its entry.
+     *
+     * @return true if the stats, the footer and the length all agree
+     */
+    public boolean verify(Entry entry, GameStats gameStats, MatchFooter footer, int rounds) {
+        XStream xs = XStreamProxy.getXStream();
+        boolean agrees = entry.getRounds() == rounds
+                && xs.toXML(entry.getGameStats()).equals(xs.toXML(gameStats))
+                && xs.toXML(entry.getFooter()).equals(xs.toXML(footer));
+        if (!agrees)
+            mismatches++;
+        return agrees;
+    }
+
+    public String toString() {
+        return String.format("result cache %s: %d hits, %d misses, %d mismatches", dir, hits, misses, mismatches);
+    }
+
+    /**
+     * Hashes the class files of a team package, from every classpath entry
+     * that has them.
+     *
+     * @return false if there are none
+     */
+    static boolean hashTeam(MessageDigest digest, String classPath, String team) throws IOException {
+        boolean found = false;
+        for (String entry : classPath.split(File.pathSeparator)) {
+            File file = new File(entry);
+            if (file.isDirectory()) {
+                File teamDir = new File(file, team);
+                if (teamDir.isDirectory()) {
+                    hashTree(digest, teamDir, team);
+                    found = true;
+                }
+            } else if (file.isFile()) {
+                found |= hashJar(digest, file, team + "/");
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Gets the hash of the engine build: the class files the engine was
+     * loaded from, and the method cost and package lists.
+     */
+    static synchronized byte[] engineHash() throws IOException {
+        if (engineHash != null)
+            return engineHash;
+        MessageDigest digest = newDigest();
+        File source;
+        try {
+            source = new File(MatchCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+        if (source.isDirectory())
+            hashTree(digest, new File(source, "battlecode"), "battlecode");
+        else
+            update(digest, source);
+        for (String name : ENGINE_FILES) {
+            File file = new File(name);
+            if (file.isFile()) {
+                update(digest, name);
+                update(digest, file);
+            }
+        }
+        engineHash = digest.digest();
+        return engineHash;
+    }
+
+    private static void hashTree(MessageDigest digest, File dir, String path) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = path + "/" + file.getName();
+            if (file.isDirectory())
+                hashTree(digest, file, name);
+            else {
+                update(digest, name);
+                update(digest, file);
+            }
+        }
+    }
+
+    private static boolean hashJar(MessageDigest digest, File jar, String prefix) throws IOException {
+        ZipFile zip;
+        try {
+            zip = new ZipFile(jar);
+        } catch (IOException e) {
+            // not a jar
+            return false;
+        }
+        try {
+            List<String> names = new ArrayList<String>();
+            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+                ZipEntry entry = e.nextElement();
+                if (!entry.isDirectory() && entry.getName().startsWith(prefix))
+                    names.add(entry.getName());
+            }
+            Collections.sort(names);
+            for (String name : names) {
+                update(digest, name);
+                update(digest, zip.getInputStream(zip.getEntry(name)));
+            }
+            return !names.isEmpty();
+        } finally {
+            zip.close();
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        try {
+            digest.update(s.getBytes("UTF-8"));
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update((byte) 0);
+    }
+
+    private static void update(MessageDigest digest, File file) throws IOException {
+        update(digest, new FileInputStream(file));
+    }
+
+    private static void update(MessageDigest digest, InputStream in) throws IOException {
+        try {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0)
+                digest.update(buffer, 0, n);
+        } finally {
+            in.close();
+        }
+        digest.update((byte) 0);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder b = new StringBuilder();
+        for (byte x : bytes)
+            b.append(String.format("%02x", x & 0xff));
+        return b.toString();
+    }
+}
@@ -0,0 +1,404 @@
+package battlecode.server.proxy;
+
+import battlecode.engine.ErrorReporter;
+import battlecode.engine.signal.Signal;
+import battlecode.engine.trace.Tracer;
+import battlecode.serial.MatchFooter;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundDelta;
+import battlecode.serial.RoundStats;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Feeds another proxy from its own bounded queue and writer thread, so that a
+ * slow socket or disk does not stall the engine thread. Objects reach the
+ * wrapped proxy in the order they were written; what happens when the queue
+ * is full depends on the policy:
+ * <ul>
+ * <li>BLOCK: the caller waits for room (like writing synchronously, but
+ * with some slack).</li>
+ * <li>COALESCE: the incoming round is merged into the last queued round and
+ * superseded stats are dropped, so a lagging spectator skips frames but still
+ * sees every signal. Never used for file proxies.</li>
+ * <li>SPILL: objects that do not fit are serialized to a temporary file and
+ * replayed in order once the queue drains.</li>
+ * </ul>
+ * Write errors on the writer thread are reported once; later objects are
+ * discarded and the error is thrown from {@link #close()}.
+ */
+public class AsyncProxy extends Proxy {
+
+    public static enum Policy {
+        BLOCK, COALESCE, SPILL
+    }
+
+    private final Proxy proxy;
+    private final Policy policy;
+    private final int capacity;
+
+    private final ArrayDeque<Object> queue;
+    private final Object lock = new Object();
+    private Thread writer;
+    private boolean closed;
+    private IOException failure;
+
+    /**
+     * Whether the last queued round absorbed a newer one, so the next stats
+     * replace the queued stats instead of being added.
+     */
+    private boolean merging;
+
+    /**
+     * Spill state: once spilling starts every object goes to the spill file
+     * until the writer has caught up with all of it.
+     */
+    private boolean spilling;
+    private File spillFile;
+    private ObjectOutputStream spillOutput;
+    private int spillCount;
+
+    // metrics, guarded by lock
+    private int maxQueueDepth;
+    private int roundsQueued;
+    private int roundsWritten;
+    private int maxRoundLag;
+    private long stallNanos;
+    private int coalescedRounds;
+    private int spilledObjects;
+
+    public AsyncProxy(Proxy proxy, Policy policy, int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("queue capacity must be positive");
+        if (policy == Policy.COALESCE && proxy instanceof FileProxy)
+            policy = Policy.BLOCK;
+        this.proxy = proxy;
+        this.policy = policy;
+        this.capacity = capacity;
+        this.queue = new ArrayDeque<Object>(capacity);
+    }
+
+    public Proxy getProxy() {
+        return proxy;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    protected OutputStream getOutputStream() throws IOException {
+        return proxy.getOutputStream();
+    }
+
+    public void open() throws IOException {
+        proxy.open();
+        writer = new Thread(new Runnable() {
+            public void run() {
+                drain();
+            }
+        }, "proxy-writer-" + proxy.getClass().getSimpleName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Waits for every queued object to be written, then closes the wrapped
+     * proxy.
+     */
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        if (writer != null) {
+            boolean interrupted = false;
+            while (writer.isAlive()) {
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+        proxy.close();
+        if (failure != null)
+            throw failure;
+    }
+
+    public void writeObject(Object o) throws IOException {
+        synchronized (lock) {
+            if (closed)
+                throw new IOException("proxy is closed");
+            if (failure != null)
+                return;
+            if (o instanceof RoundDelta) {
+                roundsQueued++;
+                maxRoundLag = Math.max(maxRoundLag, roundsQueued - roundsWritten);
+            }
+
+            if (spilling) {
+                spill(o);
+                return;
+            }
+            if (merging && o instanceof RoundStats && queue.peekLast() instanceof RoundStats) {
+                // the queued stats belong to a round that was merged away
+                queue.pollLast();
+                queue.addLast(o);
+                merging = false;
+                return;
+            }
+            if (queue.size() >= capacity) {
+                switch (policy) {
+                    case COALESCE:
+                        if (coalesce(o))
+                            return;
+                        break;
+                    case SPILL:
+                        spilling = true;
+                        spill(o);
+                        return;
+                }
+                long start = System.nanoTime();
+                while (queue.size() >= capacity && failure == null) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                }
+                stallNanos += System.nanoTime() - start;
+                if (failure != null)
+                    return;
+            }
+            merging = false;
+            queue.addLast(o);
+            maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Tries to fold an object into the tail of a full queue.
+     *
+     * @return whether the object was absorbed
+     */
+    private boolean coalesce(Object o) {
+        if (o instanceof RoundStats) {
+            // the newest queued stats are superseded
+            Iterator<Object> it = queue.descendingIterator();
+            while (it.hasNext()) {
+                if (it.next() instanceof RoundStats) {
+                    it.remove();
+                    queue.addLast(o);
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (!(o instanceof RoundDelta))
+            return false;
+        Object stats = null;
+        if (queue.peekLast() instanceof RoundStats)
+            stats = queue.pollLast();
+        if (!(queue.peekLast() instanceof RoundDelta)) {
+            if (stats != null)
+                queue.addLast(stats);
+            return false;
+        }
+        // queued objects are shared with other proxies, so build a new one
+        Signal[] older = ((RoundDelta) queue.pollLast()).getSignals();
+        Signal[] newer = ((RoundDelta) o).getSignals();
+        Signal[] merged = new Signal[older.length + newer.length];
+        System.arraycopy(older, 0, merged, 0, older.length);
+        System.arraycopy(newer, 0, merged, older.length, newer.length);
+        queue.addLast(new RoundDelta(merged));
+        if (stats != null)
+            queue.addLast(stats);
+        merging = true;
+        coalescedRounds++;
+        roundsWritten++;
+        return true;
+    }
+
+    private void spill(Object o) throws IOException {
+        if (spillOutput == null) {
+            spillFile = File.createTempFile("battlecode-spill", ".tmp");
+            spillFile.deleteOnExit();
+            spillOutput = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+        }
+        spillOutput.reset();
+        spillOutput.writeObject(o);
+        spillCount++;
+        spilledObjects++;
+        lock.notifyAll();
+    }
+
+    private void drain() {
+        while (true) {
+            Object next = null;
+            File segment = null;
+            int segmentCount = 0;
+            synchronized (lock) {
+                while (queue.isEmpty() && spillCount == 0 && !closed) {
+                    if (spilling)
+                        spilling = false;
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // keep draining; close() decides when we stop
+                    }
+                }
+                if (!queue.isEmpty()) {
+                    next = queue.pollFirst();
+                    lock.notifyAll();
+                } else if (spillCount > 0) {
+                    // hand the current spill file to this thread; the
+                    // producer starts a new one and keeps spilling
+                    segment = spillFile;
+                    segmentCount = spillCount;
+                    try {
+                        spillOutput.close();
+                    } catch (IOException e) {
+                        fail(e);
+                    }
+                    spillOutput = null;
+                    spillFile = null;
+                    spillCount = 0;
+                } else {
+                    return;
+                }
+            }
+
+            if (next != null)
+                write(next);
+            else
+                replay(segment, segmentCount);
+        }
+    }
+
+    private void replay(File segment, int count) {
+        try {
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(segment)));
+            try {
+                for (int i = 0; i < count; i++)
+                    write(in.readObject());
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (ClassNotFoundException e) {
+            fail(new IOException(e));
+        } finally {
+            segment.delete();
+        }
+    }
+
+    private void write(Object o) {
+        synchronized (lock) {
+            if (failure != null)
+                return;
+        }
+        Tracer tracer = Tracer.get();
+        Object span = tracer == null ? null : tracer.beginProxyWrite();
+        try {
+            if (o instanceof RoundDelta)
+                proxy.writeRound((RoundDelta) o);
+            else if (o instanceof RoundStats)
+                proxy.writeStats((RoundStats) o);
+            else if (o instanceof MatchHeader)
+                proxy.writeHeader((MatchHeader) o);
+            else if (o instanceof MatchFooter)
+                proxy.writeFooter((MatchFooter) o);
+            else
+                proxy.writeObject(o);
+        } catch (IOException e) {
+            fail(e);
+            return;
+        } catch (RuntimeException e) {
+            fail(new IOException(e));
+            return;
+        }
+        if (tracer != null)
+            tracer.endProxyWrite(span, proxy.getClass().getSimpleName(), o.getClass().getSimpleName());
+        if (o instanceof RoundDelta) {
+            synchronized (lock) {
+                roundsWritten++;
+            }
+        }
+    }
+
+    private void fail(IOException e) {
+        synchronized (lock) {
+            if (failure != null)
+                return;
+            failure = e;
+            queue.clear();
+            lock.notifyAll();
+        }
+        ErrorReporter.report(e, false);
+    }
+
+    /**
+     * @return the number of objects waiting in memory
+     */
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    public int getMaxQueueDepth() {
+        synchronized (lock) {
+            return maxQueueDepth;
+        }
+    }
+
+    /**
+     * @return how many rounds the engine is ahead of this proxy
+     */
+    public int getRoundLag() {
+        synchronized (lock) {
+            return roundsQueued - roundsWritten;
+        }
+    }
+
+    public int getMaxRoundLag() {
+        synchronized (lock) {
+            return maxRoundLag;
+        }
+    }
+
+    /**
+     * @return the total time callers spent waiting for room in the queue
+     */
+    public long getStallNanos() {
+        synchronized (lock) {
+            return stallNanos;
+        }
+    }
+
+    public int getCoalescedRounds() {
+        synchronized (lock) {
+            return coalescedRounds;
+        }
+    }
+
+    public int getSpilledObjects() {
+        synchronized (lock) {
+            return spilledObjects;
+        }
+    }
+
+    public String toString() {
+        synchronized (lock) {
+            return String.format("%s [%s, queue %d/%d, max depth %d, lag %d rounds (max %d), stalled %.1f ms, coalesced %d, spilled %d]",
+                    proxy.getClass().getSimpleName(), policy, queue.size(), capacity, maxQueueDepth,
+                    roundsQueued - roundsWritten, maxRoundLag, stallNanos / 1e6, coalescedRounds, spilledObjects);
+        }
+    }
+}
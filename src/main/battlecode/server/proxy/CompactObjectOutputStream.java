@@ -0,0 +1,64 @@
+package battlecode.server.proxy;
+
+import battlecode.serial.CompactForm;
+import battlecode.serial.MatchHeader;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * An object stream for match data that writes each object's
+ * {@link CompactForm} when it has one, and resets only every so often
+ * instead of before every object.
+ * <p/>
+ * Top-level objects are written unshared, so an object that is sent again
+ * (say, a round delta that the engine reuses) is written in full rather
+ * than as a reference to its earlier state. The handle table then only
+ * holds what the compact forms write as ordinary objects (the map, and
+ * signals without a compact form), and the reset interval bounds it, on
+ * both ends of the stream.
+ */
+public class CompactObjectOutputStream extends ObjectOutputStream {
+
+    private final int resetInterval;
+    private int sinceReset;
+
+    /**
+     * @param out           the stream to write to
+     * @param resetInterval the number of objects to write between resets;
+     *                      1 resets before every object, as Proxy always did
+     */
+    public CompactObjectOutputStream(OutputStream out, int resetInterval) throws IOException {
+        super(out);
+        if (resetInterval < 1)
+            throw new IllegalArgumentException("reset interval must be positive");
+        this.resetInterval = resetInterval;
+        enableReplaceObject(true);
+    }
+
+    /**
+     * Writes one object of match data.
+     */
+    public void writeMatchObject(Object o) throws IOException {
+        if (sinceReset >= resetInterval)
+            reset();
+        writeUnshared(o);
+        sinceReset++;
+        // the map is only needed once
+        if (o instanceof MatchHeader)
+            sinceReset = resetInterval;
+    }
+
+    /**
+     * Resets the stream, and starts counting towards the next reset again.
+     */
+    public void reset() throws IOException {
+        super.reset();
+        sinceReset = 0;
+    }
+
+    protected Object replaceObject(Object o) {
+        return CompactForm.supports(o) ? new CompactForm(o) : o;
+    }
+}
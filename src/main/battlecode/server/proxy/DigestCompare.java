@@ -0,0 +1,146 @@
+package battlecode.server.proxy;
+
+import battlecode.engine.signal.Signal;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundDelta;
+import battlecode.world.StateDigest;
+import battlecode.world.signal.StateDigestSignal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares two saved matches by the state digests in their rounds (see
+ * bc.engine.state-digest), and reports the first round where the game
+ * states differ and which parts of the state differ there. The matches
+ * can be in any format the server saves.
+ */
+public class DigestCompare {
+
+    static private final int EX_DIFFERENT = 1;
+    static private final int EX_USAGE = 64;
+    static private final int EX_DATAERR = 65;
+    static private final int EX_IOERR = 74;
+
+    public static void usage() {
+        System.err.println("Usage: DigestCompare first.rms second.rms");
+        System.err.println("  both matches must have been run with bc.engine.state-digest=true");
+        System.exit(EX_USAGE);
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            usage();
+            return;
+        }
+        try {
+            List<List<StateDigestSignal>> first = readDigests(RmsbConverter.readMatch(new File(args[0])));
+            List<List<StateDigestSignal>> second = readDigests(RmsbConverter.readMatch(new File(args[1])));
+            if (first == null || second == null) {
+                System.err.println((first == null ? args[0] : args[1]) + " has no state digests");
+                System.exit(EX_DATAERR);
+            }
+            String difference = compare(first, second);
+            if (difference != null) {
+                System.out.println(difference);
+                System.exit(EX_DIFFERENT);
+            }
+            int rounds = 0;
+            for (List<StateDigestSignal> match : first)
+                rounds += match.size();
+            System.out.println("identical: " + first.size() + " matches, " + rounds + " rounds");
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+            System.exit(EX_DATAERR);
+        } catch (IOException e) {
+            e.printStackTrace();
+            if (e instanceof StreamCorruptedException)
+                System.exit(EX_DATAERR);
+            else
+                System.exit(EX_IOERR);
+        }
+    }
+
+    /**
+     * Collects the state digests of a saved match.
+     *
+     * @return the digests of each match in order, or null if there are none
+     */
+    public static List<List<StateDigestSignal>> readDigests(List<Object> objects) {
+        List<List<StateDigestSignal>> matches = new ArrayList<List<StateDigestSignal>>();
+        List<StateDigestSignal> current = null;
+        boolean found = false;
+        for (Object o : objects) {
+            if (o instanceof MatchHeader) {
+                current = new ArrayList<StateDigestSignal>();
+                matches.add(current);
+            } else if (current != null && (o instanceof RoundDelta || o instanceof Signal[])) {
+                Signal[] signals = o instanceof Signal[] ? (Signal[]) o : ((RoundDelta) o).getSignals();
+                if (signals == null)
+                    continue;
+                for (Signal s : signals) {
+                    if (s instanceof StateDigestSignal) {
+                        current.add((StateDigestSignal) s);
+                        found = true;
+                    }
+                }
+            }
+        }
+        return found ? matches : null;
+    }
+
+    /**
+     * Finds the first round whose digests differ. Rounds are matched by
+     * number, so matches whose rounds were merged by DownsamplingProxy can
+     * still be compared at the rounds they kept.
+     *
+     * @return a description of the first difference, or null if there is none
+     */
+    public static String compare(List<List<StateDigestSignal>> first, List<List<StateDigestSignal>> second) {
+        for (int m = 0; m < Math.min(first.size(), second.size()); m++) {
+            List<StateDigestSignal> a = first.get(m);
+            List<StateDigestSignal> b = second.get(m);
+            int i = 0, j = 0;
+            while (i < a.size() && j < b.size()) {
+                StateDigestSignal da = a.get(i);
+                StateDigestSignal db = b.get(j);
+                if (da.getRound() < db.getRound()) {
+                    i++;
+                } else if (da.getRound() > db.getRound()) {
+                    j++;
+                } else {
+                    String components = differingComponents(da, db);
+                    if (components != null)
+                        return "match " + (m + 1) + " diverges at round " + da.getRound() + ": " + components;
+                    i++;
+                    j++;
+                }
+            }
+            int lastA = a.isEmpty() ? -1 : a.get(a.size() - 1).getRound();
+            int lastB = b.isEmpty() ? -1 : b.get(b.size() - 1).getRound();
+            if (lastA != lastB)
+                return "match " + (m + 1) + " ends at round " + lastA + " in the first file and round " + lastB
+                        + " in the second";
+        }
+        if (first.size() != second.size())
+            return "the first file has " + first.size() + " matches and the second " + second.size();
+        return null;
+    }
+
+    private static String differingComponents(StateDigestSignal a, StateDigestSignal b) {
+        long[] da = a.getDigests();
+        long[] db = b.getDigests();
+        StringBuilder sb = new StringBuilder();
+        for (int c = 0; c < Math.max(da.length, db.length); c++) {
+            if (c < da.length && c < db.length && da[c] == db[c])
+                continue;
+            if (sb.length() > 0)
+                sb.append(", ");
+            sb.append(c < StateDigest.COMPONENT_NAMES.length ? StateDigest.COMPONENT_NAMES[c] : "component " + c);
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+}
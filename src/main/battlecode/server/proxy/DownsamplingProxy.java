@@ -0,0 +1,112 @@
+package battlecode.server.proxy;
+
+import battlecode.engine.signal.Signal;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundDelta;
+import battlecode.serial.RoundMerger;
+import battlecode.serial.RoundStats;
+import battlecode.world.signal.RobotStateReconstructor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Feeds another proxy every k-th round, with the rounds in between merged
+ * into it (see RoundMerger) and only the newest round stats. Everything
+ * else is passed on as it comes, after the rounds before it. A viewer of
+ * the wrapped proxy sees the same state at every round it is sent, with
+ * fewer rounds and without the intermediate animations.
+ * <p/>
+ * Change-only robot state signals are sent reconstructed, as full signals.
+ */
+public class DownsamplingProxy extends Proxy {
+
+    private final Proxy proxy;
+    private final int interval;
+
+    private final RoundMerger merger = new RoundMerger();
+    private final RobotStateReconstructor reconstructor = new RobotStateReconstructor();
+    private RoundStats stats;
+
+    private int roundsIn;
+    private int roundsOut;
+
+    /**
+     * @param proxy    the proxy to feed
+     * @param interval the number of rounds to merge into each one sent
+     */
+    public DownsamplingProxy(Proxy proxy, int interval) {
+        if (interval < 1)
+            throw new IllegalArgumentException("interval must be positive");
+        this.proxy = proxy;
+        this.interval = interval;
+    }
+
+    public Proxy getProxy() {
+        return proxy;
+    }
+
+    /**
+     * Gets the number of rounds written to this proxy.
+     */
+    public int getRoundsIn() {
+        return roundsIn;
+    }
+
+    /**
+     * Gets the number of rounds sent on.
+     */
+    public int getRoundsOut() {
+        return roundsOut;
+    }
+
+    protected OutputStream getOutputStream() throws IOException {
+        return proxy.getOutputStream();
+    }
+
+    public void open() throws IOException {
+        proxy.open();
+    }
+
+    /**
+     * Sends what is left of the last round, then closes the wrapped proxy.
+     */
+    public void close() throws IOException {
+        flush();
+        proxy.close();
+    }
+
+    public void writeObject(Object o) throws IOException {
+        if (o instanceof RoundDelta) {
+            if (merger.getRoundCount() >= interval)
+                flush();
+            roundsIn++;
+            Signal[] signals = ((RoundDelta) o).getSignals();
+            // the signals are shared with other proxies, so reconstruct a copy
+            merger.add(signals == null ? new Signal[0] : reconstructor.reconstruct(signals.clone()));
+        } else if (o instanceof RoundStats && merger.getRoundCount() > 0) {
+            stats = (RoundStats) o;
+            if (merger.getRoundCount() >= interval)
+                flush();
+        } else {
+            flush();
+            if (o instanceof MatchHeader)
+                reconstructor.reset();
+            else if (o instanceof Signal[])
+                o = reconstructor.reconstruct(((Signal[]) o).clone());
+            proxy.writeObject(o);
+        }
+    }
+
+    private void flush() throws IOException {
+        RoundDelta merged = merger.merge();
+        if (merged != null) {
+            proxy.writeObject(merged);
+            roundsOut++;
+        }
+        if (stats != null) {
+            proxy.writeObject(stats);
+            stats = null;
+        }
+    }
+}
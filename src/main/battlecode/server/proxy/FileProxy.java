@@ -1,11 +1,15 @@
 package battlecode.server.proxy;
 
+import battlecode.serial.MatchFooter;
+import battlecode.serial.index.MatchIndex;
 import battlecode.serial.notification.Notification;
+import battlecode.server.Config;
 import battlecode.server.Server;
 
 import java.io.*;
 import java.util.zip.GZIPOutputStream;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CountingOutputStream;
 
 /**
  * This class represents a "connection" to a file. It provides a method for
@@ -35,31 +39,53 @@ public class FileProxy extends Proxy {
      */
     protected final boolean buffered;
 
-    protected ByteArrayOutputStream buffer;
+    /**
+     * Holds the file until it is published, in memory up to
+     * bc.server.save-buffer-limit bytes and on disk after that.
+     */
+    protected SpillingOutputStream buffer;
+
+    /**
+     * The index to save next to the file, or null.
+     */
+    private final MatchIndex index;
+
+    private final CountingOutputStream counter;
 
     /**
      * Creates a new FileProxy that utilizes the file given by the specified
-     * filename.
+     * filename, buffered if bc.server.save-buffered is set.
      *
      * @param fileName The name of the file to write to.
      * @throws IOException if the file cannot be opened or written to.
      */
     FileProxy(String fileName) throws IOException {
-        this(fileName, false);
+        this(fileName, Config.getGlobalConfig().getBoolean("bc.server.save-buffered"));
     }
 
     protected FileProxy(String fileName, boolean buffered) throws IOException {
+        this(fileName, buffered, false);
+    }
+
+    /**
+     * @param indexed whether to save a MatchIndex next to the file, so that
+     *                MatchFileReader can read its rounds in any order; only
+     *                for binary match files
+     */
+    protected FileProxy(String fileName, boolean buffered, boolean indexed) throws IOException {
         super();
 
         this.buffered = buffered;
 
         if (buffered) {
-            buffer = new ByteArrayOutputStream();
-            fileWriter = buffer;
             // Create directories if necessary.
             file = new File(fileName);
             if (!file.exists() && file.getParentFile() != null)
                 file.getParentFile().mkdirs();
+
+            buffer = new SpillingOutputStream(file.getAbsoluteFile().getParentFile(),
+                    Config.getGlobalConfig().getInt("bc.server.save-buffer-limit"));
+            fileWriter = buffer;
         } else {
             buffer = null;
 
@@ -75,12 +101,43 @@ public class FileProxy extends Proxy {
             fileWriter = new FileOutputStream(temp);
         }
 
-        stream = new GZIPOutputStream(fileWriter);
+        stream = createCompressor(fileWriter, indexed);
+
+        if (indexed) {
+            index = new MatchIndex();
+            counter = new CountingOutputStream(stream);
+        } else {
+            index = null;
+            counter = null;
+        }
+    }
 
+    /**
+     * Wraps the file in a gzip stream, compressing on several threads unless
+     * bc.server.compress-threads is 1 (0 means one per processor).
+     *
+     * @param independentBlocks whether every block must be compressed on its
+     *                          own, as an indexed file needs
+     */
+    static OutputStream createCompressor(OutputStream out, boolean independentBlocks) throws IOException {
+        Config options = Config.getGlobalConfig();
+        final int level = options.getInt("bc.server.compress-level");
+        int threads = options.getInt("bc.server.compress-threads");
+        if (threads <= 0)
+            threads = Runtime.getRuntime().availableProcessors();
+        if (threads == 1 && !independentBlocks) {
+            return new GZIPOutputStream(out) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+        return new ParallelGZIPOutputStream(out, level,
+                options.getInt("bc.server.compress-block-size"), threads, independentBlocks);
     }
 
     public OutputStream getOutputStream() throws IOException {
-        return stream;
+        return counter != null ? counter : stream;
     }
 
     public void close() throws IOException {
@@ -89,13 +146,15 @@ public class FileProxy extends Proxy {
         fileWriter.close();
         stream.close();
 
+        if (index != null) {
+            ParallelGZIPOutputStream blocks = (ParallelGZIPOutputStream) stream;
+            index.finish(counter.getByteCount(), blocks.getBlockSize(), blocks.getBlockOffsets());
+        }
+
         if (buffered) {
             if (file == null)
                 throw new IOException("no file to write to");
-            Server.say("writing to file " + file + " directly");
-            FileOutputStream out = new FileOutputStream(file);
-            out.write(buffer.toByteArray());
-            out.close();
+            buffer.publish(file);
         } else {
             // Move the file to its desired location.
             if (file.exists())
@@ -106,11 +165,35 @@ public class FileProxy extends Proxy {
                 Server.warn("unable to rename match file");
             }
         }
+
+        if (index != null) {
+            try {
+                index.write(file);
+            } catch (IOException e) {
+                Server.warn("unable to write match index: " + e.getMessage());
+            }
+        }
+    }
+
+    public void writeFooter(MatchFooter footer) throws IOException {
+        super.writeFooter(footer);
+        if (buffered) {
+            Server.say(String.format("match file buffer peaked at %d KB in memory%s",
+                    buffer.getPeakMemory() / 1024,
+                    buffer.hasSpilled() ? ", then spilled to disk (" + buffer.getSize() / 1024 + " KB so far)" : ""));
+            buffer.resetPeakMemory();
+        }
     }
 
     public void writeObject(Object o) throws IOException {
         if (o instanceof Notification)
             return;
+        if (index != null && output != null) {
+            // start every object on an empty handle table, so that it can
+            // be decoded without the ones before it
+            output.reset();
+            index.add(o, counter.getByteCount(), true);
+        }
         super.writeObject(o);
     }
 }
@@ -0,0 +1,206 @@
+package battlecode.server.proxy;
+
+import battlecode.engine.signal.Signal;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundDelta;
+import battlecode.serial.RoundStats;
+import battlecode.serial.ViewerState;
+import battlecode.serial.rmsb.RmsbReader;
+import battlecode.world.signal.RobotStateReconstructor;
+import com.thoughtworks.xstream.XStream;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.util.List;
+
+/**
+ * Rewrites saved matches for archiving: every k-th round is kept, with the
+ * rounds in between merged into it as DownsamplingProxy does for live
+ * viewers. The output is in the same format as the input (binary, XML or
+ * rmsb), and can be checked to reach the same state as the original at
+ * every round it keeps.
+ */
+public class MatchCompactor {
+
+    static private final int EX_USAGE = 64;
+    static private final int EX_DATAERR = 65;
+    static private final int EX_IOERR = 74;
+
+    public static void usage() {
+        System.err.println("Usage: MatchCompactor [-k rounds] [-v] [-o output.rms] match.rms...");
+        System.err.println("  -k  merge this many rounds into each one kept (default 10)");
+        System.err.println("  -v  verify that the output reaches the same state at every round it keeps");
+        System.exit(EX_USAGE);
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options();
+        options.addOption("k", "rounds", true, "rounds to merge into each one kept");
+        options.addOption("v", "verify", false, "verify the compacted file");
+        options.addOption("o", "output", true, "output file (only with a single input)");
+        CommandLine cl = null;
+        int interval = 10;
+        try {
+            cl = new GnuParser().parse(options, args);
+            if (cl.hasOption('k'))
+                interval = Integer.parseInt(cl.getOptionValue('k'));
+        } catch (ParseException e) {
+            usage();
+            return;
+        } catch (NumberFormatException e) {
+            usage();
+            return;
+        }
+        String[] inputs = cl.getArgs();
+        if (inputs.length == 0 || interval < 1 || (cl.hasOption('o') && inputs.length != 1)) {
+            usage();
+            return;
+        }
+
+        try {
+            for (String input : inputs) {
+                File inputFile = new File(input);
+                File outputFile = new File(cl.hasOption('o') ? cl.getOptionValue('o') : compactName(input));
+                List<Object> objects = RmsbConverter.readMatch(inputFile);
+
+                DownsamplingProxy proxy = new DownsamplingProxy(createProxyLike(inputFile, outputFile.getPath()),
+                        interval);
+                proxy.open();
+                for (Object o : objects)
+                    proxy.writeObject(o);
+                proxy.close();
+                System.out.printf("%s -> %s: %d rounds -> %d, %d bytes -> %d (%.1f%% smaller)%n", input,
+                        outputFile, proxy.getRoundsIn(), proxy.getRoundsOut(), inputFile.length(),
+                        outputFile.length(), 100.0 * (inputFile.length() - outputFile.length()) / inputFile.length());
+
+                if (cl.hasOption('v')) {
+                    String failure = verify(objects, RmsbConverter.readMatch(outputFile), interval);
+                    if (failure != null) {
+                        System.err.println("  verification FAILED: " + failure);
+                        System.exit(EX_DATAERR);
+                    } else {
+                        System.out.println("  verified");
+                    }
+                }
+            }
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+            System.exit(EX_DATAERR);
+        } catch (IOException e) {
+            e.printStackTrace();
+            if (e instanceof StreamCorruptedException)
+                System.exit(EX_DATAERR);
+            else
+                System.exit(EX_IOERR);
+        }
+    }
+
+    private static String compactName(String input) {
+        int dot = input.lastIndexOf('.');
+        if (dot <= input.lastIndexOf(File.separatorChar))
+            return input + "-compact";
+        return input.substring(0, dot) + "-compact" + input.substring(dot);
+    }
+
+    /**
+     * Creates a proxy that writes the given file in the same format as a
+     * saved match.
+     */
+    static Proxy createProxyLike(File match, String fileName) throws IOException {
+        InputStream stream = RmsbReader.openFile(match);
+        int first;
+        try {
+            first = stream.read();
+        } finally {
+            stream.close();
+        }
+        if (first == 'R')
+            return new RmsbProxy(fileName);
+        if (first == '<')
+            return ProxyFactory.createXStreamProxyFromFile(fileName);
+        return new FileProxy(fileName);
+    }
+
+    /**
+     * Plays a match and its compacted form side by side. Every round of the
+     * compacted match must reach the state the original reaches after the
+     * next interval rounds, or after fewer where the original has fewer
+     * before something else; everything but rounds and round stats must be
+     * the same.
+     *
+     * @param interval the number of rounds merged into each one kept
+     * @return what went wrong, or null if nothing did
+     */
+    public static String verify(List<Object> original, List<Object> compacted, int interval) {
+        XStream xs = XStreamProxy.getXStream();
+        RobotStateReconstructor originalSignals = new RobotStateReconstructor();
+        RobotStateReconstructor compactedSignals = new RobotStateReconstructor();
+        ViewerState originalState = new ViewerState();
+        ViewerState compactedState = new ViewerState();
+        int next = 0;
+        int originalRounds = 0;
+        int rounds = 0;
+        for (Object o : compacted) {
+            if (o instanceof RoundStats)
+                continue;
+            compactedSignals.reconstruct(o);
+            next = skipStats(original, next);
+
+            if (o instanceof RoundDelta) {
+                rounds++;
+                compactedState.apply(signalsOf(o));
+                int first = originalRounds;
+                while (originalRounds - first < interval && next < original.size()
+                        && original.get(next) instanceof RoundDelta) {
+                    originalState.apply(signalsOf(originalSignals.reconstruct(original.get(next++))));
+                    originalRounds++;
+                    next = skipStats(original, next);
+                }
+                if (originalRounds == first)
+                    return "compacted round " + rounds + " has no rounds of the original left";
+                if (!originalState.equals(compactedState))
+                    return "compacted round " + rounds + " differs from rounds " + first + "-" + (originalRounds - 1)
+                            + " of the original";
+                continue;
+            }
+
+            if (next == original.size())
+                return "the original ends before object " + compacted.indexOf(o) + " of the compacted match";
+            Object expected = originalSignals.reconstruct(original.get(next++));
+            if (expected instanceof RoundDelta)
+                return "rounds were dropped before a " + o.getClass().getSimpleName();
+            if (!xs.toXML(expected).equals(xs.toXML(o)))
+                return "a " + o.getClass().getSimpleName() + " differs from the original";
+            if (o instanceof MatchHeader) {
+                originalState.clear();
+                compactedState.clear();
+            } else if (o instanceof Signal[]) {
+                originalState.apply((Signal[]) expected);
+                compactedState.apply((Signal[]) o);
+            }
+        }
+        next = skipStats(original, next);
+        if (next < original.size())
+            return "the compacted match ends early";
+        return null;
+    }
+
+    private static int skipStats(List<Object> match, int i) {
+        while (i < match.size() && match.get(i) instanceof RoundStats)
+            i++;
+        return i;
+    }
+
+    private static Signal[] signalsOf(Object round) {
+        if (round instanceof Signal[])
+            return (Signal[]) round;
+        Signal[] signals = ((RoundDelta) round).getSignals();
+        return signals == null ? new Signal[0] : signals;
+    }
+}
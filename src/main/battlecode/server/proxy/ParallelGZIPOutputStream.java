@@ -0,0 +1,249 @@
+package battlecode.server.proxy;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A gzip output stream that compresses fixed-size blocks on a pool of worker
+ * threads. Each block is deflated independently (primed with the last 32KB
+ * of the previous block, so the ratio stays close to a single stream) and
+ * ends on a byte boundary with a sync flush; the blocks are written in order
+ * inside one ordinary gzip member, so any gzip reader can read the result.
+ * <p/>
+ * With independent blocks, no block is primed, so inflating can start at the
+ * beginning of any block; getBlockOffsets() says where they are.
+ * <p/>
+ * Like GZIPOutputStream, flush() does not force out data that is still being
+ * compressed.
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+
+    private static final int DICTIONARY_SIZE = 32768;
+
+    private static final byte[] HEADER = {
+            0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    // an empty final fixed-Huffman block
+    private static final byte[] LAST_BLOCK = {0x03, 0x00};
+
+    private final OutputStream out;
+    private final int level;
+    private final int blockSize;
+    private final int maxInFlight;
+    private final boolean independent;
+    private final ExecutorService pool;
+
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+    private final CRC32 crc = new CRC32();
+    private long totalIn;
+    private long totalOut;
+    private long[] blockOffsets = new long[16];
+    private int blockCount;
+
+    private byte[] block;
+    private int blockLength;
+    private byte[] dictionary;
+    private boolean closed;
+
+    /**
+     * @param out       the stream to write compressed data to
+     * @param level     the deflate level, 0-9 or -1 for the default
+     * @param blockSize the number of uncompressed bytes per block
+     * @param threads   the number of compression threads
+     */
+    public ParallelGZIPOutputStream(OutputStream out, int level, int blockSize, int threads) throws IOException {
+        this(out, level, blockSize, threads, false);
+    }
+
+    /**
+     * @param out         the stream to write compressed data to
+     * @param level       the deflate level, 0-9 or -1 for the default
+     * @param blockSize   the number of uncompressed bytes per block
+     * @param threads     the number of compression threads
+     * @param independent whether to compress every block without the data
+     *                    before it, so that each can be inflated alone
+     */
+    public ParallelGZIPOutputStream(OutputStream out, int level, int blockSize, int threads,
+                                    boolean independent) throws IOException {
+        if (blockSize < DICTIONARY_SIZE)
+            throw new IllegalArgumentException("block size must be at least " + DICTIONARY_SIZE);
+        if (threads < 1)
+            throw new IllegalArgumentException("need at least one compression thread");
+        this.out = out;
+        this.level = level;
+        this.blockSize = blockSize;
+        this.maxInFlight = 2 * threads;
+        this.independent = independent;
+        this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "gzip-worker");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.block = new byte[blockSize];
+        out.write(HEADER);
+        totalOut = HEADER.length;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Gets the offset in the compressed output of each block, followed by
+     * the offset of the empty block that ends the deflate stream. Block i
+     * holds the uncompressed bytes from i * getBlockSize(). Only complete
+     * once the stream is closed.
+     */
+    public long[] getBlockOffsets() {
+        return Arrays.copyOf(blockOffsets, blockCount);
+    }
+
+    public void write(int b) throws IOException {
+        ensureOpen();
+        block[blockLength++] = (byte) b;
+        crc.update(b);
+        totalIn++;
+        if (blockLength == blockSize)
+            submitBlock();
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (off < 0 || len < 0 || off + len > b.length)
+            throw new IndexOutOfBoundsException();
+        crc.update(b, off, len);
+        totalIn += len;
+        while (len > 0) {
+            int n = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+            if (blockLength == blockSize)
+                submitBlock();
+        }
+    }
+
+    /**
+     * Writes out the blocks that have finished compressing.
+     */
+    public void flush() throws IOException {
+        ensureOpen();
+        while (!pending.isEmpty() && pending.peekFirst().isDone())
+            writeCompressed(pending.pollFirst());
+        out.flush();
+    }
+
+    /**
+     * Finishes the gzip member and closes the underlying stream. Calling
+     * close() more than once has no effect.
+     */
+    public void close() throws IOException {
+        if (closed)
+            return;
+        try {
+            if (blockLength > 0)
+                submitBlock();
+            while (!pending.isEmpty())
+                writeCompressed(pending.pollFirst());
+            addBlockOffset();
+            out.write(LAST_BLOCK);
+            writeInt((int) crc.getValue());
+            writeInt((int) totalIn);
+            out.flush();
+        } finally {
+            closed = true;
+            pool.shutdownNow();
+            out.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("stream closed");
+    }
+
+    private void submitBlock() throws IOException {
+        final byte[] input = block;
+        final int length = blockLength;
+        final byte[] dict = dictionary;
+        pending.addLast(pool.submit(new Callable<byte[]>() {
+            public byte[] call() {
+                return deflate(input, length, dict);
+            }
+        }));
+
+        // only the last block can be short, and it needs no successor
+        dictionary = length == blockSize && !independent ? Arrays.copyOfRange(input, length - DICTIONARY_SIZE, length) : null;
+        block = new byte[blockSize];
+        blockLength = 0;
+
+        while (pending.size() > maxInFlight)
+            writeCompressed(pending.pollFirst());
+    }
+
+    private byte[] deflate(byte[] input, int length, byte[] dict) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dict != null)
+                deflater.setDictionary(dict);
+            deflater.setInput(input, 0, length);
+            byte[] output = new byte[length + length / 8 + 64];
+            int size = 0;
+            while (true) {
+                size += deflater.deflate(output, size, output.length - size, Deflater.SYNC_FLUSH);
+                // a sync flush is complete once it stops filling the buffer
+                if (size < output.length)
+                    break;
+                byte[] bigger = new byte[output.length * 2];
+                System.arraycopy(output, 0, bigger, 0, size);
+                output = bigger;
+            }
+            byte[] result = new byte[size];
+            System.arraycopy(output, 0, result, 0, size);
+            return result;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeCompressed(Future<byte[]> future) throws IOException {
+        try {
+            byte[] compressed = future.get();
+            addBlockOffset();
+            out.write(compressed);
+            totalOut += compressed.length;
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException("compression failed", e.getCause());
+        }
+    }
+
+    private void addBlockOffset() {
+        if (blockCount == blockOffsets.length)
+            blockOffsets = Arrays.copyOf(blockOffsets, 2 * blockCount);
+        blockOffsets[blockCount++] = totalOut;
+    }
+
+    private void writeInt(int i) throws IOException {
+        out.write(i & 0xff);
+        out.write((i >> 8) & 0xff);
+        out.write((i >> 16) & 0xff);
+        out.write((i >> 24) & 0xff);
+    }
+}
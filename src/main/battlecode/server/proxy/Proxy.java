@@ -4,6 +4,7 @@ import battlecode.serial.MatchFooter;
 import battlecode.serial.MatchHeader;
 import battlecode.serial.RoundDelta;
 import battlecode.serial.RoundStats;
+import battlecode.server.Config;
 
 import java.io.IOException;
 import java.io.ObjectOutputStream;
@@ -47,7 +48,7 @@ public abstract class Proxy {
             if (out instanceof ObjectOutputStream)
                 this.output = (ObjectOutputStream) out;
             else
-                this.output = new ObjectOutputStream(out);
+                this.output = createObjectOutputStream(out);
             this.output.flush();
         }
     }
@@ -71,12 +72,26 @@ public abstract class Proxy {
      * @throws IOException if the object could not be written
      */
     public void writeObject(Object o) throws IOException {
-        if (output != null) {
+        if (output instanceof CompactObjectOutputStream) {
+            ((CompactObjectOutputStream) output).writeMatchObject(o);
+        } else if (output != null) {
             output.reset();
             output.writeObject(o);
         }
     }
 
+    /**
+     * Creates the object stream for a binary proxy: a
+     * CompactObjectOutputStream if bc.server.compact-serial is on, or else
+     * the plain stream every reader understands.
+     */
+    static ObjectOutputStream createObjectOutputStream(OutputStream out) throws IOException {
+        Config options = Config.getGlobalConfig();
+        if (options.getBoolean("bc.server.compact-serial"))
+            return new CompactObjectOutputStream(out, options.getInt("bc.server.reset-interval"));
+        return new ObjectOutputStream(out);
+    }
+
     /**
      * Writes header data to the recipient.
      *
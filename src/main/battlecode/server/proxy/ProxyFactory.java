@@ -32,10 +32,41 @@ public class ProxyFactory {
      * @throws IOException if the Proxy could not be created
      */
     public static Proxy createProxyFromFile(String fileName) throws IOException {
+        if (fileName.endsWith(".rmsb") || Config.getGlobalConfig().getBoolean("bc.server.output-rmsb"))
+            return new RmsbProxy(fileName);
         if (Boolean.parseBoolean(Config.getGlobalConfig().get("bc.server.output-xml")))
             return createXStreamProxyFromFile(fileName);
         else
-            return new FileProxy(fileName);
+            return new FileProxy(fileName, Config.getGlobalConfig().getBoolean("bc.server.save-buffered"),
+                    Config.getGlobalConfig().getBoolean("bc.server.index-match"));
+    }
+
+    /**
+     * Wraps a proxy so that it is written from its own thread, as configured
+     * by bc.server.io-policy and bc.server.io-queue-size.
+     *
+     * @param proxy the proxy to wrap
+     * @return a new AsyncProxy feeding the given proxy
+     */
+    public static AsyncProxy createAsyncProxy(Proxy proxy) {
+        Config options = Config.getGlobalConfig();
+        AsyncProxy.Policy policy = AsyncProxy.Policy.valueOf(options.get("bc.server.io-policy").toUpperCase());
+        return new AsyncProxy(proxy, policy, options.getInt("bc.server.io-queue-size"));
+    }
+
+    /**
+     * Wraps a proxy for a viewer so that it gets every k-th round, as
+     * configured by bc.server.downsample-rounds.
+     *
+     * @param proxy the proxy to wrap
+     * @return a new DownsamplingProxy feeding the given proxy, or the proxy
+     *         itself if every round is to be sent
+     */
+    public static Proxy createDownsamplingProxy(Proxy proxy) {
+        int interval = Config.getGlobalConfig().getInt("bc.server.downsample-rounds");
+        if (interval <= 1)
+            return proxy;
+        return new DownsamplingProxy(proxy, interval);
     }
 
     /**
@@ -50,7 +81,7 @@ public class ProxyFactory {
         return new FileProxy(fileName) {
 
             public OutputStream getOutputStream() throws IOException {
-                return XStreamProxy.getXStream().createObjectOutputStream(stream);
+                return XStreamProxy.createObjectOutputStream(stream);
             }
 
             public void writeObject(Object o) throws IOException {
@@ -0,0 +1,257 @@
+package battlecode.server.proxy;
+
+import battlecode.serial.rmsb.RmsbReader;
+import battlecode.serial.rmsb.RmsbWriter;
+import battlecode.world.signal.RobotStateReconstructor;
+import com.thoughtworks.xstream.XStream;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Converts saved matches (binary or XML .rms files) to the rmsb format, and
+ * optionally checks the result or compares it with Java serialization.
+ */
+public class RmsbConverter {
+
+    static private final int EX_USAGE = 64;
+    static private final int EX_DATAERR = 65;
+    static private final int EX_IOERR = 74;
+
+    public static void usage() {
+        System.err.println("Usage: RmsbConverter [-q] [-v] [-c] [-o output.rmsb] match.rms...");
+        System.err.println("  -q  quantize doubles inside signals");
+        System.err.println("  -v  verify that the output reads back to the same objects");
+        System.err.println("  -c  print size and speed compared to Java serialization (plain and compact)");
+        System.exit(EX_USAGE);
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options();
+        options.addOption("q", "quantize", false, "quantize doubles inside signals");
+        options.addOption("v", "verify", false, "verify the converted file");
+        options.addOption("c", "compare", false, "compare with Java serialization");
+        options.addOption("o", "output", true, "output file (only with a single input)");
+        CommandLine cl = null;
+        try {
+            cl = new GnuParser().parse(options, args);
+        } catch (ParseException e) {
+            usage();
+            return;
+        }
+        String[] inputs = cl.getArgs();
+        if (inputs.length == 0 || (cl.hasOption('o') && inputs.length != 1)) {
+            usage();
+            return;
+        }
+        boolean quantize = cl.hasOption('q');
+
+        try {
+            for (String input : inputs) {
+                String output = cl.hasOption('o') ? cl.getOptionValue('o') : rmsbName(input);
+                List<Object> objects = readMatch(new File(input));
+
+                OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+                RmsbWriter writer = new RmsbWriter(out, quantize);
+                for (Object o : objects)
+                    writer.writeObject(o);
+                writer.close();
+                System.out.println(input + " -> " + output + " (" + objects.size() + " objects)");
+
+                if (cl.hasOption('v')) {
+                    if (quantize) {
+                        System.out.println("  skipping verification of a quantized file");
+                    } else if (!verify(objects, readRmsb(new File(output)))) {
+                        System.err.println("  verification FAILED");
+                        System.exit(EX_DATAERR);
+                    } else {
+                        System.out.println("  verified");
+                    }
+                }
+                if (cl.hasOption('c'))
+                    compare(objects, quantize);
+            }
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+            System.exit(EX_DATAERR);
+        } catch (IOException e) {
+            e.printStackTrace();
+            if (e instanceof StreamCorruptedException)
+                System.exit(EX_DATAERR);
+            else
+                System.exit(EX_IOERR);
+        }
+    }
+
+    private static String rmsbName(String input) {
+        String base = input.endsWith(".rms") ? input.substring(0, input.length() - 4) : input;
+        return base + ".rmsb";
+    }
+
+    /**
+     * Reads every object of a saved match, whichever format it was saved in.
+     * Change-only robot state (bc.engine.signal-format=2) is reconstructed,
+     * so the signals are always in the full format.
+     */
+    public static List<Object> readMatch(File file) throws IOException, ClassNotFoundException {
+        List<Object> objects = readObjects(file);
+        RobotStateReconstructor reconstructor = new RobotStateReconstructor();
+        for (Object o : objects)
+            reconstructor.reconstruct(o);
+        return objects;
+    }
+
+    private static List<Object> readObjects(File file) throws IOException, ClassNotFoundException {
+        InputStream stream = RmsbReader.openFile(file);
+        stream.mark(8);
+        int first = stream.read();
+        stream.reset();
+        if (first == 'R')
+            return readRmsb(file);
+
+        ObjectInputStream input;
+        if (first == '<')
+            input = new XmlObjectInputStream(stream);
+        else
+            input = new ObjectInputStream(stream);
+        List<Object> objects = new ArrayList<Object>();
+        try {
+            while (true)
+                objects.add(input.readObject());
+        } catch (EOFException e) {
+            // end of the match
+        }
+        input.close();
+        return objects;
+    }
+
+    public static List<Object> readRmsb(File file) throws IOException {
+        RmsbReader reader = new RmsbReader(RmsbReader.openFile(file));
+        List<Object> objects = new ArrayList<Object>();
+        try {
+            while (true)
+                objects.add(reader.readObject());
+        } catch (EOFException e) {
+            // end of the match
+        }
+        reader.close();
+        return objects;
+    }
+
+    /**
+     * Compares two matches object by object through their XML form, which
+     * covers every serialized field but (unlike Java serialization) does not
+     * depend on whether equal strings are shared instances.
+     */
+    private static boolean verify(List<Object> expected, List<Object> actual) {
+        if (expected.size() != actual.size())
+            return false;
+        XStream xs = XStreamProxy.getXStream();
+        for (int i = 0; i < expected.size(); i++) {
+            if (!xs.toXML(expected.get(i)).equals(xs.toXML(actual.get(i)))) {
+                System.err.println("  object " + i + " (" + expected.get(i).getClass().getSimpleName() + ") differs");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the same bytes a binary FileProxy wrote before gzipping, without
+    // bc.server.compact-serial
+    private static byte[] javaSerialize(List<Object> objects) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        for (Object o : objects) {
+            out.reset();
+            out.writeObject(o);
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    // what a binary FileProxy writes with bc.server.compact-serial on
+    private static byte[] compactSerialize(List<Object> objects) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompactObjectOutputStream out = new CompactObjectOutputStream(bytes, 256);
+        for (Object o : objects)
+            out.writeMatchObject(o);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static void javaDeserialize(byte[] data) throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+        try {
+            while (true)
+                in.readObject();
+        } catch (EOFException e) {
+            // done
+        }
+    }
+
+    private static byte[] rmsbSerialize(List<Object> objects, boolean quantize) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RmsbWriter writer = new RmsbWriter(bytes, quantize);
+        for (Object o : objects)
+            writer.writeObject(o);
+        writer.close();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        out.write(data);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static void compare(List<Object> objects, boolean quantize) throws IOException, ClassNotFoundException {
+        int repeats = 5;
+        byte[] java = null, compact = null, rmsb = null;
+        long javaEncode = Long.MAX_VALUE, compactEncode = Long.MAX_VALUE, rmsbEncode = Long.MAX_VALUE;
+        long javaDecode = Long.MAX_VALUE, compactDecode = Long.MAX_VALUE, rmsbDecode = Long.MAX_VALUE;
+        for (int i = 0; i < repeats; i++) {
+            long start = System.nanoTime();
+            java = javaSerialize(objects);
+            javaEncode = Math.min(javaEncode, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            compact = compactSerialize(objects);
+            compactEncode = Math.min(compactEncode, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            rmsb = rmsbSerialize(objects, quantize);
+            rmsbEncode = Math.min(rmsbEncode, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            javaDeserialize(java);
+            javaDecode = Math.min(javaDecode, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            javaDeserialize(compact);
+            compactDecode = Math.min(compactDecode, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            RmsbReader reader = new RmsbReader(new ByteArrayInputStream(rmsb));
+            try {
+                while (true)
+                    reader.readObject();
+            } catch (EOFException e) {
+                // done
+            }
+            rmsbDecode = Math.min(rmsbDecode, System.nanoTime() - start);
+        }
+
+        System.out.printf("  %-7s %12s %12s %12s %12s%n", "", "raw bytes", "gzip bytes", "encode ms", "decode ms");
+        System.out.printf("  %-7s %12d %12d %12.1f %12.1f%n", "java", java.length, gzip(java).length, javaEncode / 1e6, javaDecode / 1e6);
+        System.out.printf("  %-7s %12d %12d %12.1f %12.1f%n", "compact", compact.length, gzip(compact).length, compactEncode / 1e6, compactDecode / 1e6);
+        System.out.printf("  %-7s %12d %12d %12.1f %12.1f%n", "rmsb", rmsb.length, gzip(rmsb).length, rmsbEncode / 1e6, rmsbDecode / 1e6);
+    }
+}
@@ -0,0 +1,42 @@
+package battlecode.server.proxy;
+
+import battlecode.serial.notification.Notification;
+import battlecode.serial.rmsb.RmsbWriter;
+import battlecode.server.Config;
+
+import java.io.IOException;
+
+/**
+ * Saves match data to a file in the compact rmsb format (see
+ * battlecode.serial.rmsb.RmsbFormat) instead of Java serialization.
+ * Like FileProxy, the stream is gzipped and moved into place on close.
+ */
+public class RmsbProxy extends FileProxy {
+
+    private RmsbWriter writer;
+
+    RmsbProxy(String fileName) throws IOException {
+        super(fileName);
+    }
+
+    @Override
+    public void open() throws IOException {
+        boolean quantize = Config.getGlobalConfig().getBoolean("bc.server.rmsb-quantize");
+        writer = new RmsbWriter(getOutputStream(), quantize);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // finishes the gzip stream; FileProxy then publishes the file
+        if (writer != null)
+            writer.close();
+        super.close();
+    }
+
+    @Override
+    public void writeObject(Object o) throws IOException {
+        if (o instanceof Notification || writer == null)
+            return;
+        writer.writeObject(o);
+    }
+}
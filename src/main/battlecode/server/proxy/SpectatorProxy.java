@@ -0,0 +1,434 @@
+package battlecode.server.proxy;
+
+import battlecode.engine.signal.Signal;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundDelta;
+import battlecode.serial.RoundStats;
+import battlecode.serial.ViewerState;
+import battlecode.server.Server;
+import battlecode.world.signal.RobotStateReconstructor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Streams match data to any number of TCP spectators from a single selector
+ * thread. Each object is serialized once into a frame that starts with a
+ * reset, so the frames can be sent to every spectator as they are: each
+ * spectator writes from its own view of the same read-only buffer.
+ * <p/>
+ * A spectator who connects during a match is sent its header (and the
+ * other objects sent about the match as a whole, such as metadata), then
+ * one round that spawns every robot alive and sets everything a viewer
+ * knows about them and the ore: the state the match has reached, kept up
+ * as rounds are written (see ViewerState). Frames are only kept until every
+ * connected spectator has been sent them. The catch-up is one header and
+ * one round, and does not count against a spectator's buffer limit; falling
+ * further behind than the limit on live frames gets it disconnected.
+ * <p/>
+ * Spectators read the stream as a binary proxy's ObjectInputStream would.
+ */
+public class SpectatorProxy extends Proxy {
+
+    // how long close() waits for spectators to receive the rest of the match
+    private static final long LINGER_MILLIS = 5000;
+
+    // frames to hand to one gathering write
+    private static final int MAX_GATHER = 32;
+
+    private static class Frame {
+        final ByteBuffer data;
+        final long start;
+
+        Frame(byte[] bytes, long start) {
+            this.data = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+            this.start = start;
+        }
+
+        long end() {
+            return start + data.remaining();
+        }
+    }
+
+    private static class Client {
+        final SocketChannel channel;
+        final SelectionKey key;
+        // the stream header and the catch-up, until they are sent
+        final List<ByteBuffer> catchUp;
+        // the rest of a partly sent frame, and the next frame to send
+        ByteBuffer current;
+        long next;
+        // the stream offset of the next byte to send
+        long position;
+
+        Client(SocketChannel channel, SelectionKey key, List<ByteBuffer> catchUp, long next, long position) {
+            this.channel = channel;
+            this.key = key;
+            this.catchUp = catchUp;
+            this.next = next;
+            this.position = position;
+        }
+    }
+
+    private final long bufferLimit;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final Thread thread;
+
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    private final ObjectOutputStream encoder;
+    private final byte[] streamHeader;
+
+    // frames from sequence number firstFrame on, guarded by frames
+    private final List<Frame> frames = new ArrayList<Frame>();
+    private long firstFrame;
+    private long end;
+    private boolean closing;
+
+    // what a newcomer is sent of the current match, guarded by frames: the
+    // header and whatever else is not a round, before and after the rounds
+    // so far, and the state those rounds reached
+    private final List<Frame> beforeRounds = new ArrayList<Frame>();
+    private final List<Frame> afterRounds = new ArrayList<Frame>();
+    private boolean roundsSent;
+    private final ViewerState state = new ViewerState();
+    private final RobotStateReconstructor reconstructor = new RobotStateReconstructor();
+
+    // used only by the selector thread
+    private final List<Client> clients = new ArrayList<Client>();
+
+    private volatile int clientCount;
+    private volatile int evictedCount;
+
+    /**
+     * Starts listening for spectators.
+     *
+     * @param port        the port to listen on, or 0 for any free port
+     * @param bufferLimit the number of bytes of live frames a spectator may
+     *                    fall behind by before it is disconnected
+     */
+    public SpectatorProxy(int port, long bufferLimit) throws IOException {
+        this.bufferLimit = bufferLimit;
+        encoder = createObjectOutputStream(encoded);
+        encoder.flush();
+        streamHeader = encoded.toByteArray();
+        encoded.reset();
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.socket().bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        selector = Selector.open();
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    serve();
+                } catch (ClosedSelectorException e) {
+                    // closed
+                } catch (IOException e) {
+                    Server.warn("spectator server failed: " + e.getMessage());
+                } finally {
+                    shutdown();
+                }
+            }
+        }, "spectator-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gets the port spectators can connect to.
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Gets the number of spectators connected right now.
+     */
+    public int getClientCount() {
+        return clientCount;
+    }
+
+    /**
+     * Gets the number of spectators disconnected for falling behind.
+     */
+    public int getEvictedCount() {
+        return evictedCount;
+    }
+
+    protected OutputStream getOutputStream() throws IOException {
+        return null;
+    }
+
+    public void open() throws IOException {
+    }
+
+    public void writeObject(Object o) throws IOException {
+        // nobody left to send to
+        if (!thread.isAlive())
+            return;
+        byte[] bytes = encode(o);
+
+        synchronized (frames) {
+            if (closing)
+                throw new IOException("spectator proxy closed");
+            Frame frame = new Frame(bytes, end);
+            if (o instanceof MatchHeader) {
+                beforeRounds.clear();
+                afterRounds.clear();
+                roundsSent = false;
+                state.clear();
+                reconstructor.reset();
+            }
+            Signal[] signals = o instanceof RoundDelta ? ((RoundDelta) o).getSignals()
+                    : o instanceof Signal[] ? (Signal[]) o : null;
+            if (signals != null) {
+                // the signals are shared with other proxies, so reconstruct a copy
+                state.apply(reconstructor.reconstruct(signals.clone()));
+                roundsSent = true;
+            } else if (!(o instanceof RoundStats)) {
+                (roundsSent ? afterRounds : beforeRounds).add(frame);
+            }
+            frames.add(frame);
+            end = frame.end();
+        }
+        selector.wakeup();
+    }
+
+    /**
+     * Serializes an object as a frame. Called by the thread writing the
+     * match, and by the selector thread for the catch-up round.
+     */
+    private byte[] encode(Object o) throws IOException {
+        synchronized (encoder) {
+            encoder.reset();
+            if (encoder instanceof CompactObjectOutputStream)
+                ((CompactObjectOutputStream) encoder).writeMatchObject(o);
+            else
+                encoder.writeObject(o);
+            encoder.flush();
+            byte[] bytes = encoded.toByteArray();
+            encoded.reset();
+            return bytes;
+        }
+    }
+
+    /**
+     * Gets the number of frames kept for spectators who have not been sent
+     * them yet.
+     */
+    int getFrameCount() {
+        synchronized (frames) {
+            return frames.size();
+        }
+    }
+
+    /**
+     * Gives spectators a few seconds to receive what has been written, then
+     * disconnects them.
+     */
+    public void close() throws IOException {
+        synchronized (frames) {
+            closing = true;
+        }
+        selector.wakeup();
+        try {
+            thread.join(LINGER_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            selector.close();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void serve() throws IOException {
+        while (true) {
+            selector.select();
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid())
+                    continue;
+                if (key.isAcceptable())
+                    accept();
+                else if (key.isReadable())
+                    drainInput((Client) key.attachment());
+            }
+
+            boolean closed;
+            long end;
+            synchronized (frames) {
+                closed = closing;
+                end = this.end;
+            }
+            boolean pending = false;
+            for (Client client : new ArrayList<Client>(clients)) {
+                if (!client.key.isValid())
+                    continue;
+                write(client);
+                if (end - client.position > bufferLimit) {
+                    Server.warn("disconnecting slow spectator " + client.channel.socket().getRemoteSocketAddress());
+                    evictedCount++;
+                    disconnect(client);
+                    continue;
+                }
+                boolean behind = !client.catchUp.isEmpty() || client.current != null || client.position < end;
+                client.key.interestOps(SelectionKey.OP_READ | (behind ? SelectionKey.OP_WRITE : 0));
+                pending |= behind;
+            }
+            trim();
+            if (closed && !pending)
+                return;
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        List<ByteBuffer> catchUp = new ArrayList<ByteBuffer>();
+        catchUp.add(ByteBuffer.wrap(streamHeader));
+        List<ByteBuffer> after = new ArrayList<ByteBuffer>();
+        Signal[] signals;
+        long next, position;
+        synchronized (frames) {
+            for (Frame frame : beforeRounds)
+                catchUp.add(frame.data.duplicate());
+            for (Frame frame : afterRounds)
+                after.add(frame.data.duplicate());
+            signals = roundsSent ? state.toSignals() : null;
+            next = firstFrame + frames.size();
+            position = end;
+        }
+        if (signals != null)
+            catchUp.add(ByteBuffer.wrap(encode(new RoundDelta(signals))));
+        catchUp.addAll(after);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        Client client = new Client(channel, key, catchUp, next, position);
+        key.attach(client);
+        clients.add(client);
+        clientCount = clients.size();
+    }
+
+    // spectators have nothing to say; this notices when they hang up
+    private void drainInput(Client client) {
+        ByteBuffer sink = ByteBuffer.allocate(256);
+        try {
+            while (true) {
+                int n = client.channel.read(sink);
+                if (n < 0) {
+                    disconnect(client);
+                    return;
+                }
+                if (n == 0)
+                    return;
+                sink.clear();
+            }
+        } catch (IOException e) {
+            disconnect(client);
+        }
+    }
+
+    private void write(Client client) {
+        try {
+            if (!client.catchUp.isEmpty()) {
+                ByteBuffer[] catchUp = client.catchUp.toArray(new ByteBuffer[client.catchUp.size()]);
+                client.channel.write(catchUp);
+                while (!client.catchUp.isEmpty() && !client.catchUp.get(0).hasRemaining())
+                    client.catchUp.remove(0);
+                if (!client.catchUp.isEmpty())
+                    return;
+            }
+            while (true) {
+                ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+                int count = 0;
+                if (client.current != null)
+                    gather[count++] = client.current;
+                synchronized (frames) {
+                    long last = firstFrame + frames.size();
+                    for (long seq = client.next; seq < last && count < MAX_GATHER; seq++)
+                        gather[count++] = frames.get((int) (seq - firstFrame)).data.duplicate();
+                }
+                if (count == 0)
+                    return;
+                long written = client.channel.write(gather, 0, count);
+                client.position += written;
+                int done = 0;
+                while (done < count && !gather[done].hasRemaining())
+                    done++;
+                // frames sent whole, besides the one that was partly sent
+                client.next += client.current != null ? Math.max(done - 1, 0) : done;
+                if (done < count) {
+                    if (gather[done] != client.current) {
+                        client.current = gather[done];
+                        client.next++;
+                    }
+                    return;
+                }
+                client.current = null;
+            }
+        } catch (IOException e) {
+            disconnect(client);
+        }
+    }
+
+    // forgets frames that every spectator has been sent
+    private void trim() {
+        long keep = Long.MAX_VALUE;
+        for (Client client : clients)
+            keep = Math.min(keep, client.next);
+        synchronized (frames) {
+            int drop = (int) Math.min(keep - firstFrame, frames.size());
+            if (drop > 0) {
+                frames.subList(0, drop).clear();
+                firstFrame += drop;
+            }
+        }
+    }
+
+    private void disconnect(Client client) {
+        client.key.cancel();
+        try {
+            client.channel.close();
+        } catch (IOException e) {
+            // already gone
+        }
+        clients.remove(client);
+        clientCount = clients.size();
+    }
+
+    private void shutdown() {
+        for (Client client : new ArrayList<Client>(clients))
+            disconnect(client);
+        try {
+            selector.close();
+            serverChannel.close();
+        } catch (IOException e) {
+            // nothing more to do
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package battlecode.server.proxy;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds a file's contents in memory up to a limit, then moves them to a
+ * temporary file in the destination's directory and writes through to that.
+ * Either way, publish() puts the finished file in place with a rename, so
+ * that nobody sees a partly written file.
+ * <p/>
+ * Memory is held in fixed-size chunks, so that growing never copies the data
+ * or allocates one large array.
+ */
+public class SpillingOutputStream extends OutputStream {
+
+    private static final int CHUNK_SIZE = 65536;
+
+    private final File directory;
+    private final long memoryLimit;
+
+    private final List<byte[]> chunks = new ArrayList<byte[]>();
+    // bytes used in the last chunk
+    private int chunkLength = CHUNK_SIZE;
+    private long size;
+    private long peakMemory;
+
+    private File spillFile;
+    private OutputStream spill;
+    private boolean spilled;
+    private boolean closed;
+
+    /**
+     * @param directory   where to put the temporary file; the same directory
+     *                    as the destination, so that publishing is a rename
+     * @param memoryLimit the number of bytes to hold in memory before
+     *                    spilling to disk
+     */
+    public SpillingOutputStream(File directory, long memoryLimit) {
+        this.directory = directory;
+        this.memoryLimit = memoryLimit;
+    }
+
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed)
+            throw new IOException("stream closed");
+        if (off < 0 || len < 0 || off + len > b.length)
+            throw new IndexOutOfBoundsException();
+        if (spill == null && size + len > memoryLimit) {
+            spill();
+            spilled = true;
+        }
+        size += len;
+        if (spill != null) {
+            spill.write(b, off, len);
+            return;
+        }
+        while (len > 0) {
+            if (chunkLength == CHUNK_SIZE) {
+                chunks.add(new byte[CHUNK_SIZE]);
+                chunkLength = 0;
+                peakMemory = Math.max(peakMemory, (long) chunks.size() * CHUNK_SIZE);
+            }
+            int n = Math.min(len, CHUNK_SIZE - chunkLength);
+            System.arraycopy(b, off, chunks.get(chunks.size() - 1), chunkLength, n);
+            chunkLength += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void spill() throws IOException {
+        spillFile = File.createTempFile("battlecode", ".tmp", directory);
+        spillFile.deleteOnExit();
+        spill = new BufferedOutputStream(new FileOutputStream(spillFile), CHUNK_SIZE);
+        for (int i = 0; i < chunks.size(); i++)
+            spill.write(chunks.get(i), 0, i == chunks.size() - 1 ? chunkLength : CHUNK_SIZE);
+        chunks.clear();
+        chunkLength = CHUNK_SIZE;
+    }
+
+    public void flush() throws IOException {
+        if (spill != null)
+            spill.flush();
+    }
+
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        if (spill != null)
+            spill.close();
+    }
+
+    /**
+     * Closes the stream and moves its contents to the given file, replacing
+     * it if it exists.
+     */
+    public void publish(File target) throws IOException {
+        close();
+        if (spillFile == null) {
+            spill();
+            spill.close();
+        }
+        // renameTo replaces the target atomically where the platform can
+        if (!spillFile.renameTo(target)) {
+            if (!target.delete() || !spillFile.renameTo(target))
+                throw new IOException("unable to move " + spillFile + " to " + target);
+        }
+    }
+
+    /**
+     * Gets the number of bytes written.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Whether the data outgrew the memory limit.
+     */
+    public boolean hasSpilled() {
+        return spilled;
+    }
+
+    /**
+     * Gets the most memory held for data since the stream was created or
+     * resetPeakMemory() was last called.
+     */
+    public long getPeakMemory() {
+        return peakMemory;
+    }
+
+    public void resetPeakMemory() {
+        peakMemory = (long) chunks.size() * CHUNK_SIZE;
+    }
+}
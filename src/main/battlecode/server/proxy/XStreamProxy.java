@@ -7,6 +7,7 @@ import battlecode.serial.ExtensibleMetadata;
 import battlecode.serial.MatchFooter;
 import battlecode.serial.RoundDelta;
 import battlecode.serial.RoundStats;
+import battlecode.server.Config;
 import battlecode.world.GameMap;
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.converters.*;
@@ -282,6 +283,16 @@ public class XStreamProxy extends Proxy {
         return xstream;
     }
 
+    /**
+     * Opens an XML object stream, written by XmlObjectOutputStream unless
+     * bc.server.streaming-xml is off. Both write the same bytes.
+     */
+    static ObjectOutputStream createObjectOutputStream(OutputStream stream) throws IOException {
+        if (Config.getGlobalConfig().getBoolean("bc.server.streaming-xml"))
+            return new XmlObjectOutputStream(stream);
+        return getXStream().createObjectOutputStream(stream);
+    }
+
     public XStreamProxy(OutputStream stream) {
         this.stream = stream;
     }
@@ -292,7 +303,7 @@ public class XStreamProxy extends Proxy {
     }
 
     protected OutputStream getOutputStream() throws IOException {
-        return getXStream().createObjectOutputStream(stream);
+        return createObjectOutputStream(stream);
     }
 
     // In "compute and view match synchronously" mode, we can get
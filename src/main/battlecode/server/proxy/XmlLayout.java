@@ -0,0 +1,202 @@
+package battlecode.server.proxy;
+
+import battlecode.common.MapLocation;
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.SingleValueConverter;
+import com.thoughtworks.xstream.converters.basic.BooleanConverter;
+import com.thoughtworks.xstream.converters.basic.DoubleConverter;
+import com.thoughtworks.xstream.converters.basic.IntConverter;
+import com.thoughtworks.xstream.converters.basic.LongConverter;
+import com.thoughtworks.xstream.converters.basic.StringConverter;
+import com.thoughtworks.xstream.converters.enums.EnumSingleValueConverter;
+import com.thoughtworks.xstream.converters.reflection.ReflectionConverter;
+import com.thoughtworks.xstream.converters.reflection.ReflectionProvider;
+import com.thoughtworks.xstream.io.naming.NameCoder;
+import com.thoughtworks.xstream.io.xml.XmlFriendlyNameCoder;
+import com.thoughtworks.xstream.mapper.Mapper;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How XStream (as configured by XStreamProxy) lays out one class whose
+ * fields are all written as attributes, e.g. every signal. The layout is
+ * taken from XStream's own mapper and reflection provider, so names and
+ * attribute order match what XStream writes; classes XStream would treat
+ * any other way have no layout and are left to XStream.
+ */
+final class XmlLayout {
+
+    static final int INT = 0;
+    static final int LONG = 1;
+    static final int DOUBLE = 2;
+    static final int BOOLEAN = 3;
+    static final int STRING = 4;
+    static final int INT_ARRAY = 5;
+    static final int LONG_ARRAY = 6;
+    static final int DOUBLE_ARRAY = 7;
+    static final int LOCATION = 8;
+    static final int ENUM = 9;
+    static final int OTHER = 10;
+
+    private static final XmlLayout NONE = new XmlLayout(null, null, null, null, null, null, null);
+
+    private static final ClassValue<XmlLayout> layouts = new ClassValue<XmlLayout>() {
+        protected XmlLayout computeValue(Class<?> type) {
+            XmlLayout layout = build(type);
+            return layout != null ? layout : NONE;
+        }
+    };
+
+    private static final Map<String, XmlLayout> byNodeName = new HashMap<String, XmlLayout>();
+
+    final Class<?> type;
+    /**
+     * The element name, as written.
+     */
+    final String nodeName;
+    final Field[] fields;
+    final int[] kinds;
+    final SingleValueConverter[] converters;
+    /**
+     * The attribute names as written, with the leading space and trailing
+     * equals sign and quote.
+     */
+    final char[][] prefixes;
+    /**
+     * Field index by attribute name, as XStream's readers report it.
+     */
+    final Map<String, Integer> attributeIndex;
+
+    private XmlLayout(Class<?> type, String nodeName, Field[] fields, int[] kinds,
+                      SingleValueConverter[] converters, char[][] prefixes, Map<String, Integer> attributeIndex) {
+        this.type = type;
+        this.nodeName = nodeName;
+        this.fields = fields;
+        this.kinds = kinds;
+        this.converters = converters;
+        this.prefixes = prefixes;
+        this.attributeIndex = attributeIndex;
+    }
+
+    /**
+     * @return the layout of the given class, or null if XStream does not
+     * write it as a plain element with attributes
+     */
+    static XmlLayout forClass(Class<?> type) {
+        XmlLayout layout = layouts.get(type);
+        return layout != NONE ? layout : null;
+    }
+
+    /**
+     * @return the layout of the class written under the given element name,
+     * or null if there is none
+     */
+    static XmlLayout forNodeName(String name) {
+        synchronized (byNodeName) {
+            if (byNodeName.containsKey(name))
+                return byNodeName.get(name);
+            XmlLayout layout;
+            try {
+                layout = forClass(XStreamProxy.getXStream().getMapper().realClass(name));
+            } catch (RuntimeException e) {
+                // not a class name we know; let XStream complain about it
+                layout = null;
+            }
+            byNodeName.put(name, layout);
+            return layout;
+        }
+    }
+
+    private static XmlLayout build(Class<?> type) {
+        XStream xstream = XStreamProxy.getXStream();
+        Converter converter = xstream.getConverterLookup().lookupConverterForType(type);
+        if (converter.getClass() != ReflectionConverter.class)
+            return null;
+        // XStream calls these hooks, so leave such classes (e.g. the
+        // singleton notifications) to it
+        if (declares(type, "readResolve") || declares(type, "writeReplace"))
+            return null;
+
+        final Mapper mapper = xstream.getMapper();
+        final ReflectionProvider provider = xstream.getReflectionProvider();
+        final List<String> names = new ArrayList<String>();
+        final List<Class<?>> declaringClasses = new ArrayList<Class<?>>();
+        final List<Class<?>> types = new ArrayList<Class<?>>();
+        provider.visitSerializableFields(provider.newInstance(type), new ReflectionProvider.Visitor() {
+            public void visit(String name, Class fieldType, Class definedIn, Object value) {
+                if (mapper.shouldSerializeMember(definedIn, name)) {
+                    names.add(name);
+                    types.add(fieldType);
+                    declaringClasses.add(definedIn);
+                }
+            }
+        });
+
+        NameCoder nameCoder = new XmlFriendlyNameCoder();
+        int n = names.size();
+        Field[] fields = new Field[n];
+        int[] kinds = new int[n];
+        SingleValueConverter[] converters = new SingleValueConverter[n];
+        char[][] prefixes = new char[n][];
+        Map<String, Integer> attributeIndex = new HashMap<String, Integer>();
+        for (int i = 0; i < n; i++) {
+            String name = names.get(i);
+            Class<?> definedIn = declaringClasses.get(i);
+            Class<?> fieldType = types.get(i);
+            converters[i] = mapper.getConverterFromItemType(name, fieldType, definedIn);
+            String attribute = mapper.aliasForAttribute(mapper.serializedMember(definedIn, name));
+            // shadowed fields and element fields need XStream's help
+            if (converters[i] == null || attributeIndex.containsKey(attribute))
+                return null;
+            fields[i] = provider.getField(definedIn, name);
+            fields[i].setAccessible(true);
+            kinds[i] = kindOf(fieldType, converters[i]);
+            prefixes[i] = (" " + nameCoder.encodeAttribute(attribute) + "=\"").toCharArray();
+            attributeIndex.put(attribute, i);
+        }
+        String nodeName = nameCoder.encodeNode(mapper.serializedClass(type));
+        return new XmlLayout(type, nodeName, fields, kinds, converters, prefixes, attributeIndex);
+    }
+
+    private static boolean declares(Class<?> type, String method) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(method);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // try the superclass
+            }
+        }
+        return false;
+    }
+
+    private static int kindOf(Class<?> type, SingleValueConverter converter) {
+        Class<?> c = converter.getClass();
+        if (type == int.class && c == IntConverter.class)
+            return INT;
+        if (type == long.class && c == LongConverter.class)
+            return LONG;
+        if (type == double.class && c == DoubleConverter.class)
+            return DOUBLE;
+        if (type == boolean.class && c == BooleanConverter.class)
+            return BOOLEAN;
+        if (type == String.class && c == StringConverter.class)
+            return STRING;
+        if (type == int[].class && c == XStreamProxy.IntArrayConverter.class)
+            return INT_ARRAY;
+        if (type == long[].class && c == XStreamProxy.LongArrayConverter.class)
+            return LONG_ARRAY;
+        if (type == double[].class && c == XStreamProxy.DoubleArrayConverter.class)
+            return DOUBLE_ARRAY;
+        if (type == MapLocation.class && c == XStreamProxy.MapLocationConverter.class)
+            return LOCATION;
+        if (type.isEnum() && c == EnumSingleValueConverter.class)
+            return ENUM;
+        return OTHER;
+    }
+}
@@ -0,0 +1,159 @@
+package battlecode.server.proxy;
+
+import battlecode.common.MapLocation;
+import battlecode.engine.signal.Signal;
+import battlecode.serial.RoundDelta;
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.reflection.ReflectionProvider;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.xml.XppDriver;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads match objects written by {@link XmlObjectOutputStream} (or by
+ * XStream). Round deltas and the classes that have an {@link XmlLayout} are
+ * built straight from their attributes; anything else is unmarshalled by
+ * XStream from the same reader.
+ */
+public class XmlObjectInputStream extends ObjectInputStream {
+
+    private final HierarchicalStreamReader reader;
+    private final XStream xstream;
+    private final ReflectionProvider provider;
+    private final String roundDeltaNode;
+
+    public XmlObjectInputStream(InputStream stream) throws IOException {
+        super();
+        this.reader = new XppDriver().createReader(stream);
+        this.xstream = XStreamProxy.getXStream();
+        this.provider = xstream.getReflectionProvider();
+        this.roundDeltaNode = xstream.getMapper().serializedClass(RoundDelta.class);
+    }
+
+    protected Object readObjectOverride() throws IOException {
+        if (!reader.hasMoreChildren())
+            throw new EOFException();
+        reader.moveDown();
+        Object o = readValue();
+        reader.moveUp();
+        return o;
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Object readValue() throws IOException {
+        String name = reader.getNodeName();
+        if (name.equals("null"))
+            return null;
+        if (name.equals(roundDeltaNode))
+            return readRoundDelta();
+        if (reader.getAttribute("reference") != null)
+            throw new IOException("can't resolve XStream reference in " + name);
+        XmlLayout layout = XmlLayout.forNodeName(name);
+        if (layout == null || reader.getAttribute("class") != null)
+            return xstream.unmarshal(reader);
+        return readElement(layout);
+    }
+
+    private RoundDelta readRoundDelta() throws IOException {
+        List<Signal> signals = new ArrayList<Signal>();
+        List<String> names = new ArrayList<String>();
+        while (reader.hasMoreChildren()) {
+            reader.moveDown();
+            String reference = reader.getAttribute("reference");
+            if (reference != null)
+                signals.add(resolve(reference, names, signals));
+            else
+                signals.add((Signal) readValue());
+            names.add(reader.getNodeName());
+            reader.moveUp();
+        }
+        // like XStreamProxy.RoundDeltaConverter, without refolding
+        RoundDelta rd = new RoundDelta();
+        rd.setSignals(signals.toArray(new Signal[signals.size()]));
+        return rd;
+    }
+
+    /**
+     * Finds the earlier signal in the same round that XStream wrote a
+     * reference to, e.g. "../sig.DeathSignal[2]".
+     */
+    private static Signal resolve(String reference, List<String> names, List<Signal> signals) throws IOException {
+        if (!reference.startsWith("../") || reference.indexOf('/', 3) >= 0)
+            throw new IOException("can't resolve XStream reference " + reference);
+        String name = reference.substring(3);
+        int n = 1;
+        int bracket = name.indexOf('[');
+        if (bracket >= 0 && name.endsWith("]")) {
+            try {
+                n = Integer.parseInt(name.substring(bracket + 1, name.length() - 1));
+            } catch (NumberFormatException e) {
+                throw new IOException("can't resolve XStream reference " + reference);
+            }
+            name = name.substring(0, bracket);
+        }
+        for (int i = 0; i < names.size(); i++)
+            if (names.get(i).equals(name) && --n == 0)
+                return signals.get(i);
+        throw new IOException("can't resolve XStream reference " + reference);
+    }
+
+    private Object readElement(XmlLayout layout) throws IOException {
+        Object o = provider.newInstance(layout.type);
+        int count = reader.getAttributeCount();
+        try {
+            for (int a = 0; a < count; a++) {
+                Integer index = layout.attributeIndex.get(reader.getAttributeName(a));
+                if (index == null)
+                    continue;
+                int i = index;
+                String value = reader.getAttribute(a);
+                switch (layout.kinds[i]) {
+                    case XmlLayout.INT:
+                        layout.fields[i].setInt(o, parseInt(value, layout, i));
+                        break;
+                    case XmlLayout.DOUBLE:
+                        layout.fields[i].setDouble(o, Double.parseDouble(value));
+                        break;
+                    case XmlLayout.STRING:
+                        layout.fields[i].set(o, value);
+                        break;
+                    case XmlLayout.LOCATION: {
+                        int comma = value.indexOf(',');
+                        if (comma < 0 || value.indexOf(',', comma + 1) >= 0) {
+                            layout.fields[i].set(o, layout.converters[i].fromString(value));
+                        } else {
+                            layout.fields[i].set(o, new MapLocation(Integer.parseInt(value.substring(0, comma)),
+                                    Integer.parseInt(value.substring(comma + 1))));
+                        }
+                        break;
+                    }
+                    default:
+                        layout.fields[i].set(o, layout.converters[i].fromString(value));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        } catch (RuntimeException e) {
+            throw new IOException("bad " + layout.nodeName + " attribute", e);
+        }
+        return o;
+    }
+
+    private static int parseInt(String value, XmlLayout layout, int i) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            // XStream also accepts hex and octal
+            return (Integer) layout.converters[i].fromString(value);
+        }
+    }
+}
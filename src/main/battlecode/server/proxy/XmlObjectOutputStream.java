@@ -0,0 +1,351 @@
+package battlecode.server.proxy;
+
+import battlecode.common.MapLocation;
+import battlecode.engine.signal.Signal;
+import battlecode.serial.RoundDelta;
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.PrettyPrintWriter;
+import com.thoughtworks.xstream.io.xml.XmlFriendlyNameCoder;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.IdentityHashMap;
+
+/**
+ * Writes match objects as XML, byte for byte as
+ * XStreamProxy.getXStream().createObjectOutputStream would. Round deltas and
+ * every class that XStream writes as a single element with attributes (all
+ * signals, round stats, game stats) are written directly from an
+ * {@link XmlLayout}; anything else is handed to XStream at the right
+ * indentation.
+ * <p/>
+ * Objects never refer back to earlier ones, so reset() does nothing (XStream's
+ * object streams throw instead).
+ */
+public class XmlObjectOutputStream extends ObjectOutputStream {
+
+    private static final int FLUSH_SIZE = 8192;
+
+    private final Writer out;
+    private final XStream xstream;
+    private final String roundDeltaNode;
+
+    private char[] buf = new char[2 * FLUSH_SIZE];
+    private int len;
+
+    private final IdentityHashMap<Object, Boolean> seen = new IdentityHashMap<Object, Boolean>();
+
+    private boolean empty = true;
+    private boolean closed;
+
+    /**
+     * Lets PrettyPrintWriter append to our buffer.
+     */
+    private final Writer bufferWriter = new Writer() {
+        public void write(char[] cbuf, int off, int n) {
+            XmlObjectOutputStream.this.append(cbuf, off, n);
+        }
+
+        public void flush() {
+        }
+
+        public void close() {
+        }
+    };
+
+    public XmlObjectOutputStream(OutputStream stream) throws IOException {
+        super();
+        // XStream's driver uses the platform encoding too
+        this.out = new OutputStreamWriter(stream);
+        this.xstream = XStreamProxy.getXStream();
+        this.roundDeltaNode = new XmlFriendlyNameCoder().encodeNode(xstream.getMapper().serializedClass(RoundDelta.class));
+        append("<object-stream");
+    }
+
+    protected void writeObjectOverride(Object o) throws IOException {
+        if (closed)
+            throw new IOException("stream closed");
+        if (empty) {
+            append('>');
+            empty = false;
+        }
+        newLine(1);
+        writeValue(o, 1);
+        if (len >= FLUSH_SIZE)
+            flushBuffer();
+    }
+
+    public void reset() {
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        if (empty)
+            append("/>");
+        else
+            append("\n</object-stream>");
+        flushBuffer();
+        out.close();
+    }
+
+    private void writeValue(Object o, int depth) throws IOException {
+        if (o == null) {
+            append("<null/>");
+            return;
+        }
+        if (o.getClass() == RoundDelta.class) {
+            Signal[] signals = ((RoundDelta) o).getSignals();
+            if (signals != null && distinct(signals)) {
+                writeRoundDelta(signals, depth);
+                return;
+            }
+        }
+        XmlLayout layout = XmlLayout.forClass(o.getClass());
+        if (layout != null)
+            writeElement(o, layout);
+        else
+            marshal(o, depth);
+    }
+
+    /**
+     * XStream writes a signal that appears twice in one round as a
+     * reference, so only rounds without repeats are written directly.
+     */
+    private boolean distinct(Signal[] signals) {
+        seen.clear();
+        for (Signal s : signals)
+            if (s != null && seen.put(s, Boolean.TRUE) != null)
+                return false;
+        return true;
+    }
+
+    private void writeRoundDelta(Signal[] signals, int depth) throws IOException {
+        append('<');
+        append(roundDeltaNode);
+        if (signals.length == 0) {
+            append("/>");
+            return;
+        }
+        append('>');
+        for (Signal s : signals) {
+            newLine(depth + 1);
+            writeValue(s, depth + 1);
+        }
+        newLine(depth);
+        append("</");
+        append(roundDeltaNode);
+        append('>');
+    }
+
+    private void writeElement(Object o, XmlLayout layout) throws IOException {
+        append('<');
+        append(layout.nodeName);
+        try {
+            for (int i = 0; i < layout.fields.length; i++) {
+                switch (layout.kinds[i]) {
+                    case XmlLayout.INT:
+                        append(layout.prefixes[i]);
+                        appendInt(layout.fields[i].getInt(o));
+                        break;
+                    case XmlLayout.LONG:
+                        append(layout.prefixes[i]);
+                        append(Long.toString(layout.fields[i].getLong(o)));
+                        break;
+                    case XmlLayout.DOUBLE:
+                        append(layout.prefixes[i]);
+                        append(Double.toString(layout.fields[i].getDouble(o)));
+                        break;
+                    case XmlLayout.BOOLEAN:
+                        append(layout.prefixes[i]);
+                        append(layout.fields[i].getBoolean(o) ? "true" : "false");
+                        break;
+                    default: {
+                        Object value = layout.fields[i].get(o);
+                        if (value == null)
+                            continue;
+                        append(layout.prefixes[i]);
+                        appendValue(value, layout.kinds[i], layout, i);
+                    }
+                }
+                append('"');
+            }
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        }
+        append("/>");
+    }
+
+    private void appendValue(Object value, int kind, XmlLayout layout, int i) {
+        switch (kind) {
+            case XmlLayout.STRING:
+                appendEscaped((String) value);
+                break;
+            case XmlLayout.INT_ARRAY: {
+                int[] a = (int[]) value;
+                for (int j = 0; j < a.length; j++) {
+                    if (j > 0)
+                        append(',');
+                    appendInt(a[j]);
+                }
+                break;
+            }
+            case XmlLayout.LONG_ARRAY: {
+                long[] a = (long[]) value;
+                for (int j = 0; j < a.length; j++) {
+                    if (j > 0)
+                        append(',');
+                    append(Long.toString(a[j]));
+                }
+                break;
+            }
+            case XmlLayout.DOUBLE_ARRAY: {
+                double[] a = (double[]) value;
+                for (int j = 0; j < a.length; j++) {
+                    if (j > 0)
+                        append(',');
+                    append(Double.toString(a[j]));
+                }
+                break;
+            }
+            case XmlLayout.LOCATION: {
+                MapLocation loc = (MapLocation) value;
+                appendInt(loc.x);
+                append(',');
+                appendInt(loc.y);
+                break;
+            }
+            case XmlLayout.ENUM:
+                appendEscaped(((Enum<?>) value).name());
+                break;
+            default:
+                appendEscaped(layout.converters[i].toString(value));
+        }
+    }
+
+    /**
+     * Has XStream write an object, picking up at the given depth.
+     */
+    private void marshal(Object o, final int startDepth) throws IOException {
+        PrettyPrintWriter writer = new PrettyPrintWriter(bufferWriter) {
+            {
+                depth = startDepth;
+            }
+        };
+        xstream.marshal(o, writer);
+        writer.flush();
+    }
+
+    private void newLine(int depth) {
+        append('\n');
+        for (int i = 0; i < depth; i++)
+            append("  ");
+    }
+
+    /**
+     * Escapes attribute text the way PrettyPrintWriter does in its default
+     * (quirks) mode.
+     */
+    private void appendEscaped(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\0':
+                    append("&#x0;");
+                    break;
+                case '&':
+                    append("&amp;");
+                    break;
+                case '<':
+                    append("&lt;");
+                    break;
+                case '>':
+                    append("&gt;");
+                    break;
+                case '"':
+                    append("&quot;");
+                    break;
+                case '\'':
+                    append("&apos;");
+                    break;
+                case '\r':
+                    append("&#xd;");
+                    break;
+                default:
+                    if (Character.isDefined(c) && !Character.isISOControl(c)) {
+                        append(c);
+                    } else {
+                        append("&#x");
+                        append(Integer.toHexString(c));
+                        append(';');
+                    }
+            }
+        }
+    }
+
+    private void appendInt(int v) {
+        if (v == Integer.MIN_VALUE) {
+            append(Integer.toString(v));
+            return;
+        }
+        ensureCapacity(11);
+        if (v < 0) {
+            buf[len++] = '-';
+            v = -v;
+        }
+        int start = len;
+        do {
+            buf[len++] = (char) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        for (int i = start, j = len - 1; i < j; i++, j--) {
+            char t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+    }
+
+    private void append(char c) {
+        ensureCapacity(1);
+        buf[len++] = c;
+    }
+
+    private void append(String s) {
+        int n = s.length();
+        ensureCapacity(n);
+        s.getChars(0, n, buf, len);
+        len += n;
+    }
+
+    private void append(char[] chars) {
+        append(chars, 0, chars.length);
+    }
+
+    private void append(char[] chars, int off, int n) {
+        ensureCapacity(n);
+        System.arraycopy(chars, off, buf, len, n);
+        len += n;
+    }
+
+    private void ensureCapacity(int n) {
+        if (len + n > buf.length) {
+            char[] bigger = new char[Math.max(buf.length * 2, len + n)];
+            System.arraycopy(buf, 0, bigger, 0, len);
+            buf = bigger;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buf, 0, len);
+        len = 0;
+    }
+}
@@ -0,0 +1,377 @@
+package battlecode.server.stress;
+
+import battlecode.common.GameConstants;
+import battlecode.common.RobotType;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Generates maps for benchmarks from a seed: open ground with a given
+ * fraction of void, ore spread evenly, in deposits or not at all, the HQs in
+ * opposite corners with six towers each, and optionally a number of units
+ * for each team, all symmetric by rotation about the center or by reflection
+ * across it. Void never blocks the way between the HQs.
+ * <p/>
+ * Maps may be larger than GameConstants allows, for measuring how the engine
+ * scales; those are written with constraints="false", which makes the map
+ * loader skip its size checks. No tournament would accept them.
+ * <p/>
+ * Run with: java battlecode.server.stress.MapGenerator [-w width] [-h height]
+ * [-s seed] [-r rounds] [-v void] [-d ore] [-y symmetry] [-u units] map.xml
+ */
+public class MapGenerator {
+
+    static private final int EX_USAGE = 64;
+    static private final int EX_IOERR = 74;
+
+    public enum Symmetry {
+        /**
+         * Each square matches the one opposite it through the center.
+         */
+        ROTATE,
+        /**
+         * Each square matches the one across the vertical center line.
+         */
+        MIRROR
+    }
+
+    public enum Ore {
+        /**
+         * Every square has between the least and the most ore.
+         */
+        UNIFORM,
+        /**
+         * Deposits with the most ore in the middle, and the least elsewhere.
+         */
+        CLUSTERED,
+        NONE
+    }
+
+    // squares of map per deposit, and how far a deposit spreads
+    private static final int DEPOSIT_AREA = 600;
+    private static final double DEPOSIT_RADIUS = 4;
+
+    private final int width, height;
+    private final long seed;
+    private int rounds = 2000;
+    private Symmetry symmetry = Symmetry.ROTATE;
+    private double voidRatio = 0.05;
+    private Ore ore = Ore.UNIFORM;
+    private int minOre = 10, maxOre = 40;
+    private RobotType unitType = RobotType.SOLDIER;
+    private int units;
+
+    /**
+     * @throws IllegalArgumentException if the map is smaller than
+     *                                  GameConstants allows
+     */
+    public MapGenerator(int width, int height, long seed) {
+        if (width < GameConstants.MAP_MIN_WIDTH || height < GameConstants.MAP_MIN_HEIGHT)
+            throw new IllegalArgumentException("maps are at least " + GameConstants.MAP_MIN_WIDTH + "x"
+                    + GameConstants.MAP_MIN_HEIGHT);
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+    }
+
+    public void setRounds(int rounds) {
+        this.rounds = rounds;
+    }
+
+    public void setSymmetry(Symmetry symmetry) {
+        this.symmetry = symmetry;
+    }
+
+    /**
+     * Sets about what fraction of the squares are void.
+     */
+    public void setVoidRatio(double voidRatio) {
+        if (voidRatio < 0 || voidRatio > 0.9)
+            throw new IllegalArgumentException("void ratio must be between 0 and 0.9");
+        this.voidRatio = voidRatio;
+    }
+
+    public void setOre(Ore ore, int minOre, int maxOre) {
+        if (minOre < 0 || maxOre < minOre)
+            throw new IllegalArgumentException("bad ore range " + minOre + "-" + maxOre);
+        this.ore = ore;
+        this.minOre = minOre;
+        this.maxOre = maxOre;
+    }
+
+    /**
+     * Starts each team with this many units of a type besides the HQ and
+     * towers, scattered over its half of the map.
+     */
+    public void setUnits(RobotType unitType, int units) {
+        if (units < 0 || unitType.isBuilding)
+            throw new IllegalArgumentException("can't start with " + units + " " + unitType);
+        this.unitType = unitType;
+        this.units = units;
+    }
+
+    public boolean isOverSizeLimit() {
+        return width > GameConstants.MAP_MAX_WIDTH || height > GameConstants.MAP_MAX_HEIGHT;
+    }
+
+    private int mirrorX(int x) {
+        return width - 1 - x;
+    }
+
+    private int mirrorY(int y) {
+        return symmetry == Symmetry.ROTATE ? height - 1 - y : y;
+    }
+
+    private static String opponent(String square) {
+        if (square.equals("a"))
+            return "b";
+        if (square.equals("t"))
+            return "u";
+        if (square.equals("x"))
+            return "y";
+        return square;
+    }
+
+    private void put(String[][] squares, int x, int y, String square) {
+        squares[x][y] = square;
+        squares[mirrorX(x)][mirrorY(y)] = opponent(square);
+    }
+
+    /**
+     * Whether a square is on the way between the HQs, which void must keep
+     * clear of.
+     */
+    private boolean onPath(int x, int y) {
+        if (symmetry == Symmetry.MIRROR)
+            return Math.abs(y - 4) <= 2;
+        // distance from the line through (4, 4) and (width - 5, height - 5)
+        double dx = width - 9, dy = height - 9;
+        return Math.abs((x - 4) * dy - (y - 4) * dx) <= 2 * Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Lays out the map; squares[x][y] is a symbol, followed by the ore for
+     * open ground.
+     *
+     * @throws IllegalArgumentException if there isn't room for the units
+     */
+    String[][] generate() {
+        Random rand = new Random(seed);
+        String[][] squares = new String[width][height];
+        put(squares, 4, 4, "a");
+        int[][] towers = {{width / 4, 3}, {3, height / 4}, {width / 3, height / 3}, {width / 2 - 2, 5},
+                {5, height / 2 - 2}, {width / 4 + 2, height / 4 + 4}};
+        for (int[] t : towers)
+            put(squares, t[0], t[1], "t");
+
+        int[][] oreAt = new int[width][height];
+        if (ore == Ore.CLUSTERED)
+            addDeposits(oreAt, rand);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (squares[x][y] != null)
+                    continue;
+                String square;
+                if (rand.nextDouble() < voidRatio && !onPath(x, y))
+                    square = "#";
+                else if (ore == Ore.UNIFORM)
+                    square = "n" + (minOre + rand.nextInt(maxOre - minOre + 1));
+                else
+                    square = "n" + oreAt[x][y];
+                put(squares, x, y, square);
+            }
+        }
+
+        // units go on open ground on team A's side, and mirror to B's
+        int open = 0;
+        for (int x = 0; x < width; x++)
+            for (int y = 0; y < height; y++)
+                if (squares[x][y].startsWith("n") && onSideA(x, y))
+                    open++;
+        if (units > open)
+            throw new IllegalArgumentException("no room for " + units + " units a side");
+        for (int placed = 0; placed < units; ) {
+            int x = rand.nextInt(width), y = rand.nextInt(height);
+            if (squares[x][y].startsWith("n") && onSideA(x, y)) {
+                put(squares, x, y, "x");
+                placed++;
+            }
+        }
+        return squares;
+    }
+
+    private boolean onSideA(int x, int y) {
+        int mx = mirrorX(x), my = mirrorY(y);
+        return symmetry == Symmetry.ROTATE ? y < my || (y == my && x < mx) : x < mx;
+    }
+
+    /**
+     * Fills in ore for deposits scattered symmetrically over the map.
+     */
+    private void addDeposits(int[][] oreAt, Random rand) {
+        double[][] richness = new double[width][height];
+        int spread = (int) (2 * DEPOSIT_RADIUS);
+        int deposits = Math.max(1, width * height / DEPOSIT_AREA / 2);
+        for (int d = 0; d < deposits; d++) {
+            int cx = rand.nextInt(width), cy = rand.nextInt(height);
+            for (int[] c : new int[][]{{cx, cy}, {mirrorX(cx), mirrorY(cy)}}) {
+                for (int x = Math.max(0, c[0] - spread); x <= Math.min(width - 1, c[0] + spread); x++) {
+                    for (int y = Math.max(0, c[1] - spread); y <= Math.min(height - 1, c[1] + spread); y++) {
+                        int distSq = (x - c[0]) * (x - c[0]) + (y - c[1]) * (y - c[1]);
+                        if (distSq > spread * spread)
+                            continue;
+                        double r = Math.exp(-distSq / (2 * DEPOSIT_RADIUS * DEPOSIT_RADIUS));
+                        richness[x][y] = Math.max(richness[x][y], r);
+                    }
+                }
+            }
+        }
+        for (int x = 0; x < width; x++)
+            for (int y = 0; y < height; y++)
+                oreAt[x][y] = minOre + (int) Math.round((maxOre - minOre) * richness[x][y]);
+    }
+
+    public void write(File file) throws IOException {
+        String[][] squares = generate();
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<map height=\"" + height + "\" width=\"" + width + "\""
+                    + (isOverSizeLimit() ? " constraints=\"false\"" : "") + ">\n");
+            out.write("    <game seed=\"" + seed + "\" rounds=\"" + rounds + "\"/>\n");
+            out.write("    <symbols>\n");
+            out.write("        <symbol terrain=\"NORMAL\" type=\"TERRAIN\" character=\"n\"/>\n");
+            out.write("        <symbol terrain=\"VOID\" type=\"TERRAIN\" character=\"#\"/>\n");
+            out.write("        <symbol team=\"A\" type=\"HQ\" character=\"a\"/>\n");
+            out.write("        <symbol team=\"B\" type=\"HQ\" character=\"b\"/>\n");
+            out.write("        <symbol team=\"A\" type=\"TOWER\" character=\"t\"/>\n");
+            out.write("        <symbol team=\"B\" type=\"TOWER\" character=\"u\"/>\n");
+            if (units > 0) {
+                out.write("        <symbol team=\"A\" type=\"" + unitType + "\" character=\"x\"/>\n");
+                out.write("        <symbol team=\"B\" type=\"" + unitType + "\" character=\"y\"/>\n");
+            }
+            out.write("    </symbols>\n");
+            out.write("    <data>\n<![CDATA[\n");
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (x > 0)
+                        out.write(' ');
+                    out.write(squares[x][y]);
+                }
+                out.write('\n');
+            }
+            out.write("]]>\n    </data>\n</map>\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    public static void usage() {
+        System.err.println("Usage: MapGenerator [-w width] [-h height] [-s seed] [-r rounds] [-v void]");
+        System.err.println("       [-d ore] [-y symmetry] [-u units] map.xml");
+        System.err.println("  -w, -h  size of the map (default 60x60); past " + GameConstants.MAP_MAX_WIDTH + "x"
+                + GameConstants.MAP_MAX_HEIGHT + " it only loads for testing");
+        System.err.println("  -s  random seed, which is also the map's seed (default 1)");
+        System.err.println("  -r  round limit (default 2000)");
+        System.err.println("  -v  fraction of the squares that are void (default 0.05)");
+        System.err.println("  -d  ore: uniform, clustered or none, optionally followed by :min-max");
+        System.err.println("      (default uniform:10-40)");
+        System.err.println("  -y  symmetry: rotate or mirror (default rotate)");
+        System.err.println("  -u  units each team starts with, optionally TYPE:count (default SOLDIER:0)");
+        System.exit(EX_USAGE);
+    }
+
+    /**
+     * Applies the options a map generator takes in both this program and
+     * StressRunner.
+     *
+     * @throws IllegalArgumentException if an option has a bad value
+     */
+    static void configure(MapGenerator generator, CommandLine cl) {
+        if (cl.hasOption('v'))
+            generator.setVoidRatio(Double.parseDouble(cl.getOptionValue('v')));
+        if (cl.hasOption('d')) {
+            String[] fields = cl.getOptionValue('d').split(":");
+            Ore ore = Ore.valueOf(fields[0].toUpperCase());
+            if (fields.length > 1) {
+                String[] range = fields[1].split("-");
+                generator.setOre(ore, Integer.parseInt(range[0]), Integer.parseInt(range[range.length - 1]));
+            } else {
+                generator.setOre(ore, generator.minOre, generator.maxOre);
+            }
+        }
+        if (cl.hasOption('y'))
+            generator.setSymmetry(Symmetry.valueOf(cl.getOptionValue('y').toUpperCase()));
+    }
+
+    static void addOptions(Options options) {
+        options.addOption("v", "void", true, "void ratio");
+        options.addOption("d", "ore", true, "ore distribution");
+        options.addOption("y", "symmetry", true, "symmetry");
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options();
+        options.addOption("w", "width", true, "map width");
+        options.addOption("h", "height", true, "map height");
+        options.addOption("s", "seed", true, "random seed");
+        options.addOption("r", "rounds", true, "round limit");
+        options.addOption("u", "units", true, "units per team");
+        addOptions(options);
+        MapGenerator generator;
+        File file;
+        try {
+            CommandLine cl = new GnuParser().parse(options, args);
+            if (cl.getArgs().length != 1) {
+                usage();
+                return;
+            }
+            file = new File(cl.getArgs()[0]);
+            generator = new MapGenerator(Integer.parseInt(cl.getOptionValue('w', "60")),
+                    Integer.parseInt(cl.getOptionValue('h', "60")), Long.parseLong(cl.getOptionValue('s', "1")));
+            generator.setRounds(Integer.parseInt(cl.getOptionValue('r', "2000")));
+            configure(generator, cl);
+            if (cl.hasOption('u')) {
+                String[] fields = cl.getOptionValue('u').split(":");
+                if (fields.length > 1)
+                    generator.setUnits(RobotType.valueOf(fields[0].toUpperCase()), Integer.parseInt(fields[1]));
+                else
+                    generator.setUnits(generator.unitType, Integer.parseInt(fields[0]));
+            }
+        } catch (ParseException e) {
+            usage();
+            return;
+        } catch (IllegalArgumentException e) {
+            // bad numbers and names too
+            System.err.println(e.getMessage());
+            usage();
+            return;
+        }
+        try {
+            generator.write(file);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            return;
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(EX_IOERR);
+        }
+        if (generator.isOverSizeLimit())
+            System.out.println("wrote " + file + ", which is over the map size limit and only for testing");
+        else
+            System.out.println("wrote " + file);
+    }
+}
@@ -0,0 +1,439 @@
+package battlecode.server.stress;
+
+import battlecode.common.GameConstants;
+import battlecode.common.RobotType;
+import battlecode.serial.MatchFooter;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundDelta;
+import battlecode.server.Config;
+import battlecode.server.Server;
+import battlecode.server.ServerFactory;
+import battlecode.server.State;
+import battlecode.server.proxy.Proxy;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plays the bundled stress-test players (spawnstress, missilestress and so
+ * on, each a player package of its own) on maps from MapGenerator of
+ * increasing size and number of starting units, through the same headless
+ * server that runs real matches, and
+ * reports how the engine held up: rounds per second, the median and 99th
+ * percentile time per round, and the peak number of threads, heap and
+ * metaspace during each match.
+ * <p/>
+ * Each player plays itself. Round times are measured as rounds reach the
+ * proxies, so they include whatever the configuration has the server do
+ * with them. The result cache is always off. What the players print goes
+ * to standard error, so the report on standard output stays readable.
+ * <p/>
+ * Run with: java battlecode.server.stress.StressRunner [-p players]
+ * [-s sizes] [-u units] [-r rounds] [-v void] [-d ore] [-y symmetry]
+ * [-o results.csv] [-m map-dir] [-c config]
+ */
+public class StressRunner {
+
+    static private final int EX_USAGE = 64;
+    static private final int EX_SOFTWARE = 70;
+    static private final int EX_IOERR = 74;
+
+    public static final String[] PLAYERS = {"spawnstress", "missilestress", "radiostress", "sensingstress",
+            "allocstress", "chattystress"};
+    static final int[] SIZES = {30, 60, 90, 120};
+    static final int MAX_SIZE = 1000;
+
+    private static final String[] COLUMNS = {"player", "size", "units", "rounds", "wall_ms", "rounds_per_sec", "p50_ms",
+            "p99_ms", "peak_threads", "peak_heap_mb", "peak_metaspace_mb"};
+
+    /**
+     * How one match went.
+     */
+    public static class Result {
+        private final String player;
+        private final int size;
+        private final int units;
+        private final long[] roundNanos;
+        private final long wallNanos;
+        private final int peakThreads;
+        private final long peakHeap;
+        private final long peakMetaspace;
+
+        Result(String player, int size, int units, long[] roundNanos, long wallNanos, int peakThreads,
+               long peakHeap, long peakMetaspace) {
+            this.player = player;
+            this.size = size;
+            this.units = units;
+            this.roundNanos = roundNanos.clone();
+            Arrays.sort(this.roundNanos);
+            this.wallNanos = wallNanos;
+            this.peakThreads = peakThreads;
+            this.peakHeap = peakHeap;
+            this.peakMetaspace = peakMetaspace;
+        }
+
+        public String getPlayer() {
+            return player;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * The units each team started with besides its HQ and towers.
+         */
+        public int getUnits() {
+            return units;
+        }
+
+        public int getRounds() {
+            return roundNanos.length;
+        }
+
+        public double getRoundsPerSecond() {
+            return wallNanos == 0 ? 0 : roundNanos.length * 1e9 / wallNanos;
+        }
+
+        /**
+         * The time a round took at the given percentile, by nearest rank,
+         * in nanoseconds.
+         */
+        public long getRoundNanos(double percentile) {
+            if (roundNanos.length == 0)
+                return 0;
+            int rank = (int) Math.ceil(percentile / 100 * roundNanos.length);
+            return roundNanos[Math.max(rank, 1) - 1];
+        }
+
+        public int getPeakThreads() {
+            return peakThreads;
+        }
+
+        public long getPeakHeap() {
+            return peakHeap;
+        }
+
+        public long getPeakMetaspace() {
+            return peakMetaspace;
+        }
+
+        Object[] row() {
+            return new Object[]{player, size, units, getRounds(), wallNanos / 1000000, round(getRoundsPerSecond()),
+                    round(getRoundNanos(50) / 1e6), round(getRoundNanos(99) / 1e6), peakThreads,
+                    round(peakHeap / 1048576.0), round(peakMetaspace / 1048576.0)};
+        }
+
+        private static double round(double v) {
+            return Math.round(v * 100) / 100.0;
+        }
+    }
+
+    /**
+     * Times the rounds of a match as the server sends them out, and reads
+     * the JVM's peaks when it ends.
+     */
+    static class Recorder extends Proxy {
+        private final String player;
+        private final int size;
+        private final int units;
+        private long[] roundNanos = new long[2048];
+        private int rounds;
+        private long start;
+        private long last;
+        Result result;
+
+        Recorder(String player, int size, int units) {
+            this.player = player;
+            this.size = size;
+            this.units = units;
+        }
+
+        protected OutputStream getOutputStream() throws IOException {
+            return null;
+        }
+
+        public void writeObject(Object o) throws IOException {
+            if (o instanceof MatchHeader) {
+                resetPeaks();
+                rounds = 0;
+                start = last = System.nanoTime();
+            } else if (o instanceof RoundDelta) {
+                long now = System.nanoTime();
+                if (rounds == roundNanos.length)
+                    roundNanos = Arrays.copyOf(roundNanos, rounds * 2);
+                roundNanos[rounds++] = now - last;
+                last = now;
+            } else if (o instanceof MatchFooter) {
+                long heap = 0, metaspace = 0;
+                for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                    if (pool.getPeakUsage() == null)
+                        continue;
+                    if (pool.getType() == MemoryType.HEAP)
+                        heap += pool.getPeakUsage().getUsed();
+                    else if (pool.getName().equals("Metaspace") || pool.getName().endsWith("Perm Gen"))
+                        metaspace = pool.getPeakUsage().getUsed();
+                }
+                result = new Result(player, size, units, Arrays.copyOf(roundNanos, rounds), last - start,
+                        ManagementFactory.getThreadMXBean().getPeakThreadCount(), heap, metaspace);
+            }
+        }
+    }
+
+    private static void resetPeaks() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.isValid())
+                pool.resetPeakUsage();
+        }
+    }
+
+    /**
+     * Plays one player against itself on one map with a new headless server.
+     *
+     * @param args the server arguments, as for battlecode.server.Main
+     * @throws IOException if the match did not finish
+     */
+    static Result runMatch(String[] args, String team, int size, int units, File mapDir, String map)
+            throws IOException {
+        Config options = new Config(args);
+        options.set("bc.server.mode", "headless");
+        options.set("bc.server.result-cache", "");
+        options.set("bc.game.team-a", team);
+        options.set("bc.game.team-b", team);
+        options.set("bc.game.maps", map);
+        options.set("bc.game.map-path", mapDir.getPath());
+        Config.setGlobalConfig(options);
+
+        // keep the last match's garbage out of this one's peaks
+        System.gc();
+        Recorder recorder = new Recorder(team, size, units);
+        Server server = ServerFactory.createHeadlessServer(options, null, recorder);
+        server.run();
+        if (server.getState() == State.ERROR || recorder.result == null)
+            throw new IOException(team + " on " + map + " did not finish");
+        return recorder.result;
+    }
+
+    public static void printResults(List<Result> results, PrintStream out) {
+        out.printf("%-16s %5s %5s %6s %10s %9s %9s %8s %9s %10s%n", "player", "size", "units", "rounds",
+                "rounds/s", "p50 ms", "p99 ms", "threads", "heap MB", "meta MB");
+        for (Result r : results)
+            out.printf("%-16s %5d %5d %6d %10.1f %9.2f %9.2f %8d %9.1f %10.1f%n", r.player, r.size, r.units,
+                    r.getRounds(),
+                    r.getRoundsPerSecond(), r.getRoundNanos(50) / 1e6, r.getRoundNanos(99) / 1e6, r.peakThreads,
+                    r.peakHeap / 1048576.0, r.peakMetaspace / 1048576.0);
+    }
+
+    /**
+     * Writes the results as CSV, or as a JSON array of objects for files
+     * ending in .json.
+     */
+    public static void writeResults(List<Result> results, File file) throws IOException {
+        boolean json = file.getName().endsWith(".json");
+        Writer out = new BufferedWriter(new FileWriter(file));
+        try {
+            if (json) {
+                out.write("[");
+                for (int r = 0; r < results.size(); r++) {
+                    Object[] row = results.get(r).row();
+                    out.write(r == 0 ? "\n  {" : ",\n  {");
+                    for (int i = 0; i < row.length; i++) {
+                        out.write((i == 0 ? "\"" : ", \"") + COLUMNS[i] + "\": ");
+                        out.write(row[i] instanceof Number ? row[i].toString() : "\"" + row[i] + "\"");
+                    }
+                    out.write("}");
+                }
+                out.write(results.isEmpty() ? "]\n" : "\n]\n");
+            } else {
+                writeCsvRow(out, COLUMNS);
+                for (Result r : results)
+                    writeCsvRow(out, r.row());
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeCsvRow(Writer out, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                out.write(',');
+            out.write(String.valueOf(values[i]));
+        }
+        out.write('\n');
+    }
+
+    private static void deleteMaps(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (File f : files)
+                f.delete();
+        dir.delete();
+    }
+
+    static String mapName(int size, int units) {
+        return units == 0 ? "stress" + size : "stress" + size + "-" + units;
+    }
+
+    public static void usage() {
+        System.err.println("Usage: StressRunner [-p players] [-s sizes] [-u units] [-r rounds] [-v void]");
+        System.err.println("       [-d ore] [-y symmetry] [-o results.csv] [-m map-dir] [-c config]");
+        System.err.println("  -p  comma-separated players (default all the stress-test players:");
+        System.err.println("      " + Arrays.toString(PLAYERS).replaceAll("[\\[\\] ]", "") + ")");
+        System.err.println("  -s  comma-separated map sizes from 30 to " + MAX_SIZE + " (default 30,60,90,120); maps");
+        System.err.println("      over " + GameConstants.MAP_MAX_WIDTH + " lift the engine's map size limit");
+        System.err.println("  -u  comma-separated numbers of units each team starts with, optionally");
+        System.err.println("      TYPE:n,n,... (default SOLDIER:0); every size is played with each");
+        System.err.println("  -r  round limit of the generated maps (default 2000)");
+        System.err.println("  -v, -d, -y  void ratio, ore and symmetry of the maps, as for MapGenerator");
+        System.err.println("  -o  write the results as CSV, or as JSON for a .json file");
+        System.err.println("  -m  write the maps to this directory and keep them");
+        System.err.println("  -c  server configuration file");
+        System.exit(EX_USAGE);
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options();
+        options.addOption("p", "players", true, "players to run");
+        options.addOption("s", "sizes", true, "map sizes");
+        options.addOption("u", "units", true, "starting units");
+        options.addOption("r", "rounds", true, "round limit");
+        options.addOption("o", "output", true, "results file");
+        options.addOption("m", "map-dir", true, "map directory");
+        options.addOption("c", "config", true, "configuration file");
+        MapGenerator.addOptions(options);
+        CommandLine cl = null;
+        String[] players = PLAYERS;
+        int[] sizes = SIZES;
+        RobotType unitType = RobotType.SOLDIER;
+        int[] units = {0};
+        int rounds = 2000;
+        try {
+            cl = new GnuParser().parse(options, args);
+            if (cl.hasOption('p'))
+                players = cl.getOptionValue('p').split(",");
+            if (cl.hasOption('s')) {
+                String[] fields = cl.getOptionValue('s').split(",");
+                sizes = new int[fields.length];
+                for (int i = 0; i < fields.length; i++)
+                    sizes[i] = Integer.parseInt(fields[i].trim());
+            }
+            if (cl.hasOption('u')) {
+                String value = cl.getOptionValue('u');
+                if (value.indexOf(':') >= 0) {
+                    unitType = RobotType.valueOf(value.substring(0, value.indexOf(':')).toUpperCase());
+                    value = value.substring(value.indexOf(':') + 1);
+                }
+                String[] fields = value.split(",");
+                units = new int[fields.length];
+                for (int i = 0; i < fields.length; i++)
+                    units[i] = Integer.parseInt(fields[i].trim());
+            }
+            if (cl.hasOption('r'))
+                rounds = Integer.parseInt(cl.getOptionValue('r'));
+            // check the map options before playing anything
+            MapGenerator.configure(new MapGenerator(SIZES[0], SIZES[0], 0), cl);
+            for (int n : units)
+                new MapGenerator(SIZES[0], SIZES[0], 0).setUnits(unitType, n);
+        } catch (ParseException e) {
+            usage();
+            return;
+        } catch (IllegalArgumentException e) {
+            // bad numbers and names too
+            System.err.println(e.getMessage());
+            usage();
+            return;
+        }
+        for (int size : sizes) {
+            if (size < GameConstants.MAP_MIN_WIDTH || size > MAX_SIZE) {
+                usage();
+                return;
+            }
+        }
+        if (cl.getArgs().length != 0 || rounds < 1) {
+            usage();
+            return;
+        }
+        String[] serverArgs = cl.hasOption('c') ? new String[]{"-c", cl.getOptionValue('c')} : new String[0];
+
+        // the report goes to standard output; the server and players get standard error
+        PrintStream report = System.out;
+        System.setOut(System.err);
+
+        File mapDir = null;
+        List<Result> results = new ArrayList<Result>();
+        try {
+            if (cl.hasOption('m')) {
+                mapDir = new File(cl.getOptionValue('m'));
+                mapDir.mkdirs();
+            } else {
+                mapDir = File.createTempFile("stress", "");
+                mapDir.delete();
+                mapDir.mkdirs();
+            }
+            // the same terrain for every number of units on a size
+            for (int size : sizes) {
+                for (int n : units) {
+                    MapGenerator generator = new MapGenerator(size, size, size);
+                    generator.setRounds(rounds);
+                    MapGenerator.configure(generator, cl);
+                    generator.setUnits(unitType, n);
+                    generator.write(new File(mapDir, mapName(size, n) + ".xml"));
+                }
+            }
+
+            for (String player : players) {
+                for (int size : sizes) {
+                    for (int n : units) {
+                        Result result = runMatch(serverArgs, player.trim(), size, n, mapDir, mapName(size, n));
+                        results.add(result);
+                        report.printf("[stress] %s on %dx%d with %d units: %d rounds at %.1f rounds/s%n",
+                                result.player, size, size, n, result.getRounds(), result.getRoundsPerSecond());
+                    }
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // a map with no room for its units
+            System.err.println(e.getMessage());
+            System.exit(EX_USAGE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(EX_SOFTWARE);
+        } finally {
+            if (mapDir != null && !cl.hasOption('m'))
+                deleteMaps(mapDir);
+        }
+
+        report.println();
+        printResults(results, report);
+        if (cl.hasOption('o')) {
+            try {
+                writeResults(results, new File(cl.getOptionValue('o')));
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(EX_IOERR);
+            }
+        }
+        // the engine may leave threads behind
+        System.exit(0);
+    }
+}
@@ -0,0 +1,293 @@
+package battlecode.world;
+
+import battlecode.common.MapLocation;
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+import battlecode.common.TerrainTile;
+import battlecode.server.Config;
+import battlecode.world.GameMap.MapProperties;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A map as the engine needs it to start a match: its dimensions, seed and
+ * round limit, its terrain and ore, and the robots it starts with, in the
+ * order they are created. XMLMapHandler compiles a map file into one.
+ * <p/>
+ * With bc.game.map-cache on, compiled maps are saved in the "compiled"
+ * directory under the map path, which must be writable, named for the map
+ * and a hash of its XML file, and later matches on the same file read the
+ * compiled one instead of parsing the XML again. The file is the seven header ints
+ * (magic, version, width, height, seed, rounds and number of robots), the
+ * ore, four ints per robot (type, team, x, y) and a byte of terrain per
+ * square, all big-endian, with squares in the same column together.
+ * <p/>
+ * As a program, compiles the named maps, or every map in bc.game.map-path.
+ */
+public class CompiledMap {
+
+    static final int MAGIC = 0x42434d50;
+    static final int VERSION = 1;
+    static final String CACHE_DIR = "compiled";
+    static final String EXTENSION = ".bcmap";
+
+    private static final int HEADER_BYTES = 7 * 4;
+    private static final TerrainTile[] TILES = TerrainTile.values();
+    private static final RobotType[] TYPES = RobotType.values();
+    private static final Team[] TEAMS = Team.values();
+
+    final int width, height, seed, maxRounds;
+    // by x * height + y
+    final byte[] terrain;
+    final int[] ore;
+    // type, team, x and y of each robot
+    final int[] robots;
+
+    CompiledMap(int width, int height, int seed, int maxRounds, byte[] terrain, int[] ore, int[] robots) {
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+        this.maxRounds = maxRounds;
+        this.terrain = terrain;
+        this.ore = ore;
+        this.robots = robots;
+    }
+
+    public GameMap toGameMap(String mapName) {
+        Map<MapProperties, Integer> props = new EnumMap<MapProperties, Integer>(MapProperties.class);
+        props.put(MapProperties.WIDTH, width);
+        props.put(MapProperties.HEIGHT, height);
+        props.put(MapProperties.SEED, seed);
+        props.put(MapProperties.MAX_ROUNDS, maxRounds);
+        TerrainTile[][] mapTiles = new TerrainTile[width][height];
+        int[][] mapOre = new int[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++)
+                mapTiles[x][y] = TILES[terrain[x * height + y]];
+            System.arraycopy(ore, x * height, mapOre[x], 0, height);
+        }
+        return new GameMap(props, mapTiles, mapOre, mapName);
+    }
+
+    public GameWorld createGameWorld(String mapName, String teamA, String teamB, long[][] teamMemory) {
+        GameMap gm = toGameMap(mapName);
+        GameWorld gw = new GameWorld(gm, teamA, teamB, teamMemory);
+
+        gw.reserveRandomIDs(32000);
+
+        MapLocation origin = gm.getMapOrigin();
+        for (int i = 0; i < robots.length; i += 4) {
+            RobotType type = TYPES[robots[i]];
+            Team team = TEAMS[robots[i + 1]];
+            MapLocation loc = new MapLocation(origin.x + robots[i + 2], origin.y + robots[i + 3]);
+            InternalRobot robot = GameWorldFactory.createPlayer(gw, type, loc, team, null, false, 0);
+            if (type == RobotType.HQ)
+                gw.setHQ(robot, team);
+            else if (type == RobotType.TOWER)
+                gw.addTower(robot, team);
+        }
+
+        // by removing this line, you can no longer use IDs to determine execution order
+        //gw.endRandomIDs();
+
+        return gw;
+    }
+
+    /**
+     * Gets a map, from the cache if it has been compiled before, or else from
+     * its XML file, compiling it into the cache.
+     *
+     * @throws IllegalArgumentException if the map file can't be loaded
+     */
+    public static CompiledMap load(String mapName, String mapPath) {
+        File xml = new File(mapPath, mapName + ".xml");
+        File file;
+        try {
+            file = cacheFile(xml, mapName);
+        } catch (IOException e) {
+            // XMLMapHandler explains what is wrong with the file
+            return XMLMapHandler.loadMap(mapName, mapPath).compile();
+        }
+        if (file.isFile()) {
+            try {
+                return read(file);
+            } catch (IOException e) {
+                System.out.println("[Engine] Compiling " + mapName + " again: " + e.getMessage());
+            }
+        }
+        CompiledMap compiled = XMLMapHandler.loadMap(mapName, mapPath).compile();
+        try {
+            compiled.write(file);
+            removeStale(file, mapName);
+        } catch (IOException e) {
+            System.out.println("[Engine] Can't save compiled map " + file + ": " + e.getMessage());
+        }
+        return compiled;
+    }
+
+    /**
+     * The file a map's compiled form is cached in, which depends on the
+     * contents of the XML file and on the engine's enums.
+     */
+    static File cacheFile(File xml, String mapName) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        digest.update((VERSION + " " + Arrays.toString(TILES) + Arrays.toString(TYPES) + Arrays.toString(TEAMS))
+                .getBytes("UTF-8"));
+        InputStream in = new FileInputStream(xml);
+        try {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0)
+                digest.update(buf, 0, n);
+        } finally {
+            in.close();
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest())
+            hex.append(String.format("%02x", b));
+        return new File(new File(xml.getParentFile(), CACHE_DIR), mapName + "-" + hex + EXTENSION);
+    }
+
+    /**
+     * Removes the compiled forms of older versions of a map.
+     */
+    private static void removeStale(File current, String mapName) {
+        File[] files = current.getParentFile().listFiles();
+        if (files == null)
+            return;
+        int length = current.getName().length();
+        for (File f : files) {
+            String name = f.getName();
+            if (name.length() == length && name.startsWith(mapName + "-") && name.endsWith(EXTENSION)
+                    && !f.equals(current))
+                f.delete();
+        }
+    }
+
+    static CompiledMap read(File file) throws IOException {
+        long size = file.length();
+        if (size < HEADER_BYTES)
+            throw new IOException(file + " is too short");
+        if (size > Integer.MAX_VALUE)
+            throw new IOException(file + " is too long");
+        byte[] bytes = new byte[(int) size];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        if (buf.getInt() != MAGIC || buf.getInt() != VERSION)
+            throw new IOException(file + " isn't a compiled map of this version");
+        int width = buf.getInt();
+        int height = buf.getInt();
+        int seed = buf.getInt();
+        int maxRounds = buf.getInt();
+        int numRobots = buf.getInt();
+        long squares = (long) width * height;
+        if (width <= 0 || height <= 0 || numRobots < 0
+                || size != HEADER_BYTES + 5 * squares + 16L * numRobots)
+            throw new IOException(file + " is truncated");
+        int[] ore = new int[(int) squares];
+        buf.asIntBuffer().get(ore);
+        buf.position(buf.position() + 4 * ore.length);
+        int[] robots = new int[4 * numRobots];
+        buf.asIntBuffer().get(robots);
+        buf.position(buf.position() + 4 * robots.length);
+        byte[] terrain = new byte[(int) squares];
+        buf.get(terrain);
+        for (byte t : terrain) {
+            if (t < 0 || t >= TILES.length)
+                throw new IOException(file + " has unknown terrain");
+        }
+        for (int i = 0; i < robots.length; i += 4) {
+            if (robots[i] < 0 || robots[i] >= TYPES.length || robots[i + 1] < 0 || robots[i + 1] >= TEAMS.length)
+                throw new IOException(file + " has an unknown robot");
+        }
+        return new CompiledMap(width, height, seed, maxRounds, terrain, ore, robots);
+    }
+
+    /**
+     * Writes the compiled map next to the file, then renames it into place,
+     * so servers loading the same map at once never read half a file.
+     */
+    void write(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("can't create " + dir);
+        File temp = File.createTempFile("map", ".tmp", dir);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(width);
+                out.writeInt(height);
+                out.writeInt(seed);
+                out.writeInt(maxRounds);
+                out.writeInt(robots.length / 4);
+                for (int o : ore)
+                    out.writeInt(o);
+                for (int r : robots)
+                    out.writeInt(r);
+                out.write(terrain);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file) && !file.isFile())
+                throw new IOException("can't rename " + temp + " to " + file);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    public static void main(String[] args) {
+        String mapPath = Config.getGlobalConfig().get("bc.game.map-path");
+        String[] maps = args;
+        if (maps.length == 0) {
+            File[] files = new File(mapPath).listFiles();
+            if (files == null) {
+                System.err.println("no maps in " + mapPath);
+                System.exit(1);
+            }
+            Arrays.sort(files);
+            maps = new String[files.length];
+            int n = 0;
+            for (File f : files) {
+                if (f.getName().endsWith(".xml"))
+                    maps[n++] = f.getName().substring(0, f.getName().length() - 4);
+            }
+            maps = Arrays.copyOf(maps, n);
+        }
+        int failed = 0;
+        for (String map : maps) {
+            try {
+                CompiledMap compiled = load(map, mapPath);
+                System.out.println(map + ": " + compiled.width + "x" + compiled.height + ", "
+                        + compiled.robots.length / 4 + " robots");
+            } catch (IllegalArgumentException e) {
+                failed++;
+            }
+        }
+        System.exit(failed == 0 ? 0 : 1);
+    }
+}
@@ -233,6 +233,21 @@ public class GameMap implements GenericGameMap {
         return mapInitialOre[location.x - mapOriginX][location.y - mapOriginY];
     }
 
+    /**
+     * Returns the index of the given location in a flat array of
+     * width * height cells laid out like this map's [x][y] arrays, i.e.
+     * index = x * height + y in map-relative coordinates.
+     *
+     * @param location the MapLocation to look up
+     * @return the cell index, or -1 if the location is off the map
+     */
+    int getCellIndex(MapLocation location) {
+        if (!onTheMap(location))
+            return -1;
+
+        return (location.x - mapOriginX) * mapHeight + (location.y - mapOriginY);
+    }
+
     /**
      * Returns a two-dimensional array of ore data for this map.
      *
@@ -268,43 +283,108 @@ public class GameMap implements GenericGameMap {
         return new MapLocation(mapOriginX, mapOriginY);
     }
 
+    /**
+     * What a team has seen of the map. Robots are always on the map, so a
+     * team can only have seen the cells within the largest sensor radius of
+     * it; those are kept as one bit each, a column at a time like
+     * getCellIndex. The ore mined is only kept for cells on the map.
+     */
     public static class MapMemory {
+        static final int MARGIN;
+
+        static {
+            int radiusSquared = 0;
+            for (RobotType type : RobotType.values())
+                radiusSquared = Math.max(radiusSquared, type.sensorRadiusSquared);
+            MARGIN = (int) Math.sqrt(radiusSquared);
+        }
+
         private final GameMap map;
-        private final boolean[][] seen;
-        private final double[][] oreMined;
-        private final int OFFSET = 50;
+        // height of a column of seen bits, margin included
+        private final int columnHeight;
+        private final long[] seen;
+        private final double[] oreMined;
 
         public MapMemory(GameMap map) {
             this.map = map;
-            this.seen = new boolean[map.getWidth() + 2 * OFFSET][map.getHeight() + 2 * OFFSET];
-            this.oreMined = new double[map.getWidth() + 2 * OFFSET][map.getHeight() + 2 * OFFSET];
+            this.columnHeight = map.getHeight() + 2 * MARGIN;
+            this.seen = new long[((map.getWidth() + 2 * MARGIN) * columnHeight + 63) >>> 6];
+            this.oreMined = new double[map.getWidth() * map.getHeight()];
         }
 
         private boolean validLoc(int x, int y) {
-            return x >= -OFFSET && x < map.getWidth() + OFFSET && y >= -OFFSET && y < map.getHeight() + OFFSET;
+            return x >= -MARGIN && x < map.mapWidth + MARGIN && y >= -MARGIN && y < map.mapHeight + MARGIN;
         }
 
-        public void rememberLocations(MapLocation loc, int radiusSquared, Map<MapLocation, Double> oreMinedMap) {
-            MapLocation[] locs = MapLocation.getAllMapLocationsWithinRadiusSq(loc, radiusSquared);
-
-            for (int i = 0; i < locs.length; i++) {
-                int x = locs[i].x - map.mapOriginX;
-                int y = locs[i].y - map.mapOriginY;
-                if (validLoc(x, y)) {
-                    seen[x + OFFSET][y + OFFSET] = true;
-                    if (oreMinedMap.containsKey(locs[i])) {
-                        oreMined[x + OFFSET][y + OFFSET] = oreMinedMap.get(locs[i]);
-                    }
+        private int bit(int x, int y) {
+            return (x + MARGIN) * columnHeight + y + MARGIN;
+        }
+
+        /**
+         * Sets the bits from {@code from} up to but not including {@code to}.
+         */
+        private void setBits(int from, int to) {
+            int first = from >>> 6, last = (to - 1) >>> 6;
+            long firstMask = -1L << from, lastMask = -1L >>> -to;
+            if (first == last) {
+                seen[first] |= firstMask & lastMask;
+            } else {
+                seen[first] |= firstMask;
+                for (int i = first + 1; i < last; i++)
+                    seen[i] = -1L;
+                seen[last] |= lastMask;
+            }
+        }
+
+        /**
+         * Marks every location within the given radius as seen and records
+         * how much ore has been mined there.
+         *
+         * @param oreMinedMap ore mined so far, indexed by GameMap.getCellIndex
+         */
+        public void rememberLocations(MapLocation loc, int radiusSquared, double[] oreMinedMap) {
+            int radius = (int) Math.sqrt(radiusSquared);
+            int cx = loc.x - map.mapOriginX;
+            int cy = loc.y - map.mapOriginY;
+
+            for (int dx = -radius; dx <= radius; dx++) {
+                int x = cx + dx;
+                if (x < -MARGIN || x >= map.mapWidth + MARGIN)
+                    continue;
+                // the cells of this column within the radius
+                int dy = (int) Math.sqrt(radiusSquared - dx * dx);
+                int y0 = Math.max(cy - dy, -MARGIN);
+                int y1 = Math.min(cy + dy, map.mapHeight + MARGIN - 1);
+                if (y0 > y1)
+                    continue;
+                setBits(bit(x, y0), bit(x, y1) + 1);
+                if (x >= 0 && x < map.mapWidth) {
+                    y0 = Math.max(y0, 0);
+                    y1 = Math.min(y1, map.mapHeight - 1);
+                    if (y0 <= y1)
+                        System.arraycopy(oreMinedMap, x * map.mapHeight + y0, oreMined, x * map.mapHeight + y0,
+                                y1 - y0 + 1);
                 }
             }
         }
 
+        /**
+         * Records a single on-map cell as seen with the given amount of
+         * ore mined, using map-relative coordinates.
+         */
+        void rememberLocation(int x, int y, double mined) {
+            int b = bit(x, y);
+            seen[b >>> 6] |= 1L << b;
+            oreMined[x * map.mapHeight + y] = mined;
+        }
+
         public boolean seenBefore(MapLocation loc) {
             int X = loc.x - map.mapOriginX;
             int Y = loc.y - map.mapOriginY;
 
             if (validLoc(X, Y)) {
-                return seen[X + OFFSET][Y + OFFSET];
+                int b = bit(X, Y);
+                return (seen[b >>> 6] & (1L << b)) != 0;
             } else {
                 return false;
             }
@@ -319,14 +399,19 @@ public class GameMap implements GenericGameMap {
         }
 
         public double recallOreMined(MapLocation loc) {
-            int X = loc.x - map.mapOriginX;
-            int Y = loc.y - map.mapOriginY;
-
             if (seenBefore(loc)) {
-                return oreMined[X + OFFSET][Y + OFFSET];
+                int index = map.getCellIndex(loc);
+                return index >= 0 ? oreMined[index] : 0.0;
             } else {
                 return -1.0;
             }
         }
+
+        /**
+         * The bytes this memory takes, not counting object headers.
+         */
+        long sizeInBytes() {
+            return 8L * seen.length + 8L * oreMined.length;
+        }
     }
 }
@@ -1,15 +1,16 @@
 package battlecode.world;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import battlecode.common.Clock;
@@ -32,10 +33,12 @@ import battlecode.engine.signal.SignalHandler;
 import battlecode.serial.DominationFactor;
 import battlecode.serial.GameStats;
 import battlecode.serial.RoundStats;
+import battlecode.server.Config;
 import battlecode.world.signal.AttackSignal;
 import battlecode.world.signal.BashSignal;
 import battlecode.world.signal.BroadcastSignal;
 import battlecode.world.signal.BuildSignal;
+import battlecode.world.signal.BytecodesUsedChangeSignal;
 import battlecode.world.signal.BytecodesUsedSignal;
 import battlecode.world.signal.CastSignal;
 import battlecode.world.signal.ControlBitsSignal;
@@ -51,9 +54,11 @@ import battlecode.world.signal.MineSignal;
 import battlecode.world.signal.MissileCountSignal;
 import battlecode.world.signal.MovementSignal;
 import battlecode.world.signal.MovementOverrideSignal;
+import battlecode.world.signal.RobotInfoChangeSignal;
 import battlecode.world.signal.RobotInfoSignal;
 import battlecode.world.signal.SelfDestructSignal;
 import battlecode.world.signal.SpawnSignal;
+import battlecode.world.signal.StateDigestSignal;
 import battlecode.world.signal.TransferSupplySignal;
 import battlecode.world.signal.XPSignal;
 
@@ -74,54 +79,77 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
 
     private Map<Team, InternalRobot> baseHQs = new EnumMap<Team, InternalRobot>(Team.class);
     private Map<Team, Set<InternalRobot>> baseTowers = new EnumMap<Team, Set<InternalRobot>>(Team.class);
+    // sorted tower locations per team; null until computed or after a tower dies
+    private MapLocation[][] towerLocations = new MapLocation[2][];
     private final Map<MapLocation, InternalObject> gameObjectsByLoc = new HashMap<MapLocation, InternalObject>();
 
-    private Map<MapLocation, Double> oreMined = new HashMap<MapLocation, Double>();
+    // ore mined per cell, indexed by GameMap.getCellIndex
+    private final double[] oreMined;
+    private final MapLocation mapOrigin;
+    // cells mined since map memory was last updated
+    private final int[] dirtyOreCells;
+    private final boolean[] oreCellDirty;
+    private int numDirtyOreCells = 0;
     private Map<Team, GameMap.MapMemory> mapMemory = new EnumMap<Team, GameMap.MapMemory>(Team.class);
 
-    private Map<Team, Map<Integer, Integer>> radio = new EnumMap<Team, Map<Integer, Integer>>(Team.class);
+    // team radio, indexed by team ordinal and then channel
+    private final int[][] radio = new int[2][GameConstants.BROADCAST_MAX_CHANNELS + 1];
 
     private int[] numCommandersSpawned = new int[2];
     private Map<Team, InternalRobot> commanders = new EnumMap<Team, InternalRobot>(Team.class);
-    private Map<Team, Map<CommanderSkillType, Integer>> skillCooldowns = new EnumMap<Team, Map<CommanderSkillType, Integer>>(Team.class);
+    // rounds left on each skill's cooldown, indexed by team and skill ordinal; 0 means ready
+    private final int[][] skillCooldowns = new int[2][CommanderSkillType.values().length];
     
-    // a count for each robot type per team for tech tree checks and for tower counts
-    private Map<Team, Map<RobotType, Integer>> activeRobotTypeCount = new EnumMap<Team, Map<RobotType, Integer>>(Team.class); // only includes active bots
-    private Map<Team, Map<RobotType, Integer>> totalRobotTypeCount = new EnumMap<Team, Map<RobotType, Integer>>(Team.class); // includes inactive buildings
+    // a count for each robot type per team for tech tree checks and for tower counts,
+    // indexed by team and robot type ordinal
+    private final int[][] activeRobotTypeCount = new int[2][RobotType.values().length]; // only includes active bots
+    private final int[][] totalRobotTypeCount = new int[2][RobotType.values().length]; // includes inactive buildings
 
     // robots to remove from the game at end of turn
     private List<InternalRobot> deadRobots = new ArrayList<InternalRobot>();
 
+    // the objects in gameObjectsByID, in the same order; removed objects
+    // leave a null behind until the next round compacts the list
+    private InternalObject[] objectList = new InternalObject[64];
+    private int objectListSize = 0;
+    // reused snapshot of objectList taken at the start of each round phase
+    private InternalObject[] roundObjects = new InternalObject[64];
+    private int numRoundObjects = 0;
+
+    // bc.engine.signal-format 2 reports delays, supply and bytecodes with
+    // change-only signals; these are the robots the last ones accounted for
+    private final boolean changeSignals = Config.getGlobalConfig().getInt("bc.engine.signal-format") >= 2;
+    private final Set<Integer> robotInfoReported = new HashSet<Integer>();
+    private final Set<Integer> bytecodesUsedReported = new HashSet<Integer>();
+
+    // bc.engine.state-digest adds a hash of the game state to every round
+    private final StateDigest digest = Config.getGlobalConfig().getBoolean("bc.engine.state-digest")
+            ? new StateDigest() : null;
+
     @SuppressWarnings("unchecked")
     public GameWorld(GameMap gm, String teamA, String teamB, long[][] oldTeamMemory) {
         super(gm.getSeed(), teamA, teamB, oldTeamMemory);
         gameMap = gm;
 
+        int numCells = gameMap.getWidth() * gameMap.getHeight();
+        oreMined = new double[numCells];
+        dirtyOreCells = new int[numCells];
+        oreCellDirty = new boolean[numCells];
+        mapOrigin = gameMap.getMapOrigin();
+
         mapMemory.put(Team.A, new GameMap.MapMemory(gameMap));
         mapMemory.put(Team.B, new GameMap.MapMemory(gameMap));
-        mapMemory.put(Team.NEUTRAL, new GameMap.MapMemory(gameMap));
 
-        radio.put(Team.A, new HashMap<Integer, Integer>());
-        radio.put(Team.B, new HashMap<Integer, Integer>());
-
-        activeRobotTypeCount.put(Team.A, new EnumMap<RobotType, Integer>(RobotType.class));
-        activeRobotTypeCount.put(Team.B, new EnumMap<RobotType, Integer>(RobotType.class));
-        totalRobotTypeCount.put(Team.A, new EnumMap<RobotType, Integer>(RobotType.class));
-        totalRobotTypeCount.put(Team.B, new EnumMap<RobotType, Integer>(RobotType.class));
-
-        totalRobotTypeCount.get(Team.A).put(RobotType.HQ, 1);
-        totalRobotTypeCount.get(Team.B).put(RobotType.HQ, 1);
-        totalRobotTypeCount.get(Team.A).put(RobotType.TOWER, 6);
-        totalRobotTypeCount.get(Team.B).put(RobotType.TOWER, 6);
+        totalRobotTypeCount[Team.A.ordinal()][RobotType.HQ.ordinal()] = 1;
+        totalRobotTypeCount[Team.B.ordinal()][RobotType.HQ.ordinal()] = 1;
+        totalRobotTypeCount[Team.A.ordinal()][RobotType.TOWER.ordinal()] = 6;
+        totalRobotTypeCount[Team.B.ordinal()][RobotType.TOWER.ordinal()] = 6;
 
         baseTowers.put(Team.A, new HashSet<InternalRobot>());
         baseTowers.put(Team.B, new HashSet<InternalRobot>());
 
         adjustResources(Team.A, GameConstants.ORE_INITIAL_AMOUNT);
         adjustResources(Team.B, GameConstants.ORE_INITIAL_AMOUNT);
-
-        skillCooldowns.put(Team.A, new EnumMap<CommanderSkillType, Integer>(CommanderSkillType.class));
-        skillCooldowns.put(Team.B, new EnumMap<CommanderSkillType, Integer>(CommanderSkillType.class));
     }
 
     public void setHQ(InternalRobot r, Team t) {
@@ -130,12 +158,17 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
 
     public void addTower(InternalRobot tower, Team t) {
         baseTowers.get(t).add(tower);
+        towerLocations[t.ordinal()] = null;
     }
     
     // *********************************
     // ****** BASIC MAP METHODS ********
     // *********************************
 
+    /**
+     * Returns what a team has seen of the map, or null for the neutral
+     * team, which has no robots.
+     */
     public GameMap.MapMemory getMapMemory(Team t) {
     	return mapMemory.get(t);
     }
@@ -152,7 +185,17 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
         return baseHQs.get(t);
     }
 
+    /**
+     * Returns the locations of the given team's living towers.  The array
+     * is cached until one of the towers dies and is shared between callers,
+     * so it must not be modified; copy it before handing it to a player.
+     */
     public MapLocation[] senseTowerLocations(Team team) {
+        MapLocation[] cached = towerLocations[team.ordinal()];
+        if (cached != null) {
+            return cached;
+        }
+
         ArrayList<MapLocation> locs = new ArrayList<MapLocation>();
         for (InternalRobot r: baseTowers.get(team)) {
             if (r.canExecuteCode()) {
@@ -164,8 +207,10 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
         if (team == Team.B) {
             Collections.reverse(locs);
         }
-            
-        return locs.toArray(new MapLocation[locs.size()]);
+
+        cached = locs.toArray(new MapLocation[locs.size()]);
+        towerLocations[team.ordinal()] = cached;
+        return cached;
     }
 
     public InternalObject getObject(MapLocation loc) {
@@ -196,6 +241,36 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
         return gameObjectsByID.values().toArray(new InternalObject[gameObjectsByID.size()]);
     }
 
+    /**
+     * Copies the current objects, in ID-map order, into roundObjects so a
+     * round phase can walk them while objects are added or removed.  The
+     * object list is compacted along the way; nothing is allocated unless
+     * the arrays need to grow.
+     */
+    private void snapshotObjects() {
+        if (roundObjects.length < objectListSize) {
+            roundObjects = new InternalObject[objectList.length];
+        }
+        int n = 0;
+        for (int i = 0; i < objectListSize; i++) {
+            InternalObject o = objectList[i];
+            if (o != null) {
+                o.worldIndex = n;
+                objectList[n] = o;
+                roundObjects[n] = o;
+                n++;
+            }
+        }
+        for (int i = n; i < objectListSize; i++) {
+            objectList[i] = null;
+        }
+        for (int i = n; i < numRoundObjects; i++) {
+            roundObjects[i] = null;
+        }
+        objectListSize = n;
+        numRoundObjects = n;
+    }
+
     public InternalRobot getRobotByID(int id) {
         return (InternalRobot) getObjectByID(id);
     }
@@ -205,8 +280,7 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
     }
 
     public int getMessage(Team t, int channel) {
-    	Integer val = radio.get(t).get(channel);
-    	return val == null ? 0 : val;
+        return radio[t.ordinal()][channel];
     }
 
     public RoundStats getRoundStats() {
@@ -303,6 +377,11 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
         if (gameObjectsByID.containsKey(o.getID()))
             return;
         gameObjectsByID.put(o.getID(), o);
+        if (objectListSize == objectList.length) {
+            objectList = Arrays.copyOf(objectList, 2 * objectListSize);
+        }
+        o.worldIndex = objectListSize;
+        objectList[objectListSize++] = o;
         if (o.getLocation() != null) {
             gameObjectsByLoc.put(o.getLocation(), o);
         }
@@ -335,14 +414,38 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
 
         if (gameObjectsByID.get(o.getID()) == o) {
             gameObjectsByID.remove(o.getID());
+            objectList[o.worldIndex] = null;
         }
 
         if (o instanceof InternalRobot) {
             InternalRobot r = (InternalRobot) o;
             r.freeMemory();
+            if (digest != null)
+                digest.robotRemoved(r);
         }
     }
 
+    // should only be called by InternalRobot, when it is created and
+    // whenever its state changes
+    void robotStateChanged(InternalRobot r) {
+        if (digest != null)
+            digest.robotChanged(r);
+    }
+
+    public void setTeamMemory(Team t, int index, long state) {
+        long old = teamMemory[t.ordinal()][index];
+        super.setTeamMemory(t, index, state);
+        if (digest != null)
+            digest.teamMemoryChanged(t.ordinal(), index, old, teamMemory[t.ordinal()][index]);
+    }
+
+    public void setTeamMemory(Team t, int index, long state, long mask) {
+        long old = teamMemory[t.ordinal()][index];
+        super.setTeamMemory(t, index, state, mask);
+        if (digest != null)
+            digest.teamMemoryChanged(t.ordinal(), index, old, teamMemory[t.ordinal()][index]);
+    }
+
     public void beginningOfExecution(int robotID) {
         InternalRobot r = (InternalRobot) getObjectByID(robotID);
         if (r != null)
@@ -362,16 +465,25 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
     }
 
     public void notifyDied(InternalRobot r) {
+        if (r.type == RobotType.TOWER && r.getTeam() != Team.NEUTRAL) {
+            // a dying tower stops showing up as soon as its health runs out
+            towerLocations[r.getTeam().ordinal()] = null;
+        }
         deadRobots.add(r);
     }
 
     public void removeDead() {
+        if (deadRobots.isEmpty())
+            return;
         boolean current = false;
-        for (InternalRobot r : deadRobots) {
+        for (int i = 0; i < deadRobots.size(); i++) {
+            InternalRobot r = deadRobots.get(i);
             if (r.getID() == RobotMonitor.getCurrentRobotID())
                 current = true;
             visitSignal(new DeathSignal(r));
         }
+        // already-removed robots would only replay no-op death signals
+        deadRobots.clear();
         if (current)
             throw new RobotDeathException();
     }
@@ -382,28 +494,16 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
     
     // only returns active robots
     public int getActiveRobotTypeCount(Team team, RobotType type) {
-        if (activeRobotTypeCount.get(team).containsKey(type)) {
-            return activeRobotTypeCount.get(team).get(type);
-        } else {
-            return 0;
-        }
+        return activeRobotTypeCount[team.ordinal()][type.ordinal()];
     }
 
     public void incrementRobotTypeCount(Team team, RobotType type) {
-        if (activeRobotTypeCount.get(team).containsKey(type)) {
-            activeRobotTypeCount.get(team).put(type, activeRobotTypeCount.get(team).get(type) + 1);
-        } else {
-            activeRobotTypeCount.get(team).put(type, 1);
-        }
+        activeRobotTypeCount[team.ordinal()][type.ordinal()]++;
     }
 
     // returns active and inactive robots
     public int getTotalRobotTypeCount(Team team, RobotType type) {
-        if (totalRobotTypeCount.get(team).containsKey(type)) {
-            return totalRobotTypeCount.get(team).get(type);
-        } else {
-            return 0;
-        }
+        return totalRobotTypeCount[team.ordinal()][type.ordinal()];
     }
 
     // *********************************
@@ -412,8 +512,9 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
 
     public double getOre(MapLocation loc) {
         double mined = 0.0;
-        if (oreMined.containsKey(loc)) {
-            mined = oreMined.get(loc);
+        int index = gameMap.getCellIndex(loc);
+        if (index >= 0) {
+            mined = oreMined[index];
         }
         return gameMap.getInitialOre(loc) - mined;
     }
@@ -428,14 +529,41 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
     }
 
     public void mineOre(MapLocation loc, double amount) {
-        double cur = 0;
-        if (oreMined.containsKey(loc)) {
-            cur = oreMined.get(loc);
+        int index = gameMap.getCellIndex(loc);
+        double cur = oreMined[index];
+        oreMined[index] = cur + amount;
+        if (digest != null)
+            digest.oreChanged(index, cur, cur + amount);
+        if (!oreCellDirty[index]) {
+            oreCellDirty[index] = true;
+            dirtyOreCells[numDirtyOreCells++] = index;
         }
-        oreMined.put(loc, cur + amount);
         addSignal(new LocationOreChangeSignal(loc, cur + amount));
     }
 
+    /**
+     * Copies the ore mined this round into the memory of every team that
+     * can see the mined cell, then clears the dirty list.
+     */
+    private void rememberMinedOre(InternalObject[] gameObjects, int numObjects) {
+        int height = gameMap.getHeight();
+        for (int i = 0; i < numDirtyOreCells; i++) {
+            int index = dirtyOreCells[i];
+            int x = index / height;
+            int y = index % height;
+            for (int j = 0; j < numObjects; j++) {
+                InternalRobot ir = (InternalRobot) gameObjects[j];
+                int dx = ir.getLocation().x - mapOrigin.x - x;
+                int dy = ir.getLocation().y - mapOrigin.y - y;
+                if (dx * dx + dy * dy <= ir.type.sensorRadiusSquared) {
+                    mapMemory.get(ir.getTeam()).rememberLocation(x, y, oreMined[index]);
+                }
+            }
+            oreCellDirty[index] = false;
+        }
+        numDirtyOreCells = 0;
+    }
+
     protected boolean spendResources(Team t, double amount) {
         if (teamResources[t.ordinal()] >= amount) {
             teamResources[t.ordinal()] -= amount;
@@ -486,10 +614,7 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
     }
 
     public int getSkillCooldown(Team t, CommanderSkillType c) {
-        Map<CommanderSkillType, Integer> m = skillCooldowns.get(t);
-
-        if (m.get(c) == null) return 0;
-        return m.get(c);
+        return skillCooldowns[t.ordinal()][c.ordinal()];
     }
 
     public void castFlash(Team t, MapLocation m) {
@@ -513,9 +638,7 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
     }
 
     public boolean skillIsOnCooldown(Team t, CommanderSkillType sk) {
-        Map<CommanderSkillType, Integer> cooldowns = skillCooldowns.get(t);
-
-        return cooldowns.get(sk) != null && cooldowns.get(sk) > 0;
+        return skillCooldowns[t.ordinal()][sk.ordinal()] > 0;
     }
 
     // *********************************
@@ -530,27 +653,20 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
         wasBreakpointHit = false;
         
         // process all gameobjects
-        InternalObject[] gameObjects = new InternalObject[gameObjectsByID.size()];
-        gameObjects = gameObjectsByID.values().toArray(gameObjects);
-        for (int i = 0; i < gameObjects.length; i++) {
-            gameObjects[i].processBeginningOfRound();
+        snapshotObjects();
+        for (int i = 0; i < numRoundObjects; i++) {
+            roundObjects[i].processBeginningOfRound();
         }
 	
         processSkillCooldowns();
     }
 
     public void processSkillCooldowns() {
-        Team teams[] = new Team[]{Team.A, Team.B};
-
-        for (int t=0; t<2; ++t) {
-            for (Entry<CommanderSkillType, Integer> o : skillCooldowns.get(teams[t]).entrySet()) {
-                CommanderSkillType skillType = o.getKey();
-                int value = o.getValue()-1;
-                if (value == 0) {
-                    skillCooldowns.get(teams[t]).remove(skillType);
-                }
-                else {
-                    skillCooldowns.get(teams[t]).put(skillType, value);
+        for (int t = 0; t < 2; ++t) {
+            int[] cooldowns = skillCooldowns[t];
+            for (int i = 0; i < cooldowns.length; i++) {
+                if (cooldowns[i] > 0) {
+                    cooldowns[i]--;
                 }
             }
         }
@@ -577,24 +693,33 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
 
     public void processEndOfRound() {
         // process all gameobjects
-        InternalObject[] gameObjects = new InternalObject[gameObjectsByID.size()];
-        gameObjects = gameObjectsByID.values().toArray(gameObjects);
-        for (int i = 0; i < gameObjects.length; i++) {
+        snapshotObjects();
+        InternalObject[] gameObjects = roundObjects;
+        int numObjects = numRoundObjects;
+        for (int i = 0; i < numObjects; i++) {
             gameObjects[i].processEndOfRound();
         }
         removeDead();
 
-        // update map memory
-        for (int i = 0; i < gameObjects.length; i++) {
+        // update map memory; a robot that hasn't moved has already seen
+        // everything in range, so only new views and mined cells need work
+        for (int i = 0; i < numObjects; i++) {
             InternalRobot ir = (InternalRobot) gameObjects[i];
-            mapMemory.get(ir.getTeam()).rememberLocations(ir.getLocation(), ir.type.sensorRadiusSquared, oreMined);
+            MapLocation loc = ir.getLocation();
+            if (!loc.equals(ir.getRememberedLocation())) {
+                mapMemory.get(ir.getTeam()).rememberLocations(loc, ir.type.sensorRadiusSquared, oreMined);
+                ir.setRememberedLocation(loc);
+            }
         }
+        rememberMinedOre(gameObjects, numObjects);
 
         // free ore
         teamResources[Team.A.ordinal()] += GameConstants.HQ_ORE_INCOME;
         teamResources[Team.B.ordinal()] += GameConstants.HQ_ORE_INCOME;
         
         addSignal(new TeamOreSignal(teamResources));
+        if (digest != null)
+            addSignal(new StateDigestSignal(currentRound, digest.finishRound(this, teamResources)));
 
         if (timeLimitReached() && winner == null) {
             InternalRobot HQA = baseHQs.get(Team.A);
@@ -607,8 +732,8 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
                 // tiebreak by total tower health
                 double towerDiff = 0.0;
                 double oreDiff = resources(Team.A) - resources(Team.B);
-                InternalObject[] objs = getAllGameObjects();
-                for (InternalObject obj : objs) {
+                for (int i = 0; i < objectListSize; i++) {
+                    InternalObject obj = objectList[i];
                     if (obj instanceof InternalRobot) {
                         InternalRobot ir = (InternalRobot) obj;
                         if (ir.getTeam() == Team.A) {
@@ -671,10 +796,17 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
         }
 
         InternalRobot[] robots = allRobots.toArray(new InternalRobot[]{});
-        if (includeBytecodesUsedSignal) {
-        	signals.add(new BytecodesUsedSignal(robots));
+        if (changeSignals) {
+            if (includeBytecodesUsedSignal) {
+                signals.add(new BytecodesUsedChangeSignal(robots, updateReported(bytecodesUsedReported, robots)));
+            }
+            signals.add(new RobotInfoChangeSignal(robots, updateReported(robotInfoReported, robots)));
+        } else {
+            if (includeBytecodesUsedSignal) {
+            	signals.add(new BytecodesUsedSignal(robots));
+            }
+            signals.add(new RobotInfoSignal(robots));
         }
-        signals.add(new RobotInfoSignal(robots));
         HealthChangeSignal healthChange = new HealthChangeSignal(robots);
         if (healthChange.getRobotIDs().length > 0) {
             signals.add(healthChange);
@@ -683,6 +815,28 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
         return signals.toArray(new Signal[signals.size()]);
     }
 
+    /**
+     * Brings a set of reported robots up to date.
+     *
+     * @return the IDs of the robots that have left the game since
+     */
+    private int[] updateReported(Set<Integer> reported, InternalRobot[] robots) {
+        for (InternalRobot robot : robots)
+            reported.add(robot.getID());
+        int[] removed = new int[reported.size() - robots.length];
+        if (removed.length > 0) {
+            int i = 0;
+            for (Iterator<Integer> it = reported.iterator(); it.hasNext(); ) {
+                int id = it.next();
+                if (!gameObjectsByID.containsKey(id)) {
+                    removed[i++] = id;
+                    it.remove();
+                }
+            }
+        }
+        return removed;
+    }
+
     // ******************************
     // SIGNAL HANDLER METHODS
     // ******************************
@@ -783,8 +937,15 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
     }
 
     public void visitBroadcastSignal(BroadcastSignal s) {
-    	radio.get(s.getRobotTeam()).putAll(s.broadcastMap);
-    	s.broadcastMap = null;
+        int[] teamRadio = radio[s.getRobotTeam().ordinal()];
+        for (int i = 0; i < s.numBroadcasts; i++) {
+            if (digest != null)
+                digest.radioChanged(s.getRobotTeam().ordinal(), s.channels[i], teamRadio[s.channels[i]], s.data[i]);
+            teamRadio[s.channels[i]] = s.data[i];
+        }
+        // the arrays belong to the robot and are reused next turn
+        s.channels = null;
+        s.data = null;
         addSignal(s);
     }
 
@@ -806,11 +967,7 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
         //note: this also adds the signal
         InternalRobot robot = GameWorldFactory.createPlayer(this, s.getType(), loc, s.getTeam(), parent, s.getDelay());
         
-        Integer currentCount = totalRobotTypeCount.get(robot.getTeam()).get(robot.type);
-        if (currentCount == null) {
-            currentCount = 0;
-        }
-        totalRobotTypeCount.get(robot.getTeam()).put(robot.type, currentCount + 1);
+        totalRobotTypeCount[robot.getTeam().ordinal()][robot.type.ordinal()]++;
 
         // add myBuilder and myBuilding
         robot.setMyBuilder(parent.getID());
@@ -860,11 +1017,9 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
 
             // update robot counting
             if (r.isActive()) {
-                Integer currentCount = activeRobotTypeCount.get(r.getTeam()).get(r.type);
-                activeRobotTypeCount.get(r.getTeam()).put(r.type, currentCount - 1);
+                activeRobotTypeCount[r.getTeam().ordinal()][r.type.ordinal()]--;
             }
-            Integer currentCount = totalRobotTypeCount.get(r.getTeam()).get(r.type);
-            totalRobotTypeCount.get(r.getTeam()).put(r.type, currentCount - 1);
+            totalRobotTypeCount[r.getTeam().ordinal()][r.type.ordinal()]--;
 
             if (r.hasBeenAttacked()) {
                 gameStats.setUnitKilled(r.getTeam(), currentRound);
@@ -875,6 +1030,9 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
             if (r.type == RobotType.COMMANDER) {
                 commanders.put(r.getTeam(), null);
             }
+            if (r.type == RobotType.TOWER && r.getTeam() != Team.NEUTRAL) {
+                towerLocations[r.getTeam().ordinal()] = null;
+            }
 
             // give XP
             MapLocation loc = r.getLocation();
@@ -989,11 +1147,7 @@ public class GameWorld extends BaseWorld<InternalObject> implements GenericWorld
             commanders.put(robot.getTeam(), robot);
         }
         
-        Integer currentCount = totalRobotTypeCount.get(robot.getTeam()).get(robot.type);
-        if (currentCount == null) {
-            currentCount = 0;
-        }
-        totalRobotTypeCount.get(robot.getTeam()).put(robot.type, currentCount + 1);
+        totalRobotTypeCount[robot.getTeam().ordinal()][robot.type.ordinal()]++;
 
         if (robot.type == RobotType.COMMANDER) {
             incrementCommandersSpawned(robot.getTeam());
@@ -4,6 +4,7 @@ import battlecode.common.MapLocation;
 import battlecode.common.RobotType;
 import battlecode.common.Team;
 import battlecode.engine.PlayerFactory;
+import battlecode.server.Config;
 import battlecode.world.signal.SpawnSignal;
 
 /*
@@ -15,6 +16,9 @@ TODO:
 public class GameWorldFactory {
 
     public static GameWorld createGameWorld(String teamA, String teamB, String mapName, String mapPath, long[][] teamMemory) throws IllegalArgumentException {
+        if (Config.getGlobalConfig().getBoolean("bc.game.map-cache"))
+            return CompiledMap.load(mapName, mapPath).createGameWorld(mapName, teamA, teamB, teamMemory);
+
         XMLMapHandler handler = XMLMapHandler.loadMap(mapName, mapPath);
 
         return handler.createGameWorld(teamA, teamB, teamMemory);
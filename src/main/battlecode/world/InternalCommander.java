@@ -35,6 +35,7 @@ public class InternalCommander extends InternalRobot {
 
     public void giveXP(int amt) {
         xp += amt;
+        stateChanged();
     }
 
     public boolean hasSkill(CommanderSkillType type) {
@@ -7,6 +7,8 @@ public abstract class InternalObject extends BaseObject {
 
     protected volatile MapLocation myLocation;
     protected final GameWorld myGameWorld;
+    // position in the world's object list, maintained by GameWorld
+    int worldIndex;
 
     protected InternalObject(GameWorld gw, MapLocation loc, Team t) {
         super(gw, t);
@@ -1,7 +1,7 @@
 package battlecode.world;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
 
 import battlecode.common.Direction;
@@ -40,9 +40,19 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
     protected volatile boolean hasBeenAttacked;
     private boolean healthChanged;
     private boolean missileCountChanged;
+    // the values the last change-only signals reported for this robot
+    private boolean robotInfoReported;
+    private double reportedCoreDelay;
+    private double reportedWeaponDelay;
+    private double reportedSupplyLevel;
+    private boolean bytecodesUsedReported;
+    private int reportedBytecodesUsed;
     private boolean didSelfDestruct;
     private boolean broadcasted;
-    private volatile HashMap<Integer, Integer> broadcastMap;
+    // writes queued this turn, in order; flushed to the team radio at end of turn
+    private int[] broadcastChannels;
+    private int[] broadcastData;
+    private int numBroadcasts;
     private int roundsAlive;
     
     private ArrayList<Signal> supplyActions;
@@ -53,6 +63,19 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
 
     private int buildDelay;
 
+    // bumped whenever a field exposed through RobotInfo changes
+    private int stateVersion;
+    private RobotInfo cachedRobotInfo;
+    private int cachedRobotInfoVersion;
+
+    // this robot's term in the world's state digest, and whether it is
+    // waiting to be hashed again; maintained by StateDigest
+    long digestTerm;
+    boolean digestChanged;
+
+    // where this robot last updated its team's map memory from
+    private MapLocation rememberedLocation;
+
     private static boolean upkeepEnabled = Config.getGlobalConfig().getBoolean("bc.engine.upkeep");
     private int myBuilder, myBuilding;
     private boolean forceDeath;
@@ -84,7 +107,9 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
         
         didSelfDestruct = false;
         broadcasted = false;
-        broadcastMap = new HashMap<Integer, Integer>();
+        broadcastChannels = null;
+        broadcastData = null;
+        numBroadcasts = 0;
         roundsAlive = 0;
     
         supplyActions = new ArrayList<Signal>();
@@ -97,6 +122,11 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
         myBuilding = -1;
         forceDeath = false;
 
+        stateVersion = 0;
+        cachedRobotInfo = null;
+        cachedRobotInfoVersion = -1;
+        myGameWorld.robotStateChanged(this);
+
         if (!type.isBuildable()) {
             myGameWorld.incrementRobotTypeCount(getTeam(), type);
         }
@@ -106,6 +136,11 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
     // ****** QUERY METHODS ************
     // *********************************
 
+    /**
+     * Returns a snapshot of this robot's sensable state.  RobotInfo is
+     * immutable, so the same instance is handed out until this robot's
+     * state version changes.
+     */
     public RobotInfo getRobotInfo() {
         MapLocation myBuilderLocation = null;
         if (myBuilder >= 0) {
@@ -116,7 +151,37 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
             myBuildingLocation = myGameWorld.getRobotByID(myBuilding).getLocation();
         }
 
-        return new RobotInfo(getID(), getTeam(), type, getLocation(), getCoreDelay(), getWeaponDelay(), getHealthLevel(), getSupplyLevel(), getXP(), getMissileCount(), myBuilderLocation, myBuildingLocation);
+        // the builder and building live in other robots, so compare them directly
+        if (cachedRobotInfo != null && cachedRobotInfoVersion == stateVersion
+                && cachedRobotInfo.builder == myBuilderLocation
+                && cachedRobotInfo.buildingLocation == myBuildingLocation) {
+            return cachedRobotInfo;
+        }
+
+        cachedRobotInfo = new RobotInfo(getID(), getTeam(), type, getLocation(), getCoreDelay(), getWeaponDelay(), getHealthLevel(), getSupplyLevel(), getXP(), getMissileCount(), myBuilderLocation, myBuildingLocation);
+        cachedRobotInfoVersion = stateVersion;
+        return cachedRobotInfo;
+    }
+
+    /**
+     * Notes that some part of this robot's sensable state has changed, so
+     * that the next call to getRobotInfo() builds a fresh snapshot.
+     */
+    protected void stateChanged() {
+        stateVersion++;
+        myGameWorld.robotStateChanged(this);
+    }
+
+    public int getStateVersion() {
+        return stateVersion;
+    }
+
+    public MapLocation getRememberedLocation() {
+        return rememberedLocation;
+    }
+
+    public void setRememberedLocation(MapLocation loc) {
+        rememberedLocation = loc;
     }
 
     public int getRoundsAlive() {
@@ -136,6 +201,10 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
     	return isActive();
     }
 
+    public RobotType getType() {
+        return type;
+    }
+
     public void setBytecodesUsed(int numBytecodes) {
         bytecodesUsed = numBytecodes;
     }
@@ -187,8 +256,44 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
         return missileCountChanged;
     }
 
+    // whether each value differs from what the last RobotInfoChangeSignal
+    // reported; all of them do until one has reported this robot
+
+    public boolean coreDelayChanged() {
+        return !robotInfoReported || getCoreDelay() != reportedCoreDelay;
+    }
+
+    public boolean weaponDelayChanged() {
+        return !robotInfoReported || getWeaponDelay() != reportedWeaponDelay;
+    }
+
+    public boolean supplyLevelChanged() {
+        return !robotInfoReported || getSupplyLevel() != reportedSupplyLevel;
+    }
+
+    public void markRobotInfoReported() {
+        robotInfoReported = true;
+        reportedCoreDelay = getCoreDelay();
+        reportedWeaponDelay = getWeaponDelay();
+        reportedSupplyLevel = getSupplyLevel();
+    }
+
+    /**
+     * Whether the bytecode count differs from what the last
+     * BytecodesUsedChangeSignal reported, or none has reported this robot yet.
+     */
+    public boolean bytecodesUsedChanged() {
+        return !bytecodesUsedReported || getBytecodesUsed() != reportedBytecodesUsed;
+    }
+
+    public void markBytecodesUsedReported() {
+        bytecodesUsedReported = true;
+        reportedBytecodesUsed = getBytecodesUsed();
+    }
+
     public void setMyBuilding(int id) {
         myBuilding = id;
+        stateChanged();
     }
 
     public int getMyBuilding() {
@@ -197,6 +302,7 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
 
     public void setMyBuilder(int id) {
         myBuilder = id;
+        stateChanged();
     }
 
     public int getMyBuilder() {
@@ -208,6 +314,7 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
         myBuilder = -1;
         coreDelay = 0;
         weaponDelay = 0;
+        stateChanged();
     }
 
     public void prepareDeath() {
@@ -221,6 +328,7 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
     public void decrementMissileCount() {
         missileCount--;
         missileCountChanged = true;
+        stateChanged();
     }
 
     public int getMissileCount() {
@@ -284,6 +392,7 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
 
     public void changeHealthLevel(double amount) {
         healthChanged = true;
+        stateChanged();
         myHealthLevel += amount;
         if (myHealthLevel > getMaxHealth()) {
             myHealthLevel = getMaxHealth();
@@ -316,21 +425,26 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
 
     public void addCoreDelay(double time) {
         coreDelay += time;
+        stateChanged();
     }
 
     public void addWeaponDelay(double time) {
         weaponDelay += time;
+        stateChanged();
     }
 
     public void addCooldownDelay(double delay) {
         coreDelay = Math.max(coreDelay, delay);
+        stateChanged();
     }
 
     public void addLoadingDelay(double delay) {
         weaponDelay = Math.max(weaponDelay, delay);
+        stateChanged();
     }
 
     public void decrementDelays() {
+        stateChanged();
         if (type.supplyUpkeep > 0 && upkeepEnabled && myBuilding < 0) {
             weaponDelay -= 0.5;
             coreDelay -= 0.5;
@@ -397,6 +511,7 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
     }
 
     public void decreaseSupplyLevel(double dec) {
+        stateChanged();
         mySupplyLevel -= dec;
         if (mySupplyLevel < 0) {
             mySupplyLevel = 0;
@@ -405,6 +520,7 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
 
     public void increaseSupplyLevel(double inc) {
         mySupplyLevel += inc;
+        stateChanged();
     }
 
     // *********************************
@@ -412,12 +528,32 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
     // *********************************
 
     public void addBroadcast(int channel, int data) {
-    	broadcastMap.put(channel, data);
+        if (broadcastChannels == null) {
+            broadcastChannels = new int[16];
+            broadcastData = new int[16];
+        } else if (numBroadcasts == broadcastChannels.length) {
+            broadcastChannels = Arrays.copyOf(broadcastChannels, 2 * numBroadcasts);
+            broadcastData = Arrays.copyOf(broadcastData, 2 * numBroadcasts);
+        }
+        broadcastChannels[numBroadcasts] = channel;
+        broadcastData[numBroadcasts] = data;
+        numBroadcasts++;
         broadcasted = true;
     }
 
-    public Integer getQueuedBroadcastFor(int channel) {
-        return broadcastMap.get(channel);
+    /**
+     * Reads a channel of this robot's team radio.  Writes this robot has
+     * queued during the current turn are visible to it right away; other
+     * robots only see them once this turn ends.
+     */
+    public int readBroadcast(int channel) {
+        // later writes to the same channel win, so search from the end
+        for (int i = numBroadcasts - 1; i >= 0; i--) {
+            if (broadcastChannels[i] == channel) {
+                return broadcastData[i];
+            }
+        }
+        return myGameWorld.getMessage(getTeam(), channel);
     }
 
     public boolean hasBroadcasted() {
@@ -447,6 +583,7 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
     public void setLocation(MapLocation loc) {
     	MapLocation oldloc = getLocation();
         super.setLocation(loc);
+        stateChanged();
     }
 
     public void setSelfDestruct() {
@@ -498,20 +635,21 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
         }
 
         // broadcasts
-        if (broadcasted) myGameWorld.visitSignal(new BroadcastSignal(this, broadcastMap));
-        
-    	broadcastMap = new HashMap<Integer, Integer>();
+        if (broadcasted) myGameWorld.visitSignal(new BroadcastSignal(this, broadcastChannels, broadcastData, numBroadcasts));
+
+        numBroadcasts = 0;
         broadcasted = false;
 
         // perform supply actions
-        for (Signal s : supplyActions) {
-            myGameWorld.visitSignal(s);
+        for (int i = 0; i < supplyActions.size(); i++) {
+            myGameWorld.visitSignal(supplyActions.get(i));
         }
         supplyActions.clear();
 
         // supply decay
         if (type != RobotType.HQ && type != RobotType.SUPPLYDEPOT) {
             mySupplyLevel *= (1 - GameConstants.SUPPLY_DECAY);
+            stateChanged();
         }
         
         // perform attacks
@@ -521,8 +659,8 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
         }
 
         // launch missiles
-        for (SpawnSignal s : missileLaunchActions) {
-            myGameWorld.visitSignal(s);
+        for (int i = 0; i < missileLaunchActions.size(); i++) {
+            myGameWorld.visitSignal(missileLaunchActions.get(i));
         }
         missileLaunchActions.clear();
         
@@ -542,6 +680,7 @@ public class InternalRobot extends InternalObject implements Robot, GenericRobot
             missileCount++;
             addWeaponDelay(GameConstants.MISSILE_SPAWN_FREQUENCY);
             missileCountChanged = true;
+            stateChanged();
         }
     	
         // commander regen
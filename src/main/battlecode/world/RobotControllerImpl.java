@@ -149,12 +149,13 @@ public class RobotControllerImpl extends ControllerShared implements RobotContro
         return gameWorld.getBaseHQ(getTeam().opponent()).getLocation();
     }
 
+    // the world caches these arrays, so players get their own copy
     public MapLocation[] senseTowerLocations() {
-        return gameWorld.senseTowerLocations(getTeam());
+        return gameWorld.senseTowerLocations(getTeam()).clone();
     }
 
     public MapLocation[] senseEnemyTowerLocations() {
-        return gameWorld.senseTowerLocations(getTeam().opponent());
+        return gameWorld.senseTowerLocations(getTeam().opponent()).clone();
     }
 
     public TerrainTile senseTerrainTile(MapLocation loc) {
@@ -527,12 +528,7 @@ public class RobotControllerImpl extends ControllerShared implements RobotContro
     public int readBroadcast(int channel) throws GameActionException {
         if (channel<0 || channel>GameConstants.BROADCAST_MAX_CHANNELS)
             throw new GameActionException(CANT_DO_THAT_BRO, "Can only use radio channels from 0 to "+GameConstants.BROADCAST_MAX_CHANNELS+", inclusive");
-	Integer queued = robot.getQueuedBroadcastFor(channel);
-	if (queued != null) {
-	    return queued.intValue();
-	}
-        int m = gameWorld.getMessage(robot.getTeam(), channel);
-        return m;
+        return robot.readBroadcast(channel);
     }
 
     // ***********************************
@@ -0,0 +1,129 @@
+package battlecode.world;
+
+import java.util.Arrays;
+
+import battlecode.common.MapLocation;
+
+/**
+ * A running hash of the game state, for checking that two runs of a match
+ * are the same. Each component is the sum of one term per element (a robot,
+ * a mined cell, a radio channel, ...), so a change to one element updates it
+ * by swapping that element's old term for its new one instead of hashing
+ * everything again. Elements still at zero add nothing.
+ * <p/>
+ * Robots change in many places, so they are only marked as they change and
+ * hashed again once, when the round is finished.
+ */
+public class StateDigest {
+
+    public static final int ROBOTS = 0;
+    public static final int ORE = 1;
+    public static final int TEAM_ORE = 2;
+    public static final int RADIO = 3;
+    public static final int TEAM_MEMORY = 4;
+
+    /**
+     * The name of each component, by index.
+     */
+    public static final String[] COMPONENT_NAMES = {"robots", "ore", "team ore", "radio", "team memory"};
+
+    private final long[] components = new long[COMPONENT_NAMES.length];
+
+    // robots changed since the last round was finished
+    private InternalRobot[] changedRobots = new InternalRobot[64];
+    private int numChangedRobots = 0;
+
+    /**
+     * The splitmix64 finalizer.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    static long term(int component, long key, long value) {
+        if (value == 0)
+            return 0;
+        return mix(mix(((long) component << 56) ^ key) + value);
+    }
+
+    static long term(int component, long key, double value) {
+        return term(component, key, Double.doubleToLongBits(value));
+    }
+
+    static long robotTerm(InternalRobot r) {
+        MapLocation loc = r.getLocation();
+        long h = mix(((long) ROBOTS << 56) ^ r.getID());
+        h = mix(h + r.type.ordinal());
+        h = mix(h + r.getTeam().ordinal());
+        if (loc != null)
+            h = mix(h + (((long) loc.x << 32) ^ (loc.y & 0xffffffffL)));
+        h = mix(h + Double.doubleToLongBits(r.getHealthLevel()));
+        h = mix(h + Double.doubleToLongBits(r.getSupplyLevel()));
+        h = mix(h + Double.doubleToLongBits(r.getCoreDelay()));
+        h = mix(h + Double.doubleToLongBits(r.getWeaponDelay()));
+        h = mix(h + r.getMissileCount());
+        return mix(h + r.getXP());
+    }
+
+    /**
+     * Marks a robot to be hashed again when the round is finished.
+     */
+    public void robotChanged(InternalRobot r) {
+        if (r.digestChanged)
+            return;
+        r.digestChanged = true;
+        if (numChangedRobots == changedRobots.length)
+            changedRobots = Arrays.copyOf(changedRobots, 2 * numChangedRobots);
+        changedRobots[numChangedRobots++] = r;
+    }
+
+    public void robotRemoved(InternalRobot r) {
+        components[ROBOTS] -= r.digestTerm;
+        r.digestTerm = 0;
+    }
+
+    public void oreChanged(int cell, double oldMined, double newMined) {
+        components[ORE] += term(ORE, cell, newMined) - term(ORE, cell, oldMined);
+    }
+
+    public void radioChanged(int team, int channel, int oldValue, int newValue) {
+        long key = ((long) team << 32) | channel;
+        components[RADIO] += term(RADIO, key, newValue) - term(RADIO, key, oldValue);
+    }
+
+    public void teamMemoryChanged(int team, int index, long oldValue, long newValue) {
+        long key = ((long) team << 32) | index;
+        components[TEAM_MEMORY] += term(TEAM_MEMORY, key, newValue) - term(TEAM_MEMORY, key, oldValue);
+    }
+
+    /**
+     * Hashes the robots that changed this round and the team ore, which is
+     * only two values, so it is simply hashed again every round.
+     *
+     * @param world      the world the robots are in
+     * @param teamOre    the ore of each team, by ordinal
+     * @return the digest of each component, by index
+     */
+    public long[] finishRound(GameWorld world, double[] teamOre) {
+        for (int i = 0; i < numChangedRobots; i++) {
+            InternalRobot r = changedRobots[i];
+            changedRobots[i] = null;
+            r.digestChanged = false;
+            // a robot that has left the game took its term with it
+            if (!world.exists(r))
+                continue;
+            long t = robotTerm(r);
+            components[ROBOTS] += t - r.digestTerm;
+            r.digestTerm = t;
+        }
+        numChangedRobots = 0;
+
+        long ore = 0;
+        for (int i = 0; i < teamOre.length; i++)
+            ore += term(TEAM_ORE, i, teamOre[i]);
+        components[TEAM_ORE] = ore;
+        return components.clone();
+    }
+}
@@ -38,9 +38,9 @@ class XMLMapHandler extends DefaultHandler {
         public double floatData();
 
         public TerrainTile tile();
-        /* Returns {@code true} if createGameObject() does anything. */
 
-        public void createGameObject(GameWorld world, MapLocation loc);
+        /* Adds the type, team and location of the robot this makes, if any. */
+        public void addRobot(List<Integer> robots, int x, int y);
 
         public boolean equalsMirror(SymbolData data);
 
@@ -81,7 +81,7 @@ class XMLMapHandler extends DefaultHandler {
             return this.value;
         }
 
-        public void createGameObject(GameWorld world, MapLocation loc) {
+        public void addRobot(List<Integer> robots, int x, int y) {
         }
 
         public boolean equalsMirror(SymbolData data) {
@@ -137,12 +137,8 @@ class XMLMapHandler extends DefaultHandler {
             return TerrainTile.NORMAL;
         }
 
-        public void createGameObject(GameWorld world, MapLocation loc) {
-            InternalRobot robot = GameWorldFactory.createPlayer(world, type, loc, team, null, false, 0);
-
-	    if (this.type == RobotType.TOWER) {
-		world.addTower(robot, this.team);
-	    }
+        public void addRobot(List<Integer> robots, int x, int y) {
+            Collections.addAll(robots, type.ordinal(), team.ordinal(), x, y);
         }
 
         public boolean equalsMirror(SymbolData data) {
@@ -197,12 +193,9 @@ class XMLMapHandler extends DefaultHandler {
             return TerrainTile.NORMAL;
         }
 
-        public void createGameObject(GameWorld world, MapLocation loc) {
-            if (team == Team.NEUTRAL) {
-            } else {
-            	InternalRobot r = GameWorldFactory.createPlayer(world, RobotType.HQ, loc, team, null, false, 0);
-                world.setHQ(r, team);
-            }
+        public void addRobot(List<Integer> robots, int x, int y) {
+            if (team != Team.NEUTRAL)
+                Collections.addAll(robots, RobotType.HQ.ordinal(), team.ordinal(), x, y);
         }
 
         public boolean equalsMirror(SymbolData data) {
@@ -220,23 +213,7 @@ class XMLMapHandler extends DefaultHandler {
         }
     }
 
-    private class SymbolTile {
-
-        SymbolData data;
-        MapLocation loc;
-
-        public SymbolTile(SymbolData data, MapLocation loc) {
-            this.data = data;
-            this.loc = loc;
-        }
-
-        public void createGameObject(GameWorld world) {
-            data.createGameObject(world, loc);
-        }
-    }
-
     private static final Map<String, SymbolDataFactory> factories = new HashMap<String, SymbolDataFactory>();
-    private final ArrayList<SymbolTile> objectsToCreate = new ArrayList<SymbolTile>();
 
     private ArrayList<MapLocation[]> nodeLinks = new ArrayList<MapLocation[]>();
 
@@ -517,57 +494,57 @@ class XMLMapHandler extends DefaultHandler {
     }
 
     public GameWorld createGameWorld(String teamA, String teamB, long[][] teamMemory) {
+        return compile().createGameWorld(mapName, teamA, teamB, teamMemory);
+    }
 
-        System.out.println("Creating a game%%%%%%%%%");
+    /**
+     * Resolves the map into the terrain, ore and initial robots the engine
+     * starts a match with.
+     */
+    public CompiledMap compile() {
 
         //if (!isTournamentLegal()) {
             //fail("Map is not legal!", "Fix it.");
         //}
 
-        TerrainTile[][] mapTiles = new TerrainTile[map.length][];
-        for (int i = 0; i < map.length; i++) {
-            mapTiles[i] = new TerrainTile[map[i].length];
-            for (int j = 0; j < map[i].length; j++)
-                mapTiles[i][j] = map[i][j].tile();
-        }
-
-        int[][] intData = new int[map.length][];
-        for (int i = 0; i < map.length; i++) {
-            intData[i] = new int[map[i].length];
-            for (int j = 0; j < map[i].length; j++) {
-                intData[i][j] = (int) map[i][j].floatData();
-                if (mapTiles[i][j] == TerrainTile.VOID) {
-                    intData[i][j] = 0;
-                }
+        int width = map.length, height = map[0].length;
+        byte[] terrain = new byte[width * height];
+        int[] ore = new int[width * height];
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < height; j++) {
+                TerrainTile tile = map[i][j].tile();
+                terrain[i * height + j] = (byte) tile.ordinal();
+                if (tile != TerrainTile.VOID)
+                    ore[i * height + j] = (int) map[i][j].floatData();
             }
         }
 
-        GameMap gm = new GameMap(mapProperties, mapTiles, intData, mapName);
-        GameWorld gw = new GameWorld(gm, teamA, teamB, teamMemory);
-
-        gw.reserveRandomIDs(32000);
-
-        MapLocation origin = gm.getMapOrigin();
-
-        for (int i = 0; i < map.length; i++) {
-            for (int j = 0; j < map[i].length; j++) {
+        // HQs first, then everything else
+        List<Integer> robots = new ArrayList<Integer>();
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < height; j++) {
                 if (map[i][j] instanceof NodeData) {
-                    map[i][j].createGameObject(gw, new MapLocation(origin.x + i, origin.y + j));
+                    map[i][j].addRobot(robots, i, j);
                 }
             }
         }
-        for (int i = 0; i < map.length; i++) {
-            for (int j = 0; j < map[i].length; j++) {
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < height; j++) {
                 if (!(map[i][j] instanceof NodeData)) {
-                    map[i][j].createGameObject(gw, new MapLocation(origin.x + i, origin.y + j));
+                    map[i][j].addRobot(robots, i, j);
                 }
             }
         }
+        int[] robotData = new int[robots.size()];
+        for (int i = 0; i < robotData.length; i++)
+            robotData[i] = robots.get(i);
 
-        // by removing this line, you can no longer use IDs to determine execution order
-        //gw.endRandomIDs();
+        int seed = mapProperties.containsKey(MapProperties.SEED) ?
+                mapProperties.get(MapProperties.SEED) : GameMap.GAME_DEFAULT_SEED;
+        int maxRounds = mapProperties.containsKey(MapProperties.MAX_ROUNDS) ?
+                mapProperties.get(MapProperties.MAX_ROUNDS) : GameMap.GAME_DEFAULT_MAX_ROUNDS;
 
-        return gw;
+        return new CompiledMap(width, height, seed, maxRounds, terrain, ore, robotData);
     }
 
     public void checkNodeLink(MapLocation l) {
@@ -34,6 +34,11 @@ public class BashSignal extends Signal {
         this.targetLoc = targetLoc;
     }
 
+    public BashSignal(int robotID, MapLocation targetLoc) {
+        this.robotID = robotID;
+        this.targetLoc = targetLoc;
+    }
+
     /**
      * Returns the ID of the robot that just attacked.
      *
@@ -1,7 +1,5 @@
 package battlecode.world.signal;
 
-import java.util.HashMap;
-
 import battlecode.common.Team;
 import battlecode.engine.signal.Signal;
 import battlecode.world.InternalRobot;
@@ -23,17 +21,36 @@ public class BroadcastSignal extends Signal {
      * The team of the robot that broadcasted the message.
      */
     public final Team robotTeam;
-    public transient HashMap<Integer, Integer> broadcastMap;
+    /**
+     * The channels written, in order; data[i] was written to channels[i].
+     * Only the first numBroadcasts entries are used.
+     */
+    public transient int[] channels;
+    public transient int[] data;
+    public transient int numBroadcasts;
 
     /**
      * Creates a signal for a robot broadcast.
      *
-     * @param robot the robot that broadcast the message
+     * @param robot         the robot that broadcast the message
+     * @param channels      the channels written to
+     * @param data          the values written, parallel to channels
+     * @param numBroadcasts the number of writes in the arrays
      */
-    public BroadcastSignal(InternalRobot robot, HashMap<Integer, Integer> broadcastMap) {
+    public BroadcastSignal(InternalRobot robot, int[] channels, int[] data, int numBroadcasts) {
         this.robotID = robot.getID();
         this.robotTeam = robot.getTeam();
-        this.broadcastMap = broadcastMap;
+        this.channels = channels;
+        this.data = data;
+        this.numBroadcasts = numBroadcasts;
+    }
+
+    /**
+     * Creates a broadcast signal without the message, which is not saved.
+     */
+    public BroadcastSignal(int robotID, Team robotTeam) {
+        this.robotID = robotID;
+        this.robotTeam = robotTeam;
     }
 
     /**
@@ -0,0 +1,66 @@
+package battlecode.world.signal;
+
+import battlecode.engine.signal.Signal;
+import battlecode.world.InternalRobot;
+
+/**
+ * The change-only form of BytecodesUsedSignal: the bytecode counts of the
+ * robots whose count changed since the last one, and the robots that have
+ * left the game since. RobotStateReconstructor turns a stream of these back
+ * into BytecodesUsedSignals.
+ */
+public class BytecodesUsedChangeSignal extends Signal {
+
+    private static final long serialVersionUID = 4410952379143170650L;
+
+    private final int[] robotIDs;
+    private final int[] numBytecodes;
+    private final int[] removedIDs;
+
+    /**
+     * Reports the robots whose count changed since it was last reported,
+     * and marks them reported.
+     *
+     * @param robots     every robot in the game, in order
+     * @param removedIDs the robots reported before that are no longer in
+     *                   the game
+     */
+    public BytecodesUsedChangeSignal(InternalRobot[] robots, int[] removedIDs) {
+        int nChanged = 0;
+        for (InternalRobot robot : robots) {
+            if (robot.bytecodesUsedChanged())
+                nChanged++;
+        }
+
+        robotIDs = new int[nChanged];
+        numBytecodes = new int[nChanged];
+        int curIndex = 0;
+        for (InternalRobot robot : robots) {
+            if (robot.bytecodesUsedChanged()) {
+                robotIDs[curIndex] = robot.getID();
+                numBytecodes[curIndex] = robot.getBytecodesUsed();
+                robot.markBytecodesUsedReported();
+                curIndex++;
+            }
+        }
+        this.removedIDs = removedIDs;
+    }
+
+    public BytecodesUsedChangeSignal(int[] robotIDs, int[] numBytecodes, int[] removedIDs) {
+        this.robotIDs = robotIDs;
+        this.numBytecodes = numBytecodes;
+        this.removedIDs = removedIDs;
+    }
+
+    public int[] getRobotIDs() {
+        return robotIDs;
+    }
+
+    public int[] getNumBytecodes() {
+        return numBytecodes;
+    }
+
+    public int[] getRemovedIDs() {
+        return removedIDs;
+    }
+}
@@ -31,6 +31,11 @@ public class BytecodesUsedSignal extends Signal {
         }
     }
 
+    public BytecodesUsedSignal(int[] robotIDs, int[] numBytecodes) {
+        this.robotIDs = robotIDs;
+        this.numBytecodes = numBytecodes;
+    }
+
     public int[] getRobotIDs() {
         return robotIDs;
     }
@@ -30,6 +30,11 @@ public class CastSignal extends Signal {
         this.targetLoc = loc;
     }
 
+    public CastSignal(int robotID, MapLocation loc) {
+        this.robotID = robotID;
+        this.targetLoc = loc;
+    }
+
     /**
      * Returns the ID of the robot that just attacked.
      *
@@ -36,6 +36,11 @@ public class HealthChangeSignal extends Signal {
         }
     }
 
+    public HealthChangeSignal(int[] robotIDs, double[] health) {
+        this.robotIDs = robotIDs;
+        this.health = health;
+    }
+
     public int[] getRobotIDs() {
         return robotIDs;
     }
@@ -7,6 +7,8 @@ import battlecode.world.InternalRobot;
 
 public class IndicatorDotSignal extends Signal {
 
+    private static final long serialVersionUID = -6141887774197792107L;
+
     public final int robotID;
     public final Team team;
     public final MapLocation location;
@@ -20,4 +22,13 @@ public class IndicatorDotSignal extends Signal {
         green = g;
         blue = b;
     }
+
+    public IndicatorDotSignal(int robotID, Team team, MapLocation loc, int r, int g, int b) {
+        this.robotID = robotID;
+        this.team = team;
+        location = loc;
+        red = r;
+        green = g;
+        blue = b;
+    }
 }
@@ -7,6 +7,8 @@ import battlecode.world.InternalRobot;
 
 public class IndicatorLineSignal extends Signal {
 
+    private static final long serialVersionUID = 6904847461677519852L;
+
     public final int robotID;
     public final Team team;
     public final MapLocation loc1, loc2;
@@ -21,4 +23,14 @@ public class IndicatorLineSignal extends Signal {
         green = g;
         blue = b;
     }
+
+    public IndicatorLineSignal(int robotID, Team team, MapLocation l1, MapLocation l2, int r, int g, int b) {
+        this.robotID = robotID;
+        this.team = team;
+        loc1 = l1;
+        loc2 = l2;
+        red = r;
+        green = g;
+        blue = b;
+    }
 }
@@ -40,6 +40,12 @@ public class IndicatorStringSignal extends Signal {
         this.newString = newString;
     }
 
+    public IndicatorStringSignal(int robotID, int stringIndex, String newString) {
+        this.robotID = robotID;
+        this.stringIndex = stringIndex;
+        this.newString = newString;
+    }
+
     /**
      * Returns the ID of the robot whose indicator string just changed.
      *
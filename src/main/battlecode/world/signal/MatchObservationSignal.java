@@ -34,6 +34,11 @@ public class MatchObservationSignal extends Signal {
         this.observation = observation;
     }
 
+    public MatchObservationSignal(int robotID, String observation) {
+        this.robotID = robotID;
+        this.observation = observation;
+    }
+
     /**
      * Returns the ID of the robot originating the observation.
      *
@@ -55,6 +55,13 @@ public class MovementSignal extends Signal {
         this.delay = delay;
     }
 
+    public MovementSignal(int robotID, MapLocation newLoc, boolean isMovingForward, int delay) {
+        this.robotID = robotID;
+        this.newLoc = newLoc;
+        this.isMovingForward = isMovingForward;
+        this.delay = delay;
+    }
+
     /**
      * Returns the ID of the robot that just broadcast.
      *
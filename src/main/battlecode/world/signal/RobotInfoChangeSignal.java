@@ -0,0 +1,108 @@
+package battlecode.world.signal;
+
+import battlecode.engine.signal.Signal;
+import battlecode.world.InternalRobot;
+
+/**
+ * The change-only form of RobotInfoSignal: each of core delay, weapon delay
+ * and supply for just the robots whose value changed since the last one,
+ * and the robots that have left the game since. A robot reported for the
+ * first time has all three. RobotStateReconstructor turns a stream of these
+ * back into RobotInfoSignals.
+ */
+public class RobotInfoChangeSignal extends Signal {
+
+    private static final long serialVersionUID = -3072866581794935122L;
+
+    private final int[] coreDelayIDs;
+    private final double[] coreDelays;
+    private final int[] weaponDelayIDs;
+    private final double[] weaponDelays;
+    private final int[] supplyLevelIDs;
+    private final double[] supplyLevels;
+    private final int[] removedIDs;
+
+    /**
+     * Reports the values that changed since they were last reported, and
+     * marks them reported.
+     *
+     * @param robots     every robot in the game, in order
+     * @param removedIDs the robots reported before that are no longer in
+     *                   the game
+     */
+    public RobotInfoChangeSignal(InternalRobot[] robots, int[] removedIDs) {
+        int nCoreDelays = 0, nWeaponDelays = 0, nSupplyLevels = 0;
+        for (InternalRobot robot : robots) {
+            if (robot.coreDelayChanged())
+                nCoreDelays++;
+            if (robot.weaponDelayChanged())
+                nWeaponDelays++;
+            if (robot.supplyLevelChanged())
+                nSupplyLevels++;
+        }
+
+        coreDelayIDs = new int[nCoreDelays];
+        coreDelays = new double[nCoreDelays];
+        weaponDelayIDs = new int[nWeaponDelays];
+        weaponDelays = new double[nWeaponDelays];
+        supplyLevelIDs = new int[nSupplyLevels];
+        supplyLevels = new double[nSupplyLevels];
+        nCoreDelays = nWeaponDelays = nSupplyLevels = 0;
+        for (InternalRobot robot : robots) {
+            if (robot.coreDelayChanged()) {
+                coreDelayIDs[nCoreDelays] = robot.getID();
+                coreDelays[nCoreDelays++] = robot.getCoreDelay();
+            }
+            if (robot.weaponDelayChanged()) {
+                weaponDelayIDs[nWeaponDelays] = robot.getID();
+                weaponDelays[nWeaponDelays++] = robot.getWeaponDelay();
+            }
+            if (robot.supplyLevelChanged()) {
+                supplyLevelIDs[nSupplyLevels] = robot.getID();
+                supplyLevels[nSupplyLevels++] = robot.getSupplyLevel();
+            }
+            robot.markRobotInfoReported();
+        }
+        this.removedIDs = removedIDs;
+    }
+
+    public RobotInfoChangeSignal(int[] coreDelayIDs, double[] coreDelays, int[] weaponDelayIDs,
+                                 double[] weaponDelays, int[] supplyLevelIDs, double[] supplyLevels,
+                                 int[] removedIDs) {
+        this.coreDelayIDs = coreDelayIDs;
+        this.coreDelays = coreDelays;
+        this.weaponDelayIDs = weaponDelayIDs;
+        this.weaponDelays = weaponDelays;
+        this.supplyLevelIDs = supplyLevelIDs;
+        this.supplyLevels = supplyLevels;
+        this.removedIDs = removedIDs;
+    }
+
+    public int[] getCoreDelayIDs() {
+        return coreDelayIDs;
+    }
+
+    public double[] getCoreDelays() {
+        return coreDelays;
+    }
+
+    public int[] getWeaponDelayIDs() {
+        return weaponDelayIDs;
+    }
+
+    public double[] getWeaponDelays() {
+        return weaponDelays;
+    }
+
+    public int[] getSupplyLevelIDs() {
+        return supplyLevelIDs;
+    }
+
+    public double[] getSupplyLevels() {
+        return supplyLevels;
+    }
+
+    public int[] getRemovedIDs() {
+        return removedIDs;
+    }
+}
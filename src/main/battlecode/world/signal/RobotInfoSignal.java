@@ -35,6 +35,13 @@ public class RobotInfoSignal extends Signal {
         }
     }
 
+    public RobotInfoSignal(int[] robotIDs, double[] coreDelays, double[] weaponDelays, double[] supplyLevels) {
+        this.robotIDs = robotIDs;
+        this.coreDelays = coreDelays;
+        this.weaponDelays = weaponDelays;
+        this.supplyLevels = supplyLevels;
+    }
+
     public int[] getRobotIDs() {
         return robotIDs;
     }
@@ -0,0 +1,125 @@
+package battlecode.world.signal;
+
+import battlecode.engine.signal.Signal;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundDelta;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads matches written with the change-only signal format
+ * (bc.engine.signal-format=2) for code that expects the full one: every
+ * RobotInfoChangeSignal and BytecodesUsedChangeSignal is replaced by the
+ * RobotInfoSignal or BytecodesUsedSignal the engine would have sent in its
+ * place, with the same robots in the same order. Matches in the full format
+ * pass through unchanged.
+ * <p/>
+ * The change signals only make sense in order, so every object of a match
+ * must go through the same reconstructor, from the header on.
+ */
+public class RobotStateReconstructor {
+
+    // robot ID to {core delay, weapon delay, supply}, in the engine's order
+    private final Map<Integer, double[]> robotInfo = new LinkedHashMap<Integer, double[]>();
+    private final Map<Integer, Integer> bytecodesUsed = new LinkedHashMap<Integer, Integer>();
+
+    /**
+     * Forgets everything; call between matches read by hand.
+     */
+    public void reset() {
+        robotInfo.clear();
+        bytecodesUsed.clear();
+    }
+
+    /**
+     * Takes the next object of a match stream. Round deltas and signal
+     * arrays (as sent for debug-mode signals) have their signals replaced in
+     * place; a match header starts over.
+     *
+     * @return the object, for chaining
+     */
+    public Object reconstruct(Object o) {
+        if (o instanceof MatchHeader)
+            reset();
+        else if (o instanceof RoundDelta) {
+            RoundDelta delta = (RoundDelta) o;
+            delta.setSignals(reconstruct(delta.getSignals()));
+        } else if (o instanceof Signal[])
+            reconstruct((Signal[]) o);
+        return o;
+    }
+
+    /**
+     * Replaces the change signals in the given array.
+     *
+     * @return the array, for chaining
+     */
+    public Signal[] reconstruct(Signal[] signals) {
+        for (int i = 0; i < signals.length; i++) {
+            if (signals[i] instanceof RobotInfoChangeSignal)
+                signals[i] = apply((RobotInfoChangeSignal) signals[i]);
+            else if (signals[i] instanceof BytecodesUsedChangeSignal)
+                signals[i] = apply((BytecodesUsedChangeSignal) signals[i]);
+        }
+        return signals;
+    }
+
+    public RobotInfoSignal apply(RobotInfoChangeSignal s) {
+        remove(robotInfo, s.getRemovedIDs());
+        // a new robot has all three values, so the core delays add new robots
+        // in the order the engine has them
+        update(robotInfo, s.getCoreDelayIDs(), s.getCoreDelays(), 0);
+        update(robotInfo, s.getWeaponDelayIDs(), s.getWeaponDelays(), 1);
+        update(robotInfo, s.getSupplyLevelIDs(), s.getSupplyLevels(), 2);
+
+        int n = robotInfo.size();
+        int[] robotIDs = new int[n];
+        double[] coreDelays = new double[n];
+        double[] weaponDelays = new double[n];
+        double[] supplyLevels = new double[n];
+        int i = 0;
+        for (Map.Entry<Integer, double[]> e : robotInfo.entrySet()) {
+            robotIDs[i] = e.getKey();
+            coreDelays[i] = e.getValue()[0];
+            weaponDelays[i] = e.getValue()[1];
+            supplyLevels[i] = e.getValue()[2];
+            i++;
+        }
+        return new RobotInfoSignal(robotIDs, coreDelays, weaponDelays, supplyLevels);
+    }
+
+    public BytecodesUsedSignal apply(BytecodesUsedChangeSignal s) {
+        remove(bytecodesUsed, s.getRemovedIDs());
+        int[] changedIDs = s.getRobotIDs();
+        for (int i = 0; i < changedIDs.length; i++)
+            bytecodesUsed.put(changedIDs[i], s.getNumBytecodes()[i]);
+
+        int n = bytecodesUsed.size();
+        int[] robotIDs = new int[n];
+        int[] numBytecodes = new int[n];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> e : bytecodesUsed.entrySet()) {
+            robotIDs[i] = e.getKey();
+            numBytecodes[i] = e.getValue();
+            i++;
+        }
+        return new BytecodesUsedSignal(robotIDs, numBytecodes);
+    }
+
+    private static void update(Map<Integer, double[]> robots, int[] robotIDs, double[] values, int field) {
+        for (int i = 0; i < robotIDs.length; i++) {
+            double[] robot = robots.get(robotIDs[i]);
+            if (robot == null) {
+                robot = new double[3];
+                robots.put(robotIDs[i], robot);
+            }
+            robot[field] = values[i];
+        }
+    }
+
+    private static void remove(Map<Integer, ?> robots, int[] removedIDs) {
+        for (int id : removedIDs)
+            robots.remove(id);
+    }
+}
@@ -27,6 +27,11 @@ public class SelfDestructSignal extends Signal {
         this.robotID = robot.getID();
         this.loc = loc;
     }
+
+    public SelfDestructSignal(int robotID, MapLocation loc) {
+        this.robotID = robotID;
+        this.loc = loc;
+    }
     /**
      * Returns the ID of the robot that just attacked.
      *
@@ -80,6 +80,15 @@ public class SpawnSignal extends Signal {
 //        dir = null;
     }
 
+    public SpawnSignal(int robotID, int parentID, MapLocation loc, RobotType type, Team team, int delay) {
+        this.robotID = robotID;
+        this.parentID = parentID;
+        this.loc = loc;
+        this.type = type;
+        this.team = team;
+        this.delay = delay;
+    }
+
     public int getRobotID() {
         return robotID;
     }
@@ -0,0 +1,43 @@
+package battlecode.world.signal;
+
+import battlecode.engine.signal.Signal;
+
+/**
+ * A hash of the game state at the end of a round, one value per component
+ * of StateDigest. Two runs of a match are the same as long as their digests
+ * agree; DigestCompare finds the first round where they don't.
+ */
+public class StateDigestSignal extends Signal {
+
+    private static final long serialVersionUID = 4410379852635097153L;
+
+    private final int round;
+    private final long[] digests;
+
+    /**
+     * @param round   the round that just finished
+     * @param digests the digest of each component, indexed as in StateDigest
+     */
+    public StateDigestSignal(int round, long[] digests) {
+        this.round = round;
+        this.digests = digests;
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    public long[] getDigests() {
+        return digests;
+    }
+
+    /**
+     * Returns the digest of a component.
+     *
+     * @param component one of StateDigest.ROBOTS, ORE, TEAM_ORE, RADIO or
+     *                  TEAM_MEMORY
+     */
+    public long getDigest(int component) {
+        return digests[component];
+    }
+}
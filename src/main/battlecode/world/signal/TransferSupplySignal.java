@@ -5,6 +5,8 @@ import battlecode.world.InternalRobot;
 
 public class TransferSupplySignal extends Signal {
 
+    private static final long serialVersionUID = -4912496424953308866L;
+
     public final int fromID;
     public final int toID;
     public final double amount;
@@ -15,6 +17,12 @@ public class TransferSupplySignal extends Signal {
         this.amount = amount;
     }
 
+    public TransferSupplySignal(int fromID, int toID, double amount) {
+        this.fromID = fromID;
+        this.toID = toID;
+        this.amount = amount;
+    }
+
     public double getAmount() {
         return amount;
     }
@@ -0,0 +1,110 @@
+package chattystress;
+
+import battlecode.common.*;
+
+import java.util.Random;
+
+/**
+ * A stress-test player that talks too much: every robot prints a few dozen
+ * lines to System.out each turn, builds strings to do it, and sets all its
+ * indicator strings. The team grows like an ordinary economy so the output
+ * scales with the number of robots.
+ */
+public class RobotPlayer {
+
+    static final Direction[] DIRECTIONS = {Direction.NORTH, Direction.NORTH_EAST, Direction.EAST,
+            Direction.SOUTH_EAST, Direction.SOUTH, Direction.SOUTH_WEST, Direction.WEST, Direction.NORTH_WEST};
+
+    static final int LINES = 40;
+    static final int RESERVE = 800;
+
+    static RobotController rc;
+    static Random rand;
+
+    public static void run(RobotController myRC) {
+        rc = myRC;
+        rand = new Random(rc.getID());
+        while (true) {
+            try {
+                grow();
+                talk();
+            } catch (GameActionException e) {
+                e.printStackTrace();
+            }
+            rc.yield();
+        }
+    }
+
+    static void talk() {
+        MapLocation here = rc.getLocation();
+        for (int i = 0; i < LINES && Clock.getBytecodesLeft() > RESERVE; i++) {
+            System.out.println("line " + i + " of round " + Clock.getRoundNum() + ": " + rc.getType() + " at "
+                    + here + " with " + rc.getHealth() + " health and " + rc.getTeamOre() + " ore");
+        }
+        for (int i = 0; i < GameConstants.NUMBER_OF_INDICATOR_STRINGS; i++)
+            rc.setIndicatorString(i, "round " + Clock.getRoundNum() + " string " + i + " " + rand.nextInt());
+    }
+
+    static void grow() throws GameActionException {
+        switch (rc.getType()) {
+            case HQ:
+                spawn(RobotType.BEAVER);
+                break;
+            case MINERFACTORY:
+                spawn(RobotType.MINER);
+                break;
+            case BARRACKS:
+                spawn(RobotType.SOLDIER);
+                break;
+            case BEAVER:
+                if (rand.nextInt(8) == 0 && build(rand.nextBoolean() ? RobotType.MINERFACTORY : RobotType.BARRACKS))
+                    break;
+                mineOrWander();
+                break;
+            case MINER:
+                mineOrWander();
+                break;
+            default:
+                if (rc.getType().canMove())
+                    wander();
+        }
+    }
+
+    static void spawn(RobotType type) throws GameActionException {
+        if (!rc.isCoreReady() || rc.getTeamOre() < type.oreCost)
+            return;
+        int start = rand.nextInt(8);
+        for (int i = 0; i < 8; i++) {
+            Direction d = DIRECTIONS[(start + i) % 8];
+            if (rc.canSpawn(d, type)) {
+                rc.spawn(d, type);
+                return;
+            }
+        }
+    }
+
+    static boolean build(RobotType type) throws GameActionException {
+        if (!rc.isCoreReady() || rc.getTeamOre() < type.oreCost)
+            return false;
+        Direction d = DIRECTIONS[rand.nextInt(8)];
+        if (!rc.canBuild(d, type))
+            return false;
+        rc.build(d, type);
+        return true;
+    }
+
+    static void mineOrWander() throws GameActionException {
+        if (rc.isCoreReady() && rc.senseOre(rc.getLocation()) > 1 && rc.canMine())
+            rc.mine();
+        else
+            wander();
+    }
+
+    static void wander() throws GameActionException {
+        if (!rc.isCoreReady())
+            return;
+        Direction d = DIRECTIONS[rand.nextInt(8)];
+        if (rc.canMove(d))
+            rc.move(d);
+    }
+}
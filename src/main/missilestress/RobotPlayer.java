@@ -0,0 +1,155 @@
+package missilestress;
+
+import battlecode.common.*;
+
+import java.util.Random;
+
+/**
+ * A stress-test player that fills the map with missiles: beavers build
+ * helipads and then as many aerospace labs as they can afford, the labs
+ * spawn launchers without pause, and every launcher fires a missile
+ * whenever it has one. Missiles chase the nearest enemy and explode.
+ */
+public class RobotPlayer {
+
+    static final Direction[] DIRECTIONS = {Direction.NORTH, Direction.NORTH_EAST, Direction.EAST,
+            Direction.SOUTH_EAST, Direction.SOUTH, Direction.SOUTH_WEST, Direction.WEST, Direction.NORTH_WEST};
+
+    static RobotController rc;
+    static Random rand;
+
+    public static void run(RobotController myRC) {
+        rc = myRC;
+        rand = new Random(rc.getID());
+        while (true) {
+            try {
+                switch (rc.getType()) {
+                    case MISSILE:
+                        missile();
+                        break;
+                    case LAUNCHER:
+                        launcher();
+                        break;
+                    case HQ:
+                        attack();
+                        spawn(RobotType.BEAVER);
+                        break;
+                    case TOWER:
+                        attack();
+                        break;
+                    case AEROSPACELAB:
+                        spawn(RobotType.LAUNCHER);
+                        break;
+                    case MINERFACTORY:
+                        spawn(RobotType.MINER);
+                        break;
+                    case BEAVER:
+                        beaver();
+                        break;
+                    case MINER:
+                        mineOrWander();
+                        break;
+                    default:
+                }
+            } catch (GameActionException e) {
+                e.printStackTrace();
+            }
+            rc.yield();
+        }
+    }
+
+    static void missile() throws GameActionException {
+        MapLocation here = rc.getLocation();
+        RobotInfo[] enemies = rc.senseNearbyRobots(8, rc.getTeam().opponent());
+        MapLocation target = rc.senseEnemyHQLocation();
+        for (RobotInfo enemy : enemies) {
+            if (here.isAdjacentTo(enemy.location)) {
+                rc.explode();
+                return;
+            }
+            target = enemy.location;
+        }
+        if (rc.isCoreReady()) {
+            Direction d = here.directionTo(target);
+            if (rc.canMove(d))
+                rc.move(d);
+            else if (rc.canMove(d.rotateLeft()))
+                rc.move(d.rotateLeft());
+        }
+    }
+
+    static void launcher() throws GameActionException {
+        Direction d = rc.getLocation().directionTo(rc.senseEnemyHQLocation());
+        for (int i = 0; i < 8 && rc.getMissileCount() > 0; i++) {
+            if (rc.canLaunch(d)) {
+                rc.launchMissile(d);
+                break;
+            }
+            d = d.rotateRight();
+        }
+        d = rc.getLocation().directionTo(rc.senseEnemyHQLocation());
+        if (rc.isCoreReady() && rc.canMove(d))
+            rc.move(d);
+        else
+            wander();
+    }
+
+    static void beaver() throws GameActionException {
+        if (!rc.isCoreReady())
+            return;
+        if (rc.hasBuildRequirements(RobotType.AEROSPACELAB) && build(RobotType.AEROSPACELAB))
+            return;
+        int roll = rand.nextInt(6);
+        if (roll == 0 && build(RobotType.HELIPAD))
+            return;
+        if (roll == 1 && build(RobotType.MINERFACTORY))
+            return;
+        mineOrWander();
+    }
+
+    static void attack() throws GameActionException {
+        if (!rc.isWeaponReady())
+            return;
+        RobotInfo[] enemies = rc.senseNearbyRobots(rc.getType().attackRadiusSquared, rc.getTeam().opponent());
+        if (enemies.length > 0 && rc.canAttackLocation(enemies[0].location))
+            rc.attackLocation(enemies[0].location);
+    }
+
+    static void spawn(RobotType type) throws GameActionException {
+        if (!rc.isCoreReady() || rc.getTeamOre() < type.oreCost)
+            return;
+        int start = rand.nextInt(8);
+        for (int i = 0; i < 8; i++) {
+            Direction d = DIRECTIONS[(start + i) % 8];
+            if (rc.canSpawn(d, type)) {
+                rc.spawn(d, type);
+                return;
+            }
+        }
+    }
+
+    static boolean build(RobotType type) throws GameActionException {
+        if (rc.getTeamOre() < type.oreCost)
+            return false;
+        Direction d = DIRECTIONS[rand.nextInt(8)];
+        if (!rc.canBuild(d, type))
+            return false;
+        rc.build(d, type);
+        return true;
+    }
+
+    static void mineOrWander() throws GameActionException {
+        if (rc.isCoreReady() && rc.senseOre(rc.getLocation()) > 1 && rc.canMine())
+            rc.mine();
+        else
+            wander();
+    }
+
+    static void wander() throws GameActionException {
+        if (!rc.isCoreReady())
+            return;
+        Direction d = DIRECTIONS[rand.nextInt(8)];
+        if (rc.canMove(d))
+            rc.move(d);
+    }
+}
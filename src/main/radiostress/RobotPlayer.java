@@ -0,0 +1,111 @@
+package radiostress;
+
+import battlecode.common.*;
+
+import java.util.Random;
+
+/**
+ * A stress-test player that floods the team radio: every robot writes a
+ * few hundred channels and reads as many back every turn, spread over the
+ * whole channel range, for as long as its bytecodes last. The team grows
+ * like an ordinary economy so there are plenty of robots talking.
+ */
+public class RobotPlayer {
+
+    static final Direction[] DIRECTIONS = {Direction.NORTH, Direction.NORTH_EAST, Direction.EAST,
+            Direction.SOUTH_EAST, Direction.SOUTH, Direction.SOUTH_WEST, Direction.WEST, Direction.NORTH_WEST};
+
+    static final int CHANNELS = 300;
+    static final int RESERVE = 800;
+
+    static RobotController rc;
+    static Random rand;
+
+    public static void run(RobotController myRC) {
+        rc = myRC;
+        rand = new Random(rc.getID());
+        while (true) {
+            try {
+                grow();
+                chatter();
+            } catch (GameActionException e) {
+                e.printStackTrace();
+            }
+            rc.yield();
+        }
+    }
+
+    static void chatter() throws GameActionException {
+        int base = rc.getID() * 977;
+        int round = Clock.getRoundNum();
+        int sum = 0;
+        for (int i = 0; i < CHANNELS && Clock.getBytecodesLeft() > RESERVE; i++) {
+            rc.broadcast((base + i * 211) % GameConstants.BROADCAST_MAX_CHANNELS, round + i);
+            sum += rc.readBroadcast((base + i * 307 + 1) % GameConstants.BROADCAST_MAX_CHANNELS);
+        }
+        rc.broadcast(rc.getID() % GameConstants.BROADCAST_MAX_CHANNELS, sum);
+    }
+
+    static void grow() throws GameActionException {
+        switch (rc.getType()) {
+            case HQ:
+                spawn(RobotType.BEAVER);
+                break;
+            case MINERFACTORY:
+                spawn(RobotType.MINER);
+                break;
+            case BARRACKS:
+                spawn(RobotType.SOLDIER);
+                break;
+            case BEAVER:
+                if (rand.nextInt(8) == 0 && build(rand.nextBoolean() ? RobotType.MINERFACTORY : RobotType.BARRACKS))
+                    break;
+                mineOrWander();
+                break;
+            case MINER:
+                mineOrWander();
+                break;
+            default:
+                if (rc.getType().canMove())
+                    wander();
+        }
+    }
+
+    static void spawn(RobotType type) throws GameActionException {
+        if (!rc.isCoreReady() || rc.getTeamOre() < type.oreCost)
+            return;
+        int start = rand.nextInt(8);
+        for (int i = 0; i < 8; i++) {
+            Direction d = DIRECTIONS[(start + i) % 8];
+            if (rc.canSpawn(d, type)) {
+                rc.spawn(d, type);
+                return;
+            }
+        }
+    }
+
+    static boolean build(RobotType type) throws GameActionException {
+        if (!rc.isCoreReady() || rc.getTeamOre() < type.oreCost)
+            return false;
+        Direction d = DIRECTIONS[rand.nextInt(8)];
+        if (!rc.canBuild(d, type))
+            return false;
+        rc.build(d, type);
+        return true;
+    }
+
+    static void mineOrWander() throws GameActionException {
+        if (rc.isCoreReady() && rc.senseOre(rc.getLocation()) > 1 && rc.canMine())
+            rc.mine();
+        else
+            wander();
+    }
+
+    static void wander() throws GameActionException {
+        if (!rc.isCoreReady())
+            return;
+        Direction d = DIRECTIONS[rand.nextInt(8)];
+        if (rc.canMove(d))
+            rc.move(d);
+    }
+}
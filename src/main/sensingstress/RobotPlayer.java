@@ -0,0 +1,137 @@
+package sensingstress;
+
+import battlecode.common.*;
+
+import java.util.Random;
+
+/**
+ * A stress-test player that spends its turns sensing: every robot cycles
+ * through the senseNearbyRobots overloads, looks up the robots and ore on
+ * the squares around it and checks terrain, until its bytecodes run low.
+ * Barracks keep soldiers coming so the sensors have crowds to look at.
+ */
+public class RobotPlayer {
+
+    static final Direction[] DIRECTIONS = {Direction.NORTH, Direction.NORTH_EAST, Direction.EAST,
+            Direction.SOUTH_EAST, Direction.SOUTH, Direction.SOUTH_WEST, Direction.WEST, Direction.NORTH_WEST};
+
+    static final int RESERVE = 1500;
+
+    static RobotController rc;
+    static Random rand;
+
+    public static void run(RobotController myRC) {
+        rc = myRC;
+        rand = new Random(rc.getID());
+        while (true) {
+            try {
+                grow();
+                sense();
+            } catch (GameActionException e) {
+                e.printStackTrace();
+            }
+            rc.yield();
+        }
+    }
+
+    static void sense() throws GameActionException {
+        MapLocation here = rc.getLocation();
+        Team enemy = rc.getTeam().opponent();
+        int radius = rc.getType().sensorRadiusSquared;
+        int round = Clock.getRoundNum();
+        int seen = 0;
+        double ore = 0;
+        // a sense can overrun the reserve and end the turn; stop if it did
+        for (int i = 0; Clock.getRoundNum() == round && Clock.getBytecodesLeft() > RESERVE; i++) {
+            switch (i % 6) {
+                case 0:
+                    seen += rc.senseNearbyRobots().length;
+                    break;
+                case 1:
+                    seen += rc.senseNearbyRobots(radius).length;
+                    break;
+                case 2:
+                    seen += rc.senseNearbyRobots(radius, enemy).length;
+                    break;
+                case 3:
+                    seen += rc.senseNearbyRobots(here.add(DIRECTIONS[i % 8], 2), 8, null).length;
+                    break;
+                case 4: {
+                    MapLocation loc = here.add(rand.nextInt(7) - 3, rand.nextInt(7) - 3);
+                    if (rc.canSenseLocation(loc) && rc.senseRobotAtLocation(loc) != null)
+                        seen++;
+                    break;
+                }
+                default: {
+                    MapLocation loc = here.add(DIRECTIONS[i % 8], 1 + i % 4);
+                    if (rc.senseTerrainTile(loc) == TerrainTile.NORMAL)
+                        ore += rc.senseOre(loc);
+                }
+            }
+        }
+        rc.setIndicatorString(0, "seen " + seen + " ore " + ore);
+    }
+
+    static void grow() throws GameActionException {
+        switch (rc.getType()) {
+            case HQ:
+                spawn(RobotType.BEAVER);
+                break;
+            case MINERFACTORY:
+                spawn(RobotType.MINER);
+                break;
+            case BARRACKS:
+                spawn(RobotType.SOLDIER);
+                break;
+            case BEAVER:
+                if (rand.nextInt(8) == 0 && build(rand.nextBoolean() ? RobotType.MINERFACTORY : RobotType.BARRACKS))
+                    break;
+                mineOrWander();
+                break;
+            case MINER:
+                mineOrWander();
+                break;
+            default:
+                if (rc.getType().canMove())
+                    wander();
+        }
+    }
+
+    static void spawn(RobotType type) throws GameActionException {
+        if (!rc.isCoreReady() || rc.getTeamOre() < type.oreCost)
+            return;
+        int start = rand.nextInt(8);
+        for (int i = 0; i < 8; i++) {
+            Direction d = DIRECTIONS[(start + i) % 8];
+            if (rc.canSpawn(d, type)) {
+                rc.spawn(d, type);
+                return;
+            }
+        }
+    }
+
+    static boolean build(RobotType type) throws GameActionException {
+        if (!rc.isCoreReady() || rc.getTeamOre() < type.oreCost)
+            return false;
+        Direction d = DIRECTIONS[rand.nextInt(8)];
+        if (!rc.canBuild(d, type))
+            return false;
+        rc.build(d, type);
+        return true;
+    }
+
+    static void mineOrWander() throws GameActionException {
+        if (rc.isCoreReady() && rc.senseOre(rc.getLocation()) > 1 && rc.canMine())
+            rc.mine();
+        else
+            wander();
+    }
+
+    static void wander() throws GameActionException {
+        if (!rc.isCoreReady())
+            return;
+        Direction d = DIRECTIONS[rand.nextInt(8)];
+        if (rc.canMove(d))
+            rc.move(d);
+    }
+}
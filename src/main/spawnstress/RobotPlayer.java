@@ -0,0 +1,106 @@
+package spawnstress;
+
+import battlecode.common.*;
+
+import java.util.Random;
+
+/**
+ * A stress-test player that grows as fast as its ore allows: the HQ and
+ * every factory spawn whenever their core is ready, beavers put up more
+ * factories, and everything that can fight does. The game has no unit cap,
+ * so the robot count is bounded only by ore and space.
+ */
+public class RobotPlayer {
+
+    static final Direction[] DIRECTIONS = {Direction.NORTH, Direction.NORTH_EAST, Direction.EAST,
+            Direction.SOUTH_EAST, Direction.SOUTH, Direction.SOUTH_WEST, Direction.WEST, Direction.NORTH_WEST};
+
+    static final RobotType[] BUILDINGS = {RobotType.MINERFACTORY, RobotType.BARRACKS, RobotType.HELIPAD,
+            RobotType.BARRACKS, RobotType.SUPPLYDEPOT};
+
+    static RobotController rc;
+    static Random rand;
+
+    public static void run(RobotController myRC) {
+        rc = myRC;
+        rand = new Random(rc.getID());
+        while (true) {
+            try {
+                attack();
+                switch (rc.getType()) {
+                    case HQ:
+                        spawn(RobotType.BEAVER);
+                        break;
+                    case MINERFACTORY:
+                        spawn(RobotType.MINER);
+                        break;
+                    case BARRACKS:
+                        spawn(rand.nextBoolean() ? RobotType.SOLDIER : RobotType.BASHER);
+                        break;
+                    case HELIPAD:
+                        spawn(RobotType.DRONE);
+                        break;
+                    case BEAVER:
+                        if (rc.isCoreReady() && !build(BUILDINGS[rand.nextInt(BUILDINGS.length)]))
+                            mineOrWander();
+                        break;
+                    case MINER:
+                        mineOrWander();
+                        break;
+                    default:
+                        if (rc.getType().canMove())
+                            wander();
+                }
+            } catch (GameActionException e) {
+                e.printStackTrace();
+            }
+            rc.yield();
+        }
+    }
+
+    static void attack() throws GameActionException {
+        if (!rc.isWeaponReady() || !rc.getType().canAttack() || rc.getType() == RobotType.BASHER)
+            return;
+        RobotInfo[] enemies = rc.senseNearbyRobots(rc.getType().attackRadiusSquared, rc.getTeam().opponent());
+        if (enemies.length > 0 && rc.canAttackLocation(enemies[0].location))
+            rc.attackLocation(enemies[0].location);
+    }
+
+    static void spawn(RobotType type) throws GameActionException {
+        if (!rc.isCoreReady() || rc.getTeamOre() < type.oreCost)
+            return;
+        int start = rand.nextInt(8);
+        for (int i = 0; i < 8; i++) {
+            Direction d = DIRECTIONS[(start + i) % 8];
+            if (rc.canSpawn(d, type)) {
+                rc.spawn(d, type);
+                return;
+            }
+        }
+    }
+
+    static boolean build(RobotType type) throws GameActionException {
+        if (rc.getTeamOre() < type.oreCost)
+            return false;
+        Direction d = DIRECTIONS[rand.nextInt(8)];
+        if (!rc.canBuild(d, type))
+            return false;
+        rc.build(d, type);
+        return true;
+    }
+
+    static void mineOrWander() throws GameActionException {
+        if (rc.isCoreReady() && rc.senseOre(rc.getLocation()) > 1 && rc.canMine())
+            rc.mine();
+        else
+            wander();
+    }
+
+    static void wander() throws GameActionException {
+        if (!rc.isCoreReady())
+            return;
+        Direction d = DIRECTIONS[rand.nextInt(8)];
+        if (rc.canMove(d))
+            rc.move(d);
+    }
+}
@@ -0,0 +1,449 @@
+package battlecode.bench;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+/**
+ * Runs the microbenchmarks listed in Benchmarks the way JMH does: each in a
+ * number of fresh JVMs (forks), each of which runs warmup iterations and
+ * then measurement iterations of a fixed length. The score is the average
+ * time per operation over every measured iteration, with a 99.9%
+ * confidence interval. Results can be written as JSON in the layout JMH
+ * uses, so they can be tracked from build to build.
+ * <p/>
+ * With no forks, everything runs in this JVM, which is quicker but lets
+ * the benchmarks disturb each other's JIT profiles.
+ *
+ * Run with: ant bench, or java -cp <classes> battlecode.bench.BenchmarkRunner
+ * [-f forks] [-w iterations] [-i iterations] [-t millis] [-o results.json]
+ * [-J jvmarg]... [-l] [pattern...]
+ */
+public class BenchmarkRunner {
+
+    static private final int EX_USAGE = 64;
+    static private final int EX_SOFTWARE = 70;
+    static private final int EX_IOERR = 74;
+
+    /**
+     * The scores of one benchmark, in ns/op, per fork and iteration.
+     */
+    public static class Result {
+        private final Microbenchmark benchmark;
+        private final List<double[]> forks = new ArrayList<double[]>();
+
+        Result(Microbenchmark benchmark) {
+            this.benchmark = benchmark;
+        }
+
+        public Microbenchmark getBenchmark() {
+            return benchmark;
+        }
+
+        public List<double[]> getForks() {
+            return forks;
+        }
+
+        private int count() {
+            int n = 0;
+            for (double[] fork : forks)
+                n += fork.length;
+            return n;
+        }
+
+        public double getScore() {
+            double sum = 0;
+            for (double[] fork : forks)
+                for (double v : fork)
+                    sum += v;
+            return sum / count();
+        }
+
+        /**
+         * Half the width of the 99.9% confidence interval, or NaN with
+         * fewer than two iterations.
+         */
+        public double getError() {
+            int n = count();
+            if (n < 2)
+                return Double.NaN;
+            double mean = getScore();
+            double squares = 0;
+            for (double[] fork : forks)
+                for (double v : fork)
+                    squares += (v - mean) * (v - mean);
+            return studentT999(n - 1) * Math.sqrt(squares / (n - 1)) / Math.sqrt(n);
+        }
+    }
+
+    // two-sided 99.9% quantiles of Student's t distribution, by degrees of freedom
+    private static final double[] T999 = {Double.NaN, 636.62, 31.60, 12.92, 8.61, 6.87, 5.96, 5.41, 5.04,
+            4.78, 4.59, 4.44, 4.32, 4.22, 4.14, 4.07, 4.01, 3.97, 3.92, 3.88, 3.85, 3.82, 3.79, 3.77, 3.75,
+            3.73, 3.71, 3.69, 3.67, 3.66, 3.65};
+
+    static double studentT999(int degrees) {
+        if (degrees < T999.length)
+            return T999[degrees];
+        if (degrees <= 60)
+            return 3.50;
+        if (degrees <= 120)
+            return 3.37;
+        return 3.29;
+    }
+
+    private final int forks;
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationMillis;
+    private final List<String> jvmArgs;
+    private final PrintStream log;
+
+    public BenchmarkRunner(int forks, int warmupIterations, int measurementIterations, long iterationMillis,
+                           List<String> jvmArgs, PrintStream log) {
+        this.forks = forks;
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationMillis = iterationMillis;
+        this.jvmArgs = jvmArgs;
+        this.log = log;
+    }
+
+    /**
+     * Times one iteration.
+     *
+     * @return the average time per operation, in nanoseconds
+     */
+    static double iteration(Microbenchmark benchmark, long millis) throws Exception {
+        long ops = 0;
+        long start = System.nanoTime();
+        long end = start + millis * 1000000;
+        long now;
+        do {
+            ops += benchmark.run();
+            now = System.nanoTime();
+        } while (now < end);
+        return (double) (now - start) / ops;
+    }
+
+    /**
+     * Runs a benchmark's warmup and measurement iterations in this JVM.
+     *
+     * @param out where each iteration's score is printed as it finishes,
+     *            or null
+     * @return the measured scores
+     */
+    static double[] runIterations(Microbenchmark benchmark, int warmup, int measurement, long millis,
+                                  PrintStream out) throws Exception {
+        double[] scores = new double[measurement];
+        benchmark.setUp();
+        try {
+            for (int i = 0; i < warmup; i++) {
+                double score = iteration(benchmark, millis);
+                if (out != null)
+                    out.println("warmup\t" + score);
+            }
+            for (int i = 0; i < measurement; i++) {
+                scores[i] = iteration(benchmark, millis);
+                if (out != null)
+                    out.println("iteration\t" + scores[i]);
+            }
+        } finally {
+            benchmark.tearDown();
+        }
+        return scores;
+    }
+
+    public Result run(Microbenchmark benchmark) throws Exception {
+        Result result = new Result(benchmark);
+        log.println("# " + benchmark.getID());
+        if (forks == 0) {
+            double[] scores = runIterations(benchmark, warmupIterations, measurementIterations, iterationMillis,
+                    null);
+            log.println("  in process: " + format(scores));
+            result.forks.add(scores);
+            return result;
+        }
+        for (int f = 1; f <= forks; f++) {
+            double[] scores = runFork(benchmark);
+            log.println("  fork " + f + ": " + format(scores));
+            result.forks.add(scores);
+        }
+        return result;
+    }
+
+    private double[] runFork(Microbenchmark benchmark) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        Properties properties = System.getProperties();
+        for (Enumeration<?> names = properties.propertyNames(); names.hasMoreElements(); ) {
+            String name = (String) names.nextElement();
+            if (name.startsWith("bc."))
+                command.add("-D" + name + "=" + properties.getProperty(name));
+        }
+        command.add(BenchmarkRunner.class.getName());
+        command.addAll(Arrays.asList("--fork", benchmark.getID(), "-w", String.valueOf(warmupIterations),
+                "-i", String.valueOf(measurementIterations), "-t", String.valueOf(iterationMillis)));
+
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        process.getOutputStream().close();
+        BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        List<Double> scores = new ArrayList<Double>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.startsWith("iteration\t"))
+                scores.add(Double.parseDouble(line.substring(10)));
+            else if (!line.startsWith("warmup\t"))
+                log.println("  | " + line);
+        }
+        in.close();
+        int status = process.waitFor();
+        if (status != 0 || scores.size() != measurementIterations)
+            throw new IOException("fork of " + benchmark.getID() + " exited with status " + status + " after "
+                    + scores.size() + " of " + measurementIterations + " iterations");
+        double[] result = new double[scores.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = scores.get(i);
+        return result;
+    }
+
+    private static String format(double[] scores) {
+        StringBuilder sb = new StringBuilder();
+        for (double score : scores) {
+            if (sb.length() > 0)
+                sb.append(' ');
+            sb.append(String.format("%.1f", score));
+        }
+        return sb.append(" ns/op").toString();
+    }
+
+    /**
+     * Prints the scores as a table.
+     */
+    public static void printSummary(List<Result> results, PrintStream out) {
+        int width = "Benchmark".length();
+        for (Result r : results)
+            width = Math.max(width, r.benchmark.getID().length());
+        out.printf("%-" + width + "s %14s %12s  %s%n", "Benchmark", "Score", "Error", "Units");
+        for (Result r : results)
+            out.printf("%-" + width + "s %14.1f %12.1f  %s%n", r.benchmark.getID(), r.getScore(), r.getError(),
+                    "ns/op");
+    }
+
+    /**
+     * Writes the results as a JSON array of the objects JMH writes.
+     */
+    public void writeJson(List<Result> results, Writer out) throws IOException {
+        String jvm = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        out.write("[");
+        for (int r = 0; r < results.size(); r++) {
+            Result result = results.get(r);
+            Microbenchmark b = result.benchmark;
+            out.write(r == 0 ? "\n" : ",\n");
+            out.write("  {\n");
+            out.write("    \"benchmark\": " + jsonString(b.getName()) + ",\n");
+            out.write("    \"mode\": \"avgt\",\n");
+            out.write("    \"threads\": 1,\n");
+            out.write("    \"forks\": " + forks + ",\n");
+            out.write("    \"jvm\": " + jsonString(jvm) + ",\n");
+            out.write("    \"jvmArgs\": [");
+            for (int i = 0; i < jvmArgs.size(); i++)
+                out.write((i == 0 ? "" : ", ") + jsonString(jvmArgs.get(i)));
+            out.write("],\n");
+            out.write("    \"jdkVersion\": " + jsonString(System.getProperty("java.version")) + ",\n");
+            out.write("    \"warmupIterations\": " + warmupIterations + ",\n");
+            out.write("    \"warmupTime\": \"" + iterationMillis + " ms\",\n");
+            out.write("    \"measurementIterations\": " + measurementIterations + ",\n");
+            out.write("    \"measurementTime\": \"" + iterationMillis + " ms\",\n");
+            out.write("    \"params\": {");
+            boolean first = true;
+            for (Map.Entry<String, String> e : b.getParams().entrySet()) {
+                out.write((first ? "" : ", ") + jsonString(e.getKey()) + ": " + jsonString(e.getValue()));
+                first = false;
+            }
+            out.write("},\n");
+            double score = result.getScore();
+            double error = result.getError();
+            out.write("    \"primaryMetric\": {\n");
+            out.write("      \"score\": " + jsonNumber(score) + ",\n");
+            out.write("      \"scoreError\": " + jsonNumber(error) + ",\n");
+            out.write("      \"scoreConfidence\": [" + jsonNumber(score - error) + ", " + jsonNumber(score + error)
+                    + "],\n");
+            out.write("      \"scoreUnit\": \"ns/op\",\n");
+            out.write("      \"rawData\": [");
+            for (int f = 0; f < result.forks.size(); f++) {
+                out.write(f == 0 ? "[" : ", [");
+                double[] scores = result.forks.get(f);
+                for (int i = 0; i < scores.length; i++)
+                    out.write((i == 0 ? "" : ", ") + jsonNumber(scores[i]));
+                out.write("]");
+            }
+            out.write("]\n");
+            out.write("    }\n");
+            out.write("  }");
+        }
+        out.write(results.isEmpty() ? "]\n" : "\n]\n");
+    }
+
+    // like JMH, writes NaN and infinities as strings
+    private static String jsonNumber(double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v))
+            return "\"" + v + "\"";
+        return String.valueOf(v);
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder b = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+                b.append('\\').append(c);
+            else if (c < 0x20)
+                b.append(String.format("\\u%04x", (int) c));
+            else
+                b.append(c);
+        }
+        return b.append('"').toString();
+    }
+
+    /**
+     * Picks the benchmarks whose IDs contain a match for one of the
+     * patterns, or all of them if there are no patterns.
+     */
+    static List<Microbenchmark> select(List<Microbenchmark> benchmarks, String[] patterns) {
+        List<Microbenchmark> selected = new ArrayList<Microbenchmark>();
+        for (Microbenchmark b : benchmarks) {
+            boolean match = patterns.length == 0;
+            for (String p : patterns)
+                match |= Pattern.compile(p).matcher(b.getID()).find();
+            if (match)
+                selected.add(b);
+        }
+        return selected;
+    }
+
+    public static void usage() {
+        System.err.println("Usage: BenchmarkRunner [-f forks] [-w iterations] [-i iterations] [-t millis]");
+        System.err.println("       [-o results.json] [-J jvmarg]... [-l] [pattern...]");
+        System.err.println("  -f  JVMs to run each benchmark in, or 0 to run in this one (default 2)");
+        System.err.println("  -w  warmup iterations per fork (default 5)");
+        System.err.println("  -i  measurement iterations per fork (default 5)");
+        System.err.println("  -t  length of an iteration in milliseconds (default 1000)");
+        System.err.println("  -o  write the results as JSON");
+        System.err.println("  -J  argument for the forked JVMs");
+        System.err.println("  -l  list the benchmarks and exit");
+        System.err.println("  patterns are regular expressions matched against benchmark names");
+        System.exit(EX_USAGE);
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options();
+        options.addOption("f", "forks", true, "JVMs to run each benchmark in");
+        options.addOption("w", "warmup", true, "warmup iterations");
+        options.addOption("i", "iterations", true, "measurement iterations");
+        options.addOption("t", "time", true, "iteration length in milliseconds");
+        options.addOption("o", "output", true, "JSON results file");
+        options.addOption("J", "jvm-arg", true, "forked JVM argument");
+        options.addOption("l", "list", false, "list the benchmarks");
+        options.addOption(null, "fork", true, "run a single fork of a benchmark");
+        CommandLine cl = null;
+        int forks = 2, warmup = 5, iterations = 5;
+        long millis = 1000;
+        try {
+            cl = new GnuParser().parse(options, args);
+            if (cl.hasOption('f'))
+                forks = Integer.parseInt(cl.getOptionValue('f'));
+            if (cl.hasOption('w'))
+                warmup = Integer.parseInt(cl.getOptionValue('w'));
+            if (cl.hasOption('i'))
+                iterations = Integer.parseInt(cl.getOptionValue('i'));
+            if (cl.hasOption('t'))
+                millis = Long.parseLong(cl.getOptionValue('t'));
+        } catch (ParseException e) {
+            usage();
+            return;
+        } catch (NumberFormatException e) {
+            usage();
+            return;
+        }
+        if (forks < 0 || warmup < 0 || iterations < 1 || millis < 1) {
+            usage();
+            return;
+        }
+
+        List<Microbenchmark> benchmarks = Benchmarks.all();
+        if (cl.hasOption("fork")) {
+            // a forked JVM: its standard output goes back to the parent
+            String id = cl.getOptionValue("fork");
+            PrintStream replies = System.out;
+            System.setOut(System.err);
+            for (Microbenchmark b : benchmarks) {
+                if (b.getID().equals(id)) {
+                    try {
+                        runIterations(b, warmup, iterations, millis, replies);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        System.exit(EX_SOFTWARE);
+                    }
+                    replies.flush();
+                    System.exit(0);
+                }
+            }
+            System.err.println("no benchmark " + id);
+            System.exit(EX_USAGE);
+        }
+
+        List<Microbenchmark> selected = select(benchmarks, cl.getArgs());
+        if (cl.hasOption('l')) {
+            for (Microbenchmark b : selected)
+                System.out.println(b.getID());
+            return;
+        }
+
+        List<String> jvmArgs = cl.hasOption('J') ? Arrays.asList(cl.getOptionValues('J'))
+                : new ArrayList<String>();
+        BenchmarkRunner runner = new BenchmarkRunner(forks, warmup, iterations, millis, jvmArgs, System.out);
+        List<Result> results = new ArrayList<Result>();
+        try {
+            for (Microbenchmark b : selected)
+                results.add(runner.run(b));
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(EX_SOFTWARE);
+        }
+        System.out.println();
+        printSummary(results, System.out);
+
+        if (cl.hasOption('o')) {
+            try {
+                Writer out = new BufferedWriter(new FileWriter(cl.getOptionValue('o')));
+                runner.writeJson(results, out);
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(EX_IOERR);
+            }
+        }
+        // benchmarks may leave engine threads behind
+        System.exit(0);
+    }
+}
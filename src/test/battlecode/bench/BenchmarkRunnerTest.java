@@ -0,0 +1,124 @@
+package battlecode.bench;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class BenchmarkRunnerTest {
+
+    static class Counting extends Microbenchmark {
+        int setUps, runs, tearDowns;
+
+        Counting(String name, Object... params) {
+            super(name, params);
+        }
+
+        public void setUp() {
+            setUps++;
+        }
+
+        public int run() {
+            runs++;
+            return 10;
+        }
+
+        public void tearDown() {
+            tearDowns++;
+        }
+    }
+
+    private static PrintStream nowhere() {
+        return new PrintStream(new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void everyBenchmarkRuns() throws Exception {
+        Set<String> ids = new HashSet<String>();
+        for (Microbenchmark b : Benchmarks.all()) {
+            assertTrue("duplicate " + b.getID(), ids.add(b.getID()));
+            // the instrumenter's lists come with the release, not the source tree
+            if (b.getName().equals("engine.instrument") && !new File("AllowedPackages.txt").exists())
+                continue;
+            b.setUp();
+            try {
+                assertTrue(b.getID(), b.run() > 0);
+            } finally {
+                b.tearDown();
+            }
+        }
+    }
+
+    @Test
+    public void iterationsRunBetweenSetUpAndTearDown() throws Exception {
+        Counting b = new Counting("test.counting");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        double[] scores = BenchmarkRunner.runIterations(b, 2, 3, 5, new PrintStream(bytes, true));
+        assertEquals(3, scores.length);
+        assertEquals(1, b.setUps);
+        assertEquals(1, b.tearDowns);
+        assertTrue(b.runs >= 5);
+        String[] lines = bytes.toString().trim().split("\n");
+        assertEquals(5, lines.length);
+        assertTrue(lines[1].startsWith("warmup\t"));
+        assertTrue(lines[2].startsWith("iteration\t"));
+        assertEquals(scores[2], Double.parseDouble(lines[4].substring(10)), 0);
+    }
+
+    @Test
+    public void idIncludesParameters() {
+        assertEquals("a.b", new Counting("a.b").getID());
+        assertEquals("a.b:x=1,y=z", new Counting("a.b", "x", 1, "y", "z").getID());
+    }
+
+    @Test
+    public void selectMatchesAnyPattern() {
+        List<Microbenchmark> all = new ArrayList<Microbenchmark>();
+        all.add(new Counting("world.sense", "density", 0.1));
+        all.add(new Counting("world.loadMap"));
+        all.add(new Counting("engine.instrument"));
+        assertEquals(3, BenchmarkRunner.select(all, new String[0]).size());
+        assertEquals(2, BenchmarkRunner.select(all, new String[]{"^world"}).size());
+        assertEquals(2, BenchmarkRunner.select(all, new String[]{"density=0.1", "instr"}).size());
+        assertEquals(0, BenchmarkRunner.select(all, new String[]{"proxy"}).size());
+    }
+
+    @Test
+    public void errorUsesStudentT() {
+        BenchmarkRunner.Result result = new BenchmarkRunner.Result(new Counting("test.counting"));
+        result.getForks().add(new double[]{10, 12});
+        result.getForks().add(new double[]{14});
+        assertEquals(12, result.getScore(), 1e-9);
+        // sample standard deviation 2, two degrees of freedom
+        assertEquals(31.60 * 2 / Math.sqrt(3), result.getError(), 1e-9);
+        assertEquals(3.29, BenchmarkRunner.studentT999(1000), 0);
+    }
+
+    @Test
+    public void writesJmhJson() throws Exception {
+        BenchmarkRunner runner = new BenchmarkRunner(0, 1, 2, 5, Arrays.asList("-Xmx1g"), nowhere());
+        List<BenchmarkRunner.Result> results = new ArrayList<BenchmarkRunner.Result>();
+        results.add(runner.run(new Counting("test.counting", "size", 60)));
+        results.add(runner.run(new Counting("test.\"quoted\"")));
+        StringWriter out = new StringWriter();
+        runner.writeJson(results, out);
+        String json = out.toString();
+        assertTrue(json.startsWith("[\n  {\n    \"benchmark\": \"test.counting\",\n    \"mode\": \"avgt\""));
+        assertTrue(json.contains("\"jvmArgs\": [\"-Xmx1g\"]"));
+        assertTrue(json.contains("\"params\": {\"size\": \"60\"}"));
+        assertTrue(json.contains("\"benchmark\": \"test.\\\"quoted\\\"\""));
+        assertTrue(json.contains("\"scoreUnit\": \"ns/op\""));
+        assertTrue(json.endsWith("}\n]\n"));
+        assertEquals(2, results.get(0).getForks().get(0).length);
+    }
+}
@@ -0,0 +1,25 @@
+package battlecode.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import battlecode.engine.EngineBenchmarks;
+import battlecode.serial.index.IndexBenchmarks;
+import battlecode.server.proxy.ProxyBenchmarks;
+import battlecode.world.WorldBenchmarks;
+
+/**
+ * Every microbenchmark BenchmarkRunner knows about. Each package keeps its
+ * own benchmarks next to its tests, so they can reach package-private code.
+ */
+public class Benchmarks {
+
+    public static List<Microbenchmark> all() {
+        List<Microbenchmark> benchmarks = new ArrayList<Microbenchmark>();
+        benchmarks.addAll(EngineBenchmarks.create());
+        benchmarks.addAll(WorldBenchmarks.create());
+        benchmarks.addAll(ProxyBenchmarks.create());
+        benchmarks.addAll(IndexBenchmarks.create());
+        return benchmarks;
+    }
+}
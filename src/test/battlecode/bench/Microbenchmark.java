@@ -0,0 +1,80 @@
+package battlecode.bench;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One piece of code to time, with the state it runs on. BenchmarkRunner
+ * calls setUp once per fork, then run over and over for the warmup and
+ * measurement iterations, then tearDown.
+ * <p/>
+ * Results the JIT could otherwise throw away should be passed to consume.
+ */
+public abstract class Microbenchmark {
+
+    private static volatile Object sinkObject = new Object();
+    private static volatile long sinkValue = Long.MIN_VALUE;
+    private static int sinkHits;
+
+    private final String name;
+    private final Map<String, String> params = new LinkedHashMap<String, String>();
+
+    /**
+     * @param name   the name results are reported under, as group.method
+     * @param params alternating parameter names and values
+     */
+    protected Microbenchmark(String name, Object... params) {
+        if (params.length % 2 != 0)
+            throw new IllegalArgumentException("parameters come in name, value pairs");
+        this.name = name;
+        for (int i = 0; i < params.length; i += 2)
+            this.params.put(String.valueOf(params[i]), String.valueOf(params[i + 1]));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, String> getParams() {
+        return Collections.unmodifiableMap(params);
+    }
+
+    /**
+     * The name and parameters, as in "world.sense:density=0.1".
+     */
+    public String getID() {
+        StringBuilder sb = new StringBuilder(name);
+        char separator = ':';
+        for (Map.Entry<String, String> e : params.entrySet()) {
+            sb.append(separator).append(e.getKey()).append('=').append(e.getValue());
+            separator = ',';
+        }
+        return sb.toString();
+    }
+
+    public void setUp() throws Exception {
+    }
+
+    /**
+     * Runs the code under test. Code that takes less than a microsecond
+     * should run several times, so that reading the clock between calls
+     * doesn't dominate.
+     *
+     * @return the number of operations run
+     */
+    public abstract int run() throws Exception;
+
+    public void tearDown() throws Exception {
+    }
+
+    protected static void consume(Object o) {
+        if (o == sinkObject)
+            sinkHits++;
+    }
+
+    protected static void consume(long v) {
+        if (v == sinkValue)
+            sinkHits++;
+    }
+}
@@ -0,0 +1,100 @@
+package battlecode.engine;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+
+import battlecode.bench.Microbenchmark;
+import battlecode.engine.instrumenter.IndividualClassLoader;
+import battlecode.engine.scheduler.Scheduler;
+
+/**
+ * Microbenchmarks for the engine: passing the turn between robot threads
+ * and instrumenting classes. Charging bytecodes needs a world, so it is in
+ * battlecode.world.WorldBenchmarks. See battlecode.bench.BenchmarkRunner.
+ */
+public class EngineBenchmarks {
+
+    // the library classes players use most, which are instrumented for every team
+    private static final String[] CORPUS = {"java/util/ArrayList", "java/util/LinkedList", "java/util/ArrayDeque",
+            "java/util/HashMap", "java/util/HashSet", "java/util/TreeMap", "java/util/PriorityQueue",
+            "java/util/Arrays", "java/util/Collections"};
+
+    private static final String[] ENGINE_FILES = {"AllowedPackages.txt", "DisallowedClasses.txt"};
+
+    public static List<Microbenchmark> create() {
+        List<Microbenchmark> benchmarks = new ArrayList<Microbenchmark>();
+        benchmarks.add(new Handoff());
+        benchmarks.add(new Instrument());
+        return benchmarks;
+    }
+
+    /**
+     * Passes the turn back and forth between this thread and one robot
+     * thread. An operation is one handoff.
+     */
+    static class Handoff extends Microbenchmark {
+        private Thread robot;
+        private volatile boolean stop;
+
+        Handoff() {
+            super("engine.schedulerHandoff");
+        }
+
+        public void setUp() {
+            stop = false;
+            Scheduler.start();
+            robot = new Thread(new Runnable() {
+                public void run() {
+                    Scheduler.endTurn();
+                    while (!stop)
+                        Scheduler.passToNextThread();
+                    Scheduler.die();
+                }
+            });
+            robot.setDaemon(true);
+            // not a real robot, so the monitor leaves the world alone
+            Scheduler.add(robot, -2);
+            robot.start();
+        }
+
+        public int run() {
+            for (int i = 0; i < 100; i++)
+                Scheduler.passToNextThread();
+            return 200;
+        }
+
+        public void tearDown() throws InterruptedException {
+            stop = true;
+            Scheduler.passToNextThread();
+            robot.join();
+        }
+    }
+
+    /**
+     * Instruments a corpus of library classes for a team. An operation is
+     * one class. Like a match, this needs AllowedPackages.txt and
+     * DisallowedClasses.txt in the working directory.
+     */
+    static class Instrument extends Microbenchmark {
+        private IndividualClassLoader loader;
+
+        Instrument() {
+            super("engine.instrument", "classes", CORPUS.length);
+        }
+
+        public void setUp() throws FileNotFoundException {
+            for (String file : ENGINE_FILES)
+                if (!new File(file).exists())
+                    throw new FileNotFoundException(file + " is not in the working directory");
+            loader = new IndividualClassLoader("benchplayer", true, false, false);
+        }
+
+        public int run() {
+            for (String name : CORPUS)
+                consume(loader.instrument("instrumented/" + name, false, "benchplayer"));
+            return CORPUS.length;
+        }
+    }
+}
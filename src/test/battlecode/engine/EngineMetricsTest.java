@@ -0,0 +1,137 @@
+package battlecode.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Test;
+
+import battlecode.common.MapLocation;
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+import battlecode.engine.signal.Signal;
+import battlecode.server.Config;
+import battlecode.world.signal.DeathSignal;
+import battlecode.world.signal.IndicatorStringSignal;
+import battlecode.world.signal.SpawnSignal;
+
+public class EngineMetricsTest {
+
+    private static final MapLocation ORIGIN = new MapLocation(0, 0);
+
+    private static Signal spawn(int id) {
+        return new SpawnSignal(id, 0, ORIGIN, RobotType.SOLDIER, Team.A, 0);
+    }
+
+    private static Signal[] round(int spawns, int deaths, int strings) {
+        Signal[] signals = new Signal[spawns + deaths + strings];
+        int n = 0;
+        for (int i = 0; i < spawns; i++)
+            signals[n++] = spawn(i);
+        for (int i = 0; i < deaths; i++)
+            signals[n++] = new DeathSignal(i);
+        for (int i = 0; i < strings; i++)
+            signals[n++] = new IndicatorStringSignal(i, 0, "hi");
+        return signals;
+    }
+
+    @Test
+    public void disabledByDefault() {
+        assertNull(EngineMetrics.create("a", "b", "map"));
+    }
+
+    @Test
+    public void countsRobotsAndSignals() {
+        EngineMetrics metrics = new EngineMetrics("a vs. b on map");
+        metrics.engineRound(0, 10, 200, 30, 40);
+        metrics.matchRound(round(5, 0, 2), 50, 60);
+        metrics.engineRound(1, 1, 2, 3, 4);
+        metrics.matchRound(round(1, 3, 0), 5, 6);
+
+        assertEquals(1, metrics.getRound());
+        assertEquals(3, metrics.getRobotsAlive());
+        assertEquals(6, metrics.getRobotsSpawned());
+        assertEquals(3, metrics.getRobotsDied());
+        Map<String, Long> counts = metrics.getSignalCounts();
+        assertEquals(Long.valueOf(6), counts.get("SpawnSignal"));
+        assertEquals(Long.valueOf(3), counts.get("DeathSignal"));
+        assertEquals(Long.valueOf(2), counts.get("IndicatorStringSignal"));
+
+        Map<String, Long> last = metrics.getLastRoundNanos();
+        assertEquals(EngineMetrics.PHASE_NAMES.length, last.size());
+        assertEquals(Long.valueOf(2), last.get("robots"));
+        assertEquals(Long.valueOf(6), last.get("round-delta"));
+        assertEquals(Long.valueOf(202), metrics.getTotalNanos().get("robots"));
+        assertEquals(Long.valueOf(66), metrics.getTotalNanos().get("round-delta"));
+    }
+
+    @Test
+    public void appendsRoundsToCsv() throws IOException {
+        File file = File.createTempFile("metrics", ".csv");
+        try {
+            EngineMetrics metrics = new EngineMetrics("a vs. b on map");
+            metrics.openCsv(file);
+            metrics.engineRound(0, 10, 200, 30, 40);
+            metrics.matchRound(round(2, 0, 1), 50, 60);
+            metrics.engineRound(1, 1, 2, 3, 4);
+            metrics.matchRound(round(0, 0, 0), 5, 6);
+            metrics.close();
+
+            BufferedReader in = new BufferedReader(new FileReader(file));
+            assertEquals(EngineMetrics.CSV_HEADER, in.readLine());
+            String[] row = in.readLine().split(",", -1);
+            assertEquals(EngineMetrics.CSV_HEADER.split(",").length, row.length);
+            assertEquals("0", row[0]);
+            assertEquals("200", row[2]);
+            assertEquals("60", row[6]);
+            assertEquals("2", row[7]);
+            assertEquals("3", row[10]);
+            assertEquals("SpawnSignal=2 IndicatorStringSignal=1", row[13]);
+            row = in.readLine().split(",", -1);
+            assertEquals("1", row[0]);
+            assertEquals("", row[13]);
+            assertNull(in.readLine());
+            in.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void registersOverJmx() throws Exception {
+        Config options = Config.getGlobalConfig();
+        options.set("bc.engine.metrics", "true");
+        try {
+            EngineMetrics first = EngineMetrics.create("a", "b", "first");
+            EngineMetrics metrics = EngineMetrics.create("a", "b", "second");
+            metrics.engineRound(7, 1, 2, 3, 4);
+            metrics.matchRound(round(4, 1, 0), 5, 6);
+            first.close();
+            metrics.close();
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(EngineMetrics.OBJECT_NAME);
+            assertEquals("a vs. b on second", server.getAttribute(name, "Match"));
+            assertEquals(7, server.getAttribute(name, "Round"));
+            assertEquals(3, server.getAttribute(name, "RobotsAlive"));
+            TabularData nanos = (TabularData) server.getAttribute(name, "LastRoundNanos");
+            CompositeData robots = nanos.get(new Object[]{"robots"});
+            assertEquals(2L, robots.get("value"));
+            assertTrue(server.getAttribute(name, "InstrumenterCacheMisses") instanceof Long);
+        } finally {
+            options.set("bc.engine.metrics", "false");
+        }
+    }
+}
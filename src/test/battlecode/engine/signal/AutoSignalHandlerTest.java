@@ -0,0 +1,73 @@
+package battlecode.engine.signal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class AutoSignalHandlerTest {
+
+    public static class BaseTestSignal extends Signal {
+    }
+
+    public static class DerivedTestSignal extends BaseTestSignal {
+    }
+
+    public static class OtherTestSignal extends Signal {
+    }
+
+    public static class Handler extends AutoSignalHandler {
+        public StringBuilder visited = new StringBuilder();
+
+        public void visitBaseTestSignal(BaseTestSignal s) {
+            visited.append("base ");
+        }
+
+        public void visitDerivedTestSignal(DerivedTestSignal s) {
+            visited.append("derived ");
+        }
+
+        public int visitOtherTestSignal(OtherTestSignal s) {
+            throw new IllegalStateException("other");
+        }
+
+        // not a handler: takes Signal itself
+        public void visitAnything(Signal s) {
+            visited.append("anything ");
+        }
+    }
+
+    @Test
+    public void testDispatchWalksSignalHierarchy() {
+        Handler h = new Handler();
+        assertFalse(h.dispatchTable.dispatcher instanceof AutoSignalHandler.ReflectiveDispatcher);
+        h.visitSignal(new DerivedTestSignal());
+        assertEquals("derived base ", h.visited.toString());
+
+        h.visited.setLength(0);
+        h.visitSignal(new BaseTestSignal());
+        assertEquals("base ", h.visited.toString());
+    }
+
+    @Test
+    public void testHandlerExceptionsPropagate() {
+        Handler h = new Handler();
+        try {
+            h.visitSignal(new OtherTestSignal());
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("other", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testDelegatingHandler() {
+        Handler target = new Handler();
+        AutoSignalHandler h = new AutoSignalHandler(target);
+        new DerivedTestSignal().accept(h);
+        assertEquals("derived base ", target.visited.toString());
+        assertSame(target, h.myObject);
+    }
+}
@@ -0,0 +1,58 @@
+package battlecode.engine.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+import jdk.jfr.Recording;
+
+public class JfrTracerTest {
+
+    @Test
+    public void recordingConvertsToChromeTrace() throws Exception {
+        if (!Tracer.isJfrAvailable())
+            return;
+        File file = File.createTempFile("trace", ".jfr");
+        try {
+            Recording recording = new Recording();
+            recording.start();
+            JfrTracer tracer = new JfrTracer();
+            tracer.endTurn(tracer.beginTurn(3, RobotType.HQ, Team.A), 120, Tracer.TurnEnd.YIELDED);
+            tracer.endInstrument(tracer.beginInstrument(), "team/RobotPlayer", "team");
+            tracer.endPhase(tracer.beginPhase(), "end-of-round", 5, 0);
+            tracer.endProxyWrite(tracer.beginProxyWrite(), "FileProxy", "RoundDelta");
+            recording.stop();
+            recording.dump(file.toPath());
+            recording.close();
+
+            StringWriter out = new StringWriter();
+            assertEquals(4, JfrTracer.convert(file, out));
+            String trace = out.toString();
+            assertTrue(trace, trace.contains("{\"name\": \"HQ\", \"cat\": \"turn\""));
+            assertTrue(trace, trace.contains("\"args\": {\"robot\": 3, \"team\": \"A\", \"bytecodes\": 120, "
+                    + "\"end\": \"YIELDED\"}}"));
+            assertTrue(trace, trace.contains("\"class\": \"team/RobotPlayer\""));
+            assertTrue(trace, trace.contains("{\"round\": 5, \"signals\": 0}}"));
+            assertTrue(trace, trace.contains("\"name\": \"FileProxy\", \"cat\": \"proxy\""));
+            assertTrue(trace, trace.contains("\"tid\": " + Thread.currentThread().getId()));
+
+            // a recording without the engine's events converts to nothing
+            Recording empty = new Recording();
+            empty.start();
+            empty.stop();
+            empty.dump(file.toPath());
+            empty.close();
+            assertEquals(0, JfrTracer.convert(file, new FileWriter(new File(file.getPath() + ".json"))));
+            new File(file.getPath() + ".json").delete();
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package battlecode.engine.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+import battlecode.server.Config;
+
+public class TraceBufferTest {
+
+    private static String[] events(String trace) {
+        assertTrue(trace, trace.startsWith("{\"traceEvents\": [\n"));
+        assertTrue(trace, trace.endsWith("\n], \"displayTimeUnit\": \"ns\"}\n"));
+        String body = trace.substring(trace.indexOf('\n') + 1, trace.lastIndexOf("\n]"));
+        return body.isEmpty() ? new String[0] : body.split(",\n");
+    }
+
+    @Test
+    public void writesEachKindOfEvent() throws Exception {
+        TraceBuffer buffer = new TraceBuffer(16);
+        buffer.endTurn(buffer.beginTurn(12, RobotType.SOLDIER, Team.B), 4321, Tracer.TurnEnd.OUT_OF_BYTECODES);
+        buffer.endInstrument(buffer.beginInstrument(), "team/Robot\"Player", "team");
+        buffer.endPhase(buffer.beginPhase(), "signals", 7, 40);
+        buffer.endProxyWrite(buffer.beginProxyWrite(), "FileProxy", "RoundDelta");
+        StringWriter out = new StringWriter();
+        buffer.writeChromeTrace(out);
+
+        String[] events = events(out.toString());
+        assertEquals(5, events.length);
+        String thread = "\"tid\": " + Thread.currentThread().getId();
+        assertTrue(events[0], events[0].startsWith("{\"name\": \"thread_name\", \"ph\": \"M\""));
+        assertTrue(events[0], events[0].contains(thread));
+        assertTrue(events[1], events[1].startsWith("{\"name\": \"SOLDIER\", \"cat\": \"turn\", \"ph\": \"X\""));
+        assertTrue(events[1], events[1].contains("\"ts\": 0."));
+        assertTrue(events[1], events[1].endsWith("\"args\": {\"robot\": 12, \"team\": \"B\", \"bytecodes\": 4321, "
+                + "\"end\": \"OUT_OF_BYTECODES\"}}"));
+        assertTrue(events[2], events[2].contains("\"class\": \"team/Robot\\\"Player\", \"team\": \"team\""));
+        assertTrue(events[3], events[3].startsWith("{\"name\": \"signals\", \"cat\": \"engine\""));
+        assertTrue(events[3], events[3].endsWith("{\"round\": 7, \"signals\": 40}}"));
+        assertTrue(events[4], events[4].startsWith("{\"name\": \"FileProxy\", \"cat\": \"proxy\""));
+        for (int i = 1; i < events.length; i++)
+            assertTrue(events[i], events[i].contains(thread));
+    }
+
+    @Test
+    public void keepsTheLatestEvents() throws Exception {
+        TraceBuffer buffer = new TraceBuffer(3);
+        for (int round = 0; round < 5; round++)
+            buffer.endPhase(buffer.beginPhase(), "end-of-round", round, 0);
+        assertEquals(3, buffer.size());
+        assertEquals(2, buffer.getDropped());
+        StringWriter out = new StringWriter();
+        buffer.writeChromeTrace(out);
+        String[] events = events(out.toString());
+        assertEquals(4, events.length);
+        for (int i = 1; i < 4; i++)
+            assertTrue(events[i], events[i].endsWith("{\"round\": " + (i + 1) + ", \"signals\": 0}}"));
+    }
+
+    @Test
+    public void emptyTrace() throws Exception {
+        StringWriter out = new StringWriter();
+        new TraceBuffer(4).writeChromeTrace(out);
+        assertEquals(0, events(out.toString()).length);
+    }
+
+    @Test
+    public void microseconds() {
+        assertEquals("0.000", ChromeTrace.micros(0));
+        assertEquals("1.005", ChromeTrace.micros(1005));
+        assertEquals("12345.678", ChromeTrace.micros(12345678));
+        assertEquals("-0.050", ChromeTrace.micros(-50));
+    }
+
+    @Test
+    public void startsFromConfig() throws Exception {
+        Config options = Config.getGlobalConfig();
+        assertNull(Tracer.get());
+        File dir = File.createTempFile("trace", "");
+        dir.delete();
+        options.set("bc.engine.trace", "buffer");
+        options.set("bc.engine.trace-dir", dir.getPath());
+        try {
+            Tracer.start("a", "b", "map");
+            Tracer tracer = Tracer.get();
+            assertTrue(tracer instanceof TraceBuffer);
+            tracer.endPhase(tracer.beginPhase(), "end-of-round", 0, 0);
+            Tracer.finish();
+            assertNull(Tracer.get());
+            File file = new File(dir, "a-b-map.json");
+            assertTrue(file.exists());
+            file.delete();
+        } finally {
+            options.set("bc.engine.trace", "off");
+            options.set("bc.engine.trace-dir", "traces");
+            dir.delete();
+        }
+        Tracer.start("a", "b", "map");
+        assertNull(Tracer.get());
+    }
+}
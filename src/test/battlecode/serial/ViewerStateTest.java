@@ -0,0 +1,54 @@
+package battlecode.serial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import battlecode.common.MapLocation;
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+import battlecode.engine.signal.Signal;
+import battlecode.world.signal.BytecodesUsedSignal;
+import battlecode.world.signal.ControlBitsSignal;
+import battlecode.world.signal.DeathSignal;
+import battlecode.world.signal.HealthChangeSignal;
+import battlecode.world.signal.IndicatorStringSignal;
+import battlecode.world.signal.LocationOreChangeSignal;
+import battlecode.world.signal.MissileCountSignal;
+import battlecode.world.signal.MovementSignal;
+import battlecode.world.signal.RobotInfoSignal;
+import battlecode.world.signal.SpawnSignal;
+import battlecode.world.signal.TeamOreSignal;
+import battlecode.world.signal.XPSignal;
+
+public class ViewerStateTest {
+
+    @Test
+    public void testSignalsRebuildTheState() {
+        ViewerState state = new ViewerState();
+        state.apply(new Signal[]{
+                new SpawnSignal(7, 0, new MapLocation(1, 2), RobotType.HQ, Team.A, 0),
+                new SpawnSignal(3, 7, new MapLocation(4, 4), RobotType.LAUNCHER, Team.B, 0),
+                new SpawnSignal(9, 7, new MapLocation(5, 5), RobotType.BEAVER, Team.A, 0),
+                new MovementSignal(3, new MapLocation(4, 5), true, 2),
+                new HealthChangeSignal(new int[]{7, 3}, new double[]{2000, 120.5}),
+                new RobotInfoSignal(new int[]{3, 9}, new double[]{1.5, 0}, new double[]{0, 2}, new double[]{30, 4}),
+                new BytecodesUsedSignal(new int[]{7, 3}, new int[]{9000, 120}),
+                new XPSignal(3, 4),
+                new MissileCountSignal(3, 2),
+                new ControlBitsSignal(7, 5),
+                new IndicatorStringSignal(9, 1, "mining"),
+                new DeathSignal(9),
+                new LocationOreChangeSignal(new MapLocation(4, 4), 12.5),
+                new TeamOreSignal(new double[]{100, 250})});
+
+        ViewerState rebuilt = new ViewerState();
+        rebuilt.apply(state.toSignals());
+        assertEquals(2, rebuilt.getRobotCount());
+        assertEquals(state, rebuilt);
+
+        state.apply(new XPSignal(7, 1));
+        assertFalse(state.equals(rebuilt));
+    }
+}
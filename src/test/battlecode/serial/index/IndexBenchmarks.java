@@ -0,0 +1,150 @@
+package battlecode.serial.index;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+
+import battlecode.bench.Microbenchmark;
+import battlecode.common.Team;
+import battlecode.serial.ExtensibleMetadata;
+import battlecode.serial.GameStats;
+import battlecode.serial.MatchFooter;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundStats;
+import battlecode.serial.rmsb.RmsbReader;
+import battlecode.server.Config;
+import battlecode.server.proxy.FileProxy;
+import battlecode.server.proxy.ProxyBenchmarks;
+
+/**
+ * Microbenchmarks for random access to the rounds of a match through
+ * MatchFileReader, against reading the whole file as analysis jobs do. The
+ * match is written by an indexed FileProxy at two block sizes, and also
+ * stored uncompressed. See battlecode.bench.BenchmarkRunner.
+ */
+public class IndexBenchmarks {
+
+    private static final int ROUNDS = 1000;
+    private static final String[] STORAGE = {"gzip-128K", "gzip-1M", "uncompressed"};
+
+    public static List<Microbenchmark> create() {
+        List<Microbenchmark> benchmarks = new ArrayList<Microbenchmark>();
+        for (String storage : STORAGE) {
+            benchmarks.add(new RoundAt(storage));
+            benchmarks.add(new ReadAll(storage));
+        }
+        return benchmarks;
+    }
+
+    /**
+     * Writes the match to a temporary file, stored as named.
+     */
+    static File writeMatch(String storage) throws IOException {
+        Random random = new Random(36);
+        File file = File.createTempFile("bench", ".rms");
+        Config config = Config.getGlobalConfig();
+        String blockSize = config.get("bc.server.compress-block-size");
+        config.set("bc.server.compress-block-size", storage.equals("gzip-128K") ? "131072" : "1048576");
+        try {
+            FileProxy proxy = new FileProxy(file.getPath(), false, true) {
+            };
+            proxy.open();
+            proxy.writeObject(new MatchHeader(null, new long[2][32], 0, 1));
+            proxy.writeObject(new ExtensibleMetadata());
+            for (int round = 0; round < ROUNDS; round++) {
+                proxy.writeObject(ProxyBenchmarks.makeRound(random));
+                proxy.writeObject(new RoundStats(round, round / 2.0));
+            }
+            proxy.writeObject(new GameStats());
+            proxy.writeObject(new MatchFooter(Team.A, new long[2][32]));
+            proxy.close();
+        } finally {
+            config.set("bc.server.compress-block-size", blockSize);
+        }
+        if (!storage.equals("uncompressed"))
+            return file;
+
+        File uncompressed = File.createTempFile("bench", ".rms");
+        OutputStream out = new FileOutputStream(uncompressed);
+        try {
+            IOUtils.copy(RmsbReader.openFile(file), out);
+        } finally {
+            out.close();
+        }
+        delete(file);
+        return uncompressed;
+    }
+
+    static void delete(File file) {
+        MatchIndex.indexFileFor(file).delete();
+        file.delete();
+    }
+
+    static class RoundAt extends Microbenchmark {
+        private final String storage;
+        private final Random random = new Random(5);
+        private File file;
+        private MatchFileReader reader;
+
+        RoundAt(String storage) {
+            super("index.roundAt", "storage", storage, "rounds", ROUNDS);
+            this.storage = storage;
+        }
+
+        public void setUp() throws IOException {
+            file = writeMatch(storage);
+            reader = new MatchFileReader(file);
+        }
+
+        public int run() throws IOException {
+            consume(reader.roundAt(random.nextInt(ROUNDS)));
+            return 1;
+        }
+
+        public void tearDown() {
+            reader.close();
+            delete(file);
+        }
+    }
+
+    /**
+     * Reads every object of the file, front to back, without the index.
+     */
+    static class ReadAll extends Microbenchmark {
+        private final String storage;
+        private File file;
+
+        ReadAll(String storage) {
+            super("index.readAll", "storage", storage, "rounds", ROUNDS);
+            this.storage = storage;
+        }
+
+        public void setUp() throws IOException {
+            file = writeMatch(storage);
+        }
+
+        public int run() throws Exception {
+            ObjectInputStream in = new ObjectInputStream(RmsbReader.openFile(file));
+            try {
+                while (true)
+                    consume(in.readObject());
+            } catch (EOFException e) {
+                // end of the match
+            }
+            in.close();
+            return 1;
+        }
+
+        public void tearDown() {
+            delete(file);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package battlecode.serial.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import battlecode.common.MapLocation;
+import battlecode.common.Team;
+import battlecode.engine.signal.Signal;
+import battlecode.serial.ExtensibleMetadata;
+import battlecode.serial.GameStats;
+import battlecode.serial.MatchFooter;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundDelta;
+import battlecode.serial.RoundStats;
+import battlecode.server.proxy.CompactObjectOutputStream;
+import battlecode.server.proxy.FileProxy;
+import battlecode.server.proxy.RmsbConverter;
+import battlecode.server.proxy.XStreamProxy;
+import battlecode.world.signal.DeathSignal;
+import battlecode.world.signal.HealthChangeSignal;
+import battlecode.world.signal.IndicatorStringSignal;
+import battlecode.world.signal.MovementSignal;
+import battlecode.world.signal.RobotInfoChangeSignal;
+import battlecode.world.signal.RobotInfoSignal;
+import battlecode.world.signal.RobotStateReconstructor;
+
+import com.thoughtworks.xstream.XStream;
+
+public class MatchFileReaderTest {
+
+    private final XStream xstream = XStreamProxy.getXStream();
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("matchindex", ".rms");
+        file.deleteOnExit();
+        MatchIndex.indexFileFor(file).deleteOnExit();
+        return file;
+    }
+
+    private static RoundDelta makeRound(Random random, int round) {
+        int robots = 40;
+        int[] ids = new int[robots];
+        double[] health = new double[robots];
+        List<Signal> signals = new ArrayList<Signal>();
+        for (int i = 0; i < robots; i++) {
+            ids[i] = i;
+            health[i] = random.nextDouble() * 100;
+            signals.add(new MovementSignal(i, new MapLocation(random.nextInt(80), random.nextInt(80)),
+                    random.nextBoolean(), random.nextInt(3)));
+            if (random.nextInt(4) == 0)
+                signals.add(new IndicatorStringSignal(i, 0, "round " + round + " robot " + i));
+        }
+        signals.add(new HealthChangeSignal(ids, health));
+        signals.add(new DeathSignal(round));
+        return new RoundDelta(signals.toArray(new Signal[signals.size()]));
+    }
+
+    // two matches, in the order Server sends them
+    private static List<Object> makeMatches(int rounds) {
+        Random random = new Random(36);
+        List<Object> objects = new ArrayList<Object>();
+        for (int match = 0; match < 2; match++) {
+            objects.add(new MatchHeader(null, new long[2][1], match, 2));
+            objects.add(new ExtensibleMetadata());
+            for (int round = 0; round < rounds + match; round++) {
+                objects.add(makeRound(random, round));
+                objects.add(new RoundStats(round, -round));
+            }
+            objects.add(new GameStats());
+            objects.add(new MatchFooter(Team.values()[match], new long[2][1]));
+        }
+        return objects;
+    }
+
+    private void assertSameXml(Object expected, Object actual) {
+        assertEquals(xstream.toXML(expected), xstream.toXML(actual));
+    }
+
+    // checks the rounds of a reader against those of makeMatches
+    private void checkRounds(MatchFileReader reader, List<Object> objects) throws IOException {
+        List<List<Object>> rounds = new ArrayList<List<Object>>();
+        for (Object o : objects) {
+            if (o instanceof MatchHeader)
+                rounds.add(new ArrayList<Object>());
+            else if (o instanceof RoundDelta)
+                rounds.get(rounds.size() - 1).add(o);
+        }
+        assertEquals(rounds.size(), reader.getMatchCount());
+        Random random = new Random(5);
+        for (int match = 0; match < rounds.size(); match++) {
+            List<Object> expected = rounds.get(match);
+            assertEquals(expected.size(), reader.getRoundCount(match));
+            assertEquals(match, reader.getHeader(match).getMatchNumber());
+            assertEquals(Team.values()[match], reader.getFooter(match).getWinner());
+            for (int k = 0; k < 50; k++) {
+                int round = random.nextInt(expected.size());
+                assertSameXml(expected.get(round), reader.roundAt(match, round));
+            }
+            int round = 10;
+            for (RoundDelta delta : reader.rounds(match, 10, expected.size()))
+                assertSameXml(expected.get(round++), delta);
+            assertEquals(expected.size(), round);
+        }
+        assertSameXml(rounds.get(0).get(3), reader.roundAt(3));
+    }
+
+    @Test
+    public void testFileIndexedByProxy() throws Exception {
+        File file = tempFile();
+        FileProxy proxy = new FileProxy(file.getPath(), false, true) {
+        };
+        proxy.open();
+        List<Object> objects = makeMatches(300);
+        for (Object o : objects)
+            proxy.writeObject(o);
+        proxy.close();
+
+        MatchIndex index = MatchIndex.read(file);
+        assertTrue(index.isCompressed());
+        assertTrue(index.getBlockOffsets().length > 3);
+        assertEquals(objects.size(), index.getObjectCount());
+        for (int i = 0; i < objects.size(); i++) {
+            assertEquals(i, index.getAnchor(i));
+            assertEquals(MatchIndex.Kind.of(objects.get(i)), index.getKind(i));
+        }
+
+        MatchFileReader reader = new MatchFileReader(file);
+        checkRounds(reader, objects);
+        reader.close();
+
+        // still an ordinary match file
+        List<Object> read = RmsbConverter.readMatch(file);
+        assertEquals(objects.size(), read.size());
+        for (int i = 0; i < objects.size(); i++)
+            assertSameXml(objects.get(i), read.get(i));
+    }
+
+    @Test
+    public void testIndexBuiltForUncompressedFile() throws Exception {
+        File file = tempFile();
+        List<Object> objects = makeMatches(100);
+        CompactObjectOutputStream out = new CompactObjectOutputStream(new FileOutputStream(file), 7);
+        for (Object o : objects)
+            out.writeMatchObject(o);
+        out.close();
+
+        assertNull(MatchIndex.read(file));
+        MatchFileReader reader = new MatchFileReader(file);
+        MatchIndex index = reader.getIndex();
+        assertEquals(objects.size(), index.getObjectCount());
+        assertEquals(file.length(), index.getDataLength());
+        assertTrue(index.getAnchor(20) < 20);
+        checkRounds(reader, objects);
+        for (int i = 0; i < objects.size(); i++)
+            assertSameXml(objects.get(i), reader.getObject(i));
+        reader.close();
+
+        // saved for next time, until the file changes
+        MatchIndex saved = MatchIndex.read(file);
+        assertEquals(index.getOffset(50), saved.getOffset(50));
+        assertEquals(index.getAnchor(50), saved.getAnchor(50));
+        assertTrue(file.setLastModified(file.lastModified() - 10000));
+        assertNull(MatchIndex.read(file));
+    }
+
+    // a match in bc.engine.signal-format 2, where robot i changes its core
+    // delay every i rounds and robot 0 dies halfway
+    private static List<Object> makeChangeOnlyMatch(int rounds) {
+        List<Object> objects = new ArrayList<Object>();
+        objects.add(new MatchHeader(null, new long[2][1], 0, 1));
+        for (int round = 0; round < rounds; round++) {
+            List<Integer> changed = new ArrayList<Integer>();
+            for (int i = 0; i < 10; i++)
+                if (round == 0 || (i > 0 && round % i == 0) || (i == 0 && round < rounds / 2))
+                    changed.add(i);
+            int[] ids = new int[changed.size()];
+            double[] values = new double[ids.length];
+            for (int k = 0; k < ids.length; k++) {
+                ids[k] = changed.get(k);
+                values[k] = round + ids[k] / 10.0;
+            }
+            int[] removed = round == rounds / 2 ? new int[]{0} : new int[0];
+            objects.add(new RoundDelta(new Signal[]{
+                    new RobotInfoChangeSignal(ids, values, ids, values, ids, values, removed)}));
+            objects.add(new RoundStats(round, -round));
+        }
+        objects.add(new MatchFooter(Team.A, new long[2][1]));
+        return objects;
+    }
+
+    @Test
+    public void testChangeOnlyRoundsAreReconstructed() throws Exception {
+        File file = tempFile();
+        List<Object> objects = makeChangeOnlyMatch(60);
+        CompactObjectOutputStream out = new CompactObjectOutputStream(new FileOutputStream(file), 7);
+        for (Object o : objects)
+            out.writeMatchObject(o);
+        out.close();
+
+        // what reading the whole match in order gives
+        List<RoundDelta> expected = new ArrayList<RoundDelta>();
+        RobotStateReconstructor reconstructor = new RobotStateReconstructor();
+        for (Object o : objects) {
+            if (o instanceof RoundDelta)
+                expected.add((RoundDelta) reconstructor.reconstruct(xstream.fromXML(xstream.toXML(o))));
+        }
+        assertEquals(9, ((RobotInfoSignal) expected.get(59).getSignals()[0]).getRobotIDs().length);
+
+        MatchFileReader reader = new MatchFileReader(file);
+        Random random = new Random(39);
+        for (int k = 0; k < 50; k++) {
+            int round = random.nextInt(expected.size());
+            assertSameXml(expected.get(round), reader.roundAt(round));
+        }
+        int round = 0;
+        for (RoundDelta delta : reader.rounds(0, 0, expected.size()))
+            assertSameXml(expected.get(round++), delta);
+        reader.close();
+
+        List<Object> read = RmsbConverter.readMatch(file);
+        round = 0;
+        for (Object o : read) {
+            if (o instanceof RoundDelta)
+                assertSameXml(expected.get(round++), o);
+        }
+        assertEquals(expected.size(), round);
+    }
+
+    @Test
+    public void testCompressedFileWithoutIndex() throws Exception {
+        File file = tempFile();
+        GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+        CompactObjectOutputStream objects = new CompactObjectOutputStream(out, 1);
+        objects.writeMatchObject(new RoundDelta());
+        objects.close();
+        try {
+            new MatchFileReader(file);
+            fail("expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
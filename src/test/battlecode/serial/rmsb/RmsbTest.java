@@ -0,0 +1,207 @@
+package battlecode.serial.rmsb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+import battlecode.common.MapLocation;
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+import battlecode.engine.signal.Signal;
+import battlecode.serial.ExtensibleMetadata;
+import battlecode.serial.GameStats;
+import battlecode.serial.MatchFooter;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundDelta;
+import battlecode.serial.RoundStats;
+import battlecode.serial.notification.PauseNotification;
+import battlecode.server.proxy.XStreamProxy;
+import battlecode.world.GameMap;
+import battlecode.world.GameWorld;
+import battlecode.world.InternalRobot;
+import battlecode.world.MapMemoryTest;
+import battlecode.world.signal.AttackSignal;
+import battlecode.world.signal.HealthChangeSignal;
+import battlecode.world.signal.IndicatorStringSignal;
+import battlecode.world.signal.LocationOreChangeSignal;
+import battlecode.world.signal.MovementSignal;
+import battlecode.world.signal.SpawnSignal;
+import battlecode.world.signal.TeamOreSignal;
+
+import com.thoughtworks.xstream.XStream;
+
+public class RmsbTest {
+
+    private List<Object> makeMatch() {
+        GameMap map = MapMemoryTest.makeMap(30, 25, 3);
+        long[][] state = new long[2][32];
+        state[1][5] = -123456789012L;
+        GameWorld world = new GameWorld(map, "A", "B", state);
+        MapLocation origin = map.getMapOrigin();
+        InternalRobot a = new InternalRobot(world, RobotType.BEAVER, origin.add(3, 4), Team.A, false, 0);
+        InternalRobot b = new InternalRobot(world, RobotType.SOLDIER, origin.add(20, 2), Team.B, false, 0);
+        b.changeHealthLevel(-1.0 / 3);
+
+        List<Object> match = new ArrayList<Object>();
+        match.add(new MatchHeader(map, state, 0, 1));
+        LinkedHashMap<String, Object> metadata = new LinkedHashMap<String, Object>();
+        metadata.put("type", "header");
+        metadata.put("team-a", "A");
+        metadata.put("team-b", "B");
+        metadata.put("maps", new String[]{"test"});
+        match.add(new ExtensibleMetadata(metadata));
+        for (int round = 0; round < 3; round++) {
+            match.add(new RoundDelta(new Signal[]{
+                    new SpawnSignal(a, null, 0),
+                    new MovementSignal(a, origin.add(round - 2, 5), true, 2),
+                    new AttackSignal(b, origin.add(-1, -1)),
+                    new IndicatorStringSignal(a, 1, "round " + round),
+                    new LocationOreChangeSignal(origin.add(1, 1), 12.75),
+                    new HealthChangeSignal(new InternalRobot[]{a, b}),
+                    new TeamOreSignal(new double[]{0.1 * round, 500})
+            }));
+            match.add(new RoundStats(round * 1.5, Math.PI));
+        }
+        GameStats stats = new GameStats();
+        stats.setUnitKilled(Team.A, 2);
+        match.add(stats);
+        match.add(new MatchFooter(Team.B, state));
+        return match;
+    }
+
+    private byte[] write(List<Object> objects, boolean quantize) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RmsbWriter writer = new RmsbWriter(bytes, quantize);
+        for (Object o : objects)
+            writer.writeObject(o);
+        writer.close();
+        return bytes.toByteArray();
+    }
+
+    private List<Object> read(byte[] data) throws Exception {
+        RmsbReader reader = new RmsbReader(new ByteArrayInputStream(data));
+        List<Object> objects = new ArrayList<Object>();
+        try {
+            while (true)
+                objects.add(reader.readObject());
+        } catch (EOFException e) {
+            // end of stream
+        }
+        return objects;
+    }
+
+    @Test
+    public void testLosslessRoundTrip() throws Exception {
+        List<Object> match = makeMatch();
+        List<Object> copy = read(write(match, false));
+        assertEquals(match.size(), copy.size());
+        XStream xs = XStreamProxy.getXStream();
+        for (int i = 0; i < match.size(); i++)
+            assertEquals(xs.toXML(match.get(i)), xs.toXML(copy.get(i)));
+    }
+
+    @Test
+    public void testQuantizedSignals() throws Exception {
+        List<Object> match = makeMatch();
+        List<Object> copy = read(write(match, true));
+        double quantum = 1.0 / 1024;
+        for (int i = 0; i < match.size(); i++) {
+            if (match.get(i) instanceof RoundDelta) {
+                Signal[] expected = ((RoundDelta) match.get(i)).getSignals();
+                Signal[] actual = ((RoundDelta) copy.get(i)).getSignals();
+                double[] health = ((HealthChangeSignal) expected[5]).getHealth();
+                double[] copyHealth = ((HealthChangeSignal) actual[5]).getHealth();
+                for (int j = 0; j < health.length; j++)
+                    assertEquals(health[j], copyHealth[j], quantum / 2);
+                double[] ore = ((TeamOreSignal) expected[6]).getOre();
+                double[] copyOre = ((TeamOreSignal) actual[6]).getOre();
+                for (int j = 0; j < ore.length; j++)
+                    assertEquals(ore[j], copyOre[j], quantum / 2);
+                assertEquals(((MovementSignal) expected[1]).getNewLoc(), ((MovementSignal) actual[1]).getNewLoc());
+            } else if (match.get(i) instanceof RoundStats) {
+                // only signals are quantized
+                assertEquals(((RoundStats) match.get(i)).getPoints(Team.B),
+                        ((RoundStats) copy.get(i)).getPoints(Team.B), 0);
+            }
+        }
+        assertArrayEquals(((MatchFooter) match.get(match.size() - 1)).getState()[1],
+                ((MatchFooter) copy.get(copy.size() - 1)).getState()[1]);
+    }
+
+    @Test
+    public void testSmallerThanJavaSerialization() throws Exception {
+        List<Object> match = makeMatch();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        for (Object o : match) {
+            out.reset();
+            out.writeObject(o);
+        }
+        out.close();
+        assertTrue(write(match, false).length < bytes.size() / 2);
+    }
+
+    @Test
+    public void testReadResolve() throws Exception {
+        List<Object> objects = new ArrayList<Object>();
+        objects.add(PauseNotification.INSTANCE);
+        assertSame(PauseNotification.INSTANCE, read(write(objects, false)).get(0));
+    }
+
+    private static void assertNotWritten(RmsbWriter writer, Object o) throws Exception {
+        try {
+            writer.writeObject(o);
+            fail("wrote " + o);
+        } catch (NotSerializableException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testWriterRecoversFromUnencodableObjects() throws Exception {
+        // the strings and classes of a failed object are defined again when
+        // they are next used
+        List<Object> failed = new ArrayList<Object>();
+        failed.add(new RoundStats(1, 2));
+        LinkedHashMap<String, Object> unencodable = new LinkedHashMap<String, Object>();
+        unencodable.put("only in the failed object", new Thread());
+        failed.add(unencodable);
+
+        List<Object> cycle = new ArrayList<Object>();
+        cycle.add("cycle");
+        cycle.add(cycle);
+
+        LinkedHashMap<String, Object> metadata = new LinkedHashMap<String, Object>();
+        metadata.put("only in the failed object", "cycle");
+        List<Object> written = new ArrayList<Object>();
+        written.add(new RoundStats(3, 4));
+        written.add(new ExtensibleMetadata(metadata));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RmsbWriter writer = new RmsbWriter(bytes);
+        assertNotWritten(writer, failed);
+        assertNotWritten(writer, cycle);
+        for (Object o : written)
+            writer.writeObject(o);
+        writer.close();
+
+        List<Object> copy = read(bytes.toByteArray());
+        assertEquals(written.size(), copy.size());
+        XStream xs = XStreamProxy.getXStream();
+        for (int i = 0; i < written.size(); i++)
+            assertEquals(xs.toXML(written.get(i)), xs.toXML(copy.get(i)));
+    }
+}
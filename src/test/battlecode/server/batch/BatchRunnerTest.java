@@ -0,0 +1,167 @@
+package battlecode.server.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import battlecode.common.Team;
+import battlecode.serial.DominationFactor;
+
+public class BatchRunnerTest {
+
+    /**
+     * Stands in for BatchWorker. Team A "crash" exits the first time (a
+     * marker file named by team B remembers it), "hang" never replies, and
+     * anything else wins every map for A, with the number of jobs this JVM
+     * has run as the round count.
+     */
+    public static class FakeWorker {
+        public static void main(String[] args) throws IOException, InterruptedException {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+            System.out.println("ready");
+            System.out.flush();
+            int jobs = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if ("crash".equals(fields[1]) && new File(fields[2]).createNewFile())
+                    System.exit(3);
+                if ("hang".equals(fields[1]))
+                    Thread.sleep(Long.MAX_VALUE);
+                jobs++;
+                for (String map : fields[3].split(","))
+                    System.out.println("match\t" + fields[0] + "\t"
+                            + new MatchResult(map, Team.A, DominationFactor.DESTROYED, jobs, 1, 1).format());
+                System.out.println("done\t" + fields[0]);
+                System.out.flush();
+            }
+        }
+    }
+
+    private static List<String> fakeWorkerCommand() {
+        String classPath = classPathOf(BatchRunnerTest.class) + File.pathSeparator + classPathOf(MatchResult.class);
+        return Arrays.asList(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath(),
+                "-cp", classPath, FakeWorker.class.getName());
+    }
+
+    private static String classPathOf(Class<?> c) {
+        try {
+            return new File(c.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        List<String> lines = new ArrayList<String>();
+        String line;
+        while ((line = in.readLine()) != null)
+            lines.add(line);
+        in.close();
+        return lines;
+    }
+
+    @Test
+    public void testReadJobs() throws IOException {
+        List<BatchJob> jobs = BatchJob.readJobs(new StringReader(
+                "# round one\nteamA teamB map1,map2\n\n  teamC\tteamD  map3\n"));
+        assertEquals(2, jobs.size());
+        assertEquals(1, jobs.get(0).getID());
+        assertEquals("teamB", jobs.get(0).getTeamB());
+        assertTrue(Arrays.equals(new String[]{"map1", "map2"}, jobs.get(0).getMaps()));
+        assertEquals(2, jobs.get(1).getID());
+        assertEquals("teamC", jobs.get(1).getTeamA());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadJobsRejectsMissingMaps() throws IOException {
+        BatchJob.readJobs(new StringReader("teamA teamB\n"));
+    }
+
+    @Test
+    public void testWorkersAreReused() throws Exception {
+        File csv = File.createTempFile("batch", ".csv");
+        File json = File.createTempFile("batch", ".json");
+        csv.deleteOnExit();
+        json.deleteOnExit();
+
+        List<BatchJob> jobs = new ArrayList<BatchJob>();
+        for (int i = 1; i <= 4; i++)
+            jobs.add(new BatchJob(i, "a" + i, "b", new String[]{"m1", "m2"}));
+        BatchRunner runner = new BatchRunner(fakeWorkerCommand(), 1, 0, 0, null, null);
+        SummaryWriter csvSummary = new SummaryWriter(csv);
+        SummaryWriter jsonSummary = new SummaryWriter(json);
+        runner.addSummary(csvSummary);
+        runner.addSummary(jsonSummary);
+        runner.run(jobs);
+        csvSummary.close();
+        jsonSummary.close();
+
+        assertEquals(8, runner.getMatchCount());
+        assertEquals(0, runner.getFailedJobCount());
+        List<String> rows = readLines(csv);
+        assertEquals(9, rows.size());
+        assertEquals("job,team_a,team_b,map,status,winner,domination_factor,rounds,wall_ms,cpu_ms,attempts",
+                rows.get(0));
+        // one JVM ran every job in turn
+        assertEquals("4,a4,b,m2,ok,A,DESTROYED,4,1,1,1", rows.get(8));
+
+        List<String> objects = readLines(json);
+        assertEquals("[", objects.get(0));
+        assertEquals(10, objects.size());
+        assertTrue(objects.get(1).startsWith("  {\"job\": 1, \"team_a\": \"a1\""));
+        assertEquals("]", objects.get(9));
+    }
+
+    @Test
+    public void testCrashedJobIsRetried() throws Exception {
+        File marker = File.createTempFile("batch", ".crashed");
+        marker.delete();
+        marker.deleteOnExit();
+
+        List<BatchJob> jobs = new ArrayList<BatchJob>();
+        jobs.add(new BatchJob(1, "crash", marker.getPath(), new String[]{"m1"}));
+        jobs.add(new BatchJob(2, "a", "b", new String[]{"m1"}));
+        BatchRunner runner = new BatchRunner(fakeWorkerCommand(), 2, 1, 0, null, null);
+        runner.run(jobs);
+
+        assertEquals(2, runner.getMatchCount());
+        assertEquals(1, runner.getRetryCount());
+        assertEquals(0, runner.getFailedJobCount());
+        assertEquals(2, jobs.get(0).getAttempts());
+    }
+
+    @Test
+    public void testHungJobTimesOut() throws Exception {
+        File csv = File.createTempFile("batch", ".csv");
+        csv.deleteOnExit();
+
+        List<BatchJob> jobs = new ArrayList<BatchJob>();
+        jobs.add(new BatchJob(1, "hang", "b", new String[]{"m1", "m2"}));
+        jobs.add(new BatchJob(2, "a", "b", new String[]{"m1"}));
+        BatchRunner runner = new BatchRunner(fakeWorkerCommand(), 2, 0, 1000, null, null);
+        SummaryWriter summary = new SummaryWriter(csv);
+        runner.addSummary(summary);
+        runner.run(jobs);
+        summary.close();
+
+        assertEquals(1, runner.getMatchCount());
+        assertEquals(1, runner.getFailedJobCount());
+        List<String> rows = readLines(csv);
+        assertEquals(4, rows.size());
+        assertTrue(rows.contains("1,hang,b,m1,failed,,,,,,1"));
+        assertTrue(rows.contains("1,hang,b,m2,failed,,,,,,1"));
+    }
+}
@@ -0,0 +1,167 @@
+package battlecode.server.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import battlecode.common.GameConstants;
+import battlecode.common.Team;
+import battlecode.engine.signal.Signal;
+import battlecode.serial.DominationFactor;
+import battlecode.serial.GameStats;
+import battlecode.serial.MatchFooter;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundDelta;
+import battlecode.server.Config;
+import battlecode.server.proxy.Proxy;
+import battlecode.world.signal.DeathSignal;
+
+public class MatchCacheTest {
+
+    private static File tempDir() throws IOException {
+        File dir = File.createTempFile("cache", "");
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+    }
+
+    private static long[][] memory() {
+        return new long[2][GameConstants.TEAM_MEMORY_LENGTH];
+    }
+
+    private static GameStats stats(DominationFactor factor) {
+        GameStats stats = new GameStats();
+        stats.setDominationFactor(factor);
+        return stats;
+    }
+
+    @Test
+    public void testKeyCoversEveryInput() throws IOException {
+        File classes = tempDir();
+        File maps = tempDir();
+        write(new File(classes, "teamx/RobotPlayer.class"), "one");
+        write(new File(classes, "teamy/RobotPlayer.class"), "two");
+        write(new File(maps, "field.xml"), "<map/>");
+        Config options = new Config(new String[]{"-c", "-"});
+        options.set("bc.game.map-path", maps.getPath());
+        MatchCache cache = new MatchCache(tempDir(), classes.getPath(), true, 0);
+
+        String key = cache.keyFor("teamx", "teamy", "field", memory(), options);
+        assertNotNull(key);
+        assertEquals(key, cache.keyFor("teamx", "teamy", "field", memory(), options));
+        assertFalse(key.equals(cache.keyFor("teamy", "teamx", "field", memory(), options)));
+
+        long[][] otherMemory = memory();
+        otherMemory[1][3] = 7;
+        assertFalse(key.equals(cache.keyFor("teamx", "teamy", "field", otherMemory, options)));
+
+        options.set("bc.engine.upkeep", "false");
+        assertFalse(key.equals(cache.keyFor("teamx", "teamy", "field", memory(), options)));
+        options.set("bc.engine.upkeep", "true");
+
+        // settings that only change how the engine runs share the key
+        options.set("bc.engine.metrics", "true");
+        options.set("bc.engine.trace", "jfr");
+        options.set("bc.engine.lazy-instrumenter", "true");
+        assertEquals(key, cache.keyFor("teamx", "teamy", "field", memory(), options));
+
+        write(new File(classes, "teamx/Helper.class"), "three");
+        String changedTeam = cache.keyFor("teamx", "teamy", "field", memory(), options);
+        assertFalse(key.equals(changedTeam));
+
+        write(new File(maps, "field.xml"), "<map rounds=\"2\"/>");
+        assertFalse(changedTeam.equals(cache.keyFor("teamx", "teamy", "field", memory(), options)));
+
+        // nothing to hash, so no key
+        assertNull(cache.keyFor("teamz", "teamy", "field", memory(), options));
+        assertNull(cache.keyFor("teamx", "teamy", "nowhere", memory(), options));
+    }
+
+    @Test
+    public void testResultOnly() throws IOException {
+        MatchCache cache = new MatchCache(tempDir(), false, 0);
+        assertNull(cache.get("abc"));
+        assertNull(cache.record("abc"));
+        cache.put("abc", new MatchHeader(null, memory(), 0, 1), stats(DominationFactor.OWNED),
+                new MatchFooter(Team.B, memory()), 1234);
+
+        MatchCache.Entry entry = cache.get("abc");
+        assertNotNull(entry);
+        assertEquals(Team.B, entry.getFooter().getWinner());
+        assertEquals(DominationFactor.OWNED, entry.getGameStats().getDominationFactor());
+        assertEquals(1234, entry.getRounds());
+        assertNull(entry.openMatch());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        assertTrue(cache.verify(entry, stats(DominationFactor.OWNED), new MatchFooter(Team.B, memory()), 1234));
+        assertFalse(cache.verify(entry, stats(DominationFactor.PWNED), new MatchFooter(Team.B, memory()), 1234));
+        assertFalse(cache.verify(entry, stats(DominationFactor.OWNED), new MatchFooter(Team.A, memory()), 1234));
+        assertFalse(cache.verify(entry, stats(DominationFactor.OWNED), new MatchFooter(Team.B, memory()), 1233));
+        assertEquals(3, cache.getMismatches());
+    }
+
+    @Test
+    public void testWholeMatch() throws Exception {
+        File dir = tempDir();
+        MatchCache cache = new MatchCache(dir, true, 0);
+        List<Object> match = new ArrayList<Object>();
+        match.add(new MatchHeader(null, memory(), 0, 1));
+        for (int i = 0; i < 50; i++)
+            match.add(new RoundDelta(new Signal[]{new DeathSignal(i)}));
+        match.add(new MatchFooter(Team.A, memory()));
+
+        Proxy recorder = cache.record("key");
+        recorder.open();
+        for (Object o : match)
+            recorder.writeObject(o);
+        recorder.close();
+        // not an entry until the result is in
+        assertNull(cache.get("key"));
+        cache.put("key", (MatchHeader) match.get(0), stats(DominationFactor.DESTROYED),
+                (MatchFooter) match.get(51), 50);
+
+        ObjectInputStream in = cache.get("key").openMatch();
+        List<Object> read = new ArrayList<Object>();
+        try {
+            while (true)
+                read.add(in.readObject());
+        } catch (EOFException e) {
+            in.close();
+        }
+        assertEquals(match.size(), read.size());
+        assertEquals(49, ((DeathSignal) ((RoundDelta) read.get(50)).getSignals()[0]).getObjectID());
+
+        // a result file without its match is not a hit when matches are kept
+        new File(dir, "key.match").delete();
+        assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void testUnreadableEntryIsDropped() throws IOException {
+        File dir = tempDir();
+        write(new File(dir, "bad.result"), "not a result");
+        MatchCache cache = new MatchCache(dir, false, 0);
+        assertNull(cache.get("bad"));
+        assertFalse(new File(dir, "bad.result").exists());
+    }
+}
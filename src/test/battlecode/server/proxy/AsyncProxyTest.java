@@ -0,0 +1,181 @@
+package battlecode.server.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import battlecode.common.Team;
+import battlecode.engine.signal.Signal;
+import battlecode.serial.MatchFooter;
+import battlecode.serial.RoundDelta;
+import battlecode.serial.RoundStats;
+import battlecode.world.signal.DeathSignal;
+
+public class AsyncProxyTest {
+
+    /**
+     * Records what it is sent; can be held up to simulate a slow client.
+     */
+    private static class RecordingProxy extends Proxy {
+        final List<Object> written = new ArrayList<Object>();
+        final CountDownLatch release;
+        boolean closed;
+        int failAt = -1;
+
+        RecordingProxy(CountDownLatch release) {
+            this.release = release;
+        }
+
+        protected OutputStream getOutputStream() throws IOException {
+            return null;
+        }
+
+        public void writeObject(Object o) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (written.size() == failAt)
+                throw new IOException("client went away");
+            written.add(o);
+        }
+
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static RoundDelta round(int n) {
+        return new RoundDelta(new Signal[]{new DeathSignal(n)});
+    }
+
+    private void writeMatch(Proxy proxy, int rounds) throws IOException {
+        for (int i = 0; i < rounds; i++) {
+            proxy.writeRound(round(i));
+            proxy.writeStats(new RoundStats(i, 0));
+        }
+        proxy.writeFooter(new MatchFooter(null, new long[2][32]));
+    }
+
+    private void checkComplete(List<Object> written, int rounds) {
+        assertEquals(2 * rounds + 1, written.size());
+        for (int i = 0; i < rounds; i++) {
+            Signal[] signals = ((RoundDelta) written.get(2 * i)).getSignals();
+            assertEquals(i, ((DeathSignal) signals[0]).getObjectID());
+            assertEquals(i, ((RoundStats) written.get(2 * i + 1)).getPoints(Team.A), 0);
+        }
+        assertTrue(written.get(2 * rounds) instanceof MatchFooter);
+    }
+
+    @Test
+    public void testBlockKeepsEverything() throws Exception {
+        RecordingProxy sink = new RecordingProxy(new CountDownLatch(0));
+        AsyncProxy proxy = new AsyncProxy(sink, AsyncProxy.Policy.BLOCK, 3);
+        proxy.open();
+        writeMatch(proxy, 200);
+        proxy.close();
+        assertTrue(sink.closed);
+        checkComplete(sink.written, 200);
+        assertTrue(proxy.getMaxQueueDepth() <= 3);
+        assertEquals(0, proxy.getRoundLag());
+    }
+
+    @Test
+    public void testSpillKeepsOrder() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingProxy sink = new RecordingProxy(release);
+        AsyncProxy proxy = new AsyncProxy(sink, AsyncProxy.Policy.SPILL, 4);
+        proxy.open();
+        writeMatch(proxy, 50);
+        // nothing has been written yet, so the engine never waited
+        assertTrue(proxy.getSpilledObjects() > 90);
+        assertTrue(proxy.getRoundLag() >= 48);
+        release.countDown();
+        proxy.close();
+        checkComplete(sink.written, 50);
+    }
+
+    @Test
+    public void testCoalesceMergesRounds() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingProxy sink = new RecordingProxy(release);
+        AsyncProxy proxy = new AsyncProxy(sink, AsyncProxy.Policy.COALESCE, 4);
+        proxy.open();
+        for (int i = 0; i < 20; i++) {
+            proxy.writeRound(round(i));
+            proxy.writeStats(new RoundStats(i, 0));
+        }
+        release.countDown();
+        proxy.close();
+
+        // every signal arrives, in order, with the latest stats
+        List<Integer> ids = new ArrayList<Integer>();
+        for (Object o : sink.written)
+            if (o instanceof RoundDelta)
+                for (Signal s : ((RoundDelta) o).getSignals())
+                    ids.add(((DeathSignal) s).getObjectID());
+        assertEquals(20, ids.size());
+        for (int i = 0; i < 20; i++)
+            assertEquals(i, (int) ids.get(i));
+        assertTrue(sink.written.size() < 40);
+        assertEquals(19, ((RoundStats) sink.written.get(sink.written.size() - 1)).getPoints(Team.A), 0);
+        assertTrue(proxy.getCoalescedRounds() > 0);
+    }
+
+    @Test
+    public void testCoalesceWhileWriterBusy() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingProxy sink = new RecordingProxy(release);
+        AsyncProxy proxy = new AsyncProxy(sink, AsyncProxy.Policy.COALESCE, 4);
+        proxy.open();
+        proxy.writeRound(round(0));
+        // wait for the writer thread to pick up the first round
+        while (proxy.getQueueDepth() > 0)
+            Thread.sleep(1);
+        proxy.writeStats(new RoundStats(0, 0));
+        for (int i = 1; i < 20; i++) {
+            proxy.writeRound(round(i));
+            proxy.writeStats(new RoundStats(i, 0));
+        }
+        release.countDown();
+        proxy.close();
+        assertEquals(19, ((RoundStats) sink.written.get(sink.written.size() - 1)).getPoints(Team.A), 0);
+        assertTrue(sink.written.size() < 40);
+    }
+
+    @Test
+    public void testFileProxiesNeverCoalesce() throws Exception {
+        File out = File.createTempFile("async", ".rms");
+        out.deleteOnExit();
+        AsyncProxy proxy = new AsyncProxy(new FileProxy(out.getPath()), AsyncProxy.Policy.COALESCE, 4);
+        assertEquals(AsyncProxy.Policy.BLOCK, proxy.getPolicy());
+        proxy.open();
+        proxy.close();
+    }
+
+    @Test
+    public void testFailureReportedOnClose() throws Exception {
+        RecordingProxy sink = new RecordingProxy(new CountDownLatch(0));
+        sink.failAt = 5;
+        AsyncProxy proxy = new AsyncProxy(sink, AsyncProxy.Policy.BLOCK, 2);
+        proxy.open();
+        writeMatch(proxy, 10);
+        try {
+            proxy.close();
+            fail("expected the write error");
+        } catch (IOException e) {
+            assertEquals("client went away", e.getMessage());
+        }
+        assertEquals(5, sink.written.size());
+    }
+}
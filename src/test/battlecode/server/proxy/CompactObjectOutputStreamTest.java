@@ -0,0 +1,154 @@
+package battlecode.server.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import battlecode.common.MapLocation;
+import battlecode.common.Team;
+import battlecode.engine.signal.Signal;
+import battlecode.serial.CompactForm;
+import battlecode.serial.DominationFactor;
+import battlecode.serial.GameStats;
+import battlecode.serial.MatchFooter;
+import battlecode.serial.RoundDelta;
+import battlecode.serial.RoundStats;
+import battlecode.world.signal.DeathSignal;
+import battlecode.world.signal.MovementOverrideSignal;
+
+import com.thoughtworks.xstream.XStream;
+
+public class CompactObjectOutputStreamTest {
+
+    /**
+     * A signal with no compact form.
+     */
+    static class OddSignal extends Signal {
+        private static final long serialVersionUID = 1L;
+        final MapLocation where;
+
+        OddSignal(MapLocation where) {
+            this.where = where;
+        }
+    }
+
+    private final XStream xstream = XStreamProxy.getXStream();
+
+    private byte[] write(List<Object> objects, int resetInterval) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompactObjectOutputStream out = new CompactObjectOutputStream(bytes, resetInterval);
+        for (Object o : objects)
+            out.writeMatchObject(o);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private List<Object> read(byte[] data) throws Exception {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+        List<Object> objects = new ArrayList<Object>();
+        try {
+            while (true)
+                objects.add(in.readObject());
+        } catch (EOFException e) {
+            // end of stream
+        }
+        return objects;
+    }
+
+    private void assertSameObjects(List<Object> expected, List<Object> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            if (expected.get(i) != null)
+                assertEquals(expected.get(i).getClass(), actual.get(i).getClass());
+            assertEquals(xstream.toXML(expected.get(i)), xstream.toXML(actual.get(i)));
+        }
+    }
+
+    @Test
+    public void testEverySignalHasACompactForm() throws Exception {
+        for (Class<?> c : XmlObjectOutputStreamTest.signalClasses())
+            assertTrue(c.getSimpleName(), CompactForm.supports(XmlObjectOutputStreamTest.randomInstance(c, new Random(1))));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Random random = new Random(35);
+        List<Object> objects = new ArrayList<Object>();
+        for (int round = 0; round < 20; round++) {
+            List<Signal> signals = new ArrayList<Signal>();
+            for (Class<?> c : XmlObjectOutputStreamTest.signalClasses())
+                signals.add((Signal) XmlObjectOutputStreamTest.randomInstance(c, random));
+            signals.add(new OddSignal(new MapLocation(round, -round)));
+            objects.add(new RoundDelta(signals.toArray(new Signal[signals.size()])));
+            objects.add(new RoundStats(random.nextDouble(), Double.NaN));
+        }
+        objects.add(new RoundDelta(new Signal[0]));
+        objects.add(null);
+        objects.add(new Signal[]{new DeathSignal(1), null});
+
+        GameStats stats = new GameStats();
+        stats.setArchonKilled(Team.A, 300);
+        stats.setTotalEnergon(Team.B, 12.5);
+        stats.setDominationFactor(DominationFactor.OWNED);
+        stats.setTallestTower(3);
+        objects.add(stats);
+        objects.add(new MatchFooter(Team.B, new long[][]{{1, -2}, {}, null}));
+        objects.add(new MatchFooter(null, null));
+
+        for (int interval : new int[]{1, 3, 1000})
+            assertSameObjects(objects, read(write(objects, interval)));
+
+        List<Object> empty = new ArrayList<Object>();
+        empty.add(new RoundDelta());
+        assertNull(((RoundDelta) read(write(empty, 1)).get(0)).getSignals());
+    }
+
+    @Test
+    public void testResentObjectsAreWrittenAgain() throws Exception {
+        RoundDelta round = new RoundDelta(new Signal[]{new DeathSignal(1)});
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompactObjectOutputStream out = new CompactObjectOutputStream(bytes, 100);
+        out.writeMatchObject(round);
+        round.setSignals(new Signal[]{new MovementOverrideSignal(2, new MapLocation(3, 4))});
+        out.writeMatchObject(round);
+        out.close();
+
+        List<Object> objects = read(bytes.toByteArray());
+        assertEquals(1, ((DeathSignal) ((RoundDelta) objects.get(0)).getSignals()[0]).getObjectID());
+        MovementOverrideSignal s = (MovementOverrideSignal) ((RoundDelta) objects.get(1)).getSignals()[0];
+        assertEquals(new MapLocation(3, 4), s.getNewLoc());
+    }
+
+    @Test
+    public void testSmallerThanPlainSerialization() throws Exception {
+        List<Object> objects = new ArrayList<Object>();
+        for (int round = 0; round < 100; round++) {
+            objects.add(new RoundDelta(new Signal[]{
+                    new MovementOverrideSignal(round, new MapLocation(round, round)),
+                    new DeathSignal(round)}));
+            objects.add(new RoundStats(round, 0));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        for (Object o : objects) {
+            out.reset();
+            out.writeObject(o);
+        }
+        out.close();
+        byte[] compact = write(objects, 256);
+        assertTrue(compact.length + " vs " + bytes.size(), compact.length * 4 < bytes.size());
+        assertSameObjects(read(bytes.toByteArray()), read(compact));
+    }
+}
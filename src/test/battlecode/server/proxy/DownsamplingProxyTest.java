@@ -0,0 +1,163 @@
+package battlecode.server.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import battlecode.common.MapLocation;
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+import battlecode.engine.signal.Signal;
+import battlecode.serial.MatchFooter;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundDelta;
+import battlecode.serial.RoundStats;
+import battlecode.world.signal.AttackSignal;
+import battlecode.world.signal.DeathSignal;
+import battlecode.world.signal.HealthChangeSignal;
+import battlecode.world.signal.IndicatorStringSignal;
+import battlecode.world.signal.LocationOreChangeSignal;
+import battlecode.world.signal.MovementSignal;
+import battlecode.world.signal.SpawnSignal;
+import battlecode.world.signal.TeamOreSignal;
+
+public class DownsamplingProxyTest {
+
+    private static class RecordingProxy extends Proxy {
+        final List<Object> written = new ArrayList<Object>();
+        boolean closed;
+
+        protected OutputStream getOutputStream() throws IOException {
+            return null;
+        }
+
+        public void writeObject(Object o) {
+            written.add(o);
+        }
+
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * A match of robots that spawn, wander, fight and die at random.
+     */
+    private static List<Object> randomMatch(long seed, int rounds) {
+        Random random = new Random(seed);
+        List<Object> match = new ArrayList<Object>();
+        match.add(new MatchHeader(null, new long[2][1], 0, 1));
+        List<Integer> alive = new ArrayList<Integer>();
+        int nextID = 1;
+        for (int round = 0; round < rounds; round++) {
+            List<Signal> signals = new ArrayList<Signal>();
+            if (random.nextInt(3) == 0) {
+                alive.add(nextID);
+                signals.add(new SpawnSignal(nextID++, 0, new MapLocation(random.nextInt(20), random.nextInt(20)),
+                        RobotType.SOLDIER, random.nextBoolean() ? Team.A : Team.B, 0));
+            }
+            for (int id : alive) {
+                switch (random.nextInt(4)) {
+                    case 0:
+                        signals.add(new MovementSignal(id, new MapLocation(random.nextInt(20), random.nextInt(20)),
+                                true, 1));
+                        break;
+                    case 1:
+                        signals.add(new AttackSignal(id, new MapLocation(0, 0)));
+                        break;
+                    case 2:
+                        signals.add(new IndicatorStringSignal(id, random.nextInt(3), "round " + round));
+                        break;
+                }
+            }
+            if (!alive.isEmpty()) {
+                int id = alive.get(random.nextInt(alive.size()));
+                signals.add(new HealthChangeSignal(new int[]{id}, new double[]{random.nextInt(100)}));
+                if (random.nextInt(5) == 0) {
+                    alive.remove((Integer) id);
+                    signals.add(new DeathSignal(id));
+                }
+            }
+            signals.add(new LocationOreChangeSignal(new MapLocation(random.nextInt(5), 0), round));
+            signals.add(new TeamOreSignal(new double[]{round, 2 * round}));
+            match.add(new RoundDelta(signals.toArray(new Signal[signals.size()])));
+            match.add(new RoundStats(round, 0));
+        }
+        match.add(new MatchFooter(Team.A, new long[2][1]));
+        return match;
+    }
+
+    private static List<Object> downsample(List<Object> match, int interval) throws IOException {
+        RecordingProxy recorder = new RecordingProxy();
+        DownsamplingProxy proxy = new DownsamplingProxy(recorder, interval);
+        for (Object o : match)
+            proxy.writeObject(o);
+        proxy.close();
+        assertTrue(recorder.closed);
+        assertEquals(match.size() / 2 - 1, proxy.getRoundsIn());
+        return recorder.written;
+    }
+
+    @Test
+    public void testSendsEveryKthRound() throws IOException {
+        List<Object> written = downsample(randomMatch(1, 25), 10);
+        // header, three rounds with their stats, footer
+        assertEquals(8, written.size());
+        assertTrue(written.get(0) instanceof MatchHeader);
+        assertEquals(9, ((RoundStats) written.get(2)).getPoints(Team.A), 0);
+        assertEquals(19, ((RoundStats) written.get(4)).getPoints(Team.A), 0);
+        assertEquals(24, ((RoundStats) written.get(6)).getPoints(Team.A), 0);
+        assertTrue(written.get(7) instanceof MatchFooter);
+
+        // only the newest team ore, and one health change
+        Signal[] last = ((RoundDelta) written.get(5)).getSignals();
+        int teamOre = 0, healthChanges = 0;
+        for (Signal s : last) {
+            if (s instanceof TeamOreSignal) {
+                teamOre++;
+                assertEquals(24, ((TeamOreSignal) s).getOre()[0], 0);
+            } else if (s instanceof HealthChangeSignal)
+                healthChanges++;
+        }
+        assertEquals(1, teamOre);
+        assertEquals(1, healthChanges);
+    }
+
+    @Test
+    public void testMergedRoundsReachTheSameState() throws IOException {
+        for (int interval = 1; interval <= 16; interval *= 2) {
+            List<Object> match = randomMatch(interval, 200);
+            String failure = MatchCompactor.verify(match, downsample(match, interval), interval);
+            assertNull("interval " + interval + ": " + failure, failure);
+        }
+    }
+
+    @Test
+    public void testVerifyCatchesADroppedRound() throws IOException {
+        List<Object> match = randomMatch(7, 50);
+        List<Object> compacted = downsample(match, 5);
+        // the second merged round and its stats
+        compacted.remove(3);
+        compacted.remove(3);
+        assertNotNull(MatchCompactor.verify(match, compacted, 5));
+    }
+
+    @Test
+    public void testVerifyCatchesRoundsMergedAtTheWrongInterval() throws IOException {
+        List<Object> match = randomMatch(11, 50);
+        assertNull(MatchCompactor.verify(match, downsample(match, 5), 5));
+        // every merged round is a state the original reaches, just not the
+        // one five rounds on
+        assertNotNull(MatchCompactor.verify(match, downsample(match, 4), 5));
+        assertNotNull(MatchCompactor.verify(match, downsample(match, 6), 5));
+    }
+}
@@ -0,0 +1,85 @@
+package battlecode.server.proxy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class ParallelGZIPOutputStreamTest {
+
+    // like a socket: never admits that more data is available
+    private static class NoAvailableInputStream extends FilterInputStream {
+        NoAvailableInputStream(InputStream in) {
+            super(in);
+        }
+
+        public int available() {
+            return 0;
+        }
+    }
+
+    private static byte[] makeData(int size, long seed) {
+        Random rand = new Random(seed);
+        byte[] data = new byte[size];
+        // compressible but not trivial, like serialized rounds
+        for (int i = 0; i < size; i++)
+            data[i] = (byte) (rand.nextInt(8) == 0 ? rand.nextInt() : "signal".charAt(i % 6));
+        return data;
+    }
+
+    private static byte[] compress(byte[] data, int chunk, int blockSize, int threads) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ParallelGZIPOutputStream out = new ParallelGZIPOutputStream(bytes, 6, blockSize, threads);
+        for (int off = 0; off < data.length; off += chunk) {
+            int len = Math.min(chunk, data.length - off);
+            if (len == 1)
+                out.write(data[off]);
+            else
+                out.write(data, off, len);
+            if (off % (7 * chunk) == 0)
+                out.flush();
+        }
+        out.close();
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] gz) throws IOException {
+        return IOUtils.toByteArray(new GZIPInputStream(new NoAvailableInputStream(new ByteArrayInputStream(gz))));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        int[] sizes = {0, 1, 32768, 65536, 65537, 1000000};
+        int[] chunks = {1, 1000, 70000};
+        for (int size : sizes) {
+            byte[] data = makeData(size, size);
+            for (int chunk : chunks) {
+                if (chunk == 1 && size > 100000)
+                    continue;
+                assertArrayEquals(data, decompress(compress(data, chunk, 65536, 3)));
+            }
+        }
+    }
+
+    @Test
+    public void testRatioCloseToSingleStream() throws Exception {
+        byte[] data = makeData(2000000, 5);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream single = new GZIPOutputStream(bytes);
+        single.write(data);
+        single.close();
+        byte[] parallel = compress(data, 8192, 131072, 4);
+        assertTrue(parallel.length < bytes.size() * 1.01);
+    }
+}
@@ -0,0 +1,262 @@
+package battlecode.server.proxy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.output.NullOutputStream;
+
+import battlecode.bench.Microbenchmark;
+import battlecode.common.MapLocation;
+import battlecode.common.Team;
+import battlecode.engine.signal.Signal;
+import battlecode.serial.MatchFooter;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundDelta;
+import battlecode.world.signal.AttackSignal;
+import battlecode.world.signal.BytecodesUsedSignal;
+import battlecode.world.signal.HealthChangeSignal;
+import battlecode.world.signal.MovementSignal;
+import battlecode.world.signal.RobotInfoSignal;
+
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * Microbenchmarks for writing rounds through each kind of proxy: plain
+ * serialization, XML, gzipped files, rmsb files, and a binary proxy behind
+ * a DownsamplingProxy and an AsyncProxy. Streams are thrown away; files go
+ * to a temporary directory. Also compresses a serialized match with gzip
+ * and ParallelGZIPOutputStream, and writes and reads one as XML through
+ * XStream and through the streaming XML classes.
+ * See battlecode.bench.BenchmarkRunner.
+ */
+public class ProxyBenchmarks {
+
+    private static final String[] PROXIES = {"binary", "xml", "file", "rmsb", "downsampling", "async"};
+    private static final int ROBOTS = 150;
+
+    public static List<Microbenchmark> create() {
+        List<Microbenchmark> benchmarks = new ArrayList<Microbenchmark>();
+        for (String proxy : PROXIES)
+            benchmarks.add(new WriteRound(proxy));
+        for (int threads : new int[]{0, 1, 2, 4})
+            benchmarks.add(new Compress(threads));
+        for (String codec : new String[]{"xstream", "streaming"}) {
+            benchmarks.add(new XmlWrite(codec));
+            benchmarks.add(new XmlRead(codec));
+        }
+        return benchmarks;
+    }
+
+    /**
+     * Makes a typical round: half the robots move, some attack, and every
+     * robot's health, delays and bytecodes are sent.
+     */
+    public static RoundDelta makeRound(Random random) {
+        int[] ids = new int[ROBOTS];
+        int[] bytecodes = new int[ROBOTS];
+        double[] health = new double[ROBOTS];
+        double[] delays = new double[ROBOTS];
+        List<Signal> signals = new ArrayList<Signal>();
+        for (int i = 0; i < ROBOTS; i++) {
+            ids[i] = i;
+            bytecodes[i] = random.nextInt(10000);
+            health[i] = random.nextInt(200) / 4.0;
+            delays[i] = random.nextInt(8) / 2.0;
+            MapLocation loc = new MapLocation(random.nextInt(100), random.nextInt(100));
+            if (random.nextBoolean())
+                signals.add(new MovementSignal(i, loc, true, 2));
+            else if (random.nextInt(3) == 0)
+                signals.add(new AttackSignal(i, loc));
+        }
+        signals.add(new HealthChangeSignal(ids, health));
+        signals.add(new BytecodesUsedSignal(ids, bytecodes));
+        signals.add(new RobotInfoSignal(ids, delays, delays, health));
+        return new RoundDelta(signals.toArray(new Signal[signals.size()]));
+    }
+
+    static Proxy binaryProxy(final OutputStream stream) {
+        return new Proxy() {
+            protected OutputStream getOutputStream() throws IOException {
+                return stream;
+            }
+        };
+    }
+
+    static class WriteRound extends Microbenchmark {
+        private final String kind;
+        private final RoundDelta[] rounds = new RoundDelta[64];
+        private File file;
+        private Proxy proxy;
+        private int next;
+
+        WriteRound(String kind) {
+            super("proxy.writeRound", "proxy", kind, "robots", ROBOTS);
+            this.kind = kind;
+        }
+
+        public void setUp() throws IOException {
+            Random random = new Random(8);
+            for (int i = 0; i < rounds.length; i++)
+                rounds[i] = makeRound(random);
+
+            OutputStream sink = new NullOutputStream();
+            if (kind.equals("binary")) {
+                proxy = binaryProxy(sink);
+            } else if (kind.equals("xml")) {
+                proxy = new XStreamProxy(sink);
+            } else if (kind.equals("file")) {
+                file = File.createTempFile("bench", ".rms");
+                proxy = new FileProxy(file.getPath());
+            } else if (kind.equals("rmsb")) {
+                file = File.createTempFile("bench", ".rmsb");
+                proxy = new RmsbProxy(file.getPath());
+            } else if (kind.equals("downsampling")) {
+                proxy = new DownsamplingProxy(binaryProxy(sink), 10);
+            } else {
+                proxy = new AsyncProxy(binaryProxy(sink), AsyncProxy.Policy.BLOCK, 64);
+            }
+            proxy.open();
+            proxy.writeHeader(new MatchHeader(null, new long[2][32], 0, 1));
+        }
+
+        public int run() throws IOException {
+            proxy.writeRound(rounds[next++ & (rounds.length - 1)]);
+            return 1;
+        }
+
+        public void tearDown() throws IOException {
+            proxy.writeFooter(new MatchFooter(Team.A, new long[2][32]));
+            proxy.close();
+            if (file != null)
+                file.delete();
+        }
+    }
+
+    // a match of the given number of rounds, as a proxy is sent it
+    static List<Object> makeMatch(int rounds) {
+        Random random = new Random(9);
+        List<Object> objects = new ArrayList<Object>();
+        objects.add(new MatchHeader(null, new long[2][32], 0, 1));
+        for (int i = 0; i < rounds; i++)
+            objects.add(makeRound(random));
+        objects.add(new MatchFooter(Team.A, new long[2][32]));
+        return objects;
+    }
+
+    /**
+     * Compresses a serialized match in 4KB writes, roughly as
+     * ObjectOutputStream makes them, with GZIPOutputStream (0 threads) or
+     * ParallelGZIPOutputStream.
+     */
+    static class Compress extends Microbenchmark {
+        private final int threads;
+        private byte[] data;
+
+        Compress(int threads) {
+            super("proxy.compress", "threads", threads);
+            this.threads = threads;
+        }
+
+        public void setUp() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            for (Object o : makeMatch(200)) {
+                out.reset();
+                out.writeObject(o);
+            }
+            out.close();
+            data = bytes.toByteArray();
+        }
+
+        public int run() throws IOException {
+            OutputStream sink = new NullOutputStream();
+            OutputStream out = threads == 0 ? new GZIPOutputStream(sink)
+                    : new ParallelGZIPOutputStream(sink, 6, 131072, threads);
+            for (int off = 0; off < data.length; off += 4096)
+                out.write(data, off, Math.min(4096, data.length - off));
+            out.close();
+            return 1;
+        }
+    }
+
+    static ObjectOutputStream xmlOutput(String codec, OutputStream out) throws IOException {
+        if (codec.equals("xstream"))
+            return XStreamProxy.getXStream().createObjectOutputStream(out);
+        return new XmlObjectOutputStream(out);
+    }
+
+    static byte[] writeXml(String codec, List<Object> objects) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = xmlOutput(codec, bytes);
+        for (Object o : objects)
+            out.writeObject(o);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    static class XmlWrite extends Microbenchmark {
+        private final String codec;
+        private List<Object> objects;
+
+        XmlWrite(String codec) {
+            super("proxy.writeXml", "codec", codec, "rounds", 50);
+            this.codec = codec;
+        }
+
+        public void setUp() {
+            objects = makeMatch(50);
+        }
+
+        public int run() throws IOException {
+            ObjectOutputStream out = xmlOutput(codec, new NullOutputStream());
+            for (Object o : objects)
+                out.writeObject(o);
+            out.close();
+            return 1;
+        }
+    }
+
+    static class XmlRead extends Microbenchmark {
+        private final String codec;
+        private byte[] xml;
+
+        XmlRead(String codec) {
+            super("proxy.readXml", "codec", codec, "rounds", 50);
+            this.codec = codec;
+        }
+
+        public void setUp() throws IOException {
+            xml = writeXml("xstream", makeMatch(50));
+        }
+
+        public int run() throws Exception {
+            XStream xstream = XStreamProxy.getXStream();
+            ByteArrayInputStream bytes = new ByteArrayInputStream(xml);
+            ObjectInputStream in = codec.equals("xstream") ? xstream.createObjectInputStream(bytes)
+                    : new XmlObjectInputStream(bytes);
+            int count = 0;
+            try {
+                while (true) {
+                    consume(in.readObject());
+                    count++;
+                }
+            } catch (EOFException e) {
+                // end of the match
+            }
+            in.close();
+            if (count != 52)
+                throw new IOException("read " + count + " objects");
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package battlecode.server.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import battlecode.common.MapLocation;
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+import battlecode.engine.signal.Signal;
+import battlecode.serial.MatchFooter;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundDelta;
+import battlecode.serial.RoundStats;
+import battlecode.serial.ViewerState;
+import battlecode.world.signal.DeathSignal;
+import battlecode.world.signal.HealthChangeSignal;
+import battlecode.world.signal.IndicatorStringSignal;
+import battlecode.world.signal.MovementOverrideSignal;
+import battlecode.world.signal.SpawnSignal;
+
+import com.thoughtworks.xstream.XStream;
+
+public class SpectatorProxyTest {
+
+    private final XStream xstream = XStreamProxy.getXStream();
+
+    /**
+     * A spectator on the loopback interface, reading on its own thread.
+     */
+    private static class Spectator extends Thread {
+        final Socket socket = new Socket();
+        final List<Object> received = Collections.synchronizedList(new ArrayList<Object>());
+        volatile boolean ended;
+        volatile Exception failure;
+
+        Spectator(int port) throws IOException {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            setDaemon(true);
+            start();
+        }
+
+        public void run() {
+            try {
+                ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+                while (true)
+                    received.add(in.readObject());
+            } catch (EOFException e) {
+                // the proxy hung up
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                ended = true;
+            }
+        }
+
+        void waitFor(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (received.size() < count && !ended && System.currentTimeMillis() < deadline)
+                Thread.sleep(1);
+            assertTrue("received " + received.size() + " of " + count, received.size() >= count);
+        }
+
+        List<Object> finish() throws Exception {
+            join(10000);
+            assertTrue(ended);
+            if (failure != null)
+                throw failure;
+            return received;
+        }
+    }
+
+    private static void waitForClients(SpectatorProxy proxy, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (proxy.getClientCount() != count && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+        assertEquals(count, proxy.getClientCount());
+    }
+
+    private static void waitForFrames(SpectatorProxy proxy, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (proxy.getFrameCount() != count && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+        assertEquals(count, proxy.getFrameCount());
+    }
+
+    // spawns a robot, moves and hurts the one before, and every third round
+    // kills the one before that
+    private static RoundDelta makeRound(int round) {
+        return new RoundDelta(new Signal[]{
+                new SpawnSignal(round + 1, 0, new MapLocation(round, round), RobotType.SOLDIER, Team.A, 0),
+                new MovementOverrideSignal(round, new MapLocation(round, -round)),
+                new HealthChangeSignal(new int[]{round}, new double[]{round / 2.0}),
+                new DeathSignal(round % 3 == 0 ? round - 1 : -1)});
+    }
+
+    private static List<Object> makeMatch(int number, int rounds) {
+        List<Object> objects = new ArrayList<Object>();
+        objects.add(new MatchHeader(null, new long[2][1], number, 2));
+        for (int round = 0; round < rounds; round++) {
+            objects.add(makeRound(round));
+            objects.add(new RoundStats(round, number));
+        }
+        objects.add(new MatchFooter(Team.A, new long[2][1]));
+        return objects;
+    }
+
+    private void assertSameObjects(List<Object> expected, List<Object> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(xstream.toXML(expected.get(i)), xstream.toXML(actual.get(i)));
+    }
+
+    @Test
+    public void testEverySpectatorGetsTheMatch() throws Exception {
+        SpectatorProxy proxy = new SpectatorProxy(0, 1 << 20);
+        List<Spectator> spectators = new ArrayList<Spectator>();
+        for (int i = 0; i < 3; i++)
+            spectators.add(new Spectator(proxy.getPort()));
+        waitForClients(proxy, 3);
+
+        List<Object> match = makeMatch(0, 200);
+        for (Object o : match)
+            proxy.writeObject(o);
+        proxy.close();
+        for (Spectator s : spectators)
+            assertSameObjects(match, s.finish());
+        assertEquals(0, proxy.getEvictedCount());
+    }
+
+    @Test
+    public void testLateSpectatorCatchesUp() throws Exception {
+        SpectatorProxy proxy = new SpectatorProxy(0, 1 << 20);
+        Spectator early = new Spectator(proxy.getPort());
+        waitForClients(proxy, 1);
+        List<Object> first = makeMatch(0, 10);
+        List<Object> second = makeMatch(1, 30);
+        List<Object> all = new ArrayList<Object>(first);
+        all.addAll(second);
+
+        for (Object o : first)
+            proxy.writeObject(o);
+        for (Object o : second.subList(0, 21))
+            proxy.writeObject(o);
+        early.waitFor(first.size() + 21);
+
+        // joins during the second match, so it gets its header, one round
+        // that sets up the state ten rounds in, and the rest of the match
+        Spectator late = new Spectator(proxy.getPort());
+        waitForClients(proxy, 2);
+        for (Object o : second.subList(21, second.size()))
+            proxy.writeObject(o);
+        proxy.close();
+
+        assertSameObjects(all, early.finish());
+        List<Object> received = late.finish();
+        List<Object> rest = second.subList(21, second.size());
+        assertEquals(2 + rest.size(), received.size());
+        assertSameObjects(second.subList(0, 1), received.subList(0, 1));
+        assertSameObjects(rest, received.subList(2, received.size()));
+
+        ViewerState expected = new ViewerState();
+        for (Object o : second.subList(0, 21)) {
+            if (o instanceof RoundDelta)
+                expected.apply(((RoundDelta) o).getSignals());
+        }
+        ViewerState caughtUp = new ViewerState();
+        caughtUp.apply(((RoundDelta) received.get(1)).getSignals());
+        assertTrue(expected.getRobotCount() > 0);
+        assertEquals(expected, caughtUp);
+    }
+
+    @Test
+    public void testFramesAreDroppedOnceSent() throws Exception {
+        SpectatorProxy proxy = new SpectatorProxy(0, 1 << 20);
+        List<Object> match = makeMatch(0, 100);
+        for (Object o : match.subList(0, 101))
+            proxy.writeObject(o);
+        // nobody is watching, so nothing needs keeping
+        waitForFrames(proxy, 0);
+
+        Spectator spectator = new Spectator(proxy.getPort());
+        waitForClients(proxy, 1);
+        spectator.waitFor(2);
+        for (Object o : match.subList(101, match.size()))
+            proxy.writeObject(o);
+        spectator.waitFor(2 + match.size() - 101);
+        waitForFrames(proxy, 0);
+        proxy.close();
+        spectator.finish();
+    }
+
+    @Test
+    public void testSlowSpectatorIsDisconnected() throws Exception {
+        SpectatorProxy proxy = new SpectatorProxy(0, 256 * 1024);
+        Spectator fast = new Spectator(proxy.getPort());
+        // connects but never reads
+        Socket slow = new Socket();
+        slow.setReceiveBufferSize(4096);
+        slow.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), proxy.getPort()));
+        waitForClients(proxy, 2);
+
+        char[] text = new char[10000];
+        Arrays.fill(text, 'x');
+        List<Object> match = new ArrayList<Object>();
+        match.add(new MatchHeader(null, new long[2][1], 0, 1));
+        for (int round = 0; round < 1500; round++)
+            match.add(new RoundDelta(new Signal[]{new IndicatorStringSignal(round, 0, new String(text))}));
+        match.add(new MatchFooter(Team.B, new long[2][1]));
+
+        for (int i = 0; i < match.size(); i++) {
+            proxy.writeObject(match.get(i));
+            // keep the fast spectator within the limit
+            fast.waitFor(i + 1);
+        }
+        assertEquals(1, proxy.getEvictedCount());
+        assertEquals(1, proxy.getClientCount());
+        proxy.close();
+        assertSameObjects(match, fast.finish());
+        slow.close();
+    }
+}
@@ -0,0 +1,88 @@
+package battlecode.server.proxy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpillingOutputStreamTest {
+
+    private File directory;
+
+    @Before
+    public void makeDirectory() throws IOException {
+        directory = File.createTempFile("spill", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+    }
+
+    @After
+    public void removeDirectory() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    private static byte[] makeData(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static void write(SpillingOutputStream out, byte[] data, int chunk) throws IOException {
+        for (int off = 0; off < data.length; off += chunk) {
+            int len = Math.min(chunk, data.length - off);
+            if (len == 1)
+                out.write(data[off]);
+            else
+                out.write(data, off, len);
+        }
+    }
+
+    @Test
+    public void testStaysInMemoryUnderTheLimit() throws Exception {
+        byte[] data = makeData(100000);
+        SpillingOutputStream out = new SpillingOutputStream(directory, 200000);
+        write(out, data, 1);
+        assertFalse(out.hasSpilled());
+        assertEquals(0, directory.list().length);
+        assertTrue(out.getPeakMemory() >= data.length);
+
+        File target = new File(directory, "match.rms");
+        out.publish(target);
+        assertArrayEquals(data, FileUtils.readFileToByteArray(target));
+        assertEquals(1, directory.list().length);
+    }
+
+    @Test
+    public void testSpillsOverTheLimit() throws Exception {
+        byte[] data = makeData(1000000);
+        SpillingOutputStream out = new SpillingOutputStream(directory, 300000);
+        write(out, data, 7000);
+        assertTrue(out.hasSpilled());
+        assertEquals(data.length, out.getSize());
+        assertTrue(out.getPeakMemory() <= 300000 + 65536);
+        out.resetPeakMemory();
+        assertEquals(0, out.getPeakMemory());
+
+        File target = new File(directory, "match.rms");
+        FileUtils.writeStringToFile(target, "an older match");
+        out.publish(target);
+        assertArrayEquals(data, FileUtils.readFileToByteArray(target));
+        assertEquals(1, directory.list().length);
+    }
+
+    @Test(expected = IOException.class)
+    public void testWriteAfterClose() throws Exception {
+        SpillingOutputStream out = new SpillingOutputStream(directory, 10);
+        out.close();
+        out.write(1);
+    }
+}
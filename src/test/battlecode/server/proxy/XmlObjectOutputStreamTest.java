@@ -0,0 +1,244 @@
+package battlecode.server.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import battlecode.common.MapLocation;
+import battlecode.common.Team;
+import battlecode.engine.signal.Signal;
+import battlecode.serial.DominationFactor;
+import battlecode.serial.ExtensibleMetadata;
+import battlecode.serial.GameStats;
+import battlecode.serial.MatchFooter;
+import battlecode.serial.RoundDelta;
+import battlecode.serial.RoundStats;
+import battlecode.world.signal.DeathSignal;
+import battlecode.world.signal.IndicatorStringSignal;
+
+import com.thoughtworks.xstream.XStream;
+
+public class XmlObjectOutputStreamTest {
+
+    private static final String[] STRINGS = {
+            "", "plain", "a & b < c > d", "\"quoted\" 'single'", "tab\there",
+            "line\nbreak\r\n", "nul\0byte", "\u0001\u001f\u007f\u0085",
+            "café 中", "😀 pair", "lone \ud800 surrogate",
+            "￿￾", "]]>", "&#x41;",
+    };
+
+    private final XStream xstream = XStreamProxy.getXStream();
+    private final Random random = new Random(34);
+
+    /**
+     * Every class in battlecode.world.signal, so new signals are covered
+     * without touching this test.
+     */
+    static List<Class<?>> signalClasses() throws Exception {
+        URL url = DeathSignal.class.getResource("DeathSignal.class");
+        assertEquals("file", url.getProtocol());
+        List<Class<?>> classes = new ArrayList<Class<?>>();
+        String[] names = new File(url.toURI()).getParentFile().list();
+        Arrays.sort(names);
+        for (String name : names) {
+            if (!name.endsWith(".class") || name.contains("$"))
+                continue;
+            Class<?> c = Class.forName("battlecode.world.signal." + name.substring(0, name.length() - 6));
+            if (Signal.class.isAssignableFrom(c) && !Modifier.isAbstract(c.getModifiers()))
+                classes.add(c);
+        }
+        assertTrue(classes.size() > 20);
+        return classes;
+    }
+
+    private static Object randomValue(Class<?> type, Random random) {
+        boolean useNull = random.nextInt(8) == 0;
+        if (type == int.class)
+            return random.nextBoolean() ? random.nextInt(200) - 100 : random.nextInt();
+        if (type == long.class)
+            return random.nextLong();
+        if (type == double.class) {
+            switch (random.nextInt(6)) {
+                case 0:
+                    return Double.NaN;
+                case 1:
+                    return Double.NEGATIVE_INFINITY;
+                case 2:
+                    return -0.0;
+                case 3:
+                    return 1e-300 * random.nextDouble();
+                default:
+                    return random.nextGaussian() * 1000;
+            }
+        }
+        if (type == boolean.class)
+            return random.nextBoolean();
+        if (type == String.class)
+            return useNull ? null : STRINGS[random.nextInt(STRINGS.length)];
+        if (type == int[].class) {
+            if (useNull)
+                return null;
+            int[] a = new int[random.nextInt(4)];
+            for (int i = 0; i < a.length; i++)
+                a[i] = random.nextInt();
+            return a;
+        }
+        if (type == long[].class) {
+            if (useNull)
+                return null;
+            long[] a = new long[random.nextInt(4)];
+            for (int i = 0; i < a.length; i++)
+                a[i] = random.nextLong();
+            return a;
+        }
+        if (type == double[].class) {
+            if (useNull)
+                return null;
+            double[] a = new double[random.nextInt(4)];
+            for (int i = 0; i < a.length; i++)
+                a[i] = random.nextInt(3) == 0 ? Double.POSITIVE_INFINITY : random.nextDouble() * -50;
+            return a;
+        }
+        if (type == MapLocation.class)
+            return useNull ? null : new MapLocation(random.nextInt(), random.nextInt(100) - 50);
+        if (type.isEnum()) {
+            Object[] values = type.getEnumConstants();
+            return useNull ? null : values[random.nextInt(values.length)];
+        }
+        return null;
+    }
+
+    /**
+     * Creates an object without running its constructor and fills its
+     * fields with awkward values.
+     */
+    static Object randomInstance(Class<?> type, Random random) throws Exception {
+        Object o = XStreamProxy.getXStream().getReflectionProvider().newInstance(type);
+        for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                if ((f.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) != 0)
+                    continue;
+                Object value = randomValue(f.getType(), random);
+                if (value == null && f.getType().isPrimitive())
+                    continue;
+                f.setAccessible(true);
+                f.set(o, value);
+            }
+        }
+        return o;
+    }
+
+    private List<Object> sampleMatch() throws Exception {
+        List<Object> objects = new ArrayList<Object>();
+        ExtensibleMetadata metadata = new ExtensibleMetadata();
+        metadata.put("type", "header");
+        metadata.put("maps", new String[]{"a <map>", "b"});
+        objects.add(metadata);
+
+        List<Class<?>> classes = signalClasses();
+        for (int round = 0; round < 20; round++) {
+            List<Signal> signals = new ArrayList<Signal>();
+            for (Class<?> c : classes)
+                signals.add((Signal) randomInstance(c, random));
+            objects.add(new RoundDelta(signals.toArray(new Signal[signals.size()])));
+            objects.add(new RoundStats(random.nextDouble(), -random.nextDouble()));
+        }
+        objects.add(new RoundDelta(new Signal[0]));
+        objects.add(new RoundDelta(new Signal[]{null, new DeathSignal(3)}));
+        Signal repeated = new DeathSignal(4);
+        objects.add(new RoundDelta(new Signal[]{repeated, new DeathSignal(5), repeated}));
+        objects.add(new Signal[]{new DeathSignal(6), null});
+        objects.add(null);
+        objects.add(randomInstance(IndicatorStringSignal.class, random));
+
+        GameStats stats = new GameStats();
+        stats.setUnitKilled(Team.B, 17);
+        stats.setPoints(Team.A, Double.NaN);
+        stats.setDominationFactor(DominationFactor.BARELY_BEAT);
+        objects.add(stats);
+        objects.add(new MatchFooter(Team.A, new long[][]{{1, -2}, {}}));
+        return objects;
+    }
+
+    private byte[] write(ObjectOutputStream out, ByteArrayOutputStream bytes, List<Object> objects) throws IOException {
+        for (Object o : objects)
+            out.writeObject(o);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private byte[] writeXStream(List<Object> objects) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        return write(xstream.createObjectOutputStream(bytes), bytes, objects);
+    }
+
+    private byte[] writeStreaming(List<Object> objects) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        return write(new XmlObjectOutputStream(bytes), bytes, objects);
+    }
+
+    private List<Object> readAll(ObjectInputStream in) throws Exception {
+        List<Object> objects = new ArrayList<Object>();
+        try {
+            while (true)
+                objects.add(in.readObject());
+        } catch (EOFException e) {
+            // end of stream
+        }
+        in.close();
+        return objects;
+    }
+
+    @Test
+    public void testSameBytesAsXStream() throws Exception {
+        List<Object> objects = sampleMatch();
+        assertEquals(new String(writeXStream(objects)), new String(writeStreaming(objects)));
+    }
+
+    @Test
+    public void testEmptyStream() throws Exception {
+        List<Object> none = new ArrayList<Object>();
+        assertEquals(new String(writeXStream(none)), new String(writeStreaming(none)));
+    }
+
+    @Test
+    public void testReadsBackLikeXStream() throws Exception {
+        List<Object> objects = sampleMatch();
+        byte[] xml = writeXStream(objects);
+        List<Object> expected = readAll(xstream.createObjectInputStream(new ByteArrayInputStream(xml)));
+        List<Object> actual = readAll(new XmlObjectInputStream(new ByteArrayInputStream(xml)));
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(xstream.toXML(expected.get(i)), xstream.toXML(actual.get(i)));
+    }
+
+    @Test
+    public void testWriteAfterCloseFails() throws Exception {
+        XmlObjectOutputStream out = new XmlObjectOutputStream(new ByteArrayOutputStream());
+        out.close();
+        out.close();
+        try {
+            out.writeObject(new DeathSignal(1));
+            fail("expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
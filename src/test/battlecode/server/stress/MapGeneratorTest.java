@@ -0,0 +1,182 @@
+package battlecode.server.stress;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import org.junit.Test;
+
+import battlecode.common.RobotType;
+import battlecode.common.TerrainTile;
+import battlecode.world.CompiledMap;
+import battlecode.world.GameMap;
+
+public class MapGeneratorTest {
+
+    private static String mirror(String square) {
+        if (square.equals("a") || square.equals("t") || square.equals("x"))
+            return square.equals("a") ? "b" : square.equals("t") ? "u" : "y";
+        if (square.equals("b") || square.equals("u") || square.equals("y"))
+            return square.equals("b") ? "a" : square.equals("u") ? "t" : "x";
+        return square;
+    }
+
+    private static int count(String[][] squares, String square) {
+        int n = 0;
+        for (String[] column : squares)
+            for (String s : column)
+                if (s.equals(square))
+                    n++;
+        return n;
+    }
+
+    /**
+     * Whether B's HQ can be reached from A's without crossing void.
+     */
+    private static boolean connected(String[][] squares) {
+        int width = squares.length, height = squares[0].length;
+        boolean[][] reached = new boolean[width][height];
+        Deque<int[]> queue = new ArrayDeque<int[]>();
+        queue.add(new int[]{4, 4});
+        reached[4][4] = true;
+        while (!queue.isEmpty()) {
+            int[] square = queue.poll();
+            if (squares[square[0]][square[1]].equals("b"))
+                return true;
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    int x = square[0] + dx, y = square[1] + dy;
+                    if (x >= 0 && y >= 0 && x < width && y < height && !reached[x][y]
+                            && !squares[x][y].equals("#")) {
+                        reached[x][y] = true;
+                        queue.add(new int[]{x, y});
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testMapsAreSymmetric() {
+        int[][] sizes = {{30, 30}, {77, 77}, {120, 120}, {40, 90}, {250, 250}};
+        for (MapGenerator.Symmetry symmetry : MapGenerator.Symmetry.values()) {
+            for (int[] size : sizes) {
+                int width = size[0], height = size[1];
+                MapGenerator generator = new MapGenerator(width, height, width);
+                generator.setSymmetry(symmetry);
+                generator.setVoidRatio(0.2);
+                generator.setUnits(RobotType.SOLDIER, 20);
+                String[][] squares = generator.generate();
+                for (int x = 0; x < width; x++) {
+                    for (int y = 0; y < height; y++) {
+                        String square = squares[x][y];
+                        int mx = width - 1 - x;
+                        int my = symmetry == MapGenerator.Symmetry.ROTATE ? height - 1 - y : y;
+                        assertEquals(mirror(square), squares[mx][my]);
+                        if (square.startsWith("n")) {
+                            int ore = Integer.parseInt(square.substring(1));
+                            assertTrue(square, ore >= 10 && ore <= 40);
+                        }
+                    }
+                }
+                assertEquals(1, count(squares, "a"));
+                assertEquals(6, count(squares, "t"));
+                assertEquals(20, count(squares, "x"));
+                assertEquals(20, count(squares, "y"));
+                assertTrue(symmetry + " " + width + "x" + height, connected(squares));
+            }
+        }
+    }
+
+    @Test
+    public void testSameSeedSameMap() {
+        MapGenerator a = new MapGenerator(60, 60, 7);
+        MapGenerator b = new MapGenerator(60, 60, 7);
+        MapGenerator c = new MapGenerator(60, 60, 8);
+        for (MapGenerator g : new MapGenerator[]{a, b, c})
+            g.setOre(MapGenerator.Ore.CLUSTERED, 0, 100);
+        String[][] squares = a.generate();
+        assertArrayEquals(squares, b.generate());
+        assertFalse(Arrays.deepEquals(squares, c.generate()));
+
+        // units only change the squares they stand on
+        b.setUnits(RobotType.BEAVER, 30);
+        String[][] withUnits = b.generate();
+        int changed = 0;
+        for (int x = 0; x < 60; x++)
+            for (int y = 0; y < 60; y++)
+                if (!squares[x][y].equals(withUnits[x][y]))
+                    changed++;
+        assertEquals(60, changed);
+    }
+
+    @Test
+    public void testVoidAndOre() {
+        for (double ratio : new double[]{0, 0.1, 0.4}) {
+            MapGenerator generator = new MapGenerator(100, 100, 3);
+            generator.setVoidRatio(ratio);
+            double voids = count(generator.generate(), "#") / 10000.0;
+            assertEquals(ratio, voids, ratio * 0.15);
+        }
+
+        MapGenerator generator = new MapGenerator(100, 100, 3);
+        generator.setOre(MapGenerator.Ore.NONE, 10, 40);
+        String[][] squares = generator.generate();
+        assertEquals(0, count(squares, "n10"));
+        assertTrue(count(squares, "n0") > 9000);
+
+        generator.setOre(MapGenerator.Ore.CLUSTERED, 5, 80);
+        squares = generator.generate();
+        // mostly bare ground, with some rich squares
+        assertTrue(count(squares, "n5") > 5000);
+        assertTrue(count(squares, "n80") > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoRoomForUnits() {
+        MapGenerator generator = new MapGenerator(30, 30, 1);
+        generator.setUnits(RobotType.SOLDIER, 450);
+        generator.generate();
+    }
+
+    @Test
+    public void testMapsLoad() throws IOException {
+        File dir = File.createTempFile("maps", "");
+        dir.delete();
+        dir.mkdirs();
+        try {
+            // the largest normal map, and one past the limit
+            for (int size : new int[]{120, 200}) {
+                MapGenerator generator = new MapGenerator(size, size, 5);
+                generator.setRounds(300);
+                generator.setUnits(RobotType.MINER, 10);
+                assertEquals(size > 120, generator.isOverSizeLimit());
+                generator.write(new File(dir, "gen" + size + ".xml"));
+                GameMap map = CompiledMap.load("gen" + size, dir.getPath()).toGameMap("gen" + size);
+                assertEquals(size, map.getWidth());
+                assertEquals(size, map.getHeight());
+                assertEquals(300, map.getMaxRounds());
+                assertEquals(5, map.getSeed());
+                assertEquals(TerrainTile.NORMAL, map.getTerrainMatrix()[4][4]);
+            }
+        } finally {
+            File compiled = new File(dir, "compiled");
+            File[] files = compiled.listFiles();
+            if (files != null)
+                for (File f : files)
+                    f.delete();
+            compiled.delete();
+            for (File f : dir.listFiles())
+                f.delete();
+            dir.delete();
+        }
+    }
+}
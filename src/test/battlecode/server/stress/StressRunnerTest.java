@@ -0,0 +1,90 @@
+package battlecode.server.stress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import battlecode.engine.signal.Signal;
+import battlecode.serial.MatchFooter;
+import battlecode.serial.MatchHeader;
+import battlecode.serial.RoundDelta;
+
+public class StressRunnerTest {
+
+    @Test
+    public void testPercentiles() {
+        long[] rounds = new long[200];
+        for (int i = 0; i < rounds.length; i++)
+            rounds[i] = (i * 37 % 200 + 1) * 1000L;
+        StressRunner.Result result = new StressRunner.Result("spawnstress", 30, 0, rounds, 2000000000L, 12, 0, 0);
+        assertEquals(100000, result.getRoundNanos(50));
+        assertEquals(198000, result.getRoundNanos(99));
+        assertEquals(200000, result.getRoundNanos(100));
+        assertEquals(1000, result.getRoundNanos(0));
+        assertEquals(100.0, result.getRoundsPerSecond(), 1e-9);
+    }
+
+    @Test
+    public void testRecorderTimesEachRound() throws IOException {
+        StressRunner.Recorder recorder = new StressRunner.Recorder("radiostress", 60, 0);
+        recorder.writeObject(new MatchHeader(null, new long[2][32], 0, 1));
+        for (int i = 0; i < 3000; i++)
+            recorder.writeObject(new RoundDelta(new Signal[0]));
+        recorder.writeObject(new MatchFooter(null, new long[2][32]));
+        StressRunner.Result result = recorder.result;
+        assertEquals(3000, result.getRounds());
+        assertEquals("radiostress", result.getPlayer());
+        assertTrue(result.getPeakThreads() > 0);
+        assertTrue(result.getPeakHeap() > 0);
+    }
+
+    @Test
+    public void testWriteResults() throws IOException {
+        List<StressRunner.Result> results = new ArrayList<StressRunner.Result>();
+        results.add(new StressRunner.Result("allocstress", 90, 25, new long[]{2000000, 4000000}, 10000000, 40,
+                64 << 20, 8 << 20));
+        File csv = File.createTempFile("stress", ".csv");
+        File json = File.createTempFile("stress", ".json");
+        try {
+            StressRunner.writeResults(results, csv);
+            BufferedReader in = new BufferedReader(new FileReader(csv));
+            assertEquals("player,size,units,rounds,wall_ms,rounds_per_sec,p50_ms,p99_ms,peak_threads,peak_heap_mb,"
+                    + "peak_metaspace_mb", in.readLine());
+            assertEquals("allocstress,90,25,2,10,200.0,2.0,4.0,40,64.0,8.0", in.readLine());
+            in.close();
+
+            StressRunner.writeResults(results, json);
+            in = new BufferedReader(new FileReader(json));
+            assertEquals("[", in.readLine());
+            assertTrue(in.readLine().startsWith("  {\"player\": \"allocstress\", \"size\": 90, \"units\": 25,"));
+            assertEquals("]", in.readLine());
+            in.close();
+        } finally {
+            csv.delete();
+            json.delete();
+        }
+    }
+
+    @Test
+    public void testMapNames() {
+        assertEquals("stress60", StressRunner.mapName(60, 0));
+        assertEquals("stress240-500", StressRunner.mapName(240, 500));
+    }
+
+    @Test
+    public void testPlayersAreBundled() {
+        // team packages are a single name; the class loader only instruments those
+        for (String player : StressRunner.PLAYERS) {
+            assertTrue(player, player.indexOf('.') < 0);
+            assertTrue(player, getClass().getClassLoader().getResource(player + "/RobotPlayer.class") != null);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package battlecode.world;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import battlecode.common.MapLocation;
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+import battlecode.engine.signal.Signal;
+import battlecode.server.Config;
+import battlecode.world.signal.BytecodesUsedChangeSignal;
+import battlecode.world.signal.BytecodesUsedSignal;
+import battlecode.world.signal.RobotInfoChangeSignal;
+import battlecode.world.signal.RobotInfoSignal;
+import battlecode.world.signal.RobotStateReconstructor;
+
+public class ChangeSignalTest {
+
+    private static final int SIZE = 30;
+
+    private final Random rand = new Random(39);
+    private GameMap map;
+    private GameWorld world;
+
+    @Before
+    public void useChangeSignals() {
+        Config.getGlobalConfig().set("bc.engine.signal-format", "2");
+        map = MapMemoryTest.makeMap(SIZE, SIZE, 5);
+        world = new GameWorld(map, "A", "B", new long[2][32]);
+    }
+
+    @After
+    public void restoreFormat() {
+        Config.getGlobalConfig().set("bc.engine.signal-format", "1");
+    }
+
+    private void addRobot() {
+        RobotType[] types = {RobotType.BEAVER, RobotType.SOLDIER, RobotType.TOWER};
+        MapLocation loc;
+        do {
+            loc = map.getMapOrigin().add(rand.nextInt(SIZE), rand.nextInt(SIZE));
+        } while (world.getObject(loc) != null);
+        new InternalRobot(world, types[rand.nextInt(types.length)], loc, rand.nextBoolean() ? Team.A : Team.B, false, 0);
+    }
+
+    private InternalRobot[] robots() {
+        List<InternalRobot> robots = new ArrayList<InternalRobot>();
+        for (InternalObject o : world.getAllGameObjects()) {
+            if (o instanceof InternalRobot)
+                robots.add((InternalRobot) o);
+        }
+        return robots.toArray(new InternalRobot[robots.size()]);
+    }
+
+    private static <T> T find(Signal[] signals, Class<T> type) {
+        T found = null;
+        for (Signal s : signals) {
+            if (type.isInstance(s)) {
+                assertTrue(found == null);
+                found = type.cast(s);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Changes robots at random, round after round, and checks that
+     * reconstructing the change signals gives exactly the full signals the
+     * engine would have sent.
+     */
+    @Test
+    public void testReconstructedSignalsMatchFullSignals() {
+        for (int i = 0; i < 40; i++)
+            addRobot();
+
+        RobotStateReconstructor reconstructor = new RobotStateReconstructor();
+        int full = 0, changed = 0;
+        for (int round = 0; round < 200; round++) {
+            world.processBeginningOfRound();
+            for (InternalRobot robot : robots()) {
+                switch (rand.nextInt(8)) {
+                    case 0:
+                        robot.addCoreDelay(rand.nextInt(4) / 2.0);
+                        break;
+                    case 1:
+                        robot.addWeaponDelay(1);
+                        break;
+                    case 2:
+                        robot.increaseSupplyLevel(rand.nextInt(50));
+                        break;
+                    case 3:
+                        robot.setBytecodesUsed(rand.nextInt(10000));
+                        break;
+                }
+            }
+            if (rand.nextInt(4) == 0)
+                world.removeObject(robots()[rand.nextInt(robots().length)]);
+            if (rand.nextInt(3) == 0)
+                addRobot();
+            world.processEndOfRound();
+
+            InternalRobot[] robots = robots();
+            RobotInfoSignal expectedInfo = new RobotInfoSignal(robots);
+            BytecodesUsedSignal expectedBytecodes = new BytecodesUsedSignal(robots);
+            // like the debug-mode signals, some rounds go without bytecodes
+            boolean bytecodes = round % 7 != 0;
+            Signal[] signals = world.getAllSignals(bytecodes);
+            world.clearAllSignals();
+            RobotInfoChangeSignal change = find(signals, RobotInfoChangeSignal.class);
+            full += 3 * robots.length;
+            changed += change.getCoreDelayIDs().length + change.getWeaponDelayIDs().length
+                    + change.getSupplyLevelIDs().length;
+            assertTrue(find(signals, RobotInfoSignal.class) == null);
+
+            reconstructor.reconstruct(signals);
+            assertTrue(find(signals, RobotInfoChangeSignal.class) == null);
+            assertTrue(find(signals, BytecodesUsedChangeSignal.class) == null);
+            RobotInfoSignal info = find(signals, RobotInfoSignal.class);
+            assertTrue(Arrays.equals(expectedInfo.getRobotIDs(), info.getRobotIDs()));
+            assertTrue(Arrays.equals(expectedInfo.getCoreDelays(), info.getCoreDelays()));
+            assertTrue(Arrays.equals(expectedInfo.getWeaponDelays(), info.getWeaponDelays()));
+            assertTrue(Arrays.equals(expectedInfo.getSupplyLevels(), info.getSupplyLevels()));
+            if (bytecodes) {
+                BytecodesUsedSignal used = find(signals, BytecodesUsedSignal.class);
+                assertTrue(Arrays.equals(expectedBytecodes.getRobotIDs(), used.getRobotIDs()));
+                assertTrue(Arrays.equals(expectedBytecodes.getNumBytecodes(), used.getNumBytecodes()));
+            } else
+                assertTrue(find(signals, BytecodesUsedSignal.class) == null);
+        }
+        assertTrue(changed + " of " + full, changed < full);
+    }
+
+    @Test
+    public void testNothingChangedSendsNothing() {
+        for (int i = 0; i < 10; i++)
+            addRobot();
+        world.getAllSignals(true);
+        world.clearAllSignals();
+        InternalRobot removed = robots()[3];
+        world.removeObject(removed);
+
+        Signal[] signals = world.getAllSignals(true);
+        world.clearAllSignals();
+        RobotInfoChangeSignal info = find(signals, RobotInfoChangeSignal.class);
+        assertEquals(0, info.getCoreDelayIDs().length);
+        assertEquals(0, info.getWeaponDelayIDs().length);
+        assertEquals(0, info.getSupplyLevelIDs().length);
+        assertTrue(Arrays.equals(new int[]{removed.getID()}, info.getRemovedIDs()));
+        BytecodesUsedChangeSignal used = find(signals, BytecodesUsedChangeSignal.class);
+        assertEquals(0, used.getRobotIDs().length);
+        assertTrue(Arrays.equals(new int[]{removed.getID()}, used.getRemovedIDs()));
+
+        signals = world.getAllSignals(true);
+        assertEquals(0, find(signals, RobotInfoChangeSignal.class).getRemovedIDs().length);
+        assertEquals(0, find(signals, BytecodesUsedChangeSignal.class).getRemovedIDs().length);
+    }
+}
@@ -0,0 +1,142 @@
+package battlecode.world;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+
+public class CompiledMapTest {
+
+    private File dir;
+
+    @Before
+    public void makeDir() throws IOException {
+        dir = File.createTempFile("maps", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void removeDir() {
+        File compiled = new File(dir, CompiledMap.CACHE_DIR);
+        File[] files = compiled.listFiles();
+        if (files != null)
+            for (File f : files)
+                f.delete();
+        compiled.delete();
+        new File(dir, "test.xml").delete();
+        dir.delete();
+    }
+
+    private File[] compiledFiles() {
+        File[] files = new File(dir, CompiledMap.CACHE_DIR).listFiles();
+        return files == null ? new File[0] : files;
+    }
+
+    @Test
+    public void compilesTheXmlMap() throws IOException {
+        WorldBenchmarks.writeMap(new File(dir, "test.xml"), 30);
+        CompiledMap map = XMLMapHandler.loadMap("test", dir.getPath()).compile();
+        assertEquals(30, map.width);
+        assertEquals(30, map.height);
+        assertEquals(30, map.seed);
+        assertEquals(2000, map.maxRounds);
+        // the HQs come first, then the towers
+        assertEquals(2 + 12, map.robots.length / 4);
+        assertArrayEquals(new int[]{RobotType.HQ.ordinal(), Team.A.ordinal(), 3, 3}, slice(map.robots, 0));
+        assertArrayEquals(new int[]{RobotType.HQ.ordinal(), Team.B.ordinal(), 26, 26}, slice(map.robots, 1));
+        for (int i = 2; i < map.robots.length / 4; i++)
+            assertEquals(RobotType.TOWER.ordinal(), map.robots[4 * i]);
+    }
+
+    private static int[] slice(int[] robots, int robot) {
+        int[] r = new int[4];
+        System.arraycopy(robots, 4 * robot, r, 0, 4);
+        return r;
+    }
+
+    @Test
+    public void compiledMapMatchesXml() throws IOException {
+        WorldBenchmarks.writeMap(new File(dir, "test.xml"), 40);
+        GameMap xml = XMLMapHandler.loadMap("test", dir.getPath()).compile().toGameMap("test");
+        CompiledMap.load("test", dir.getPath());
+        File[] files = compiledFiles();
+        assertEquals(1, files.length);
+        GameMap compiled = CompiledMap.read(files[0]).toGameMap("test");
+
+        assertEquals(xml.getWidth(), compiled.getWidth());
+        assertEquals(xml.getHeight(), compiled.getHeight());
+        assertEquals(xml.getSeed(), compiled.getSeed());
+        assertEquals(xml.getMaxRounds(), compiled.getMaxRounds());
+        assertEquals(xml.getMapOrigin(), compiled.getMapOrigin());
+        for (int x = 0; x < xml.getWidth(); x++) {
+            assertArrayEquals(xml.getTerrainMatrix()[x], compiled.getTerrainMatrix()[x]);
+            assertArrayEquals(xml.getInitialOreMatrix()[x], compiled.getInitialOreMatrix()[x]);
+        }
+    }
+
+    @Test
+    public void reusesTheCompiledMapUntilTheXmlChanges() throws Exception {
+        File xml = new File(dir, "test.xml");
+        WorldBenchmarks.writeMap(xml, 30);
+        CompiledMap.load("test", dir.getPath());
+        File first = CompiledMap.cacheFile(xml, "test");
+        assertTrue(first.isFile());
+        long modified = first.lastModified();
+        Thread.sleep(1000);
+        CompiledMap.load("test", dir.getPath());
+        assertEquals(modified, first.lastModified());
+        assertEquals(1, compiledFiles().length);
+
+        WorldBenchmarks.writeMap(xml, 32);
+        CompiledMap map = CompiledMap.load("test", dir.getPath());
+        assertEquals(32, map.width);
+        File second = CompiledMap.cacheFile(xml, "test");
+        assertFalse(first.equals(second));
+        assertFalse(first.exists());
+        assertTrue(second.isFile());
+        assertEquals(1, compiledFiles().length);
+    }
+
+    @Test
+    public void recompilesABrokenFile() throws IOException {
+        File xml = new File(dir, "test.xml");
+        WorldBenchmarks.writeMap(xml, 30);
+        CompiledMap.load("test", dir.getPath());
+        File file = CompiledMap.cacheFile(xml, "test");
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 1);
+        raf.close();
+        try {
+            CompiledMap.read(file);
+            throw new AssertionError("read a truncated map");
+        } catch (IOException e) {
+        }
+        assertEquals(30, CompiledMap.load("test", dir.getPath()).width);
+        assertEquals(30, CompiledMap.read(file).width);
+
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[]{1, 2, 3});
+        out.close();
+        assertEquals(30, CompiledMap.load("test", dir.getPath()).height);
+        assertEquals(30, CompiledMap.read(file).height);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingMap() {
+        CompiledMap.load("missing", dir.getPath());
+    }
+}
@@ -0,0 +1,172 @@
+package battlecode.world;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import battlecode.common.MapLocation;
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+import battlecode.common.TerrainTile;
+
+public class MapMemoryTest {
+
+    private static final int WIDTH = 30;
+    private static final int HEIGHT = 25;
+
+    public static GameMap makeMap(int width, int height, long seed) {
+        Random rand = new Random(seed);
+        Map<GameMap.MapProperties, Integer> props = new EnumMap<GameMap.MapProperties, Integer>(GameMap.MapProperties.class);
+        props.put(GameMap.MapProperties.WIDTH, width);
+        props.put(GameMap.MapProperties.HEIGHT, height);
+        props.put(GameMap.MapProperties.SEED, (int) seed);
+        props.put(GameMap.MapProperties.MAX_ROUNDS, 100000);
+        TerrainTile[][] tiles = new TerrainTile[width][height];
+        int[][] ore = new int[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                tiles[x][y] = rand.nextInt(8) == 0 ? TerrainTile.VOID : TerrainTile.NORMAL;
+                ore[x][y] = rand.nextInt(40);
+            }
+        }
+        return new GameMap(props, tiles, ore, "test");
+    }
+
+    /**
+     * Drives random movement and mining and checks that what each team
+     * senses matches a memory rebuilt from every robot's full view every
+     * round, which is how map memory used to be maintained.
+     */
+    @Test
+    public void testIncrementalMatchesFullRescan() {
+        Random rand = new Random(42);
+        GameMap map = makeMap(WIDTH, HEIGHT, 42);
+        GameWorld world = new GameWorld(map, "A", "B", new long[2][32]);
+        MapLocation origin = map.getMapOrigin();
+
+        RobotType[] types = { RobotType.BEAVER, RobotType.MINER, RobotType.SOLDIER, RobotType.TOWER };
+        InternalRobot[] robots = new InternalRobot[16];
+        for (int i = 0; i < robots.length; i++) {
+            Team team = i % 2 == 0 ? Team.A : Team.B;
+            robots[i] = new InternalRobot(world, types[i % types.length], freeLocation(world, origin, rand), team, false, 0);
+        }
+
+        boolean[][][] seen = new boolean[2][WIDTH][HEIGHT];
+        double[][][] ore = new double[2][WIDTH][HEIGHT];
+
+        for (int round = 0; round < 60; round++) {
+            for (InternalRobot r : robots) {
+                int roll = rand.nextInt(4);
+                if (roll == 0) {
+                    r.setLocation(freeLocation(world, origin, rand));
+                } else if (roll == 1) {
+                    world.mineOre(r.getLocation(), rand.nextDouble());
+                }
+            }
+            world.processEndOfRound();
+
+            for (InternalRobot r : robots) {
+                int t = r.getTeam().ordinal();
+                for (int x = 0; x < WIDTH; x++) {
+                    for (int y = 0; y < HEIGHT; y++) {
+                        MapLocation loc = origin.add(x, y);
+                        if (loc.distanceSquaredTo(r.getLocation()) <= r.type.sensorRadiusSquared) {
+                            seen[t][x][y] = true;
+                            ore[t][x][y] = world.getOre(loc);
+                        }
+                    }
+                }
+            }
+
+            for (Team team : new Team[] { Team.A, Team.B }) {
+                int t = team.ordinal();
+                for (int x = 0; x < WIDTH; x++) {
+                    for (int y = 0; y < HEIGHT; y++) {
+                        MapLocation loc = origin.add(x, y);
+                        if (seen[t][x][y]) {
+                            assertEquals(ore[t][x][y], world.senseOre(team, loc), 0.0);
+                            assertEquals(map.getTerrainTile(loc), world.senseMapTerrain(team, loc));
+                        } else {
+                            assertEquals(-1.0, world.senseOre(team, loc), 0.0);
+                            assertEquals(TerrainTile.UNKNOWN, world.senseMapTerrain(team, loc));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the memory against a plain array of every cell that has been in
+     * range, including the cells past the edges of the map.
+     */
+    @Test
+    public void testSeenOffTheMap() {
+        Random rand = new Random(9);
+        GameMap map = makeMap(WIDTH, HEIGHT, 9);
+        GameMap.MapMemory memory = new GameMap.MapMemory(map);
+        MapLocation origin = map.getMapOrigin();
+        double[] oreMined = new double[WIDTH * HEIGHT];
+        int pad = 10;
+        boolean[][] seen = new boolean[WIDTH + 2 * pad][HEIGHT + 2 * pad];
+
+        for (int i = 0; i < 40; i++) {
+            for (int c = 0; c < oreMined.length; c++)
+                oreMined[c] = rand.nextDouble();
+            // mostly near the edges
+            int x = rand.nextBoolean() ? rand.nextInt(WIDTH) : (rand.nextBoolean() ? 0 : WIDTH - 1);
+            int y = rand.nextBoolean() ? rand.nextInt(HEIGHT) : (rand.nextBoolean() ? 0 : HEIGHT - 1);
+            int radiusSquared = RobotType.values()[rand.nextInt(RobotType.values().length)].sensorRadiusSquared;
+            memory.rememberLocations(origin.add(x, y), radiusSquared, oreMined);
+            for (int dx = -pad; dx < WIDTH + pad; dx++) {
+                for (int dy = -pad; dy < HEIGHT + pad; dy++) {
+                    if ((dx - x) * (dx - x) + (dy - y) * (dy - y) <= radiusSquared)
+                        seen[dx + pad][dy + pad] = true;
+                }
+            }
+
+            for (int dx = -pad; dx < WIDTH + pad; dx++) {
+                for (int dy = -pad; dy < HEIGHT + pad; dy++) {
+                    MapLocation loc = origin.add(dx, dy);
+                    boolean onMap = dx >= 0 && dy >= 0 && dx < WIDTH && dy < HEIGHT;
+                    assertEquals(loc.toString(), seen[dx + pad][dy + pad], memory.seenBefore(loc));
+                    if (!seen[dx + pad][dy + pad]) {
+                        assertEquals(TerrainTile.UNKNOWN, memory.recallTerrain(loc));
+                        assertEquals(-1.0, memory.recallOreMined(loc), 0.0);
+                    } else if (!onMap) {
+                        assertEquals(TerrainTile.OFF_MAP, memory.recallTerrain(loc));
+                        assertEquals(0.0, memory.recallOreMined(loc), 0.0);
+                    } else {
+                        assertEquals(map.getTerrainTile(loc), memory.recallTerrain(loc));
+                    }
+                }
+            }
+        }
+        // a map's worth of ore and the bits for it and its margins
+        assertEquals(8 * WIDTH * HEIGHT + 8 * (((WIDTH + 2 * GameMap.MapMemory.MARGIN)
+                * (HEIGHT + 2 * GameMap.MapMemory.MARGIN) + 63) / 64), memory.sizeInBytes());
+    }
+
+    @Test
+    public void testNoMemoryForNeutral() {
+        GameWorld world = new GameWorld(makeMap(WIDTH, HEIGHT, 3), "A", "B", new long[2][32]);
+        assertNotNull(world.getMapMemory(Team.A));
+        assertNotNull(world.getMapMemory(Team.B));
+        assertNull(world.getMapMemory(Team.NEUTRAL));
+    }
+
+    private static MapLocation freeLocation(GameWorld world, MapLocation origin, Random rand) {
+        while (true) {
+            MapLocation loc = origin.add(rand.nextInt(WIDTH), rand.nextInt(HEIGHT));
+            if (world.getObject(loc) == null) {
+                return loc;
+            }
+        }
+    }
+}
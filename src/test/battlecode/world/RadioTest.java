@@ -0,0 +1,49 @@
+package battlecode.world;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import battlecode.common.GameConstants;
+import battlecode.common.MapLocation;
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+
+public class RadioTest {
+
+    @Test
+    public void testQueuedWritesVisibility() throws Exception {
+        GameMap map = MapMemoryTest.makeMap(10, 10, 1);
+        GameWorld world = new GameWorld(map, "A", "B", new long[2][32]);
+        MapLocation origin = map.getMapOrigin();
+        InternalRobot a1 = new InternalRobot(world, RobotType.BEAVER, origin, Team.A, false, 0);
+        InternalRobot a2 = new InternalRobot(world, RobotType.BEAVER, origin.add(1, 0), Team.A, false, 0);
+        InternalRobot b = new InternalRobot(world, RobotType.BEAVER, origin.add(2, 0), Team.B, false, 0);
+        RobotControllerImpl rc1 = new RobotControllerImpl(world, a1);
+        RobotControllerImpl rc2 = new RobotControllerImpl(world, a2);
+        RobotControllerImpl rcb = new RobotControllerImpl(world, b);
+
+        int last = GameConstants.BROADCAST_MAX_CHANNELS;
+        rc1.broadcast(7, 1);
+        rc1.broadcast(last, 5);
+        rc1.broadcast(7, 2);
+
+        // the writer sees its own writes, latest first; nobody else does yet
+        assertEquals(2, rc1.readBroadcast(7));
+        assertEquals(5, rc1.readBroadcast(last));
+        assertEquals(0, rc2.readBroadcast(7));
+
+        a1.processEndOfTurn();
+
+        assertEquals(2, rc2.readBroadcast(7));
+        assertEquals(5, rc2.readBroadcast(last));
+        assertEquals(0, rcb.readBroadcast(7));
+
+        // a new turn starts with an empty queue
+        rc1.broadcast(last, 6);
+        assertEquals(2, rc1.readBroadcast(7));
+        assertEquals(5, rc2.readBroadcast(last));
+        a1.processEndOfTurn();
+        assertEquals(6, rc2.readBroadcast(last));
+    }
+}
@@ -0,0 +1,77 @@
+package battlecode.world;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.junit.Test;
+
+import battlecode.common.MapLocation;
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+
+public class RoundAllocationTest {
+
+    private static final int SIZE = 40;
+
+    // a TeamOreSignal (plus its copy of the ore array) and a RoundStats
+    // are handed to the match every round; anything beyond that is
+    // bookkeeping that should have been reused
+    private static final long OUTPUT_BYTES_PER_ROUND = 256;
+
+    /**
+     * Runs the round lifecycle on a fixed map with few and with many
+     * robots and checks that, once warmed up, a round allocates nothing
+     * but its output records, no matter how many robots there are.
+     */
+    @Test
+    public void testSteadyStateRoundsDoNotAllocate() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!bean.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        bean.setThreadAllocatedMemoryEnabled(true);
+
+        long few = bytesPerRound(bean, 20);
+        long many = bytesPerRound(bean, 400);
+        // exact counts vary with when the JIT kicks in, so only bound them
+        assertTrue("round with 20 robots allocated " + few + " bytes", few <= OUTPUT_BYTES_PER_ROUND);
+        assertTrue("round with 400 robots allocated " + many + " bytes", many <= OUTPUT_BYTES_PER_ROUND);
+    }
+
+    private static long bytesPerRound(com.sun.management.ThreadMXBean bean, int numRobots) {
+        Random rand = new Random(numRobots);
+        GameMap map = MapMemoryTest.makeMap(SIZE, SIZE, 3);
+        GameWorld world = new GameWorld(map, "A", "B", new long[2][32]);
+        MapLocation origin = map.getMapOrigin();
+
+        RobotType[] types = { RobotType.BEAVER, RobotType.MINER, RobotType.SOLDIER, RobotType.TOWER };
+        for (int i = 0; i < numRobots; i++) {
+            Team team = i % 2 == 0 ? Team.A : Team.B;
+            MapLocation loc;
+            do {
+                loc = origin.add(rand.nextInt(SIZE), rand.nextInt(SIZE));
+            } while (world.getObject(loc) != null);
+            new InternalRobot(world, types[i % types.length], loc, team, false, 0);
+        }
+
+        // let the JIT settle
+        runRounds(world, 20000);
+
+        int rounds = 2000;
+        long thread = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(thread);
+        runRounds(world, rounds);
+        long after = bean.getThreadAllocatedBytes(thread);
+        return (after - before) / rounds;
+    }
+
+    private static void runRounds(GameWorld world, int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            world.processBeginningOfRound();
+            world.processEndOfRound();
+            world.clearAllSignals();
+        }
+    }
+}
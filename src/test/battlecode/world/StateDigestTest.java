@@ -0,0 +1,182 @@
+package battlecode.world;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import battlecode.common.MapLocation;
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+import battlecode.engine.signal.Signal;
+import battlecode.server.Config;
+import battlecode.server.proxy.DigestCompare;
+import battlecode.world.signal.BroadcastSignal;
+import battlecode.world.signal.StateDigestSignal;
+
+public class StateDigestTest {
+
+    private static final int SIZE = 20;
+
+    @Before
+    public void useDigests() {
+        Config.getGlobalConfig().set("bc.engine.state-digest", "true");
+    }
+
+    @After
+    public void restoreDigests() {
+        Config.getGlobalConfig().set("bc.engine.state-digest", "false");
+    }
+
+    private static GameWorld newWorld() {
+        return new GameWorld(MapMemoryTest.makeMap(SIZE, SIZE, 5), "A", "B", new long[2][32]);
+    }
+
+    private static InternalRobot addRobot(GameWorld world, int x, int y, Team team) {
+        return new InternalRobot(world, RobotType.SOLDIER, world.getGameMap().getMapOrigin().add(x, y), team, false, 0);
+    }
+
+    private static List<InternalRobot> robots(GameWorld world) {
+        List<InternalRobot> robots = new ArrayList<InternalRobot>();
+        for (InternalObject o : world.getAllGameObjects()) {
+            if (o instanceof InternalRobot)
+                robots.add((InternalRobot) o);
+        }
+        return robots;
+    }
+
+    private static StateDigestSignal finishRound(GameWorld world) {
+        world.processEndOfRound();
+        Signal[] signals = world.getAllSignals(true);
+        world.clearAllSignals();
+        StateDigestSignal digest = null;
+        for (Signal s : signals) {
+            if (s instanceof StateDigestSignal) {
+                assertNull(digest);
+                digest = (StateDigestSignal) s;
+            }
+        }
+        return digest;
+    }
+
+    private static void broadcast(GameWorld world, InternalRobot robot, int channel, int value) {
+        world.visitBroadcastSignal(new BroadcastSignal(robot, new int[]{channel}, new int[]{value}, 1));
+    }
+
+    /**
+     * Plays the same random changes on a world, round after round.
+     */
+    private static List<StateDigestSignal> play(long seed, int rounds) {
+        Random rand = new Random(seed);
+        GameWorld world = newWorld();
+        MapLocation origin = world.getGameMap().getMapOrigin();
+        List<StateDigestSignal> digests = new ArrayList<StateDigestSignal>();
+        for (int round = 0; round < rounds; round++) {
+            world.processBeginningOfRound();
+            int x = rand.nextInt(SIZE), y = rand.nextInt(SIZE);
+            if (world.getObject(origin.add(x, y)) == null)
+                addRobot(world, x, y, rand.nextBoolean() ? Team.A : Team.B);
+            List<InternalRobot> robots = robots(world);
+            for (InternalRobot robot : robots) {
+                switch (rand.nextInt(6)) {
+                    case 0:
+                        robot.addCoreDelay(1);
+                        break;
+                    case 1:
+                        robot.increaseSupplyLevel(rand.nextInt(50));
+                        break;
+                    case 2:
+                        world.mineOre(robot.getLocation(), 0.5);
+                        break;
+                    case 3:
+                        broadcast(world, robot, rand.nextInt(100), rand.nextInt());
+                        break;
+                    case 4:
+                        world.setTeamMemory(robot.getTeam(), rand.nextInt(32), rand.nextLong());
+                        break;
+                }
+            }
+            if (rand.nextInt(4) == 0 && !robots.isEmpty())
+                world.removeObject(robots.get(rand.nextInt(robots.size())));
+            digests.add(finishRound(world));
+        }
+        return digests;
+    }
+
+    @Test
+    public void testSameGameGivesSameDigests() {
+        List<StateDigestSignal> first = play(43, 100);
+        List<StateDigestSignal> second = play(43, 100);
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(i, first.get(i).getRound());
+            assertTrue(Arrays.equals(first.get(i).getDigests(), second.get(i).getDigests()));
+        }
+        List<StateDigestSignal> other = play(44, 100);
+        assertFalse(Arrays.equals(first.get(99).getDigests(), other.get(99).getDigests()));
+    }
+
+    /**
+     * The digest is of the state, not of how it was reached: undoing a
+     * change undoes its effect on the digest.
+     */
+    @Test
+    public void testUndoneChangesLeaveNoTrace() {
+        GameWorld untouched = newWorld();
+        addRobot(untouched, 1, 1, Team.A);
+        GameWorld changed = newWorld();
+        InternalRobot robot = addRobot(changed, 1, 1, Team.A);
+        long[] expected = finishRound(untouched).getDigests();
+
+        robot.increaseSupplyLevel(10);
+        broadcast(changed, robot, 12, 34);
+        changed.setTeamMemory(Team.B, 5, 99L);
+        InternalRobot dead = addRobot(changed, 3, 3, Team.B);
+        long[] different = finishRound(changed).getDigests();
+        assertFalse(different[StateDigest.ROBOTS] == expected[StateDigest.ROBOTS]);
+        assertFalse(different[StateDigest.RADIO] == expected[StateDigest.RADIO]);
+        assertFalse(different[StateDigest.TEAM_MEMORY] == expected[StateDigest.TEAM_MEMORY]);
+
+        robot.decreaseSupplyLevel(10);
+        broadcast(changed, robot, 12, 0);
+        changed.setTeamMemory(Team.B, 5, 0L, -1L);
+        changed.removeObject(dead);
+        assertTrue(Arrays.equals(finishRound(untouched).getDigests(), finishRound(changed).getDigests()));
+    }
+
+    @Test
+    public void testCompareFindsFirstDivergence() {
+        List<StateDigestSignal> first = play(43, 30);
+        List<StateDigestSignal> second = new ArrayList<StateDigestSignal>(first);
+        long[] digests = first.get(17).getDigests().clone();
+        digests[StateDigest.ORE]++;
+        digests[StateDigest.RADIO]++;
+        second.set(17, new StateDigestSignal(17, digests));
+        second.set(20, new StateDigestSignal(20, new long[5]));
+
+        List<List<StateDigestSignal>> a = new ArrayList<List<StateDigestSignal>>();
+        a.add(first);
+        List<List<StateDigestSignal>> b = new ArrayList<List<StateDigestSignal>>();
+        b.add(second);
+        assertNull(DigestCompare.compare(a, a));
+        assertEquals("match 1 diverges at round 17: ore, radio", DigestCompare.compare(a, b));
+
+        // rounds missing from one side are skipped, but not the last one
+        List<StateDigestSignal> sparse = new ArrayList<StateDigestSignal>();
+        for (int i = 0; i < first.size(); i += 10)
+            sparse.add(first.get(i));
+        b.set(0, sparse);
+        assertEquals("match 1 ends at round 29 in the first file and round 20 in the second",
+                DigestCompare.compare(a, b));
+        sparse.add(first.get(29));
+        assertNull(DigestCompare.compare(a, b));
+    }
+}
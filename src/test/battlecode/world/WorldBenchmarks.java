@@ -0,0 +1,473 @@
+package battlecode.world;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import battlecode.bench.Microbenchmark;
+import battlecode.common.MapLocation;
+import battlecode.common.RobotInfo;
+import battlecode.common.RobotType;
+import battlecode.common.Team;
+import battlecode.engine.instrumenter.RobotMonitor;
+import battlecode.engine.signal.Signal;
+import battlecode.world.signal.AttackSignal;
+import battlecode.world.signal.ControlBitsSignal;
+import battlecode.world.signal.IndicatorStringSignal;
+import battlecode.world.signal.MatchObservationSignal;
+import battlecode.world.signal.MovementSignal;
+
+/**
+ * Microbenchmarks for the game world: sensing, signal dispatch, the signal
+ * handlers, the end of a round, collecting signals, charging bytecodes and loading maps,
+ * from XML and compiled.
+ * See battlecode.bench.BenchmarkRunner.
+ */
+public class WorldBenchmarks {
+
+    private static final double[] DENSITIES = {0.02, 0.1, 0.3};
+    private static final String[] SENSE_OVERLOADS = {"none", "radius", "radius,team", "location,radius,team"};
+
+    public static List<Microbenchmark> create() {
+        List<Microbenchmark> benchmarks = new ArrayList<Microbenchmark>();
+        for (double density : DENSITIES)
+            for (String overload : SENSE_OVERLOADS)
+                benchmarks.add(new Sense(density, overload));
+        benchmarks.add(new SensingTurn());
+        for (int radiusSquared : new int[]{2, 24, 100})
+            benchmarks.add(new RobotsWithinRadius(radiusSquared));
+        benchmarks.add(new Dispatch());
+        benchmarks.add(new Attack());
+        benchmarks.add(new Movement());
+        benchmarks.add(new EndOfRound());
+        benchmarks.add(new AllSignals());
+        benchmarks.add(new IncrementBytecodes());
+        benchmarks.add(new LoadMap(60));
+        benchmarks.add(new LoadMap(120));
+        benchmarks.add(new LoadCompiledMap(60));
+        benchmarks.add(new LoadCompiledMap(120));
+        return benchmarks;
+    }
+
+    /**
+     * Makes a world with robots of both teams on a given fraction of its
+     * squares.
+     */
+    static GameWorld populate(int size, double density, long seed) {
+        Random rand = new Random(seed);
+        GameWorld world = new GameWorld(MapMemoryTest.makeMap(size, size, seed), "A", "B", new long[2][32]);
+        MapLocation origin = world.getGameMap().getMapOrigin();
+        RobotType[] types = {RobotType.BEAVER, RobotType.MINER, RobotType.SOLDIER, RobotType.TANK};
+        int robots = (int) (size * size * density);
+        for (int i = 0; i < robots; i++) {
+            MapLocation loc;
+            do {
+                loc = origin.add(rand.nextInt(size), rand.nextInt(size));
+            } while (world.getObject(loc) != null);
+            new InternalRobot(world, types[i % types.length], loc, i % 2 == 0 ? Team.A : Team.B, false, 0);
+        }
+        return world;
+    }
+
+    static class Sense extends Microbenchmark {
+        private final double density;
+        private final String overload;
+        private RobotControllerImpl rc;
+        private MapLocation center;
+
+        Sense(double density, String overload) {
+            super("world.senseNearbyRobots", "density", density, "args", overload);
+            this.density = density;
+            this.overload = overload;
+        }
+
+        public void setUp() {
+            GameWorld world = populate(60, density, 1);
+            center = world.getGameMap().getMapOrigin().add(30, 30);
+            InternalObject there = world.getObject(center);
+            if (there != null)
+                world.removeObject(there);
+            rc = new RobotControllerImpl(world, new InternalRobot(world, RobotType.SOLDIER, center, Team.A, false, 0));
+        }
+
+        public int run() {
+            if (overload.equals("none"))
+                consume(rc.senseNearbyRobots());
+            else if (overload.equals("radius"))
+                consume(rc.senseNearbyRobots(24));
+            else if (overload.equals("radius,team"))
+                consume(rc.senseNearbyRobots(24, Team.B));
+            else
+                consume(rc.senseNearbyRobots(center.add(2, 2), 24, Team.B));
+            return 1;
+        }
+    }
+
+    /**
+     * What most players do at the top of their loop: every robot senses the
+     * towers on both sides and the robots around it.
+     */
+    static class SensingTurn extends Microbenchmark {
+        private RobotControllerImpl[] controllers;
+
+        SensingTurn() {
+            super("world.sensingTurn", "robots", 200);
+        }
+
+        public void setUp() {
+            GameWorld world = new GameWorld(MapMemoryTest.makeMap(60, 60, 1), "A", "B", new long[2][32]);
+            MapLocation origin = world.getGameMap().getMapOrigin();
+            for (Team t : new Team[]{Team.A, Team.B}) {
+                int x = t == Team.A ? 2 : 57;
+                for (int i = 0; i < 6; i++)
+                    world.addTower(new InternalRobot(world, RobotType.TOWER, origin.add(x, 5 + 8 * i), t, false, 0), t);
+            }
+            controllers = new RobotControllerImpl[200];
+            for (int i = 0; i < controllers.length; i++) {
+                MapLocation loc = origin.add(5 + (i * 7) % 50, 3 + (i * 13) % 54);
+                InternalRobot r = new InternalRobot(world, RobotType.SOLDIER, loc, i % 2 == 0 ? Team.A : Team.B,
+                        false, 0);
+                controllers[i] = new RobotControllerImpl(world, r);
+            }
+        }
+
+        public int run() {
+            long sum = 0;
+            for (RobotControllerImpl rc : controllers) {
+                sum += rc.senseTowerLocations().length;
+                sum += rc.senseEnemyTowerLocations().length;
+                for (RobotInfo info : rc.senseNearbyRobots())
+                    sum += info.ID;
+            }
+            consume(sum);
+            return controllers.length;
+        }
+    }
+
+    static class RobotsWithinRadius extends Microbenchmark {
+        private final int radiusSquared;
+        private GameWorld world;
+        private MapLocation center;
+
+        RobotsWithinRadius(int radiusSquared) {
+            super("world.getAllRobotsWithinRadiusSq", "density", 0.1, "radiusSquared", radiusSquared);
+            this.radiusSquared = radiusSquared;
+        }
+
+        public void setUp() {
+            world = populate(60, 0.1, 2);
+            center = world.getGameMap().getMapOrigin().add(30, 30);
+        }
+
+        public int run() {
+            consume(world.getAllRobotsWithinRadiusSq(center, radiusSquared));
+            return 1;
+        }
+    }
+
+    static class Attack extends Microbenchmark {
+        private GameWorld world;
+        private InternalRobot target;
+        private AttackSignal attack;
+
+        Attack() {
+            super("world.visitAttackSignal", "attacker", RobotType.SOLDIER);
+        }
+
+        public void setUp() {
+            world = populate(30, 0.1, 3);
+            MapLocation origin = world.getGameMap().getMapOrigin();
+            for (MapLocation loc : new MapLocation[]{origin, origin.add(1, 0)}) {
+                InternalObject there = world.getObject(loc);
+                if (there != null)
+                    world.removeObject(there);
+            }
+            InternalRobot attacker = new InternalRobot(world, RobotType.SOLDIER, origin, Team.A, false, 0);
+            target = new InternalRobot(world, RobotType.SOLDIER, origin.add(1, 0), Team.B, false, 0);
+            attack = new AttackSignal(attacker, target.getLocation());
+        }
+
+        public int run() {
+            for (int i = 0; i < 100; i++) {
+                double health = target.getHealthLevel();
+                world.visitSignal(attack);
+                target.changeHealthLevel(health - target.getHealthLevel());
+            }
+            world.clearAllSignals();
+            return 100;
+        }
+    }
+
+    /**
+     * Routes signals with cheap handlers to GameWorld, so that the time is
+     * mostly dispatch.
+     */
+    static class Dispatch extends Microbenchmark {
+        private GameWorld world;
+        private Signal[] signals;
+
+        Dispatch() {
+            super("world.visitSignal", "signals", "cheap");
+        }
+
+        public void setUp() {
+            world = new GameWorld(MapMemoryTest.makeMap(20, 20, 5), "A", "B", new long[2][32]);
+            InternalRobot robot = new InternalRobot(world, RobotType.SOLDIER, world.getGameMap().getMapOrigin(),
+                    Team.A, false, 0);
+            signals = new Signal[]{
+                    new ControlBitsSignal(robot.getID(), 1),
+                    new IndicatorStringSignal(robot, 0, "x"),
+                    new MatchObservationSignal(robot, "y")};
+        }
+
+        public int run() {
+            for (int i = 0; i < 999; i++)
+                world.visitSignal(signals[i % signals.length]);
+            world.clearAllSignals();
+            return 999;
+        }
+    }
+
+    static class Movement extends Microbenchmark {
+        private GameWorld world;
+        private MovementSignal there;
+        private MovementSignal back;
+
+        Movement() {
+            super("world.visitMovementSignal");
+        }
+
+        public void setUp() {
+            world = populate(30, 0.1, 4);
+            MapLocation origin = world.getGameMap().getMapOrigin();
+            for (MapLocation loc : new MapLocation[]{origin, origin.add(1, 1)}) {
+                InternalObject o = world.getObject(loc);
+                if (o != null)
+                    world.removeObject(o);
+            }
+            InternalRobot robot = new InternalRobot(world, RobotType.SOLDIER, origin, Team.A, false, 0);
+            there = new MovementSignal(robot, origin.add(1, 1), true, 2);
+            back = new MovementSignal(robot, origin, false, 2);
+        }
+
+        public int run() {
+            for (int i = 0; i < 50; i++) {
+                world.visitSignal(there);
+                world.visitSignal(back);
+            }
+            world.clearAllSignals();
+            return 100;
+        }
+    }
+
+    /**
+     * A round's worth of changes: a third of the robots move and a third
+     * mine before the round ends.
+     */
+    static class EndOfRound extends Microbenchmark {
+        private final Random rand = new Random(5);
+        private GameWorld world;
+        private InternalRobot[] robots;
+
+        EndOfRound() {
+            super("world.processEndOfRound", "robots", 300);
+        }
+
+        public void setUp() {
+            world = populate(120, 300.0 / (120 * 120), 5);
+            robots = robotsOf(world);
+        }
+
+        public int run() {
+            for (InternalRobot r : robots) {
+                int roll = rand.nextInt(3);
+                if (roll == 0) {
+                    MapLocation next = r.getLocation().add(rand.nextInt(3) - 1, rand.nextInt(3) - 1);
+                    if (world.getGameMap().onTheMap(next) && world.getObject(next) == null)
+                        r.setLocation(next);
+                } else if (roll == 1) {
+                    world.mineOre(r.getLocation(), 0.1);
+                }
+            }
+            world.processEndOfRound();
+            world.clearAllSignals();
+            return 1;
+        }
+    }
+
+    static class AllSignals extends Microbenchmark {
+        private final Random rand = new Random(6);
+        private GameWorld world;
+        private InternalRobot[] robots;
+
+        AllSignals() {
+            super("world.getAllSignals", "robots", 300);
+        }
+
+        public void setUp() {
+            world = populate(120, 300.0 / (120 * 120), 6);
+            robots = robotsOf(world);
+        }
+
+        public int run() {
+            for (int i = 0; i < robots.length / 4; i++)
+                robots[rand.nextInt(robots.length)].addCoreDelay(1);
+            consume(world.getAllSignals(true));
+            world.clearAllSignals();
+            return 1;
+        }
+    }
+
+    static InternalRobot[] robotsOf(GameWorld world) {
+        List<InternalRobot> robots = new ArrayList<InternalRobot>();
+        for (InternalObject o : world.getAllGameObjects()) {
+            if (o instanceof InternalRobot)
+                robots.add((InternalRobot) o);
+        }
+        return robots.toArray(new InternalRobot[robots.size()]);
+    }
+
+    /**
+     * Charges bytecodes to a running robot, as instrumented player code
+     * does at the end of every basic block. Each run is one turn, which
+     * must stay under an unsupplied soldier's limit or the monitor would
+     * pass the turn on.
+     */
+    static class IncrementBytecodes extends Microbenchmark {
+        private RobotMonitor.RobotData data;
+
+        IncrementBytecodes() {
+            super("engine.incrementBytecodes", "bytecodes", 4);
+        }
+
+        public void setUp() {
+            GameWorld world = populate(20, 0, 7);
+            InternalRobot robot = new InternalRobot(world, RobotType.SOLDIER, world.getGameMap().getMapOrigin(),
+                    Team.A, false, 0);
+            RobotMonitor.reset();
+            RobotMonitor.setGameWorld(world);
+            data = new RobotMonitor.RobotData(robot.getID());
+            if (robot.getBytecodeLimit() <= 4000)
+                throw new IllegalStateException("bytecode limit " + robot.getBytecodeLimit());
+        }
+
+        public int run() {
+            data.bytecodesLeft = 0;
+            RobotMonitor.switchRunner(data);
+            for (int i = 0; i < 1000; i++)
+                RobotMonitor.incrementBytecodes(4);
+            consume(RobotMonitor.getBytecodesLeft());
+            return 1000;
+        }
+
+        public void tearDown() {
+            RobotMonitor.setGameWorld(null);
+        }
+    }
+
+    /**
+     * Parses a map file with ore everywhere, some void and the usual HQs
+     * and towers.
+     */
+    static class LoadMap extends Microbenchmark {
+        private final int size;
+        private File dir;
+
+        LoadMap(int size) {
+            super("world.loadMap", "size", size);
+            this.size = size;
+        }
+
+        public void setUp() throws IOException {
+            dir = File.createTempFile("maps", "");
+            dir.delete();
+            dir.mkdirs();
+            writeMap(new File(dir, "bench.xml"), size);
+        }
+
+        public int run() {
+            consume(XMLMapHandler.loadMap("bench", dir.getPath()));
+            return 1;
+        }
+
+        public void tearDown() {
+            new File(dir, "bench.xml").delete();
+            dir.delete();
+        }
+    }
+
+    static class LoadCompiledMap extends Microbenchmark {
+        private final int size;
+        private File dir, compiled;
+
+        LoadCompiledMap(int size) {
+            super("world.loadCompiledMap", "size", size);
+            this.size = size;
+        }
+
+        public void setUp() throws IOException {
+            dir = File.createTempFile("maps", "");
+            dir.delete();
+            dir.mkdirs();
+            File xml = new File(dir, "bench.xml");
+            writeMap(xml, size);
+            CompiledMap.load("bench", dir.getPath());
+            compiled = CompiledMap.cacheFile(xml, "bench");
+        }
+
+        public int run() throws IOException {
+            consume(CompiledMap.read(compiled).toGameMap("bench"));
+            return 1;
+        }
+
+        public void tearDown() {
+            compiled.delete();
+            compiled.getParentFile().delete();
+            new File(dir, "bench.xml").delete();
+            dir.delete();
+        }
+    }
+
+    static void writeMap(File file, int size) throws IOException {
+        Random rand = new Random(size);
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<map height=\"" + size + "\" width=\"" + size + "\">\n");
+        out.write("    <game seed=\"" + size + "\" rounds=\"2000\"/>\n");
+        out.write("    <symbols>\n");
+        out.write("        <symbol terrain=\"NORMAL\" type=\"TERRAIN\" character=\"n\"/>\n");
+        out.write("        <symbol terrain=\"VOID\" type=\"TERRAIN\" character=\"#\"/>\n");
+        out.write("        <symbol team=\"A\" type=\"HQ\" character=\"a\"/>\n");
+        out.write("        <symbol team=\"B\" type=\"HQ\" character=\"b\"/>\n");
+        out.write("        <symbol team=\"A\" type=\"TOWER\" character=\"t\"/>\n");
+        out.write("        <symbol team=\"B\" type=\"TOWER\" character=\"u\"/>\n");
+        out.write("    </symbols>\n");
+        out.write("    <data>\n<![CDATA[\n");
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (x > 0)
+                    out.write(' ');
+                if (y == 3 && x == 3)
+                    out.write("a");
+                else if (y == size - 4 && x == size - 4)
+                    out.write("b");
+                else if (y == 3 + 4 * (x % 6) && x > 5 && x < 12)
+                    out.write("t");
+                else if (y == size - 4 - 4 * (x % 6) && x > size - 13 && x < size - 6)
+                    out.write("u");
+                else if (rand.nextInt(10) == 0)
+                    out.write("#");
+                else
+                    out.write("n" + rand.nextInt(40));
+            }
+            out.write('\n');
+        }
+        out.write("]]>\n    </data>\n</map>\n");
+        out.close();
+    }
+}